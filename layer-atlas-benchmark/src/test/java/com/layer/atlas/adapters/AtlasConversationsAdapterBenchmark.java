@@ -0,0 +1,131 @@
+package com.layer.atlas.adapters;
+
+import android.content.Context;
+import android.support.v7.widget.RecyclerView;
+
+import com.layer.atlas.benchmark.BenchmarkRunner;
+import com.layer.atlas.benchmark.BuildConfig;
+import com.layer.atlas.benchmark.Fixtures;
+import com.layer.atlas.messagetypes.generic.GenericCellFactory;
+import com.layer.atlas.messagetypes.location.LocationCellFactory;
+import com.layer.atlas.messagetypes.singlepartimage.SinglePartImageCellFactory;
+import com.layer.atlas.messagetypes.text.TextCellFactory;
+import com.layer.atlas.messagetypes.threepartimage.ThreePartImageCellFactory;
+import com.layer.atlas.mock.MockLayerClient;
+import com.layer.atlas.util.ConversationFormatter;
+import com.layer.sdk.messaging.Conversation;
+import com.layer.sdk.messaging.Identity;
+import com.layer.sdk.messaging.Message;
+import com.squareup.picasso.Picasso;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Measures AtlasConversationsAdapter.onBindViewHolder() over a mix of one-on-one and group
+ * Conversations with text, image, location, and generic last Messages.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class AtlasConversationsAdapterBenchmark {
+    private static final int CONVERSATION_COUNT = 200;
+    private static final int IDENTITY_COUNT = 50;
+
+    private static final BenchmarkRunner sRunner = new BenchmarkRunner("conversations-adapter");
+
+    private List<Conversation> mConversations;
+    private BenchmarkConversationsAdapter mAdapter;
+    private RecyclerView mRecyclerView;
+
+    @Before
+    public void setUp() {
+        Context context = RuntimeEnvironment.application;
+        Picasso picasso = Fixtures.newPicasso(context);
+
+        Identity me = Fixtures.newIdentity("me", "Me");
+        List<Identity> identities = new ArrayList<Identity>(IDENTITY_COUNT);
+        for (int i = 0; i < IDENTITY_COUNT; i++) {
+            identities.add(Fixtures.newIdentity("user" + i, (i % 5 == 0) ? null : "User " + i));
+        }
+
+        // Every third Conversation is one-on-one; the rest have up to 10 members
+        mConversations = new ArrayList<Conversation>(CONVERSATION_COUNT);
+        for (int i = 0; i < CONVERSATION_COUNT; i++) {
+            int others = (i % 3 == 0) ? 1 : 2 + (i % 9);
+            Set<Identity> participants = new LinkedHashSet<Identity>();
+            participants.add(me);
+            for (int j = 0; j < others; j++) {
+                participants.add(identities.get((i * 7 + j) % IDENTITY_COUNT));
+            }
+            List<Identity> senders = new ArrayList<Identity>(participants);
+            Message lastMessage = Fixtures.newThread(null, senders, 20).get(i % 20);
+            mConversations.add(Fixtures.newConversation(participants, lastMessage, (i % 4 == 0) ? 3 : 0));
+        }
+        Collections.shuffle(mConversations, new Random(42));
+
+        MockLayerClient layerClient = new MockLayerClient().setAuthenticatedUser(me);
+        layerClient.setRecyclerViewController(Fixtures.newController(mConversations));
+
+        mRecyclerView = Fixtures.newRecyclerView(context);
+        mAdapter = new BenchmarkConversationsAdapter(context, layerClient, picasso, mConversations);
+        mAdapter.setStyle(Fixtures.newConversationStyle());
+        mAdapter.addCellFactories(
+                new TextCellFactory(),
+                new ThreePartImageCellFactory(layerClient, picasso),
+                new LocationCellFactory(picasso),
+                new SinglePartImageCellFactory(layerClient, picasso),
+                new GenericCellFactory());
+    }
+
+    @AfterClass
+    public static void writeResults() throws Exception {
+        sRunner.writeJson();
+    }
+
+    @Test
+    public void benchmarkOnBindViewHolder() {
+        final AtlasConversationsAdapter.ViewHolder holder = mAdapter.createViewHolder(mRecyclerView, 0);
+        sRunner.run("onBindViewHolder", new BenchmarkRunner.Op() {
+            @Override
+            public Object run(int index) {
+                mAdapter.onBindViewHolder(holder, index % mConversations.size());
+                return holder;
+            }
+        });
+    }
+
+    /**
+     * Serves Conversations straight from a List, so the query controller mock stays off the
+     * measured path apart from updateBoundPosition().
+     */
+    private static class BenchmarkConversationsAdapter extends AtlasConversationsAdapter {
+        private final List<Conversation> mItems;
+
+        BenchmarkConversationsAdapter(Context context, MockLayerClient layerClient, Picasso picasso, List<Conversation> items) {
+            super(context, layerClient, picasso, new ConversationFormatter());
+            mItems = items;
+        }
+
+        @Override
+        public Conversation getItem(int position) {
+            return mItems.get(position);
+        }
+
+        @Override
+        public int getItemCount() {
+            return mItems.size();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.layer.atlas.adapters;
+
+import android.content.Context;
+import android.support.v7.widget.RecyclerView;
+
+import com.layer.atlas.benchmark.BenchmarkRunner;
+import com.layer.atlas.benchmark.BuildConfig;
+import com.layer.atlas.benchmark.Fixtures;
+import com.layer.atlas.messagetypes.AtlasCellFactory;
+import com.layer.atlas.messagetypes.generic.GenericCellFactory;
+import com.layer.atlas.messagetypes.location.LocalMapSnapshotProvider;
+import com.layer.atlas.messagetypes.location.LocationCellFactory;
+import com.layer.atlas.messagetypes.singlepartimage.SinglePartImageCellFactory;
+import com.layer.atlas.messagetypes.text.TextCellFactory;
+import com.layer.atlas.messagetypes.threepartimage.ThreePartImageCellFactory;
+import com.layer.atlas.mock.MockLayerClient;
+import com.layer.sdk.messaging.Conversation;
+import com.layer.sdk.messaging.Identity;
+import com.layer.sdk.messaging.Message;
+import com.squareup.picasso.Picasso;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures AtlasMessagesAdapter binding and clustering over a mixed-type group thread.  Bind
+ * benchmarks rebind one recycled CellViewHolder per view type across every matching position,
+ * as RecyclerView does while scrolling, so parsed content comes from the cell factory caches.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class AtlasMessagesAdapterBenchmark {
+    private static final int MESSAGE_COUNT = 500;
+
+    private static final BenchmarkRunner sRunner = new BenchmarkRunner("messages-adapter");
+
+    private Identity mMe;
+    private List<Message> mMessages;
+    private BenchmarkMessagesAdapter mAdapter;
+    private RecyclerView mRecyclerView;
+
+    @Before
+    public void setUp() {
+        Context context = RuntimeEnvironment.application;
+        Picasso picasso = Fixtures.newPicasso(context);
+
+        mMe = Fixtures.newIdentity("me", "Me");
+        List<Identity> senders = Arrays.asList(mMe,
+                Fixtures.newIdentity("alice", "Alice Anderson"),
+                Fixtures.newIdentity("bob", "Bob Brown"),
+                Fixtures.newIdentity("carol", null),
+                Fixtures.newIdentity("dave", "Dave Davis"));
+        Conversation conversation = Fixtures.newConversation(new LinkedHashSet<Identity>(senders), null, 0);
+        mMessages = Fixtures.newThread(conversation, senders, MESSAGE_COUNT);
+
+        MockLayerClient layerClient = new MockLayerClient().setAuthenticatedUser(mMe);
+        layerClient.setRecyclerViewController(Fixtures.newController(mMessages));
+
+        mRecyclerView = Fixtures.newRecyclerView(context);
+        mAdapter = new BenchmarkMessagesAdapter(context, layerClient, picasso, mMessages);
+        mAdapter.setStyle(Fixtures.newMessageStyle());
+        mAdapter.setRecyclerView(mRecyclerView);
+        mAdapter.addCellFactories(
+                new TextCellFactory(),
+                new ThreePartImageCellFactory(layerClient, picasso),
+                new LocationCellFactory(picasso).setSnapshotProvider(new LocalMapSnapshotProvider(), null),
+                new SinglePartImageCellFactory(layerClient, picasso),
+                new GenericCellFactory());
+    }
+
+    @AfterClass
+    public static void writeResults() throws Exception {
+        sRunner.writeJson();
+    }
+
+    @Test
+    public void benchmarkBindCellViewHolder() {
+        // Positions and a recycled holder for each view type
+        Map<Integer, List<Integer>> positionsByType = new HashMap<Integer, List<Integer>>();
+        for (int position = 0; position < mMessages.size(); position++) {
+            int viewType = mAdapter.getItemViewType(position);
+            List<Integer> positions = positionsByType.get(viewType);
+            if (positions == null) {
+                positions = new ArrayList<Integer>();
+                positionsByType.put(viewType, positions);
+            }
+            positions.add(position);
+        }
+
+        for (Map.Entry<Integer, List<Integer>> entry : positionsByType.entrySet()) {
+            final int[] positions = toArray(entry.getValue());
+            final AtlasMessagesAdapter.CellViewHolder holder =
+                    (AtlasMessagesAdapter.CellViewHolder) mAdapter.createViewHolder(mRecyclerView, entry.getKey());
+            Message first = mMessages.get(positions[0]);
+            AtlasCellFactory factory = getFactory(first);
+            String name = "bind." + factory.getClass().getSimpleName() + (mMe.equals(first.getSender()) ? ".me" : ".them");
+            sRunner.run(name, new BenchmarkRunner.Op() {
+                @Override
+                public Object run(int index) {
+                    mAdapter.bindCellViewHolder(holder, positions[index % positions.length]);
+                    return holder;
+                }
+            });
+        }
+    }
+
+    @Test
+    public void benchmarkGetClustering() {
+        sRunner.run("getClustering", new BenchmarkRunner.Op() {
+            @Override
+            public Object run(int index) {
+                int position = index % mMessages.size();
+                return mAdapter.getClustering(mMessages.get(position), position);
+            }
+        });
+    }
+
+    private AtlasCellFactory getFactory(Message message) {
+        for (AtlasCellFactory factory : mAdapter.getCellFactories()) {
+            if (factory.isBindable(message)) return factory;
+        }
+        return null;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Serves Messages straight from a List, so the query controller mock stays off the
+     * measured path.
+     */
+    private static class BenchmarkMessagesAdapter extends AtlasMessagesAdapter {
+        private final List<Message> mItems;
+
+        BenchmarkMessagesAdapter(Context context, MockLayerClient layerClient, Picasso picasso, List<Message> items) {
+            super(context, layerClient, picasso);
+            mItems = items;
+        }
+
+        @Override
+        public Message getItem(int position) {
+            return mItems.get(position);
+        }
+
+        @Override
+        public int getItemCount() {
+            return mItems.size();
+        }
+
+        @Override
+        public Integer getPosition(Message message, int lastPosition) {
+            return lastPosition;
+        }
+    }
+}
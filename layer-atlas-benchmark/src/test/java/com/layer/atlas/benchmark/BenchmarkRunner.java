@@ -0,0 +1,318 @@
+package com.layer.atlas.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * BenchmarkRunner is a small JMH-style harness for benchmarks that need Robolectric, and so
+ * cannot run under JMH itself.  Each benchmark runs time-bounded warmup iterations, which also
+ * size the measured iterations, then a fixed number of measured iterations.  Time per operation
+ * and bytes allocated per operation on the calling thread are reported to stdout and written as
+ * JSON to `<atlas.benchmark.outputDir>/<suite>.json` for regression tracking, once per suite so
+ * that metrics attached after a run are included.
+ * <p>
+ * Results are only comparable between runs on the same machine and JVM.  Robolectric shadows
+ * some framework work, so absolute numbers are not device numbers; use them to catch
+ * regressions in Atlas code.
+ */
+public class BenchmarkRunner {
+    public static final String PROPERTY_OUTPUT_DIR = "atlas.benchmark.outputDir";
+    public static final String PROPERTY_ITERATIONS = "atlas.benchmark.iterations";
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int DEFAULT_ITERATIONS = 10;
+    private static final long ITERATION_NANOS = 100L * 1000000;
+
+    private final String mSuite;
+    private final int mIterations;
+    private final List<Result> mResults = new ArrayList<Result>();
+
+    // Keeps results reachable so the JIT cannot discard the measured work
+    private volatile Object mSink;
+    private static volatile Object sPeakSink;
+
+    /**
+     * @param suite Suite name, used as the JSON file name, e.g. `messages-adapter`.
+     */
+    public BenchmarkRunner(String suite) {
+        mSuite = suite;
+        mIterations = Integer.getInteger(PROPERTY_ITERATIONS, DEFAULT_ITERATIONS);
+    }
+
+    /**
+     * Runs and records a benchmark.
+     *
+     * @param name Benchmark name, unique within the suite.
+     * @param op   Operation to measure.
+     * @return The benchmark's Result.
+     */
+    public Result run(String name, Op op) {
+        System.gc();
+
+        // Warm up, and find how many operations fill an iteration
+        int index = 0;
+        int opsPerIteration = 1;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            int ops = 0;
+            long start = System.nanoTime();
+            long elapsed;
+            do {
+                mSink = op.run(index++);
+                ops++;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < ITERATION_NANOS);
+            opsPerIteration = ops;
+        }
+
+        double[] nanosPerOp = new double[mIterations];
+        long allocatedStart = getAllocatedBytes();
+        for (int i = 0; i < mIterations; i++) {
+            long start = System.nanoTime();
+            for (int j = 0; j < opsPerIteration; j++) {
+                mSink = op.run(index++);
+            }
+            nanosPerOp[i] = (double) (System.nanoTime() - start) / opsPerIteration;
+        }
+        long allocatedEnd = getAllocatedBytes();
+        mSink = null;
+
+        long totalOps = (long) mIterations * opsPerIteration;
+        double bytesPerOp = (allocatedStart < 0 || allocatedEnd < 0) ? -1 : (double) (allocatedEnd - allocatedStart) / totalOps;
+        Result result = new Result(name, mIterations, opsPerIteration, nanosPerOp, bytesPerOp);
+        mResults.add(result);
+        return result;
+    }
+
+    public List<Result> getResults() {
+        return mResults;
+    }
+
+    /**
+     * Runs an operation once and returns how far heap use peaked above its starting level.  The
+     * peak includes uncollected garbage, and is summed over heap pools that may peak at different
+     * times, so treat it as an upper bound.
+     *
+     * @param op Operation to run.
+     * @return Peak heap growth in bytes.
+     */
+    public static long measurePeakHeap(Op op) {
+        List<MemoryPoolMXBean> pools = new ArrayList<MemoryPoolMXBean>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) pools.add(pool);
+        }
+        System.gc();
+        long before = 0;
+        for (MemoryPoolMXBean pool : pools) {
+            before += pool.getUsage().getUsed();
+            pool.resetPeakUsage();
+        }
+        sPeakSink = op.run(0);
+        long peak = 0;
+        for (MemoryPoolMXBean pool : pools) {
+            peak += pool.getPeakUsage().getUsed();
+        }
+        sPeakSink = null;
+        return Math.max(0, peak - before);
+    }
+
+    /**
+     * Prints all recorded results, with their metrics, and writes them to `<suite>.json` in the
+     * output directory.
+     *
+     * @return The written file.
+     */
+    public File writeJson() throws IOException {
+        for (Result result : mResults) {
+            System.out.println(mSuite + " " + result);
+        }
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"suite\": ").append(quote(mSuite)).append(",\n");
+        json.append("  \"timestamp\": ").append(System.currentTimeMillis()).append(",\n");
+        json.append("  \"jvm\": ").append(quote(System.getProperty("java.vm.name") + " " + System.getProperty("java.version"))).append(",\n");
+        json.append("  \"results\": [");
+        for (int i = 0; i < mResults.size(); i++) {
+            json.append(i == 0 ? "\n" : ",\n");
+            mResults.get(i).appendJson(json, "    ");
+        }
+        json.append("\n  ]\n}\n");
+        return writeJson(mSuite, json.toString());
+    }
+
+    //==============================================================================================
+    // private methods
+    //==============================================================================================
+
+    /**
+     * Writes JSON to `<name>.json` in the output directory.
+     */
+    static File writeJson(String name, String json) throws IOException {
+        File dir = new File(System.getProperty(PROPERTY_OUTPUT_DIR, "build/benchmarks"));
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Could not create " + dir);
+        File file = new File(dir, name + ".json");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(json);
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    /**
+     * Returns bytes allocated so far by the current thread, or -1 if the JVM cannot tell.
+     */
+    static long getAllocatedBytes() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (!(threadBean instanceof com.sun.management.ThreadMXBean)) return -1;
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadBean;
+        if (!bean.isThreadAllocatedMemorySupported() || !bean.isThreadAllocatedMemoryEnabled()) return -1;
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    static String quote(String s) {
+        StringBuilder b = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                b.append('\\').append(c);
+            } else if (c < 0x20) {
+                b.append(String.format(Locale.US, "\\u%04x", (int) c));
+            } else {
+                b.append(c);
+            }
+        }
+        return b.append('"').toString();
+    }
+
+    //==============================================================================================
+    // Inner classes
+    //==============================================================================================
+
+    public interface Op {
+        /**
+         * Performs one operation.
+         *
+         * @param index Operation number, increasing across warmup and measurement, e.g. for
+         *              cycling through a dataset.
+         * @return Any result of the operation, kept reachable so it is not optimized away.
+         */
+        Object run(int index);
+    }
+
+    public static class Result {
+        private final String mName;
+        private final int mIterations;
+        private final int mOpsPerIteration;
+        private final double mMeanNanos;
+        private final double mMinNanos;
+        private final double mMaxNanos;
+        private final double mStdDevNanos;
+        private final double mBytesPerOp;
+        private final Map<String, Double> mMetrics = new LinkedHashMap<String, Double>();
+
+        Result(String name, int iterations, int opsPerIteration, double[] nanosPerOp, double bytesPerOp) {
+            mName = name;
+            mIterations = iterations;
+            mOpsPerIteration = opsPerIteration;
+            mBytesPerOp = bytesPerOp;
+
+            double sum = 0;
+            double min = Double.MAX_VALUE;
+            double max = 0;
+            for (double nanos : nanosPerOp) {
+                sum += nanos;
+                min = Math.min(min, nanos);
+                max = Math.max(max, nanos);
+            }
+            mMeanNanos = sum / nanosPerOp.length;
+            double squares = 0;
+            for (double nanos : nanosPerOp) {
+                squares += (nanos - mMeanNanos) * (nanos - mMeanNanos);
+            }
+            mStdDevNanos = nanosPerOp.length > 1 ? Math.sqrt(squares / (nanosPerOp.length - 1)) : 0;
+            mMinNanos = min;
+            mMaxNanos = max;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        /**
+         * Returns the mean time per operation, in nanoseconds.
+         */
+        public double getMeanNanos() {
+            return mMeanNanos;
+        }
+
+        public double getOpsPerSecond() {
+            return 1e9 / mMeanNanos;
+        }
+
+        /**
+         * Returns bytes allocated per operation, or -1 if the JVM cannot measure allocation.
+         */
+        public double getBytesPerOp() {
+            return mBytesPerOp;
+        }
+
+        /**
+         * Records an additional measurement that the runner cannot take itself, e.g. output bytes
+         * or an image quality score.  Metrics are reported with the result.
+         *
+         * @return This Result.
+         */
+        public Result putMetric(String name, double value) {
+            mMetrics.put(name, value);
+            return this;
+        }
+
+        public Map<String, Double> getMetrics() {
+            return mMetrics;
+        }
+
+        void appendJson(StringBuilder json, String indent) {
+            json.append(indent).append("{")
+                    .append("\"name\": ").append(quote(mName))
+                    .append(", \"iterations\": ").append(mIterations)
+                    .append(", \"opsPerIteration\": ").append(mOpsPerIteration)
+                    .append(String.format(Locale.US, ", \"nsPerOp\": %.1f, \"nsPerOpMin\": %.1f, \"nsPerOpMax\": %.1f, \"nsPerOpStdDev\": %.1f",
+                            mMeanNanos, mMinNanos, mMaxNanos, mStdDevNanos))
+                    .append(String.format(Locale.US, ", \"opsPerSecond\": %.1f, \"bytesPerOp\": %.1f", getOpsPerSecond(), mBytesPerOp));
+            if (!mMetrics.isEmpty()) {
+                json.append(", \"metrics\": {");
+                boolean first = true;
+                for (Map.Entry<String, Double> metric : mMetrics.entrySet()) {
+                    if (!first) json.append(", ");
+                    json.append(quote(metric.getKey())).append(String.format(Locale.US, ": %.4f", metric.getValue()));
+                    first = false;
+                }
+                json.append("}");
+            }
+            json.append("}");
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder b = new StringBuilder(String.format(Locale.US, "%s: %.1f ns/op (+/- %.1f), %.0f ops/s, %.0f B/op",
+                    mName, mMeanNanos, mStdDevNanos, getOpsPerSecond(), mBytesPerOp));
+            for (Map.Entry<String, Double> metric : mMetrics.entrySet()) {
+                b.append(String.format(Locale.US, ", %s %.4g", metric.getKey(), metric.getValue()));
+            }
+            return b.toString();
+        }
+    }
+}
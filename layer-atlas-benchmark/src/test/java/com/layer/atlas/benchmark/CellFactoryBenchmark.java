@@ -0,0 +1,139 @@
+package com.layer.atlas.benchmark;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.widget.LinearLayout;
+
+import com.layer.atlas.messagetypes.AtlasCellFactory;
+import com.layer.atlas.messagetypes.generic.GenericCellFactory;
+import com.layer.atlas.messagetypes.location.LocalMapSnapshotProvider;
+import com.layer.atlas.messagetypes.location.LocationCellFactory;
+import com.layer.atlas.messagetypes.singlepartimage.SinglePartImageCellFactory;
+import com.layer.atlas.messagetypes.text.TextCellFactory;
+import com.layer.atlas.messagetypes.threepartimage.ThreePartImageCellFactory;
+import com.layer.atlas.mock.MockLayerClient;
+import com.layer.sdk.messaging.Identity;
+import com.layer.sdk.messaging.Message;
+import com.squareup.picasso.Picasso;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures parseContent() and bindCellHolder() for each built-in AtlasCellFactory.  Parsing
+ * bypasses the parsed content cache, so it measures the work done for a Message's first bind.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class CellFactoryBenchmark {
+    private static final int MESSAGE_COUNT = 64;
+
+    private static final BenchmarkRunner sRunner = new BenchmarkRunner("cell-factories");
+
+    private Context mContext;
+    private MockLayerClient mLayerClient;
+    private Picasso mPicasso;
+    private Identity mSender;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mPicasso = Fixtures.newPicasso(mContext);
+        mSender = Fixtures.newIdentity("alice", "Alice Anderson");
+        mLayerClient = new MockLayerClient().setAuthenticatedUser(Fixtures.newIdentity("me", "Me"));
+    }
+
+    @AfterClass
+    public static void writeResults() throws Exception {
+        sRunner.writeJson();
+    }
+
+    @Test
+    public void benchmarkTextCellFactory() {
+        List<Message> messages = new ArrayList<Message>();
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            messages.add(Fixtures.newTextMessage(Fixtures.TEXTS[i % Fixtures.TEXTS.length]).setSender(mSender));
+        }
+        benchmark(new TextCellFactory(), messages);
+    }
+
+    @Test
+    public void benchmarkThreePartImageCellFactory() {
+        List<Message> messages = new ArrayList<Message>();
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            messages.add(Fixtures.newThreePartImageMessage(3264, 2448, i % 4).setSender(mSender));
+        }
+        benchmark(new ThreePartImageCellFactory(mLayerClient, mPicasso), messages);
+    }
+
+    @Test
+    public void benchmarkSinglePartImageCellFactory() {
+        List<Message> messages = new ArrayList<Message>();
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            messages.add(Fixtures.newSinglePartImageMessage(64 * 1024).setSender(mSender));
+        }
+        benchmark(new SinglePartImageCellFactory(mLayerClient, mPicasso), messages);
+    }
+
+    @Test
+    public void benchmarkLocationCellFactory() {
+        List<Message> messages = new ArrayList<Message>();
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            messages.add(Fixtures.newLocationMessage(37.7749 + i * 0.01, -122.4194, "Place " + i).setSender(mSender));
+        }
+        benchmark(new LocationCellFactory(mPicasso).setSnapshotProvider(new LocalMapSnapshotProvider(), null), messages);
+    }
+
+    @Test
+    public void benchmarkGenericCellFactory() {
+        List<Message> messages = new ArrayList<Message>();
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            messages.add(Fixtures.newGenericMessage("application/pdf", 256 * 1024).setSender(mSender));
+        }
+        benchmark(new GenericCellFactory(), messages);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void benchmark(final AtlasCellFactory factory, final List<Message> messages) {
+        String name = factory.getClass().getSimpleName();
+        factory.setStyle(Fixtures.newMessageStyle());
+
+        sRunner.run(name + ".parseContent", new BenchmarkRunner.Op() {
+            @Override
+            public Object run(int index) {
+                return factory.parseContent(mLayerClient, messages.get(index % messages.size()));
+            }
+        });
+
+        final List<AtlasCellFactory.ParsedContent> parsed = new ArrayList<AtlasCellFactory.ParsedContent>();
+        for (Message message : messages) {
+            parsed.add(factory.parseContent(mLayerClient, message));
+        }
+        LinearLayout cell = new LinearLayout(mContext);
+        final AtlasCellFactory.CellHolder holder = factory.createCellHolder(cell, false, LayoutInflater.from(mContext));
+        final AtlasCellFactory.CellHolderSpecs specs = new AtlasCellFactory.CellHolderSpecs();
+        specs.isMe = false;
+        specs.maxWidth = Fixtures.SCREEN_WIDTH * 3 / 4;
+        specs.maxHeight = Fixtures.SCREEN_HEIGHT / 3;
+
+        sRunner.run(name + ".bindCellHolder", new BenchmarkRunner.Op() {
+            @Override
+            public Object run(int index) {
+                int i = index % messages.size();
+                Message message = messages.get(i);
+                holder.setMessage(message);
+                specs.position = i;
+                factory.bindCellHolder(holder, parsed.get(i), message, specs);
+                return holder;
+            }
+        });
+    }
+}
@@ -0,0 +1,283 @@
+package com.layer.atlas.benchmark;
+
+import android.content.Context;
+import android.net.Uri;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+
+import com.layer.atlas.messagetypes.MessageStyle;
+import com.layer.atlas.messagetypes.location.LocationCellFactory;
+import com.layer.atlas.messagetypes.text.TextCellFactory;
+import com.layer.atlas.messagetypes.threepartimage.ThreePartImageUtils;
+import com.layer.atlas.mock.MockMessageImpl;
+import com.layer.atlas.mock.MockMessagePart;
+import com.layer.atlas.util.AvatarStyle;
+import com.layer.atlas.util.ConversationStyle;
+import com.layer.sdk.messaging.Conversation;
+import com.layer.sdk.messaging.Identity;
+import com.layer.sdk.messaging.Message;
+import com.layer.sdk.messaging.MessagePart;
+import com.layer.sdk.messaging.Metadata;
+import com.layer.sdk.query.Queryable;
+import com.layer.sdk.query.RecyclerViewController;
+import com.squareup.picasso.Picasso;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Builds Layer objects for benchmarks.  Messages and parts use the shared mocks; Identities,
+ * Conversations, and query controllers are stub-only Mockito mocks, which do not record
+ * invocations, so they do not accumulate garbage while benchmarks run.
+ */
+public final class Fixtures {
+    public static final int SCREEN_WIDTH = 1080;
+    public static final int SCREEN_HEIGHT = 1920;
+
+    public static final String[] TEXTS = {
+            "Hey, are we still on for lunch?",
+            "Running 5 minutes late, sorry!",
+            "Check this out https://developer.android.com/reference/android/text/StaticLayout.html",
+            "@sam can you review the doc before standup?",
+            "Call me at 415-555-0132 when you land",
+            "ok",
+            "Thanks! See www.layer.com/docs and let me know what you think about the new onboarding flow.",
+            "Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor incididunt ut labore et dolore magna aliqua.",
+    };
+
+    private Fixtures() {
+    }
+
+    public static Identity newIdentity(String userId, String displayName) {
+        Identity identity = stub(Identity.class);
+        when(identity.getUserId()).thenReturn(userId);
+        when(identity.getDisplayName()).thenReturn(displayName);
+        return identity;
+    }
+
+    /**
+     * Returns a Conversation whose getParticipants() returns a new Set on each call, as the
+     * LayerClient does.
+     */
+    public static Conversation newConversation(final Set<Identity> participants, Message lastMessage, int unreadCount) {
+        Conversation conversation = stub(Conversation.class);
+        when(conversation.getId()).thenReturn(Uri.parse("mockconversation:///" + System.identityHashCode(conversation)));
+        when(conversation.getParticipants()).thenAnswer(new Answer<Set<Identity>>() {
+            @Override
+            public Set<Identity> answer(InvocationOnMock invocation) {
+                return new LinkedHashSet<Identity>(participants);
+            }
+        });
+        when(conversation.getMetadata()).thenReturn(stub(Metadata.class));
+        when(conversation.getLastMessage()).thenReturn(lastMessage);
+        when(conversation.getTotalUnreadMessageCount()).thenReturn(unreadCount);
+        return conversation;
+    }
+
+    /**
+     * Returns a RecyclerViewController backed by the given List.
+     */
+    public static <T extends Queryable> RecyclerViewController<T> newController(final List<T> items) {
+        @SuppressWarnings("unchecked")
+        RecyclerViewController<T> controller = stub(RecyclerViewController.class);
+        when(controller.getItemCount()).thenAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) {
+                return items.size();
+            }
+        });
+        when(controller.getItem(anyInt())).thenAnswer(new Answer<T>() {
+            @Override
+            public T answer(InvocationOnMock invocation) {
+                return items.get((Integer) invocation.getArgument(0));
+            }
+        });
+        when(controller.getPosition(any(Queryable.class))).thenAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) {
+                return items.indexOf(invocation.getArgument(0));
+            }
+        });
+        when(controller.getPosition(any(Queryable.class), anyInt())).thenAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) {
+                // Check the hint first, as the real controller does, so large Lists are not scanned
+                Object item = invocation.getArgument(0);
+                int lastPosition = (Integer) invocation.getArgument(1);
+                if (lastPosition >= 0 && lastPosition < items.size() && items.get(lastPosition) == item) return lastPosition;
+                return items.indexOf(item);
+            }
+        });
+        return controller;
+    }
+
+    //==============================================================================================
+    // Messages
+    //==============================================================================================
+
+    public static MockMessageImpl newTextMessage(String text) {
+        return newMessage(new MockMessagePart(text.getBytes(), TextCellFactory.MIME_TYPE));
+    }
+
+    public static MockMessageImpl newThreePartImageMessage(int width, int height, int orientation) {
+        String info = String.format(Locale.US, "{\"orientation\":%d,\"width\":%d,\"height\":%d}", orientation, width, height);
+        return newMessage(
+                new MockMessagePart(new byte[64 * 1024], ThreePartImageUtils.MIME_TYPE_IMAGE_JPEG),
+                new MockMessagePart(new byte[16 * 1024], ThreePartImageUtils.MIME_TYPE_PREVIEW),
+                new MockMessagePart(info.getBytes(), ThreePartImageUtils.MIME_TYPE_INFO));
+    }
+
+    public static MockMessageImpl newSinglePartImageMessage(int bytes) {
+        return newMessage(new MockMessagePart(new byte[bytes], ThreePartImageUtils.MIME_TYPE_IMAGE_JPEG));
+    }
+
+    public static MockMessageImpl newLocationMessage(double latitude, double longitude, String label) {
+        String json = String.format(Locale.US, "{\"%s\":%f,\"%s\":%f,\"%s\":\"%s\"}",
+                LocationCellFactory.KEY_LATITUDE, latitude, LocationCellFactory.KEY_LONGITUDE, longitude,
+                LocationCellFactory.KEY_LABEL, label);
+        return newMessage(new MockMessagePart(json.getBytes(), LocationCellFactory.MIME_TYPE));
+    }
+
+    public static MockMessageImpl newGenericMessage(String mimeType, int bytes) {
+        return newMessage(new MockMessagePart(new byte[bytes], mimeType));
+    }
+
+    /**
+     * Returns a thread of Messages alternating between senders in runs of three, mostly 20
+     * seconds apart with occasional gaps of hours, so clustering sees new senders, short and long
+     * gaps, and date boundaries.  Types are mixed 60% text, 15% three-part image, 10% location,
+     * 10% single-part image, and 5% generic.
+     */
+    public static List<Message> newThread(Conversation conversation, List<Identity> senders, int count) {
+        List<Message> messages = new ArrayList<Message>(count);
+        long time = new Date(116, 0, 1).getTime();
+        for (int i = 0; i < count; i++) {
+            MockMessageImpl message;
+            int slot = i % 20;
+            if (slot < 12) {
+                message = newTextMessage(TEXTS[i % TEXTS.length]);
+            } else if (slot < 15) {
+                message = newThreePartImageMessage(3264, 2448, i % 4);
+            } else if (slot < 17) {
+                message = newLocationMessage(37.7749 + i * 0.001, -122.4194, "Place " + i);
+            } else if (slot < 19) {
+                message = newSinglePartImageMessage(64 * 1024);
+            } else {
+                message = newGenericMessage("application/pdf", 256 * 1024);
+            }
+            time += (i % 17 == 0) ? 5 * 60 * 60 * 1000 : 20 * 1000;
+            messages.add(message
+                    .setConversation(conversation)
+                    .setSender(senders.get((i / 3) % senders.size()))
+                    .setSentAt(new Date(time))
+                    .setReceivedAt(new Date(time))
+                    .setPosition(i));
+        }
+        return messages;
+    }
+
+    private static MockMessageImpl newMessage(MessagePart... parts) {
+        List<MessagePart> list = new ArrayList<MessagePart>(parts.length);
+        Collections.addAll(list, parts);
+        return new MockMessageImpl(list).setReceivedAt(new Date()).setSentAt(new Date());
+    }
+
+    //==============================================================================================
+    // Views and styles
+    //==============================================================================================
+
+    /**
+     * Returns a RecyclerView measured and laid out to the benchmark screen size, with no Adapter.
+     */
+    public static RecyclerView newRecyclerView(Context context) {
+        RecyclerView recyclerView = new RecyclerView(context);
+        recyclerView.setLayoutManager(new LinearLayoutManager(context));
+        recyclerView.measure(View.MeasureSpec.makeMeasureSpec(SCREEN_WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(SCREEN_HEIGHT, View.MeasureSpec.EXACTLY));
+        recyclerView.layout(0, 0, SCREEN_WIDTH, SCREEN_HEIGHT);
+        return recyclerView;
+    }
+
+    public static MessageStyle newMessageStyle() {
+        return new MessageStyle.Builder()
+                .myTextSize(42)
+                .otherTextSize(42)
+                .build();
+    }
+
+    public static ConversationStyle newConversationStyle() {
+        return new ConversationStyle.Builder()
+                .avatarStyle(new AvatarStyle.Builder().build())
+                .build();
+    }
+
+    /**
+     * Returns a Picasso whose loads are dispatched but never decoded, so binds measure Atlas work
+     * rather than image decoding.
+     */
+    public static Picasso newPicasso(Context context) {
+        return new Picasso.Builder(context).executor(new DiscardingExecutorService()).build();
+    }
+
+    private static <T> T stub(Class<T> type) {
+        return mock(type, withSettings().stubOnly());
+    }
+
+    //==============================================================================================
+    // Inner classes
+    //==============================================================================================
+
+    /**
+     * Accepts tasks without running them.  Submitted Futures stay pending until cancelled.
+     */
+    private static class DiscardingExecutorService extends AbstractExecutorService {
+        private volatile boolean mShutdown;
+
+        @Override
+        public void execute(Runnable command) {
+        }
+
+        @Override
+        public void shutdown() {
+            mShutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            mShutdown = true;
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return mShutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return mShutdown;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return mShutdown;
+        }
+    }
+}
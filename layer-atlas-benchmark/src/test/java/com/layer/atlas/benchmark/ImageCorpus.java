@@ -0,0 +1,344 @@
+package com.layer.atlas.benchmark;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+/**
+ * ImageCorpus is the set of images the image pipeline benchmarks run over: camera-sized JPEGs in
+ * every common EXIF orientation, including mirrored ones, screenshots, panoramas, avatars, and
+ * PNG graphics with transparency.  Images are generated deterministically rather than checked in,
+ * mixing smooth photographic content with high-frequency detail that stresses sampling and JPEG
+ * quality, and are written once to `<atlas.benchmark.outputDir>/corpus`.
+ * <p>
+ * Real-world images can be added by pointing the `atlas.benchmark.imageCorpusDir` system property
+ * at a directory of JPEG and PNG files.  Their EXIF orientation is reported as unknown.
+ */
+public class ImageCorpus {
+    public static final String PROPERTY_CORPUS_DIR = "atlas.benchmark.imageCorpusDir";
+
+    // Bump to regenerate cached corpus files after changing a generator
+    private static final int VERSION = 1;
+    private static final float JPEG_QUALITY = 0.92f;
+
+    public enum Content {
+        /**
+         * Smooth gradients, soft shapes, and sensor-like noise.
+         */
+        PHOTO,
+        /**
+         * Fine stripes, checkerboards, and hard edges, as in screenshots and documents.
+         */
+        DETAIL,
+        /**
+         * Flat shapes over a transparent background.
+         */
+        GRAPHIC
+    }
+
+    private static final Entry[] GENERATED = {
+            new Entry("photo-4032x3024", Content.PHOTO, 4032, 3024, 1, false),
+            new Entry("photo-4032x3024-rot90", Content.PHOTO, 4032, 3024, 6, false),
+            new Entry("photo-4032x3024-rot180", Content.PHOTO, 4032, 3024, 3, false),
+            new Entry("photo-4032x3024-rot270", Content.PHOTO, 4032, 3024, 8, false),
+            new Entry("photo-3264x2448-transpose", Content.PHOTO, 3264, 2448, 5, false),
+            new Entry("photo-1920x1080-noexif", Content.PHOTO, 1920, 1080, 0, false),
+            new Entry("photo-1080x1920-mirror", Content.PHOTO, 1080, 1920, 2, false),
+            new Entry("photo-8000x1500-panorama", Content.PHOTO, 8000, 1500, 1, false),
+            new Entry("photo-640x480", Content.PHOTO, 640, 480, 1, false),
+            new Entry("photo-256x256-avatar", Content.PHOTO, 256, 256, 0, false),
+            new Entry("detail-2048x2048", Content.DETAIL, 2048, 2048, 1, false),
+            new Entry("detail-1080x2220-screenshot", Content.DETAIL, 1080, 2220, 0, true),
+            new Entry("graphic-1024x1024-alpha", Content.GRAPHIC, 1024, 1024, 0, true),
+            new Entry("graphic-300x200-alpha", Content.GRAPHIC, 300, 200, 0, true),
+    };
+
+    private ImageCorpus() {
+    }
+
+    /**
+     * Returns every corpus Entry, generating missing files first.
+     */
+    public static List<Entry> load() throws IOException {
+        File dir = new File(System.getProperty(BenchmarkRunner.PROPERTY_OUTPUT_DIR, "build/benchmarks"), "corpus");
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Could not create " + dir);
+
+        List<Entry> entries = new ArrayList<Entry>();
+        for (Entry entry : GENERATED) {
+            File file = new File(dir, entry.mName + ".v" + VERSION + (entry.mPng ? ".png" : ".jpg"));
+            if (!file.isFile()) write(generate(entry), entry, file);
+            entries.add(entry.withFile(file));
+        }
+
+        String extraDir = System.getProperty(PROPERTY_CORPUS_DIR);
+        if (extraDir != null) {
+            File[] files = new File(extraDir).listFiles();
+            if (files == null) throw new IOException("Could not list " + extraDir);
+            List<Entry> extra = new ArrayList<Entry>();
+            for (File file : files) {
+                String name = file.getName().toLowerCase();
+                boolean png = name.endsWith(".png");
+                if (!png && !name.endsWith(".jpg") && !name.endsWith(".jpeg")) continue;
+                BufferedImage image = ImageIO.read(file);
+                if (image == null) continue;
+                extra.add(new Entry(file.getName(), Content.PHOTO, image.getWidth(), image.getHeight(), -1, png).withFile(file));
+            }
+            Collections.sort(extra, new Comparator<Entry>() {
+                @Override
+                public int compare(Entry lhs, Entry rhs) {
+                    return lhs.mName.compareTo(rhs.mName);
+                }
+            });
+            entries.addAll(extra);
+        }
+        return entries;
+    }
+
+    //==============================================================================================
+    // private methods
+    //==============================================================================================
+
+    private static BufferedImage generate(Entry entry) {
+        Random random = new Random(entry.mName.hashCode());
+        int width = entry.mWidth;
+        int height = entry.mHeight;
+        BufferedImage image = new BufferedImage(width, height, entry.mPng ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        switch (entry.mContent) {
+            case PHOTO: {
+                g.setPaint(new GradientPaint(0, 0, randomColor(random), width, height, randomColor(random)));
+                g.fillRect(0, 0, width, height);
+                // Soft, overlapping shapes
+                g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.35f));
+                for (int i = 0; i < 40; i++) {
+                    int size = Math.max(8, (int) (Math.min(width, height) * (0.05 + random.nextDouble() * 0.4)));
+                    g.setColor(randomColor(random));
+                    g.fillOval(random.nextInt(width) - size / 2, random.nextInt(height) - size / 2, size, size);
+                }
+                g.dispose();
+                // Sensor noise
+                int[] row = new int[width];
+                for (int y = 0; y < height; y++) {
+                    image.getRGB(0, y, width, 1, row, 0, width);
+                    for (int x = 0; x < width; x++) {
+                        int n = (int) (random.nextGaussian() * 4);
+                        int rgb = row[x];
+                        row[x] = 0xFF000000 | clamp(((rgb >> 16) & 0xFF) + n) << 16 | clamp(((rgb >> 8) & 0xFF) + n) << 8 | clamp((rgb & 0xFF) + n);
+                    }
+                    image.setRGB(0, y, width, 1, row, 0, width);
+                }
+                return image;
+            }
+            case DETAIL: {
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, width, height);
+                // Text-like rows of thin bars, then stripes and a checkerboard
+                g.setColor(Color.DARK_GRAY);
+                int line = Math.max(12, height / 80);
+                for (int y = line; y < height / 2; y += line * 2) {
+                    for (int x = line; x < width - line; ) {
+                        int word = line / 2 + random.nextInt(line * 4);
+                        g.fillRect(x, y, Math.min(word, width - line - x), line);
+                        x += word + line / 2;
+                    }
+                }
+                for (int x = 0; x < width; x += 2) {
+                    g.setColor((x / 2) % 2 == 0 ? Color.BLACK : Color.RED);
+                    g.drawLine(x, height / 2, x, height * 3 / 4);
+                }
+                for (int y = height * 3 / 4; y < height; y += 4) {
+                    for (int x = ((y / 4) % 2) * 4; x < width; x += 8) {
+                        g.setColor(Color.BLUE);
+                        g.fillRect(x, y, 4, 4);
+                    }
+                }
+                g.dispose();
+                return image;
+            }
+            default: {
+                g.setComposite(AlphaComposite.Clear);
+                g.fillRect(0, 0, width, height);
+                g.setComposite(AlphaComposite.SrcOver);
+                for (int i = 0; i < 12; i++) {
+                    int size = Math.max(4, (int) (Math.min(width, height) * (0.1 + random.nextDouble() * 0.3)));
+                    g.setColor(randomColor(random));
+                    int x = random.nextInt(width);
+                    int y = random.nextInt(height);
+                    if (i % 2 == 0) {
+                        g.fillRoundRect(x - size / 2, y - size / 2, size, size, size / 4, size / 4);
+                    } else {
+                        g.fillOval(x - size / 2, y - size / 2, size, size);
+                    }
+                }
+                g.dispose();
+                return image;
+            }
+        }
+    }
+
+    private static void write(BufferedImage image, Entry entry, File file) throws IOException {
+        byte[] bytes;
+        if (entry.mPng) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", out);
+            bytes = out.toByteArray();
+        } else {
+            bytes = encodeJpeg(image, JPEG_QUALITY);
+            if (entry.mExifOrientation > 0) bytes = insertExifOrientation(bytes, entry.mExifOrientation);
+        }
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Encodes an opaque image as baseline JPEG.
+     *
+     * @param quality Quality from 0 to 1.
+     */
+    static byte[] encodeJpeg(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        MemoryCacheImageOutputStream out = new MemoryCacheImageOutputStream(bytes);
+        try {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            out.close();
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Inserts a minimal EXIF APP1 segment holding only the Orientation tag right after SOI.
+     */
+    private static byte[] insertExifOrientation(byte[] jpeg, int orientation) {
+        byte[] app1 = {
+                (byte) 0xFF, (byte) 0xE1, 0, 34,                // APP1 marker and length
+                'E', 'x', 'i', 'f', 0, 0,                       // EXIF header
+                'M', 'M', 0, 42, 0, 0, 0, 8,                    // Big-endian TIFF header, IFD0 at 8
+                0, 1,                                           // One IFD entry
+                0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, (byte) orientation, 0, 0, // Orientation, SHORT
+                0, 0, 0, 0                                      // No next IFD
+        };
+        byte[] out = new byte[jpeg.length + app1.length];
+        System.arraycopy(jpeg, 0, out, 0, 2);
+        System.arraycopy(app1, 0, out, 2, app1.length);
+        System.arraycopy(jpeg, 2, out, 2 + app1.length, jpeg.length - 2);
+        return out;
+    }
+
+    private static Color randomColor(Random random) {
+        return new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256));
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+
+    //==============================================================================================
+    // Inner classes
+    //==============================================================================================
+
+    public static class Entry {
+        private final String mName;
+        private final Content mContent;
+        private final int mWidth;
+        private final int mHeight;
+        private final int mExifOrientation;
+        private final boolean mPng;
+        private File mFile;
+
+        Entry(String name, Content content, int width, int height, int exifOrientation, boolean png) {
+            mName = name;
+            mContent = content;
+            mWidth = width;
+            mHeight = height;
+            mExifOrientation = exifOrientation;
+            mPng = png;
+        }
+
+        private Entry withFile(File file) {
+            Entry entry = new Entry(mName, mContent, mWidth, mHeight, mExifOrientation, mPng);
+            entry.mFile = file;
+            return entry;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        public Content getContent() {
+            return mContent;
+        }
+
+        public File getFile() {
+            return mFile;
+        }
+
+        /**
+         * Returns the stored width, before applying the EXIF orientation.
+         */
+        public int getWidth() {
+            return mWidth;
+        }
+
+        /**
+         * Returns the stored height, before applying the EXIF orientation.
+         */
+        public int getHeight() {
+            return mHeight;
+        }
+
+        /**
+         * Returns the EXIF orientation tag value, 0 if the image has no EXIF data, or -1 if
+         * unknown.
+         */
+        public int getExifOrientation() {
+            return mExifOrientation;
+        }
+
+        public boolean isPng() {
+            return mPng;
+        }
+
+        /**
+         * Returns whether the EXIF orientation swaps width and height for display.
+         */
+        public boolean isSwapped() {
+            return mExifOrientation >= 5 && mExifOrientation <= 8;
+        }
+
+        @Override
+        public String toString() {
+            return mName;
+        }
+    }
+}
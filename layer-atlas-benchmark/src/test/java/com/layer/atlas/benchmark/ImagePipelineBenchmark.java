@@ -0,0 +1,392 @@
+package com.layer.atlas.benchmark;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.net.Uri;
+
+import com.layer.atlas.messagetypes.threepartimage.ThreePartImageUtils;
+import com.layer.atlas.mock.MockLayerClient;
+import com.layer.atlas.mock.MockMessageImpl;
+import com.layer.atlas.mock.MockMessagePart;
+import com.layer.atlas.util.Util;
+import com.layer.atlas.util.imagepopup.MessagePartRegionDecoder;
+import com.layer.atlas.util.picasso.requesthandlers.ThumbnailDiskCache;
+import com.layer.atlas.util.picasso.transformations.CircleTransform;
+import com.layer.atlas.util.picasso.transformations.RoundedTransform;
+import com.layer.sdk.messaging.Message;
+import com.layer.sdk.messaging.MessagePart;
+import com.layer.sdk.query.Queryable;
+import com.squareup.picasso.Transformation;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Measures each image pipeline stage over the ImageCorpus: ThreePartImage creation, preview
+ * encoding, RoundedTransform and CircleTransform, MessagePartRegionDecoder tiles, and opening a
+ * conversation's previews with a cold and a warm ThumbnailDiskCache.
+ * <p>
+ * Robolectric's graphics shadows track Bitmap sizes but do not decode, draw, or encode pixels, so
+ * Robolectric stages measure the work Atlas does around the codecs: bounds and sample size math,
+ * info and placeholder parts, temp files, and Bitmap allocation.  Codec cost, output
+ * bytes, and visual quality come from pure-JVM stages that mirror Atlas's preview and region
+ * decoding with ImageIO, scored against an exact area-averaged downscale.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class ImagePipelineBenchmark {
+    private static final int TILE_SIZE = 512;
+    private static final int REGION_MIN_SIZE = 2048;
+    private static final int CELL_MAX_WIDTH = Fixtures.SCREEN_WIDTH * 3 / 4;
+    private static final int CELL_MAX_HEIGHT = Fixtures.SCREEN_HEIGHT / 3;
+
+    private static final BenchmarkRunner sRunner = new BenchmarkRunner("image-pipeline");
+    private static List<ImageCorpus.Entry> sCorpus;
+
+    @BeforeClass
+    public static void loadCorpus() throws IOException {
+        sCorpus = ImageCorpus.load();
+    }
+
+    @AfterClass
+    public static void writeResults() throws Exception {
+        sRunner.writeJson();
+    }
+
+    @Test
+    public void benchmarkThreePartImageMessage() throws Exception {
+        final Context context = RuntimeEnvironment.application;
+        final MockLayerClient layerClient = new MockLayerClient();
+        for (ImageCorpus.Entry entry : sCorpus) {
+            final File file = entry.getFile();
+            BenchmarkRunner.Op op = new BenchmarkRunner.Op() {
+                @Override
+                public Object run(int index) {
+                    try {
+                        return ThreePartImageUtils.newThreePartImageMessage(context, layerClient, file);
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            };
+            long peakHeap = BenchmarkRunner.measurePeakHeap(op);
+            Message message = (Message) op.run(0);
+            sRunner.run("threePart." + entry, op)
+                    .putMetric("peakHeapBytes", peakHeap)
+                    .putMetric("infoBytes", ThreePartImageUtils.getInfoPart(message).getSize());
+            deletePreviewFiles(context);
+        }
+    }
+
+    @Test
+    public void benchmarkPreviewEncoding() throws Exception {
+        for (ImageCorpus.Entry entry : sCorpus) {
+            final File file = entry.getFile();
+            BenchmarkRunner.Op op = new BenchmarkRunner.Op() {
+                @Override
+                public Object run(int index) {
+                    try {
+                        return encodePreview(ImageIO.read(file));
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            };
+            long peakHeap = BenchmarkRunner.measurePeakHeap(op);
+
+            BufferedImage full = ImageIO.read(file);
+            byte[] preview = encodePreview(full);
+            BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(preview));
+            BufferedImage ideal = ImageQuality.areaDownscale(full, decoded.getWidth(), decoded.getHeight());
+            sRunner.run("preview." + entry, op)
+                    .putMetric("peakHeapBytes", peakHeap)
+                    .putMetric("inputBytes", file.length())
+                    .putMetric("outputBytes", preview.length)
+                    .putMetric("psnr", ImageQuality.psnr(ideal, decoded))
+                    .putMetric("ssim", ImageQuality.ssim(ideal, decoded));
+        }
+    }
+
+    @Test
+    public void benchmarkTransformations() {
+        // Transform the sizes previews are displayed at
+        Set<String> sizes = new LinkedHashSet<String>();
+        for (ImageCorpus.Entry entry : sCorpus) {
+            int[] size = Util.scaleDownInside(entry.getWidth(), entry.getHeight(),
+                    ThreePartImageUtils.PREVIEW_MAX_WIDTH, ThreePartImageUtils.PREVIEW_MAX_HEIGHT);
+            sizes.add(size[0] + "x" + size[1]);
+        }
+        for (String size : sizes) {
+            String[] dimensions = size.split("x");
+            int width = Integer.parseInt(dimensions[0]);
+            int height = Integer.parseInt(dimensions[1]);
+            benchmarkTransformation("rounded." + size, new RoundedTransform(16), width, height, true);
+            benchmarkTransformation("rounded.immutable." + size, new RoundedTransform(16), width, height, false);
+            benchmarkTransformation("circle." + size, new CircleTransform("benchmark"), width, height, true);
+            benchmarkTransformation("circle.immutable." + size, new CircleTransform("benchmark"), width, height, false);
+        }
+    }
+
+    @Test
+    public void benchmarkRegionDecoding() throws Exception {
+        Context context = RuntimeEnvironment.application;
+        for (ImageCorpus.Entry entry : sCorpus) {
+            if (Math.max(entry.getWidth(), entry.getHeight()) < REGION_MIN_SIZE) continue;
+            final Rect[] tiles = getTiles(entry.getWidth(), entry.getHeight());
+            byte[] bytes = Files.readAllBytes(entry.getFile().toPath());
+
+            // Atlas's decoder
+            final MockMessagePart part = new MockMessagePart(bytes, entry.isPng() ? "image/png" : ThreePartImageUtils.MIME_TYPE_IMAGE_JPEG);
+            // Attaches the part to a Message, which the decoder checks for deletion
+            new MockMessageImpl(Collections.<MessagePart>singletonList(part));
+            MessagePartRegionDecoder.init(new MockLayerClient() {
+                @Override
+                public Queryable get(Uri uri) {
+                    return part;
+                }
+            });
+            final MessagePartRegionDecoder decoder = new MessagePartRegionDecoder();
+            decoder.init(context, part.getId());
+            sRunner.run("regionDecode." + entry, new BenchmarkRunner.Op() {
+                @Override
+                public Object run(int index) {
+                    Bitmap tile = decoder.decodeRegion(tiles[index % tiles.length], 1);
+                    tile.recycle();
+                    return tile;
+                }
+            }).putMetric("tiles", tiles.length);
+            decoder.recycle();
+
+            // The same tiles decoded by ImageIO, for codec cost
+            ImageInputStream input = ImageIO.createImageInputStream(entry.getFile());
+            final ImageReader reader = ImageIO.getImageReaders(input).next();
+            reader.setInput(input);
+            try {
+                BenchmarkRunner.Op op = new BenchmarkRunner.Op() {
+                    @Override
+                    public Object run(int index) {
+                        Rect tile = tiles[index % tiles.length];
+                        ImageReadParam param = reader.getDefaultReadParam();
+                        param.setSourceRegion(new Rectangle(tile.left, tile.top, tile.width(), tile.height()));
+                        try {
+                            return reader.read(0, param);
+                        } catch (IOException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                };
+                long peakHeap = BenchmarkRunner.measurePeakHeap(op);
+                sRunner.run("regionDecode.reference." + entry, op)
+                        .putMetric("peakHeapBytes", peakHeap)
+                        .putMetric("tiles", tiles.length);
+            } finally {
+                reader.dispose();
+                input.close();
+            }
+        }
+    }
+
+    /**
+     * Opens a conversation showing every corpus preview at cell size, through a real
+     * ThumbnailDiskCache.  Cold, every get() misses, so each preview is decoded and scaled as
+     * MessagePartRequestHandler does and the thumbnail is put() back.  Warm, every thumbnail comes
+     * from get(), which memory-maps the file, validates its header and key, and copies its pixels
+     * into a new Bitmap.
+     * <p>
+     * Decoding and scaling are JVM proxies: ImageIO and bilinear scaling stand in for
+     * BitmapFactory and Bitmap.createScaledBitmap(), and MessagePartRequestHandler is not involved.
+     * The cache's file I/O and validation are Atlas's own, with Robolectric Bitmaps.  Compare cold
+     * against warm, and runs against runs, rather than against device numbers.
+     */
+    @Test
+    public void benchmarkThumbnailCache() throws Exception {
+        final List<byte[]> previews = new ArrayList<byte[]>();
+        final List<int[]> cellDims = new ArrayList<int[]>();
+        final List<String> keys = new ArrayList<String>();
+        long previewBytes = 0;
+        for (ImageCorpus.Entry entry : sCorpus) {
+            byte[] preview = encodePreview(ImageIO.read(entry.getFile()));
+            BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(preview));
+            previews.add(preview);
+            int[] cellDim = Util.scaleDownInside(decoded.getWidth(), decoded.getHeight(), CELL_MAX_WIDTH, CELL_MAX_HEIGHT);
+            cellDims.add(cellDim);
+            keys.add(entry + "\n" + cellDim[0] + "x" + cellDim[1]);
+            previewBytes += preview.length;
+        }
+
+        final File directory = Files.createTempDirectory("atlas-thumbnails").toFile();
+        // Writes synchronously, so cold runs include them and warm runs find every thumbnail
+        final ThumbnailDiskCache cache = new ThumbnailDiskCache(directory, Long.MAX_VALUE, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+        try {
+            BenchmarkRunner.Op cold = new BenchmarkRunner.Op() {
+                @Override
+                public Object run(int index) {
+                    cache.clear();
+                    List<Bitmap> thumbnails = new ArrayList<Bitmap>(previews.size());
+                    for (int i = 0; i < previews.size(); i++) {
+                        Bitmap thumbnail = cache.get(keys.get(i));
+                        if (thumbnail == null) {
+                            thumbnail = decodeThumbnail(previews.get(i), cellDims.get(i));
+                            cache.put(keys.get(i), thumbnail);
+                        }
+                        thumbnails.add(thumbnail);
+                    }
+                    return thumbnails;
+                }
+            };
+            long peakHeap = BenchmarkRunner.measurePeakHeap(cold);
+            sRunner.run("thumbnails.cold", cold)
+                    .putMetric("peakHeapBytes", peakHeap)
+                    .putMetric("thumbnails", previews.size())
+                    .putMetric("previewBytes", previewBytes);
+
+            // The last cold run left every thumbnail in the cache
+            long thumbnailBytes = 0;
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    thumbnailBytes += file.length();
+                }
+            }
+            BenchmarkRunner.Op warm = new BenchmarkRunner.Op() {
+                @Override
+                public Object run(int index) {
+                    List<Bitmap> thumbnails = new ArrayList<Bitmap>(keys.size());
+                    for (String key : keys) {
+                        Bitmap thumbnail = cache.get(key);
+                        if (thumbnail == null) throw new IllegalStateException("Thumbnail not cached: " + key);
+                        thumbnails.add(thumbnail);
+                    }
+                    return thumbnails;
+                }
+            };
+            peakHeap = BenchmarkRunner.measurePeakHeap(warm);
+            sRunner.run("thumbnails.warm", warm)
+                    .putMetric("peakHeapBytes", peakHeap)
+                    .putMetric("thumbnails", keys.size())
+                    .putMetric("thumbnailBytes", thumbnailBytes);
+        } finally {
+            cache.clear();
+            directory.delete();
+        }
+    }
+
+    //==============================================================================================
+    // private methods
+    //==============================================================================================
+
+    /**
+     * @param mutable Whether sources are mutable, as after Picasso resizes, or immutable, as
+     *                decoded.
+     */
+    private void benchmarkTransformation(String name, final Transformation transformation, final int width, final int height, final boolean mutable) {
+        final long[] outputBytes = new long[1];
+        final int[] ops = new int[1];
+        final int[] colors = mutable ? null : new int[width * height];
+        sRunner.run(name, new BenchmarkRunner.Op() {
+            @Override
+            public Object run(int index) {
+                // Transformations may recycle their source, so each run needs a new one
+                Bitmap source = mutable ? Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888)
+                        : Bitmap.createBitmap(colors, width, height, Bitmap.Config.ARGB_8888);
+                Bitmap out = transformation.transform(source);
+                if (out != source) outputBytes[0] += out.getByteCount();
+                ops[0]++;
+                return out;
+            }
+        }).putMetric("bitmapBytesPerOp", (double) outputBytes[0] / ops[0]);
+    }
+
+    /**
+     * Mirrors ThreePartImageUtils.getPreviewBitmap() and buildPreviewMessagePart() with ImageIO.
+     * A box filter stands in for the decoder's sampling, which averages like libjpeg's DCT
+     * scaling, and ImageIO's JPEG encoder stands in for Bitmap.compress().
+     */
+    private static byte[] encodePreview(BufferedImage full) throws IOException {
+        int width = full.getWidth();
+        int height = full.getHeight();
+        int[] previewDimensions = Util.scaleDownInside(width, height,
+                ThreePartImageUtils.PREVIEW_MAX_WIDTH, ThreePartImageUtils.PREVIEW_MAX_HEIGHT);
+
+        int sampleSize = 1;
+        int sampleWidth = width;
+        int sampleHeight = height;
+        while (sampleWidth > previewDimensions[0] && sampleHeight > previewDimensions[1]) {
+            sampleWidth >>= 1;
+            sampleHeight >>= 1;
+            sampleSize <<= 1;
+        }
+        if (sampleSize != 1) sampleSize >>= 1;
+
+        BufferedImage preview = sampleSize == 1 ? full : ImageQuality.areaDownscale(full,
+                (width + sampleSize - 1) / sampleSize, (height + sampleSize - 1) / sampleSize);
+        if (previewDimensions[0] != sampleWidth && previewDimensions[1] != sampleHeight) {
+            preview = ImageQuality.bilinearScale(preview, previewDimensions[0], previewDimensions[1]);
+        } else if (preview.getType() != BufferedImage.TYPE_INT_RGB) {
+            // JPEG has no alpha, as with Bitmap.compress()
+            preview = ImageQuality.bilinearScale(preview, preview.getWidth(), preview.getHeight());
+        }
+        return ImageCorpus.encodeJpeg(preview, ThreePartImageUtils.PREVIEW_COMPRESSION_QUALITY / 100f);
+    }
+
+    /**
+     * Decodes and scales a preview to cell size, returning a Bitmap with its pixels.
+     */
+    private static Bitmap decodeThumbnail(byte[] preview, int[] size) {
+        BufferedImage thumbnail;
+        try {
+            thumbnail = ImageQuality.bilinearScale(ImageIO.read(new ByteArrayInputStream(preview)), size[0], size[1]);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        int[] colors = thumbnail.getRGB(0, 0, size[0], size[1], null, 0, size[0]);
+        return Bitmap.createBitmap(colors, size[0], size[1], Bitmap.Config.ARGB_8888);
+    }
+
+    private static Rect[] getTiles(int width, int height) {
+        List<Rect> tiles = new ArrayList<Rect>();
+        for (int top = 0; top < height; top += TILE_SIZE) {
+            for (int left = 0; left < width; left += TILE_SIZE) {
+                tiles.add(new Rect(left, top, Math.min(width, left + TILE_SIZE), Math.min(height, top + TILE_SIZE)));
+            }
+        }
+        return tiles.toArray(new Rect[tiles.size()]);
+    }
+
+    private static void deletePreviewFiles(Context context) {
+        File[] files = context.getCacheDir().listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            if (file.getName().startsWith(ThreePartImageUtils.class.getSimpleName())) file.delete();
+        }
+    }
+}
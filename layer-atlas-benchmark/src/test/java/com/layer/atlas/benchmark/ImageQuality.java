@@ -0,0 +1,174 @@
+package com.layer.atlas.benchmark;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Pure-JVM image helpers for the image pipeline benchmarks: an exact area-averaging downscale to
+ * serve as the quality reference, and PSNR and SSIM scores against that reference.  Robolectric's
+ * graphics shadows do not hold pixels, so quality is always scored on BufferedImages.
+ */
+public class ImageQuality {
+    private static final int SSIM_WINDOW = 8;
+    private static final double SSIM_C1 = (0.01 * 255) * (0.01 * 255);
+    private static final double SSIM_C2 = (0.03 * 255) * (0.03 * 255);
+
+    private ImageQuality() {
+    }
+
+    /**
+     * Downscales by averaging every source pixel that falls within each target pixel, weighted by
+     * coverage.  Slow, but free of aliasing, so it is the ideal that resamplers are scored against.
+     */
+    public static BufferedImage areaDownscale(BufferedImage source, int width, int height) {
+        int srcWidth = source.getWidth();
+        int srcHeight = source.getHeight();
+        double scaleX = (double) srcWidth / width;
+        double scaleY = (double) srcHeight / height;
+        int[] row = new int[srcWidth];
+        double[] sums = new double[width * 3];
+        double[] weights = new double[width];
+        BufferedImage out = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] outRow = new int[width];
+
+        for (int y = 0; y < height; y++) {
+            Arrays.fill(sums, 0);
+            Arrays.fill(weights, 0);
+            double top = y * scaleY;
+            double bottom = top + scaleY;
+            for (int sy = (int) top; sy < Math.min(srcHeight, Math.ceil(bottom)); sy++) {
+                double wy = Math.min(bottom, sy + 1) - Math.max(top, sy);
+                if (wy <= 0) continue;
+                source.getRGB(0, sy, srcWidth, 1, row, 0, srcWidth);
+                for (int x = 0; x < width; x++) {
+                    double left = x * scaleX;
+                    double right = left + scaleX;
+                    for (int sx = (int) left; sx < Math.min(srcWidth, Math.ceil(right)); sx++) {
+                        double w = wy * (Math.min(right, sx + 1) - Math.max(left, sx));
+                        if (w <= 0) continue;
+                        int rgb = row[sx];
+                        sums[x * 3] += w * ((rgb >> 16) & 0xFF);
+                        sums[x * 3 + 1] += w * ((rgb >> 8) & 0xFF);
+                        sums[x * 3 + 2] += w * (rgb & 0xFF);
+                        weights[x] += w;
+                    }
+                }
+            }
+            for (int x = 0; x < width; x++) {
+                double w = weights[x];
+                outRow[x] = 0xFF000000
+                        | (int) Math.round(sums[x * 3] / w) << 16
+                        | (int) Math.round(sums[x * 3 + 1] / w) << 8
+                        | (int) Math.round(sums[x * 3 + 2] / w);
+            }
+            out.setRGB(0, y, width, 1, outRow, 0, width);
+        }
+        return out;
+    }
+
+    /**
+     * Scales with bilinear filtering, as Bitmap.createScaledBitmap() does with filtering on.
+     */
+    public static BufferedImage bilinearScale(BufferedImage source, int width, int height) {
+        BufferedImage out = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = out.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(source, 0, 0, width, height, null);
+        g.dispose();
+        return out;
+    }
+
+    /**
+     * Returns the peak signal-to-noise ratio over RGB in dB, or positive infinity for identical
+     * images.  Higher is better; above about 40dB differences are rarely visible.
+     */
+    public static double psnr(BufferedImage a, BufferedImage b) {
+        checkSameSize(a, b);
+        int width = a.getWidth();
+        int height = a.getHeight();
+        int[] rowA = new int[width];
+        int[] rowB = new int[width];
+        double squares = 0;
+        for (int y = 0; y < height; y++) {
+            a.getRGB(0, y, width, 1, rowA, 0, width);
+            b.getRGB(0, y, width, 1, rowB, 0, width);
+            for (int x = 0; x < width; x++) {
+                for (int shift = 0; shift <= 16; shift += 8) {
+                    int d = ((rowA[x] >> shift) & 0xFF) - ((rowB[x] >> shift) & 0xFF);
+                    squares += d * d;
+                }
+            }
+        }
+        double mse = squares / (3.0 * width * height);
+        return mse == 0 ? Double.POSITIVE_INFINITY : 10 * Math.log10(255 * 255 / mse);
+    }
+
+    /**
+     * Returns the mean structural similarity of luma over non-overlapping 8x8 windows, from -1 to
+     * 1.  Higher is better; 1 means identical.
+     */
+    public static double ssim(BufferedImage a, BufferedImage b) {
+        checkSameSize(a, b);
+        int width = a.getWidth();
+        int height = a.getHeight();
+        double[] lumaA = luma(a);
+        double[] lumaB = luma(b);
+        double total = 0;
+        int windows = 0;
+        for (int wy = 0; wy + SSIM_WINDOW <= height; wy += SSIM_WINDOW) {
+            for (int wx = 0; wx + SSIM_WINDOW <= width; wx += SSIM_WINDOW) {
+                double sumA = 0, sumB = 0, sumAA = 0, sumBB = 0, sumAB = 0;
+                for (int y = wy; y < wy + SSIM_WINDOW; y++) {
+                    for (int x = wx; x < wx + SSIM_WINDOW; x++) {
+                        double va = lumaA[y * width + x];
+                        double vb = lumaB[y * width + x];
+                        sumA += va;
+                        sumB += vb;
+                        sumAA += va * va;
+                        sumBB += vb * vb;
+                        sumAB += va * vb;
+                    }
+                }
+                int n = SSIM_WINDOW * SSIM_WINDOW;
+                double meanA = sumA / n;
+                double meanB = sumB / n;
+                double varA = sumAA / n - meanA * meanA;
+                double varB = sumBB / n - meanB * meanB;
+                double covariance = sumAB / n - meanA * meanB;
+                total += ((2 * meanA * meanB + SSIM_C1) * (2 * covariance + SSIM_C2))
+                        / ((meanA * meanA + meanB * meanB + SSIM_C1) * (varA + varB + SSIM_C2));
+                windows++;
+            }
+        }
+        // Images smaller than a window are compared as a whole
+        return windows == 0 ? (psnr(a, b) == Double.POSITIVE_INFINITY ? 1 : 0) : total / windows;
+    }
+
+    //==============================================================================================
+    // private methods
+    //==============================================================================================
+
+    private static double[] luma(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double[] luma = new double[width * height];
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                int rgb = row[x];
+                luma[y * width + x] = 0.299 * ((rgb >> 16) & 0xFF) + 0.587 * ((rgb >> 8) & 0xFF) + 0.114 * (rgb & 0xFF);
+            }
+        }
+        return luma;
+    }
+
+    private static void checkSameSize(BufferedImage a, BufferedImage b) {
+        if (a.getWidth() != b.getWidth() || a.getHeight() != b.getHeight()) {
+            throw new IllegalArgumentException("Size mismatch: " + a.getWidth() + "x" + a.getHeight()
+                    + " vs " + b.getWidth() + "x" + b.getHeight());
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.layer.atlas.benchmark;
+
+import android.content.Context;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+
+import com.layer.atlas.adapters.AtlasConversationsAdapter;
+import com.layer.atlas.adapters.AtlasMessagesAdapter;
+import com.layer.atlas.messagetypes.generic.GenericCellFactory;
+import com.layer.atlas.messagetypes.location.LocalMapSnapshotProvider;
+import com.layer.atlas.messagetypes.location.LocationCellFactory;
+import com.layer.atlas.messagetypes.singlepartimage.SinglePartImageCellFactory;
+import com.layer.atlas.messagetypes.text.TextCellFactory;
+import com.layer.atlas.messagetypes.threepartimage.ThreePartImageCellFactory;
+import com.layer.atlas.mock.MockLayerClient;
+import com.layer.atlas.util.ConversationFormatter;
+import com.layer.sdk.messaging.Conversation;
+import com.layer.sdk.messaging.Message;
+import com.layer.sdk.query.RecyclerViewController;
+import com.squareup.picasso.Picasso;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Drives the real adapters, attached to a laid-out RecyclerView, through production-scale load:
+ * a 100k-Message thread in a 1,000-member group, and a list of 5,000 Conversations.  Each event
+ * is a query controller callback or a scroll step followed by the layout pass it triggers, so
+ * event times include RecyclerView's view creation, recycling, and binding.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class LoadBenchmark {
+    private static final int SCROLL_STEP = Fixtures.SCREEN_HEIGHT / 4;
+
+    @Test
+    public void loadMessagesThread() throws Exception {
+        final SyntheticDataset dataset = new SyntheticDataset.Builder()
+                .seed(45)
+                .identities(1500)
+                .conversations(1)
+                .oneOnOneFraction(0)
+                .groupSize(1000, 1000)
+                .messagesPerConversation(100000, 100000)
+                .build();
+        final List<Message> messages = dataset.getMessages(0);
+
+        Context context = RuntimeEnvironment.application;
+        Picasso picasso = Fixtures.newPicasso(context);
+        MockLayerClient layerClient = new MockLayerClient().setAuthenticatedUser(dataset.getAuthenticatedUser());
+        final RecyclerViewController<Message> controller = Fixtures.newController(messages);
+        layerClient.setRecyclerViewController(controller);
+
+        final RecyclerView recyclerView = Fixtures.newRecyclerView(context);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(context, LinearLayoutManager.VERTICAL, false);
+        layoutManager.setStackFromEnd(true);
+        recyclerView.setLayoutManager(layoutManager);
+        final AtlasMessagesAdapter adapter = new AtlasMessagesAdapter(context, layerClient, picasso);
+        adapter.setStyle(Fixtures.newMessageStyle());
+        adapter.setRecyclerView(recyclerView);
+        adapter.addCellFactories(
+                new TextCellFactory(),
+                new ThreePartImageCellFactory(layerClient, picasso),
+                new LocationCellFactory(picasso).setSnapshotProvider(new LocalMapSnapshotProvider(), null),
+                new SinglePartImageCellFactory(layerClient, picasso),
+                new GenericCellFactory());
+        recyclerView.setAdapter(adapter);
+
+        final Random random = new Random(45);
+        LoadHarness harness = new LoadHarness("messages-100k");
+        harness.run("load", 1, new LoadHarness.Event() {
+            @Override
+            public void run(int index) {
+                adapter.onQueryDataSetChanged(controller);
+                recyclerView.scrollToPosition(messages.size() - 1);
+                layout(recyclerView);
+            }
+        });
+        harness.run("scrollBack", 2000, new LoadHarness.Event() {
+            @Override
+            public void run(int index) {
+                recyclerView.scrollBy(0, -SCROLL_STEP);
+            }
+        });
+        harness.run("scrollForward", 2000, new LoadHarness.Event() {
+            @Override
+            public void run(int index) {
+                recyclerView.scrollBy(0, SCROLL_STEP);
+            }
+        });
+        harness.run("receive", 500, new LoadHarness.Event() {
+            @Override
+            public void run(int index) {
+                dataset.appendMessage(0);
+                adapter.onQueryItemInserted(controller, messages.size() - 1);
+                recyclerView.scrollToPosition(messages.size() - 1);
+                layout(recyclerView);
+            }
+        });
+        harness.run("change", 500, new LoadHarness.Event() {
+            @Override
+            public void run(int index) {
+                // e.g. recipient status updates for recently sent Messages
+                adapter.onQueryItemChanged(controller, messages.size() - 1 - random.nextInt(20));
+                layout(recyclerView);
+            }
+        });
+        harness.run("rangeChange", 100, new LoadHarness.Event() {
+            @Override
+            public void run(int index) {
+                // e.g. an Identity update touching every visible Message
+                adapter.onQueryItemRangeChanged(controller, messages.size() - 50, 50);
+                layout(recyclerView);
+            }
+        });
+        harness.writeJson();
+    }
+
+    @Test
+    public void loadConversationsList() throws Exception {
+        final SyntheticDataset dataset = new SyntheticDataset.Builder()
+                .seed(45)
+                .identities(2000)
+                .conversations(5000)
+                .oneOnOneFraction(0.6)
+                .groupSize(3, 25)
+                .messagesPerConversation(1, 200)
+                .build();
+        final List<Conversation> conversations = new ArrayList<Conversation>(dataset.getConversations());
+        final Map<Conversation, Integer> datasetIndexes = new IdentityHashMap<Conversation, Integer>();
+        for (int i = 0; i < conversations.size(); i++) {
+            datasetIndexes.put(conversations.get(i), i);
+        }
+
+        Context context = RuntimeEnvironment.application;
+        Picasso picasso = Fixtures.newPicasso(context);
+        MockLayerClient layerClient = new MockLayerClient().setAuthenticatedUser(dataset.getAuthenticatedUser());
+        final RecyclerViewController<Conversation> controller = Fixtures.newController(conversations);
+        layerClient.setRecyclerViewController(controller);
+
+        final RecyclerView recyclerView = Fixtures.newRecyclerView(context);
+        final AtlasConversationsAdapter adapter = new AtlasConversationsAdapter(context, layerClient, picasso, new ConversationFormatter());
+        adapter.setStyle(Fixtures.newConversationStyle());
+        adapter.addCellFactories(
+                new TextCellFactory(),
+                new ThreePartImageCellFactory(layerClient, picasso),
+                new LocationCellFactory(picasso),
+                new SinglePartImageCellFactory(layerClient, picasso),
+                new GenericCellFactory());
+        recyclerView.setAdapter(adapter);
+
+        final Random random = new Random(45);
+        LoadHarness harness = new LoadHarness("conversations-5k");
+        harness.run("load", 1, new LoadHarness.Event() {
+            @Override
+            public void run(int index) {
+                adapter.onQueryDataSetChanged(controller);
+                layout(recyclerView);
+            }
+        });
+        harness.run("scrollDown", 2000, new LoadHarness.Event() {
+            @Override
+            public void run(int index) {
+                recyclerView.scrollBy(0, SCROLL_STEP);
+            }
+        });
+        harness.run("scrollUp", 2000, new LoadHarness.Event() {
+            @Override
+            public void run(int index) {
+                recyclerView.scrollBy(0, -SCROLL_STEP);
+            }
+        });
+        harness.run("receive", 500, new LoadHarness.Event() {
+            @Override
+            public void run(int index) {
+                // A new Message moves its Conversation to the top; recent Conversations are busiest
+                int position = (int) Math.min(conversations.size() - 1, Math.abs(random.nextGaussian()) * 50);
+                Conversation conversation = conversations.remove(position);
+                conversations.add(0, conversation);
+                dataset.appendMessage(datasetIndexes.get(conversation));
+                adapter.onQueryItemMoved(controller, position, 0);
+                adapter.onQueryItemChanged(controller, 0);
+                layout(recyclerView);
+            }
+        });
+        harness.writeJson();
+    }
+
+    /**
+     * Runs the layout pass that adapter notifications request, as the next frame would.
+     */
+    private static void layout(RecyclerView recyclerView) {
+        recyclerView.measure(View.MeasureSpec.makeMeasureSpec(Fixtures.SCREEN_WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(Fixtures.SCREEN_HEIGHT, View.MeasureSpec.EXACTLY));
+        recyclerView.layout(0, 0, Fixtures.SCREEN_WIDTH, Fixtures.SCREEN_HEIGHT);
+    }
+}
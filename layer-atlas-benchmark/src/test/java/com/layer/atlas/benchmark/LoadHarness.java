@@ -0,0 +1,188 @@
+package com.layer.atlas.benchmark;
+
+import com.layer.atlas.util.metrics.LatencyHistogram;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * LoadHarness drives a scenario through named phases of events, e.g. an initial load, a scroll
+ * through history, then a burst of incoming Messages, and reports each phase's event latency
+ * distribution, allocation, and retained heap.  Unlike BenchmarkRunner, events are not repeated
+ * until stable: each phase runs exactly once, in order, against state left by earlier phases, so
+ * results show how cost changes as a dataset grows and caches fill.
+ * <p>
+ * Results are printed to stdout and written as JSON to
+ * `<atlas.benchmark.outputDir>/load-<scenario>.json`.
+ */
+public class LoadHarness {
+    private final String mScenario;
+    private final List<Phase> mPhases = new ArrayList<Phase>();
+
+    /**
+     * @param scenario Scenario name, used in the JSON file name, e.g. `messages-100k`.
+     */
+    public LoadHarness(String scenario) {
+        mScenario = scenario;
+    }
+
+    /**
+     * Runs and records a phase.
+     *
+     * @param name   Phase name, unique within the scenario.
+     * @param events Number of events to run.
+     * @param event  Event to run `events` times.
+     * @return The phase's results.
+     */
+    public Phase run(String name, int events, Event event) {
+        long heapBefore = getUsedHeap();
+        LatencyHistogram latencies = new LatencyHistogram();
+        long allocatedStart = BenchmarkRunner.getAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < events; i++) {
+            long eventStart = System.nanoTime();
+            event.run(i);
+            latencies.record(System.nanoTime() - eventStart);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocatedEnd = BenchmarkRunner.getAllocatedBytes();
+        long heapAfter = getUsedHeap();
+
+        long allocated = (allocatedStart < 0 || allocatedEnd < 0) ? -1 : allocatedEnd - allocatedStart;
+        Phase phase = new Phase(name, events, elapsed, latencies, allocated, heapBefore, heapAfter);
+        mPhases.add(phase);
+        System.out.println("load-" + mScenario + " " + phase);
+        return phase;
+    }
+
+    public List<Phase> getPhases() {
+        return mPhases;
+    }
+
+    /**
+     * Writes all recorded phases to `load-<scenario>.json` in the output directory.
+     *
+     * @return The written file.
+     */
+    public File writeJson() throws IOException {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"scenario\": ").append(BenchmarkRunner.quote(mScenario)).append(",\n");
+        json.append("  \"timestamp\": ").append(System.currentTimeMillis()).append(",\n");
+        json.append("  \"jvm\": ").append(BenchmarkRunner.quote(System.getProperty("java.vm.name") + " " + System.getProperty("java.version"))).append(",\n");
+        json.append("  \"phases\": [");
+        for (int i = 0; i < mPhases.size(); i++) {
+            json.append(i == 0 ? "\n" : ",\n");
+            mPhases.get(i).appendJson(json, "    ");
+        }
+        json.append("\n  ]\n}\n");
+        return BenchmarkRunner.writeJson("load-" + mScenario, json.toString());
+    }
+
+    //==============================================================================================
+    // private methods
+    //==============================================================================================
+
+    /**
+     * Returns heap in use after a best-effort full collection, so the difference across a phase
+     * approximates what the phase retained.
+     */
+    private static long getUsedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // System.gc() is only a hint; take the lowest of a few attempts
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    //==============================================================================================
+    // Inner classes
+    //==============================================================================================
+
+    public interface Event {
+        /**
+         * Performs one event, e.g. one scroll step or one incoming Message.
+         *
+         * @param index Event number within the phase.
+         */
+        void run(int index);
+    }
+
+    public static class Phase {
+        private final String mName;
+        private final int mEvents;
+        private final long mElapsedNanos;
+        private final LatencyHistogram mLatencies;
+        private final long mAllocatedBytes;
+        private final long mHeapBefore;
+        private final long mHeapAfter;
+
+        Phase(String name, int events, long elapsedNanos, LatencyHistogram latencies, long allocatedBytes, long heapBefore, long heapAfter) {
+            mName = name;
+            mEvents = events;
+            mElapsedNanos = elapsedNanos;
+            mLatencies = latencies;
+            mAllocatedBytes = allocatedBytes;
+            mHeapBefore = heapBefore;
+            mHeapAfter = heapAfter;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        /**
+         * Returns the distribution of event durations, in nanoseconds.
+         */
+        public LatencyHistogram getLatencies() {
+            return mLatencies;
+        }
+
+        /**
+         * Returns bytes allocated by the calling thread during the phase, or -1 if the JVM cannot
+         * measure allocation.
+         */
+        public long getAllocatedBytes() {
+            return mAllocatedBytes;
+        }
+
+        /**
+         * Returns the change in used heap across the phase, in bytes.
+         */
+        public long getRetainedBytes() {
+            return mHeapAfter - mHeapBefore;
+        }
+
+        void appendJson(StringBuilder json, String indent) {
+            json.append(indent).append("{")
+                    .append("\"name\": ").append(BenchmarkRunner.quote(mName))
+                    .append(", \"events\": ").append(mEvents)
+                    .append(", \"elapsedNs\": ").append(mElapsedNanos)
+                    .append(String.format(Locale.US, ", \"nsPerEventMean\": %.1f", mLatencies.getMean()))
+                    .append(", \"nsPerEventP50\": ").append(mLatencies.getValueAtPercentile(50))
+                    .append(", \"nsPerEventP95\": ").append(mLatencies.getValueAtPercentile(95))
+                    .append(", \"nsPerEventP99\": ").append(mLatencies.getValueAtPercentile(99))
+                    .append(", \"nsPerEventMax\": ").append(mLatencies.getMax())
+                    .append(", \"allocatedBytes\": ").append(mAllocatedBytes)
+                    .append(String.format(Locale.US, ", \"bytesPerEvent\": %.1f", mAllocatedBytes < 0 || mEvents == 0 ? -1.0 : (double) mAllocatedBytes / mEvents))
+                    .append(", \"heapBefore\": ").append(mHeapBefore)
+                    .append(", \"heapAfter\": ").append(mHeapAfter)
+                    .append("}");
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s: %d events in %.1f ms, p50 %.3f ms, p95 %.3f ms, max %.3f ms, %.0f B/event, retained %+.1f MB",
+                    mName, mEvents, mElapsedNanos / 1e6,
+                    mLatencies.getValueAtPercentile(50) / 1e6, mLatencies.getValueAtPercentile(95) / 1e6, mLatencies.getMax() / 1e6,
+                    mAllocatedBytes < 0 || mEvents == 0 ? -1.0 : (double) mAllocatedBytes / mEvents,
+                    getRetainedBytes() / (1024.0 * 1024.0));
+        }
+    }
+}
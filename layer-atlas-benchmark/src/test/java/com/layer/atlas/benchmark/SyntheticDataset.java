@@ -0,0 +1,415 @@
+package com.layer.atlas.benchmark;
+
+import com.layer.atlas.messagetypes.location.LocationCellFactory;
+import com.layer.atlas.messagetypes.text.TextCellFactory;
+import com.layer.atlas.messagetypes.threepartimage.ThreePartImageUtils;
+import com.layer.atlas.mock.MockMessageImpl;
+import com.layer.atlas.mock.MockMessagePart;
+import com.layer.sdk.messaging.Conversation;
+import com.layer.sdk.messaging.Identity;
+import com.layer.sdk.messaging.Message;
+import com.layer.sdk.messaging.MessagePart;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import static org.mockito.Mockito.when;
+
+/**
+ * SyntheticDataset generates mock Identities, Conversations, and Messages at production scale,
+ * e.g. thousands of Conversations, 100k-Message threads, or 1,000-member groups.  Output is a
+ * pure function of the Builder settings and seed, so runs are repeatable.
+ * <p>
+ * Every Message is derived independently from its (Conversation, position) pair, so threads are
+ * materialized lazily: getMessages() returns a List that creates and caches each Message on first
+ * access, as the LayerClient's query controllers load Messages on demand.  Large part contents
+ * are shared between Messages, since benchmarks never decode them.
+ */
+public class SyntheticDataset {
+    private static final long BASE_TIME = 1451606400000L; // 2016-01-01 UTC
+    private static final long MESSAGE_INTERVAL = 60 * 1000;
+    private static final int MESSAGES_PER_SESSION = 50;
+    private static final long SESSION_GAP = 6 * 60 * 60 * 1000;
+
+    private static final String[] WORDS = {
+            "the", "meeting", "lunch", "today", "tomorrow", "ok", "sounds", "good", "can", "you",
+            "review", "doc", "before", "standup", "running", "late", "thanks", "see", "later", "ship",
+            "build", "is", "green", "again", "what", "about", "flow", "new", "design", "looks",
+            "great", "call", "me", "when", "land", "coffee", "weekend", "plans", "yes", "no",
+    };
+    private static final String[] FIRST_NAMES = {
+            "Alice", "Bob", "Carol", "Dave", "Erin", "Frank", "Grace", "Heidi", "Ivan", "Judy",
+            "Mallory", "Niaj", "Olivia", "Peggy", "Rupert", "Sybil", "Trent", "Victor", "Walter", "Zoe",
+    };
+    private static final String[] LAST_NAMES = {
+            "Anderson", "Brown", "Chen", "Davis", "Evans", "Fischer", "Garcia", "Hughes", "Ito", "Jones",
+            "Kowalski", "Lopez", "Murphy", "Nguyen", "Okafor", "Patel", "Quinn", "Rossi", "Smith", "Tanaka",
+    };
+    private static final String[] LINKS = {
+            "https://developer.android.com/reference/android/text/StaticLayout.html",
+            "www.layer.com/docs",
+            "billing@example.com",
+            "415-555-0132",
+    };
+    private static final String[] GENERIC_MIME_TYPES = {"application/pdf", "audio/mp4", "text/vcard"};
+
+    public enum Type {
+        TEXT, THREE_PART_IMAGE, LOCATION, SINGLE_PART_IMAGE, GENERIC
+    }
+
+    private final long mSeed;
+    private final int[] mTypeWeights;
+    private final int mTypeWeightTotal;
+    private final int mMinTextLength;
+    private final int mMaxTextLength;
+
+    private final Identity mAuthenticatedUser;
+    private final List<Identity> mIdentities;
+    private final List<Conversation> mConversations;
+    private final List<SyntheticThread> mThreads;
+
+    // Shared contents for parts whose bytes are never read
+    private final byte[] mFullImage;
+    private final byte[] mPreviewImage;
+    private final byte[] mGenericContent;
+
+    private SyntheticDataset(Builder builder) {
+        mSeed = builder.mSeed;
+        mTypeWeights = builder.mTypeWeights.clone();
+        int total = 0;
+        for (int weight : mTypeWeights) {
+            total += weight;
+        }
+        mTypeWeightTotal = total;
+        mMinTextLength = builder.mMinTextLength;
+        mMaxTextLength = builder.mMaxTextLength;
+        mFullImage = new byte[builder.mFullImageBytes];
+        mPreviewImage = new byte[builder.mPreviewImageBytes];
+        mGenericContent = new byte[builder.mGenericBytes];
+
+        mAuthenticatedUser = Fixtures.newIdentity("me", "Me");
+        mIdentities = new ArrayList<Identity>(builder.mIdentityCount);
+        for (int i = 0; i < builder.mIdentityCount; i++) {
+            long r = random(-1, i);
+            // Some Identities only have a user ID, as when display names are not set
+            String displayName = (r % 10 == 0) ? null
+                    : FIRST_NAMES[(int) ((r >>> 8) % FIRST_NAMES.length)] + " " + LAST_NAMES[(int) ((r >>> 16) % LAST_NAMES.length)];
+            mIdentities.add(Fixtures.newIdentity("user" + i, displayName));
+        }
+
+        mConversations = new ArrayList<Conversation>(builder.mConversationCount);
+        mThreads = new ArrayList<SyntheticThread>(builder.mConversationCount);
+        for (int c = 0; c < builder.mConversationCount; c++) {
+            long r = random(c, -1);
+            boolean oneOnOne = (r >>> 1) % 1000 < builder.mOneOnOnePerMille;
+            int others = oneOnOne ? 1 : between(r >>> 12, builder.mMinGroupSize - 1, builder.mMaxGroupSize - 1);
+            Set<Identity> participants = new LinkedHashSet<Identity>();
+            participants.add(mAuthenticatedUser);
+            int offset = (int) ((r >>> 24) % mIdentities.size());
+            for (int j = 0; j < others && j < mIdentities.size(); j++) {
+                participants.add(mIdentities.get((offset + j) % mIdentities.size()));
+            }
+            int size = between(r >>> 36, builder.mMinMessages, builder.mMaxMessages);
+            final SyntheticThread thread = new SyntheticThread(c, new ArrayList<Identity>(participants), size);
+            Conversation conversation = Fixtures.newConversation(participants, null, (int) ((r >>> 48) % 4));
+            when(conversation.getLastMessage()).thenAnswer(new Answer<Message>() {
+                @Override
+                public Message answer(InvocationOnMock invocation) {
+                    return thread.getLast();
+                }
+            });
+            thread.mConversation = conversation;
+            mConversations.add(conversation);
+            mThreads.add(thread);
+        }
+    }
+
+    public Identity getAuthenticatedUser() {
+        return mAuthenticatedUser;
+    }
+
+    public List<Identity> getIdentities() {
+        return Collections.unmodifiableList(mIdentities);
+    }
+
+    public List<Conversation> getConversations() {
+        return Collections.unmodifiableList(mConversations);
+    }
+
+    /**
+     * Returns the Messages of a Conversation in position order.  Messages are created on first
+     * access.  The List can grow with appendMessage().
+     */
+    public List<Message> getMessages(int conversationIndex) {
+        return mThreads.get(conversationIndex);
+    }
+
+    /**
+     * Appends a new Message to a Conversation, as if it was just received.
+     *
+     * @return The new Message.
+     */
+    public Message appendMessage(int conversationIndex) {
+        SyntheticThread thread = mThreads.get(conversationIndex);
+        Message message = thread.materialize(thread.mSize);
+        thread.mSize++;
+        return message;
+    }
+
+    //==============================================================================================
+    // private methods
+    //==============================================================================================
+
+    private Message newMessage(SyntheticThread thread, int position) {
+        long r = random(thread.mIndex, position);
+        Type type = pickType(r);
+        long r2 = random(thread.mIndex, ~position);
+        MockMessageImpl message;
+        switch (type) {
+            case THREE_PART_IMAGE: {
+                int width = 640 + (int) (r2 % 3000);
+                int height = 480 + (int) ((r2 >>> 16) % 3000);
+                String info = String.format(Locale.US, "{\"orientation\":%d,\"width\":%d,\"height\":%d}",
+                        (int) ((r2 >>> 32) % 4), width, height);
+                message = newMessage(
+                        new MockMessagePart(mFullImage, ThreePartImageUtils.MIME_TYPE_IMAGE_JPEG),
+                        new MockMessagePart(mPreviewImage, ThreePartImageUtils.MIME_TYPE_PREVIEW),
+                        new MockMessagePart(info.getBytes(), ThreePartImageUtils.MIME_TYPE_INFO));
+                break;
+            }
+            case LOCATION: {
+                String json = String.format(Locale.US, "{\"%s\":%f,\"%s\":%f,\"%s\":\"%s\"}",
+                        LocationCellFactory.KEY_LATITUDE, -60 + (r2 % 120000) / 1000.0,
+                        LocationCellFactory.KEY_LONGITUDE, -180 + ((r2 >>> 20) % 360000) / 1000.0,
+                        LocationCellFactory.KEY_LABEL, WORDS[(int) ((r2 >>> 40) % WORDS.length)]);
+                message = newMessage(new MockMessagePart(json.getBytes(), LocationCellFactory.MIME_TYPE));
+                break;
+            }
+            case SINGLE_PART_IMAGE:
+                message = newMessage(new MockMessagePart(mPreviewImage, ThreePartImageUtils.MIME_TYPE_IMAGE_JPEG));
+                break;
+            case GENERIC:
+                message = newMessage(new MockMessagePart(mGenericContent, GENERIC_MIME_TYPES[(int) (r2 % GENERIC_MIME_TYPES.length)]));
+                break;
+            default:
+                message = newMessage(new MockMessagePart(newText(r2, thread).getBytes(), TextCellFactory.MIME_TYPE));
+                break;
+        }
+
+        // Senders take turns in runs; times increase with the position, with a gap between sessions
+        List<Identity> participants = thread.mParticipants;
+        Identity sender = participants.get((int) (random(thread.mIndex, -2 - position / 3) % participants.size()));
+        long time = BASE_TIME + thread.mIndex * 1000L + position * MESSAGE_INTERVAL
+                + (position / MESSAGES_PER_SESSION) * SESSION_GAP + (r >>> 40) % MESSAGE_INTERVAL;
+        Date date = new Date(time);
+        return message.setConversation(thread.mConversation)
+                .setSender(sender)
+                .setSentAt(date)
+                .setReceivedAt(date)
+                .setPosition(position);
+    }
+
+    private String newText(long r, SyntheticThread thread) {
+        int length = between(r, mMinTextLength, mMaxTextLength);
+        StringBuilder text = new StringBuilder(length + 16);
+        long bits = r;
+        while (text.length() < length) {
+            if (text.length() > 0) text.append(' ');
+            bits = mix(bits);
+            int pick = (int) ((bits >>> 1) % 100);
+            if (pick < 2) {
+                text.append(LINKS[(int) ((bits >>> 8) % LINKS.length)]);
+            } else if (pick < 4 && thread.mParticipants.size() > 2) {
+                text.append('@').append(thread.mParticipants.get((int) ((bits >>> 8) % thread.mParticipants.size())).getUserId());
+            } else {
+                text.append(WORDS[(int) ((bits >>> 8) % WORDS.length)]);
+            }
+        }
+        return text.toString();
+    }
+
+    private Type pickType(long r) {
+        int pick = (int) ((r >>> 1) % mTypeWeightTotal);
+        Type[] types = Type.values();
+        for (int i = 0; i < types.length; i++) {
+            pick -= mTypeWeights[i];
+            if (pick < 0) return types[i];
+        }
+        return Type.TEXT;
+    }
+
+    private static MockMessageImpl newMessage(MessagePart... parts) {
+        List<MessagePart> list = new ArrayList<MessagePart>(parts.length);
+        Collections.addAll(list, parts);
+        return new MockMessageImpl(list);
+    }
+
+    /**
+     * Returns non-negative pseudo-random bits for the given coordinates.
+     */
+    private long random(long a, long b) {
+        return mix(mix(mSeed + a * 0x9E3779B97F4A7C15L) + b) >>> 1;
+    }
+
+    /**
+     * SplitMix64 finalizer.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static int between(long r, int min, int max) {
+        if (max <= min) return min;
+        return min + (int) ((r & Long.MAX_VALUE) % (max - min + 1));
+    }
+
+    //==============================================================================================
+    // Inner classes
+    //==============================================================================================
+
+    /**
+     * Lazily materialized Messages of one Conversation.
+     */
+    private class SyntheticThread extends AbstractList<Message> {
+        final int mIndex;
+        final List<Identity> mParticipants;
+        Conversation mConversation;
+        int mSize;
+        private Message[] mMessages;
+
+        SyntheticThread(int index, List<Identity> participants, int size) {
+            mIndex = index;
+            mParticipants = participants;
+            mSize = size;
+            mMessages = new Message[Math.max(16, size)];
+        }
+
+        Message getLast() {
+            return mSize == 0 ? null : get(mSize - 1);
+        }
+
+        @Override
+        public Message get(int position) {
+            if (position < 0 || position >= mSize) throw new IndexOutOfBoundsException("Position " + position + " of " + mSize);
+            return materialize(position);
+        }
+
+        Message materialize(int position) {
+            if (position >= mMessages.length) {
+                Message[] grown = new Message[mMessages.length * 2];
+                System.arraycopy(mMessages, 0, grown, 0, mMessages.length);
+                mMessages = grown;
+            }
+            Message message = mMessages[position];
+            if (message == null) {
+                message = newMessage(this, position);
+                mMessages[position] = message;
+            }
+            return message;
+        }
+
+        @Override
+        public int size() {
+            return mSize;
+        }
+    }
+
+    public static class Builder {
+        private long mSeed = 1;
+        private int mIdentityCount = 100;
+        private int mConversationCount = 100;
+        private int mOneOnOnePerMille = 400;
+        private int mMinGroupSize = 3;
+        private int mMaxGroupSize = 10;
+        private int mMinMessages = 10;
+        private int mMaxMessages = 200;
+        private int[] mTypeWeights = {70, 15, 7, 5, 3};
+        private int mMinTextLength = 2;
+        private int mMaxTextLength = 160;
+        private int mFullImageBytes = 256 * 1024;
+        private int mPreviewImageBytes = 32 * 1024;
+        private int mGenericBytes = 64 * 1024;
+
+        public Builder seed(long seed) {
+            mSeed = seed;
+            return this;
+        }
+
+        /**
+         * Sets the number of Identities other than the authenticated user, from which members of
+         * Conversations are drawn.
+         */
+        public Builder identities(int count) {
+            mIdentityCount = Math.max(1, count);
+            return this;
+        }
+
+        public Builder conversations(int count) {
+            mConversationCount = count;
+            return this;
+        }
+
+        /**
+         * Sets the fraction of Conversations that are one-on-one, from 0 to 1.
+         */
+        public Builder oneOnOneFraction(double fraction) {
+            mOneOnOnePerMille = (int) Math.round(fraction * 1000);
+            return this;
+        }
+
+        /**
+         * Sets the range of member counts, including the authenticated user, of group
+         * Conversations.
+         */
+        public Builder groupSize(int min, int max) {
+            mMinGroupSize = Math.max(3, min);
+            mMaxGroupSize = Math.max(mMinGroupSize, max);
+            return this;
+        }
+
+        public Builder messagesPerConversation(int min, int max) {
+            mMinMessages = min;
+            mMaxMessages = Math.max(min, max);
+            return this;
+        }
+
+        /**
+         * Sets relative weights of generated Message types.
+         */
+        public Builder typeMix(int text, int threePartImage, int location, int singlePartImage, int generic) {
+            mTypeWeights = new int[]{text, threePartImage, location, singlePartImage, generic};
+            return this;
+        }
+
+        public Builder textLength(int min, int max) {
+            mMinTextLength = min;
+            mMaxTextLength = Math.max(min, max);
+            return this;
+        }
+
+        /**
+         * Sets the sizes of full image, preview image, and generic part contents in bytes.
+         */
+        public Builder partSizes(int fullImageBytes, int previewImageBytes, int genericBytes) {
+            mFullImageBytes = fullImageBytes;
+            mPreviewImageBytes = previewImageBytes;
+            mGenericBytes = genericBytes;
+            return this;
+        }
+
+        public SyntheticDataset build() {
+            return new SyntheticDataset(this);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.layer.atlas.test;
+
+import android.content.Context;
+import android.graphics.Color;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.text.Spannable;
+import android.text.style.URLSpan;
+import android.text.util.Linkify;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+
+import com.layer.atlas.messagetypes.AtlasCellFactory;
+import com.layer.atlas.messagetypes.MessageStyle;
+import com.layer.atlas.messagetypes.text.TextCellFactory;
+import com.layer.atlas.messagetypes.text.TextLinkifier;
+import com.layer.atlas.mock.MockLayerClient;
+import com.layer.atlas.mock.MockMessageImpl;
+import com.layer.atlas.mock.MockMessagePart;
+import com.layer.sdk.LayerClient;
+import com.layer.sdk.messaging.Message;
+import com.layer.sdk.messaging.MessagePart;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Compares the main thread cost of binding text with TextView autoLink against
+ * TextCellFactory.bindCellHolder(), which draws Layouts precomputed from TextLinkifier Spannables
+ * with a TextLayoutView.  Timings are logged under the "AtlasBenchmark" tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TextLinkifierBenchmarkTest {
+    private static final String TAG = "AtlasBenchmark";
+    private static final String MIME_TYPE = "text/plain";
+    private static final int ROUNDS = 5;
+    private static final int CELL_WIDTH = 600;
+
+    private static final String[] CORPUS = {
+            "Hey, are we still on for lunch?",
+            "Running 5 minutes late, sorry!",
+            "Check this out https://developer.android.com/reference/android/text/StaticLayout.html",
+            "@sam can you review the doc before standup?",
+            "Call me at 415-555-0132 when you land",
+            "Sent the invoice to billing@example.com, cc @jordan",
+            "ok",
+            "Thanks! See www.layer.com/docs and let me know what you think about the new onboarding flow.",
+            "Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor incididunt ut labore et dolore magna aliqua.",
+            "\uD83D\uDE00\uD83D\uDE00 sounds great",
+    };
+
+    private Context mContext;
+    private LayerClient mLayerClient;
+    private TextLinkifier mLinkifier;
+    private List<String> mMessages;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mLayerClient = new MockLayerClient();
+        mLinkifier = new TextLinkifier();
+        mMessages = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            for (String text : CORPUS) {
+                mMessages.add(text);
+            }
+        }
+    }
+
+    @Test
+    public void testDetectsLinksAndMentions() {
+        Spannable spannable = mLinkifier.linkify("Sent to billing@example.com, cc @jordan https://layer.com");
+        assertThat(spannable.getSpans(0, spannable.length(), URLSpan.class).length, is(2));
+        TextLinkifier.MentionSpan[] mentions = spannable.getSpans(0, spannable.length(), TextLinkifier.MentionSpan.class);
+        assertThat(mentions.length, is(1));
+        assertThat(mentions[0].getName(), is("jordan"));
+    }
+
+    @Test
+    public void testMentionsExcludeTrailingPunctuation() {
+        Spannable spannable = mLinkifier.linkify("@sam, thanks! cc @jordan. @a_b-c? @x");
+        TextLinkifier.MentionSpan[] mentions = spannable.getSpans(0, spannable.length(), TextLinkifier.MentionSpan.class);
+        assertThat(mentions.length, is(4));
+        assertThat(mentions[0].getName(), is("sam"));
+        assertThat(mentions[1].getName(), is("jordan"));
+        assertThat(mentions[2].getName(), is("a_b-c"));
+        assertThat(mentions[3].getName(), is("x"));
+        assertThat(spannable.getSpanEnd(mentions[1]), is(spannable.toString().indexOf('.')));
+    }
+
+    @Test
+    public void testBindCost() {
+        final TextCellFactory factory = new TextCellFactory();
+        factory.setStyle(new MessageStyle.Builder()
+                .myTextColor(Color.WHITE).myTextSize(42).myBubbleColor(Color.BLUE)
+                .otherTextColor(Color.BLACK).otherTextSize(42).otherBubbleColor(Color.LTGRAY)
+                .build());
+        final List<Message> messages = new ArrayList<>(mMessages.size());
+        for (String text : mMessages) {
+            List<MessagePart> parts = new ArrayList<>();
+            parts.add(new MockMessagePart(text.getBytes(), MIME_TYPE));
+            messages.add(new MockMessageImpl(parts));
+        }
+        final AtlasCellFactory.CellHolderSpecs specs = new AtlasCellFactory.CellHolderSpecs();
+        specs.isMe = false;
+        specs.maxWidth = CELL_WIDTH;
+
+        // The first bind teaches the factory the cell width, as in a list, so parsing can
+        // precompute Layouts
+        final TextCellFactory.CellHolder[] holder = new TextCellFactory.CellHolder[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                holder[0] = factory.createCellHolder(new FrameLayout(mContext), specs.isMe, LayoutInflater.from(mContext));
+                Message message = messages.get(0);
+                factory.bindCellHolder(holder[0], factory.parseContent(mLayerClient, message), message, specs);
+            }
+        });
+
+        // Parsing runs on a worker thread in the adapter; this is the test thread here
+        final List<TextCellFactory.TextInfo> parsed = new ArrayList<>(messages.size());
+        long parseStart = System.nanoTime();
+        for (Message message : messages) {
+            parsed.add(factory.parseContent(mLayerClient, message));
+        }
+        long parseNanos = System.nanoTime() - parseStart;
+
+        final long[] autoLinkNanos = new long[1];
+        final long[] factoryNanos = new long[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                TextView autoLinkView = new TextView(mContext);
+                autoLinkView.setAutoLinkMask(Linkify.ALL);
+
+                for (int round = 0; round < ROUNDS; round++) {
+                    long start = System.nanoTime();
+                    for (String text : mMessages) {
+                        autoLinkView.setText(text);
+                    }
+                    autoLinkNanos[0] += System.nanoTime() - start;
+
+                    start = System.nanoTime();
+                    for (int i = 0; i < messages.size(); i++) {
+                        factory.bindCellHolder(holder[0], parsed.get(i), messages.get(i), specs);
+                    }
+                    factoryNanos[0] += System.nanoTime() - start;
+                }
+            }
+        });
+
+        int binds = mMessages.size() * ROUNDS;
+        Log.i(TAG, String.format("Text bind, %d binds: autoLink %.1fus/bind, TextCellFactory %.1fus/bind, worker parse %.1fus/message",
+                binds, autoLinkNanos[0] / 1000.0 / binds, factoryNanos[0] / 1000.0 / binds,
+                parseNanos / 1000.0 / mMessages.size()));
+    }
+}
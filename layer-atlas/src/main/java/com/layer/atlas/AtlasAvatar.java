@@ -15,6 +15,7 @@ import android.view.ViewGroup;
 
 import com.layer.atlas.util.AvatarStyle;
 import com.layer.atlas.util.Util;
+import com.layer.atlas.util.picasso.AtlasImageCache;
 import com.layer.atlas.util.picasso.transformations.CircleTransform;
 import com.layer.sdk.messaging.Identity;
 import com.layer.sdk.messaging.Presence;
@@ -294,7 +295,7 @@ public class AtlasAvatar extends View {
                     if (targetUrl != null && targetUrl.trim().length() == 0) {
                         targetUrl = null;
                     }
-                    mPicasso.load(targetUrl)
+                    mPicasso.load(targetUrl).stableKey(AtlasImageCache.stableKey(TAG, targetUrl))
                             .tag(AtlasAvatar.TAG).noPlaceholder().noFade()
                             .centerCrop().resize(size, size)
                             .transform((avatarCount > 1) ? MULTI_TRANSFORM : SINGLE_TRANSFORM)
@@ -17,6 +17,7 @@ package com.layer.atlas;
 
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Typeface;
 import android.support.v7.widget.LinearLayoutManager;
@@ -31,6 +32,7 @@ import com.layer.atlas.util.AvatarStyle;
 import com.layer.atlas.util.ConversationFormatter;
 import com.layer.atlas.util.ConversationStyle;
 import com.layer.atlas.util.itemanimators.NoChangeAnimator;
+import com.layer.atlas.util.metrics.ScrollPerformanceMonitor;
 import com.layer.atlas.util.views.SwipeableItem;
 import com.layer.sdk.LayerClient;
 import com.layer.sdk.messaging.Conversation;
@@ -38,6 +40,7 @@ import com.squareup.picasso.Picasso;
 
 public class AtlasConversationsRecyclerView extends RecyclerView {
     AtlasConversationsAdapter mAdapter;
+    private ScrollPerformanceMonitor mScrollPerformanceMonitor;
     private ItemTouchHelper mSwipeItemTouchHelper;
 
     private ConversationStyle conversationStyle;
@@ -65,6 +68,7 @@ public class AtlasConversationsRecyclerView extends RecyclerView {
 
         mAdapter = new AtlasConversationsAdapter(getContext(), layerClient, picasso, conversationFormatter);
         mAdapter.setStyle(conversationStyle);
+        mAdapter.setScrollPerformanceMonitor(mScrollPerformanceMonitor);
         super.setAdapter(mAdapter);
         refresh();
 
@@ -80,6 +84,55 @@ public class AtlasConversationsRecyclerView extends RecyclerView {
         throw new RuntimeException("AtlasConversationsRecyclerView sets its own Adapter");
     }
 
+    /**
+     * Sets an opt-in ScrollPerformanceMonitor to record frame times while scrolling and bind times
+     * per cell factory, or `null` to stop monitoring.
+     *
+     * @param monitor ScrollPerformanceMonitor to record with.
+     * @return This AtlasConversationsRecyclerView.
+     */
+    public AtlasConversationsRecyclerView setScrollPerformanceMonitor(ScrollPerformanceMonitor monitor) {
+        if (mScrollPerformanceMonitor != null) {
+            removeOnScrollListener(mScrollPerformanceMonitor);
+            mScrollPerformanceMonitor.stop();
+        }
+        mScrollPerformanceMonitor = monitor;
+        if (monitor != null) addOnScrollListener(monitor);
+        if (mAdapter != null) mAdapter.setScrollPerformanceMonitor(monitor);
+        return this;
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        ScrollPerformanceMonitor monitor = mScrollPerformanceMonitor;
+        if (monitor == null) {
+            super.onLayout(changed, l, t, r, b);
+            return;
+        }
+        long start = monitor.onLayoutStarted();
+        super.onLayout(changed, l, t, r, b);
+        monitor.onLayoutFinished(start);
+    }
+
+    @Override
+    public void draw(Canvas c) {
+        ScrollPerformanceMonitor monitor = mScrollPerformanceMonitor;
+        if (monitor == null) {
+            super.draw(c);
+            return;
+        }
+        long start = System.nanoTime();
+        super.draw(c);
+        monitor.onDraw(System.nanoTime() - start);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        // Detaching mid-fling skips SCROLL_STATE_IDLE, which would leave the monitor ticking
+        if (mScrollPerformanceMonitor != null) mScrollPerformanceMonitor.stop();
+    }
+
     public AtlasConversationsRecyclerView addCellFactories (AtlasCellFactory... cellFactories) {
         mAdapter.addCellFactories(cellFactories);
         return this;
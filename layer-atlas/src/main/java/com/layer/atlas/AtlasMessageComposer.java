@@ -46,6 +46,8 @@ import com.layer.atlas.messagetypes.AttachmentSender;
 import com.layer.atlas.messagetypes.MessageSender;
 import com.layer.atlas.messagetypes.text.TextSender;
 import com.layer.atlas.util.EditTextUtil;
+import com.layer.atlas.util.HandlerScheduler;
+import com.layer.atlas.util.TypingIndicatorEmitter;
 import com.layer.sdk.LayerClient;
 import com.layer.sdk.listeners.LayerTypingIndicatorListener;
 import com.layer.sdk.messaging.Conversation;
@@ -66,6 +68,24 @@ public class AtlasMessageComposer extends FrameLayout {
 
     private PopupWindow mAttachmentMenu;
 
+    private final TypingIndicatorEmitter mTypingIndicatorEmitter = new TypingIndicatorEmitter(new HandlerScheduler(), new TypingIndicatorEmitter.Sink() {
+        @Override
+        public void send(TypingIndicatorEmitter.Indicator indicator) {
+            if (mConversation == null || mConversation.isDeleted()) return;
+            switch (indicator) {
+                case STARTED:
+                    mConversation.send(LayerTypingIndicatorListener.TypingIndicator.STARTED);
+                    break;
+                case PAUSED:
+                    mConversation.send(LayerTypingIndicatorListener.TypingIndicator.PAUSED);
+                    break;
+                case FINISHED:
+                    mConversation.send(LayerTypingIndicatorListener.TypingIndicator.FINISHED);
+                    break;
+            }
+        }
+    });
+
     // styles
     private boolean mEnabled;
     private int mTextColor;
@@ -125,11 +145,10 @@ public class AtlasMessageComposer extends FrameLayout {
                 if (mConversation == null || mConversation.isDeleted()) return;
                 if (s.length() > 0) {
                     mSendButton.setEnabled(isEnabled());
-                    mConversation.send(LayerTypingIndicatorListener.TypingIndicator.STARTED);
                 } else {
                     mSendButton.setEnabled(false);
-                    mConversation.send(LayerTypingIndicatorListener.TypingIndicator.FINISHED);
                 }
+                mTypingIndicatorEmitter.onTextChanged(s.length() > 0);
             }
         });
 
@@ -137,6 +156,7 @@ public class AtlasMessageComposer extends FrameLayout {
         mSendButton.setOnClickListener(new OnClickListener() {
             public void onClick(View v) {
                 if (!mTextSender.requestSend(mMessageEditText.getText().toString())) return;
+                mTypingIndicatorEmitter.finish();
                 mMessageEditText.setText("");
                 mSendButton.setEnabled(false);
             }
@@ -152,6 +172,8 @@ public class AtlasMessageComposer extends FrameLayout {
      * @return This AtlasMessageComposer.
      */
     public AtlasMessageComposer setConversation(Conversation conversation) {
+        // End any typing session on the previous Conversation before switching
+        if (conversation != mConversation) mTypingIndicatorEmitter.finish();
         mConversation = conversation;
         if (mTextSender != null) mTextSender.setConversation(conversation);
         for (AttachmentSender sender : mAttachmentSenders) {
@@ -223,6 +245,16 @@ public class AtlasMessageComposer extends FrameLayout {
         return this;
     }
 
+    /**
+     * Returns the TypingIndicatorEmitter that rate-limits the typing indicators sent while
+     * composing, e.g. for configuring its idle and refresh intervals.
+     *
+     * @return This AtlasMessageComposer's TypingIndicatorEmitter.
+     */
+    public TypingIndicatorEmitter getTypingIndicatorEmitter() {
+        return mTypingIndicatorEmitter;
+    }
+
     public AtlasMessageComposer setTypeface(Typeface typeface) {
         this.mTypeFace = typeface;
         applyTypeface();
@@ -17,6 +17,7 @@ package com.layer.atlas;
 
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Canvas;
 import android.graphics.Typeface;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
@@ -27,7 +28,9 @@ import android.view.View;
 import com.layer.atlas.adapters.AtlasMessagesAdapter;
 import com.layer.atlas.messagetypes.AtlasCellFactory;
 import com.layer.atlas.messagetypes.MessageStyle;
+import com.layer.atlas.util.MessagePartPrefetcher;
 import com.layer.atlas.util.itemanimators.NoChangeAnimator;
+import com.layer.atlas.util.metrics.ScrollPerformanceMonitor;
 import com.layer.atlas.util.views.SwipeableItem;
 import com.layer.sdk.LayerClient;
 import com.layer.sdk.messaging.Conversation;
@@ -39,8 +42,10 @@ import com.squareup.picasso.Picasso;
 
 public class AtlasMessagesRecyclerView extends RecyclerView {
     private AtlasMessagesAdapter mAdapter;
+    private ScrollPerformanceMonitor mScrollPerformanceMonitor;
     private LinearLayoutManager mLayoutManager;
     private ItemTouchHelper mSwipeItemTouchHelper;
+    private MessagePartPrefetcher mPrefetcher;
     private boolean mShouldShowAvatarsInOneOnOneConversations;
 
     private MessageStyle mMessageStyle;
@@ -73,6 +78,7 @@ public class AtlasMessagesRecyclerView extends RecyclerView {
                     }
                 });
         mAdapter.setStyle(mMessageStyle);
+        mAdapter.setScrollPerformanceMonitor(mScrollPerformanceMonitor);
         super.setAdapter(mAdapter);
 
         // Don't flash items when changing content
@@ -87,6 +93,10 @@ public class AtlasMessagesRecyclerView extends RecyclerView {
             }
         });
 
+        // Download image content ahead of the visible range while scrolling
+        mPrefetcher = new MessagePartPrefetcher(getContext(), mAdapter);
+        addOnScrollListener(mPrefetcher);
+
         setShouldShowAvatarInOneOnOneConversations(mShouldShowAvatarsInOneOnOneConversations);
         return this;
     }
@@ -96,6 +106,55 @@ public class AtlasMessagesRecyclerView extends RecyclerView {
         throw new RuntimeException("AtlasMessagesRecyclerView sets its own Adapter");
     }
 
+    /**
+     * Sets an opt-in ScrollPerformanceMonitor to record frame times while scrolling and bind times
+     * per cell factory, or `null` to stop monitoring.
+     *
+     * @param monitor ScrollPerformanceMonitor to record with.
+     * @return This AtlasMessagesRecyclerView.
+     */
+    public AtlasMessagesRecyclerView setScrollPerformanceMonitor(ScrollPerformanceMonitor monitor) {
+        if (mScrollPerformanceMonitor != null) {
+            removeOnScrollListener(mScrollPerformanceMonitor);
+            mScrollPerformanceMonitor.stop();
+        }
+        mScrollPerformanceMonitor = monitor;
+        if (monitor != null) addOnScrollListener(monitor);
+        if (mAdapter != null) mAdapter.setScrollPerformanceMonitor(monitor);
+        return this;
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        ScrollPerformanceMonitor monitor = mScrollPerformanceMonitor;
+        if (monitor == null) {
+            super.onLayout(changed, l, t, r, b);
+            return;
+        }
+        long start = monitor.onLayoutStarted();
+        super.onLayout(changed, l, t, r, b);
+        monitor.onLayoutFinished(start);
+    }
+
+    @Override
+    public void draw(Canvas c) {
+        ScrollPerformanceMonitor monitor = mScrollPerformanceMonitor;
+        if (monitor == null) {
+            super.draw(c);
+            return;
+        }
+        long start = System.nanoTime();
+        super.draw(c);
+        monitor.onDraw(System.nanoTime() - start);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        // Detaching mid-fling skips SCROLL_STATE_IDLE, which would leave the monitor ticking
+        if (mScrollPerformanceMonitor != null) mScrollPerformanceMonitor.stop();
+    }
+
     /**
      * Performs cleanup when the Activity/Fragment using the adapter is destroyed.
      */
@@ -131,6 +190,7 @@ public class AtlasMessagesRecyclerView extends RecyclerView {
         if (conversation != null) {
             mAdapter.setReadReceiptsEnabled(conversation.isReadReceiptsEnabled());
         }
+        mPrefetcher.cancelAll();
         mAdapter.setQuery(Query.builder(Message.class)
                 .predicate(new Predicate(Message.Property.CONVERSATION, Predicate.Operator.EQUAL_TO, conversation))
                 .sortDescriptor(new SortDescriptor(Message.Property.POSITION, SortDescriptor.Order.ASCENDING))
@@ -162,6 +222,16 @@ public class AtlasMessagesRecyclerView extends RecyclerView {
         return this;
     }
 
+    /**
+     * Returns the MessagePartPrefetcher downloading content ahead of the visible range, for
+     * configuring its lookahead, byte budget, and network policy.
+     *
+     * @return This list's MessagePartPrefetcher.
+     */
+    public MessagePartPrefetcher getMessagePartPrefetcher() {
+        return mPrefetcher;
+    }
+
     public AtlasMessagesRecyclerView setTextTypeface(Typeface myTypeface, Typeface otherTypeface) {
         mMessageStyle.setMyTextTypeface(myTypeface);
         mMessageStyle.setOtherTextTypeface(otherTypeface);
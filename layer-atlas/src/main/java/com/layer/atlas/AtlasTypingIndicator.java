@@ -16,16 +16,23 @@
 package com.layer.atlas;
 
 import android.content.Context;
+import android.support.v4.view.ViewCompat;
 import android.util.AttributeSet;
 import android.view.View;
 import android.widget.FrameLayout;
 
+import com.layer.atlas.util.ExpiryWheel;
+import com.layer.atlas.util.HandlerScheduler;
 import com.layer.sdk.LayerClient;
 import com.layer.sdk.listeners.LayerTypingIndicatorListener;
 import com.layer.sdk.messaging.Conversation;
 import com.layer.sdk.messaging.Identity;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -33,10 +40,47 @@ import java.util.concurrent.ConcurrentHashMap;
  * and registered with a LayerClient as a LayerTypingIndicatorListener, AtlasTypingIndicator
  * maintains a set of typists for the given Conversation, providing callbacks when UI updates are
  * needed.  AtlasTypingIndicator can provide a default UI updater if desired.
+ * <p>
+ * Typist changes are coalesced into at most one refresh per frame.  Factories implementing
+ * IncrementalTypingIndicatorFactory receive the typists added, changed, and removed since the
+ * previous refresh, so they can update only the affected views.
+ * <p>
+ * Typists not heard from within the typist timeout are removed, in case their FINISHED indicator
+ * was lost.  All typists share one ExpiryWheel, so expiry costs one timer regardless of group size.
  */
 public class AtlasTypingIndicator extends FrameLayout implements LayerTypingIndicatorListener.Weak {
+    public static final long DEFAULT_TYPIST_TIMEOUT_MILLIS = 25 * 1000;
+    private static final long EXPIRY_RESOLUTION_MILLIS = 1000;
+
     private final ConcurrentHashMap<Identity, TypingIndicator> mTypists = new ConcurrentHashMap<>();
 
+    // Typists as of the last refresh, accessed on the main thread
+    private final Map<Identity, TypingIndicator> mBoundTypists = new HashMap<>();
+
+    // Typists changed since the last refresh, guarded by itself
+    private final Set<Identity> mDirtyTypists = new HashSet<>();
+    private boolean mRefreshScheduled = false;
+
+    private final Runnable mRefreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            refresh(false);
+        }
+    };
+
+    private final ExpiryWheel.Listener<Identity> mExpiryListener = new ExpiryWheel.Listener<Identity>() {
+        @Override
+        public void onExpired(Set<Identity> typists) {
+            for (Identity typist : typists) {
+                mTypists.remove(typist);
+            }
+            updateActive();
+            markDirty(typists);
+        }
+    };
+
+    private volatile ExpiryWheel<Identity> mExpiryWheel = new ExpiryWheel<>(new HandlerScheduler(), DEFAULT_TYPIST_TIMEOUT_MILLIS, EXPIRY_RESOLUTION_MILLIS, mExpiryListener);
+
     private volatile Conversation mConversation;
     private volatile TypingActivityListener mActivityListener;
     private volatile TypingIndicatorFactory mTypingIndicatorFactory;
@@ -93,39 +137,51 @@ public class AtlasTypingIndicator extends FrameLayout implements LayerTypingIndi
         } else {
             mIndicatorView = null;
         }
+        // The new View has no typists bound yet, so every current typist is an addition
+        mBoundTypists.clear();
+        markDirty(mTypists.keySet());
         return this;
     }
 
     /**
-     * Sets the TypingActivityListener for receiving TypingIndicator activity state changes.
+     * Sets how long a typist may go without a typing indicator before being removed.  Senders
+     * refresh STARTED while typing continues, so this only removes typists whose FINISHED was lost
+     * or who paused for longer than the timeout.
      *
-     * @param listener TypingActivityListener for receiving TypingIndicator activity state changes.
+     * @param timeoutMillis Typist timeout in milliseconds.
      * @return This AtlasTypingIndicator.
      */
-    public AtlasTypingIndicator setTypingActivityListener(TypingActivityListener listener) {
-        mActivityListener = listener;
+    public AtlasTypingIndicator setTypistTimeout(long timeoutMillis) {
+        ExpiryWheel<Identity> previous = mExpiryWheel;
+        mExpiryWheel = new ExpiryWheel<>(new HandlerScheduler(), timeoutMillis, Math.min(EXPIRY_RESOLUTION_MILLIS, timeoutMillis), mExpiryListener);
+        previous.clear();
+        for (Identity typist : mTypists.keySet()) {
+            mExpiryWheel.touch(typist);
+        }
         return this;
     }
 
     /**
-     * Clears the current list of typists and calls refresh().
+     * Sets the TypingActivityListener for receiving TypingIndicator activity state changes.
      *
-     * @return This AtlasTypingIndicator for chaining.
+     * @param listener TypingActivityListener for receiving TypingIndicator activity state changes.
+     * @return This AtlasTypingIndicator.
      */
-    public AtlasTypingIndicator clear() {
-        mTypists.clear();
-        refresh();
+    public AtlasTypingIndicator setTypingActivityListener(TypingActivityListener listener) {
+        mActivityListener = listener;
         return this;
     }
 
     /**
-     * Calls Callback.onBindView() with the current list of typists.
+     * Clears the current list of typists and schedules a refresh.
      *
      * @return This AtlasTypingIndicator for chaining.
      */
-    private AtlasTypingIndicator refresh() {
-        if (mTypingIndicatorFactory == null) return this;
-        mTypingIndicatorFactory.onBindView(mIndicatorView, mTypists);
+    public AtlasTypingIndicator clear() {
+        Set<Identity> typists = new HashSet<>(mTypists.keySet());
+        mTypists.clear();
+        mExpiryWheel.clear();
+        markDirty(typists);
         return this;
     }
 
@@ -135,7 +191,7 @@ public class AtlasTypingIndicator extends FrameLayout implements LayerTypingIndi
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
-        refresh();
+        refresh(true);
     }
 
     @Override
@@ -144,13 +200,28 @@ public class AtlasTypingIndicator extends FrameLayout implements LayerTypingIndi
         if (mConversation != conversation) return;
 
         // Notify ActivityListener to active/inactive typists.
-        boolean empty;
+        TypingIndicator previous;
         if (typingIndicator == TypingIndicator.FINISHED) {
-            mTypists.remove(user);
+            previous = mTypists.remove(user);
+            mExpiryWheel.remove(user);
         } else {
-            mTypists.put(user, typingIndicator);
+            previous = mTypists.put(user, typingIndicator);
+            mExpiryWheel.touch(user);
         }
-        empty = mTypists.isEmpty();
+        updateActive();
+
+        // Refresh the indicator view on the next frame, coalescing with other changes.
+        if (previous != (typingIndicator == TypingIndicator.FINISHED ? null : typingIndicator)) {
+            markDirty(Collections.singleton(user));
+        }
+    }
+
+    //==============================================================================================
+    // private methods
+    //==============================================================================================
+
+    private void updateActive() {
+        boolean empty = mTypists.isEmpty();
         if (empty && mActive) {
             mActive = false;
             if (mActivityListener != null) mActivityListener.onTypingActivityChange(this, false);
@@ -158,11 +229,62 @@ public class AtlasTypingIndicator extends FrameLayout implements LayerTypingIndi
             mActive = true;
             if (mActivityListener != null) mActivityListener.onTypingActivityChange(this, true);
         }
+    }
 
-        // Refresh the indicator view.
-        refresh();
+    /**
+     * Records changed typists and schedules a refresh for the next frame, if not already scheduled.
+     */
+    private void markDirty(Set<Identity> typists) {
+        if (typists.isEmpty()) return;
+        synchronized (mDirtyTypists) {
+            mDirtyTypists.addAll(typists);
+            if (mRefreshScheduled) return;
+            mRefreshScheduled = true;
+        }
+        ViewCompat.postOnAnimation(this, mRefreshRunnable);
     }
 
+    /**
+     * Binds typist changes since the last refresh to the indicator View.
+     *
+     * @param force `true` to bind even if no typists changed.
+     */
+    private void refresh(boolean force) {
+        Set<Identity> dirty;
+        synchronized (mDirtyTypists) {
+            mRefreshScheduled = false;
+            dirty = new HashSet<>(mDirtyTypists);
+            mDirtyTypists.clear();
+        }
+
+        TypistDiff diff = new TypistDiff();
+        for (Identity typist : dirty) {
+            TypingIndicator previous = mBoundTypists.get(typist);
+            TypingIndicator current = mTypists.get(typist);
+            if (previous == current) continue;
+            if (current == null) {
+                mBoundTypists.remove(typist);
+                diff.mRemoved.add(typist);
+            } else {
+                mBoundTypists.put(typist, current);
+                (previous == null ? diff.mAdded : diff.mChanged).add(typist);
+            }
+        }
+
+        TypingIndicatorFactory factory = mTypingIndicatorFactory;
+        if (factory == null || (diff.isEmpty() && !force)) return;
+        Map<Identity, TypingIndicator> typists = Collections.unmodifiableMap(mBoundTypists);
+        if (factory instanceof IncrementalTypingIndicatorFactory) {
+            ((IncrementalTypingIndicatorFactory) factory).onBindView(mIndicatorView, typists, diff);
+        } else {
+            factory.onBindView(mIndicatorView, typists);
+        }
+    }
+
+    //==============================================================================================
+    // Inner classes
+    //==============================================================================================
+
     /**
      * TypingIndicatorFactory allows an external class to set indicator text, visibility,
      * etc. based on the current typists.
@@ -185,6 +307,65 @@ public class AtlasTypingIndicator extends FrameLayout implements LayerTypingIndi
         void onBindView(T view, Map<Identity, TypingIndicator> typingUserIds);
     }
 
+    /**
+     * IncrementalTypingIndicatorFactory receives only the typists changed since its View was last
+     * bound, avoiding a rebuild of the whole indicator for each typing event.
+     */
+    public interface IncrementalTypingIndicatorFactory<T extends View> extends TypingIndicatorFactory<T> {
+        /**
+         * Notifies the callback to typist updates.
+         *
+         * @param view    The View previously created by onCreateView
+         * @param typists The set of currently-active typist users
+         * @param diff    Typists added, changed, and removed since the View was last bound
+         */
+        void onBindView(T view, Map<Identity, TypingIndicator> typists, TypistDiff diff);
+    }
+
+    /**
+     * Typists added, changed (e.g. from STARTED to PAUSED), and removed between two refreshes.
+     */
+    public static class TypistDiff {
+        private final Set<Identity> mAdded = new HashSet<>();
+        private final Set<Identity> mChanged = new HashSet<>();
+        private final Set<Identity> mRemoved = new HashSet<>();
+
+        /**
+         * Returns the difference between previously bound typists and the current typists, e.g.
+         * for a factory binding a View that has no bound state.
+         *
+         * @param bound   Typists previously bound.
+         * @param typists Current typists.
+         * @return The difference, with every typist in both sets marked changed.
+         */
+        public static TypistDiff between(Set<Identity> bound, Map<Identity, TypingIndicator> typists) {
+            TypistDiff diff = new TypistDiff();
+            for (Identity typist : bound) {
+                (typists.containsKey(typist) ? diff.mChanged : diff.mRemoved).add(typist);
+            }
+            for (Identity typist : typists.keySet()) {
+                if (!bound.contains(typist)) diff.mAdded.add(typist);
+            }
+            return diff;
+        }
+
+        public Set<Identity> getAdded() {
+            return mAdded;
+        }
+
+        public Set<Identity> getChanged() {
+            return mChanged;
+        }
+
+        public Set<Identity> getRemoved() {
+            return mRemoved;
+        }
+
+        public boolean isEmpty() {
+            return mAdded.isEmpty() && mChanged.isEmpty() && mRemoved.isEmpty();
+        }
+    }
+
     /**
      * TypingActivityListener alerts a listener to active and inactive typing.  This is useful for
      * adding and removing a typing indicator view from a layout, for example.
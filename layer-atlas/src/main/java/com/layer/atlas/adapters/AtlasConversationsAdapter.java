@@ -20,6 +20,8 @@ import com.layer.atlas.util.ConversationStyle;
 import com.layer.atlas.util.IdentityRecyclerViewEventListener;
 import com.layer.atlas.util.Log;
 import com.layer.atlas.util.Util;
+import com.layer.atlas.util.metrics.AtlasMetrics;
+import com.layer.atlas.util.metrics.ScrollPerformanceMonitor;
 import com.layer.sdk.LayerClient;
 import com.layer.sdk.messaging.Conversation;
 import com.layer.sdk.messaging.Identity;
@@ -38,6 +40,8 @@ import java.util.LinkedHashSet;
 import java.util.Set;
 
 public class AtlasConversationsAdapter extends RecyclerView.Adapter<AtlasConversationsAdapter.ViewHolder> implements AtlasBaseAdapter<Conversation>, RecyclerViewController.Callback {
+    private static final String METRIC_BIND = "conversations.bind";
+
     protected final LayerClient mLayerClient;
     protected final Picasso mPicasso;
     private final RecyclerViewController<Conversation> mQueryController;
@@ -45,6 +49,7 @@ public class AtlasConversationsAdapter extends RecyclerView.Adapter<AtlasConvers
     private long mInitialHistory = 0;
 
     private OnConversationClickListener mConversationClickListener;
+    private ScrollPerformanceMonitor mScrollPerformanceMonitor;
     private ViewHolder.OnClickListener mViewHolderClickListener;
 
     private final DateFormat mDateFormat;
@@ -187,6 +192,14 @@ public class AtlasConversationsAdapter extends RecyclerView.Adapter<AtlasConvers
     // Listeners
     //==============================================================================================
 
+    /**
+     * Sets a ScrollPerformanceMonitor to receive bind times, or `null` to stop reporting them.
+     */
+    public AtlasConversationsAdapter setScrollPerformanceMonitor(ScrollPerformanceMonitor monitor) {
+        mScrollPerformanceMonitor = monitor;
+        return this;
+    }
+
     public AtlasConversationsAdapter setOnConversationClickListener(OnConversationClickListener conversationClickListener) {
         mConversationClickListener = conversationClickListener;
         return this;
@@ -209,8 +222,10 @@ public class AtlasConversationsAdapter extends RecyclerView.Adapter<AtlasConvers
 
     @Override
     public void onBindViewHolder(ViewHolder viewHolder, int position) {
+        ScrollPerformanceMonitor monitor = mScrollPerformanceMonitor;
+        long start = monitor != null ? System.nanoTime() : AtlasMetrics.startTimer();
         mQueryController.updateBoundPosition(position);
-        Conversation conversation = mQueryController.getItem(position);
+        Conversation conversation = getItem(position);
         Message lastMessage = conversation.getLastMessage();
         Context context = viewHolder.itemView.getContext();
 
@@ -236,6 +251,11 @@ public class AtlasConversationsAdapter extends RecyclerView.Adapter<AtlasConvers
                 viewHolder.mTimeView.setText(Util.formatTime(context, lastMessage.getReceivedAt(), mTimeFormat, mDateFormat));
             }
         }
+        if (start != 0) {
+            long elapsed = System.nanoTime() - start;
+            AtlasMetrics.recordTime(METRIC_BIND, elapsed);
+            if (monitor != null) monitor.onBind(METRIC_BIND, elapsed);
+        }
     }
 
     @Override
@@ -4,6 +4,7 @@ import android.content.Context;
 import android.net.Uri;
 import android.os.Handler;
 import android.os.Looper;
+import android.support.annotation.VisibleForTesting;
 import android.support.v7.widget.RecyclerView;
 import android.util.DisplayMetrics;
 import android.view.LayoutInflater;
@@ -20,6 +21,8 @@ import com.layer.atlas.messagetypes.MessageStyle;
 import com.layer.atlas.util.IdentityRecyclerViewEventListener;
 import com.layer.atlas.util.Log;
 import com.layer.atlas.util.Util;
+import com.layer.atlas.util.metrics.AtlasMetrics;
+import com.layer.atlas.util.metrics.ScrollPerformanceMonitor;
 import com.layer.sdk.LayerClient;
 import com.layer.sdk.messaging.Identity;
 import com.layer.sdk.messaging.Message;
@@ -93,6 +96,7 @@ public class AtlasMessagesAdapter extends RecyclerView.Adapter<AtlasMessagesAdap
     private MessageStyle mMessageStyle;
     private RecyclerView mRecyclerView;
     private boolean mReadReceiptsEnabled = true;
+    private ScrollPerformanceMonitor mScrollPerformanceMonitor;
 
     protected boolean mShouldShowAvatarInOneOnOneConversations;
     protected boolean mShouldShowAvatarPresence = true;
@@ -154,6 +158,14 @@ public class AtlasMessagesAdapter extends RecyclerView.Adapter<AtlasMessagesAdap
         return this;
     }
 
+    /**
+     * Sets a ScrollPerformanceMonitor to receive bind times, or `null` to stop reporting them.
+     */
+    public AtlasMessagesAdapter setScrollPerformanceMonitor(ScrollPerformanceMonitor monitor) {
+        mScrollPerformanceMonitor = monitor;
+        return this;
+    }
+
     public void setStyle(MessageStyle messageStyle) {
         this.mMessageStyle = messageStyle;
     }
@@ -323,6 +335,8 @@ public class AtlasMessagesAdapter extends RecyclerView.Adapter<AtlasMessagesAdap
     }
 
     public void bindCellViewHolder(CellViewHolder viewHolder, int position) {
+        ScrollPerformanceMonitor monitor = mScrollPerformanceMonitor;
+        long start = monitor != null ? System.nanoTime() : AtlasMetrics.startTimer();
         Message message = getItem(position);
         viewHolder.mMessage = message;
         CellType cellType = mCellTypesByViewType.get(viewHolder.getItemViewType());
@@ -419,6 +433,11 @@ public class AtlasMessagesAdapter extends RecyclerView.Adapter<AtlasMessagesAdap
         viewHolder.mCellHolderSpecs.maxWidth = maxWidth;
         viewHolder.mCellHolderSpecs.maxHeight = maxHeight;
         cellType.mCellFactory.bindCellHolder(cellHolder, cellType.mCellFactory.getParsedContent(mLayerClient, message), message, viewHolder.mCellHolderSpecs);
+        if (start != 0) {
+            long elapsed = System.nanoTime() - start;
+            AtlasMetrics.recordTime(cellType.mBindMetric, elapsed);
+            if (monitor != null) monitor.onBind(cellType.mBindMetric, elapsed);
+        }
     }
 
     private void updateViewHolderForRecipientStatus(CellViewHolder viewHolder, int position, Message message) {
@@ -504,7 +523,8 @@ public class AtlasMessagesAdapter extends RecyclerView.Adapter<AtlasMessagesAdap
     //==============================================================================================
 
     // TODO: optimize by limiting search to positions in- and around- visible range
-    private Cluster getClustering(Message message, int position) {
+    @VisibleForTesting
+    Cluster getClustering(Message message, int position) {
         Cluster result = mClusterCache.get(message.getId());
         if (result == null) {
             result = new Cluster();
@@ -760,7 +780,7 @@ public class AtlasMessagesAdapter extends RecyclerView.Adapter<AtlasMessagesAdap
         }
     }
 
-    private static class Cluster {
+    static class Cluster {
         public boolean mDateBoundaryWithPrevious;
         public ClusterType mClusterWithPrevious;
 
@@ -781,10 +801,12 @@ public class AtlasMessagesAdapter extends RecyclerView.Adapter<AtlasMessagesAdap
     private static class CellType {
         protected final boolean mMe;
         protected final AtlasCellFactory mCellFactory;
+        protected final String mBindMetric;
 
         public CellType(boolean me, AtlasCellFactory CellFactory) {
             mMe = me;
             mCellFactory = CellFactory;
+            mBindMetric = CellFactory.getMetricsName() + ".bind";
         }
 
         @Override
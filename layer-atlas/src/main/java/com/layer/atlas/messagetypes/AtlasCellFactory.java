@@ -6,8 +6,12 @@ import android.util.LruCache;
 import android.view.LayoutInflater;
 import android.view.ViewGroup;
 
+import com.layer.atlas.util.metrics.AtlasMetrics;
 import com.layer.sdk.LayerClient;
 import com.layer.sdk.messaging.Message;
+import com.layer.sdk.messaging.MessagePart;
+
+import java.util.List;
 
 /**
  * CellFactories manage one or more types ot Messages for display within an AtlasMessagesAdapter.
@@ -20,6 +24,11 @@ public abstract class AtlasCellFactory<Tholder extends AtlasCellFactory.CellHold
     private final int mCacheBytes;
     protected MessageStyle mMessageStyle;
 
+    private final String mMetricsName = "cell." + getClass().getSimpleName();
+    private final String mParseMetric = mMetricsName + ".parse";
+    private final String mCacheHitMetric = mMetricsName + ".cache.hit";
+    private final String mCacheMissMetric = mMetricsName + ".cache.miss";
+
     /**
      * Constructs an AtlasCellFactory with a parsed content cache of `cacheBytes` size.
      *
@@ -91,6 +100,20 @@ public abstract class AtlasCellFactory<Tholder extends AtlasCellFactory.CellHold
         // Optional override
     }
 
+    /**
+     * Override to let MessageParts needed for rendering be downloaded ahead of binding, e.g. image
+     * previews for Messages just outside the visible range.
+     *
+     * @param message     Message that may be bound soon.
+     * @param includeInfo `true` to include small metadata parts as well as content parts.
+     * @return MessageParts to prefetch, or `null` if none.
+     * @see com.layer.atlas.util.MessagePartPrefetcher
+     */
+    public List<MessagePart> getPrefetchParts(Message message, boolean includeInfo) {
+        // Optional override
+        return null;
+    }
+
     /**
      * Returns previously parsed content for this Message, or calls parseContent() if it has not
      * been previously parsed.
@@ -99,6 +122,52 @@ public abstract class AtlasCellFactory<Tholder extends AtlasCellFactory.CellHold
      * @return Parsed content object for the given Message.
      */
     public Tcache getParsedContent(LayerClient layerClient, Message message) {
+        String id = message.getId().toString();
+        Tcache value = getCache().get(id);
+        if (value != null) {
+            AtlasMetrics.increment(mCacheHitMetric);
+            return value;
+        }
+        AtlasMetrics.increment(mCacheMissMetric);
+        long start = AtlasMetrics.startTimer();
+        value = parseContent(layerClient, message);
+        AtlasMetrics.stopTimer(mParseMetric, start);
+        if (value != null) getCache().put(id, value);
+        return value;
+    }
+
+    /**
+     * Returns the prefix for this CellFactory's metrics, e.g. `cell.TextCellFactory`.
+     *
+     * @see AtlasMetrics
+     */
+    public String getMetricsName() {
+        return mMetricsName;
+    }
+
+    /**
+     * Returns previously parsed content for this Message without parsing it.
+     *
+     * @param message Message to return parsed content object for.
+     * @return Parsed content object for the given Message, or `null` if it is not cached.
+     */
+    protected Tcache peekParsedContent(Message message) {
+        if (message.getId() == null) return null;
+        return getCache().get(message.getId().toString());
+    }
+
+    /**
+     * Replaces the cached parsed content for this Message, e.g. once content that was not ready
+     * when parsed has been downloaded.
+     *
+     * @param message Message to cache parsed content for.
+     * @param value   Parsed content object for the given Message.
+     */
+    protected void putParsedContent(Message message, Tcache value) {
+        getCache().put(message.getId().toString(), value);
+    }
+
+    private synchronized LruCache<String, Tcache> getCache() {
         if (mCache == null) {
             mCache = new LruCache<String, Tcache>(mCacheBytes) {
                 @Override
@@ -107,13 +176,7 @@ public abstract class AtlasCellFactory<Tholder extends AtlasCellFactory.CellHold
                 }
             };
         }
-
-        String id = message.getId().toString();
-        Tcache value = mCache.get(id);
-        if (value != null) return value;
-        value = parseContent(layerClient, message);
-        if (value != null) mCache.put(id, value);
-        return value;
+        return mCache;
     }
 
     public abstract boolean isType(Message message);
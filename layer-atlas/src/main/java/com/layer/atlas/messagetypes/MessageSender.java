@@ -3,6 +3,8 @@ package com.layer.atlas.messagetypes;
 import android.content.Context;
 
 import com.layer.atlas.util.Log;
+import com.layer.atlas.util.metrics.AtlasMetrics;
+import com.layer.atlas.util.metrics.SendLatencyTracker;
 import com.layer.sdk.LayerClient;
 import com.layer.sdk.messaging.Conversation;
 import com.layer.sdk.messaging.Message;
@@ -17,6 +19,8 @@ public abstract class MessageSender {
     private Context mContext;
     private LayerClient mLayerClient;
 
+    private String mMetricsName;
+
     public void init(Context context, LayerClient layerClient) {
         mContext = context;
         mLayerClient = layerClient;
@@ -51,6 +55,42 @@ public abstract class MessageSender {
         return mLayerClient;
     }
 
+    /**
+     * Returns the prefix for this MessageSender's metrics, e.g. `send.TextSender`.
+     */
+    protected String getMetricsName() {
+        if (mMetricsName == null) mMetricsName = "send." + getClass().getSimpleName();
+        return mMetricsName;
+    }
+
+    /**
+     * Records a send request, before any Message preparation.
+     *
+     * @return A start time for onSendPrepared().
+     */
+    protected long onSendRequested() {
+        if (Log.isPerfLoggable()) {
+            Log.perf(getClass().getSimpleName() + " is attempting to send a message");
+        }
+        if (!AtlasMetrics.isEnabled()) return 0;
+        AtlasMetrics.increment(getMetricsName() + ".requested");
+        return AtlasMetrics.startTimer();
+    }
+
+    /**
+     * Records the time taken to prepare a Message for sending, e.g. to scale and compress images,
+     * and starts tracking its send latency.
+     *
+     * @param message    The prepared Message.
+     * @param startNanos Start time returned by onSendRequested().
+     * @see SendLatencyTracker
+     */
+    protected void onSendPrepared(Message message, long startNanos) {
+        if (startNanos == 0) return;
+        AtlasMetrics.stopTimer(getMetricsName() + ".prepare", startNanos);
+        SendLatencyTracker.getInstance().onPrepared(mLayerClient, getMetricsName(), message, startNanos);
+    }
+
     /**
      * Sends the given Message to this MessageSender's Conversation.  If a Callback is registered,
      * the Callback may add options or abort sending.
@@ -62,8 +102,16 @@ public abstract class MessageSender {
         if ((mCallback == null) || mCallback.beforeSend(this, mLayerClient, mConversation, message)) {
             mConversation.send(message);
             if (Log.isLoggable(Log.VERBOSE)) Log.v("Message sent by " + getClass().getSimpleName());
+            if (AtlasMetrics.isEnabled()) {
+                AtlasMetrics.increment(getMetricsName() + ".sent");
+                SendLatencyTracker.getInstance().onQueued(message);
+            }
             return true;
         }
+        if (AtlasMetrics.isEnabled()) {
+            AtlasMetrics.increment(getMetricsName() + ".aborted");
+            SendLatencyTracker.getInstance().onAborted(message);
+        }
         if (Log.isLoggable(Log.VERBOSE)) {
             Log.v("Message sending aborted by " + getClass().getSimpleName());
         }
@@ -0,0 +1,75 @@
+package com.layer.atlas.messagetypes.location;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Fetches map snapshots from the Google Static Maps API.  Snapshots are requested at scale 2, so
+ * the requested size is half the snapshot's pixel size, and each dimension is capped at the API
+ * maximum of 640.  The API's PNG response is written to the cache as received.
+ */
+public class GoogleStaticMapSnapshotProvider implements MapSnapshotProvider {
+    private static final String BASE_URL = "https://maps.googleapis.com/maps/api/staticmap";
+    private static final int MAX_DIMENSION = 640;
+    private static final int SCALE = 2;
+    private static final int TIMEOUT_MILLIS = 15000;
+
+    private final String mApiKey;
+
+    public GoogleStaticMapSnapshotProvider() {
+        this(null);
+    }
+
+    /**
+     * @param apiKey Google Static Maps API key, or `null` to make keyless requests.
+     */
+    public GoogleStaticMapSnapshotProvider(String apiKey) {
+        mApiKey = apiKey;
+    }
+
+    @Override
+    public String getId() {
+        return "google";
+    }
+
+    @Override
+    public void writeSnapshot(MapSnapshotSpec spec, OutputStream out) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(getUrl(spec)).openConnection();
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+        InputStream in = null;
+        try {
+            int code = connection.getResponseCode();
+            if (code != HttpURLConnection.HTTP_OK) throw new IOException("Static map request failed: " + code);
+            in = connection.getInputStream();
+            byte[] buffer = new byte[8192];
+            int total = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                total += read;
+            }
+            if (total == 0) throw new IOException("Empty static map response");
+        } finally {
+            if (in != null) in.close();
+            connection.disconnect();
+        }
+    }
+
+    String getUrl(MapSnapshotSpec spec) {
+        int width = Math.min(MAX_DIMENSION, (spec.getWidth() + SCALE - 1) / SCALE);
+        int height = Math.min(MAX_DIMENSION, (spec.getHeight() + SCALE - 1) / SCALE);
+        String center = spec.getLatitude() + "," + spec.getLongitude();
+        StringBuilder url = new StringBuilder(BASE_URL)
+                .append("?zoom=").append(spec.getZoom())
+                .append("&maptype=roadmap&scale=").append(SCALE)
+                .append("&center=").append(center)
+                .append("&markers=color:red%7C").append(center)
+                .append("&size=").append(width).append("x").append(height);
+        if (mApiKey != null) url.append("&key=").append(mApiKey);
+        return url.toString();
+    }
+}
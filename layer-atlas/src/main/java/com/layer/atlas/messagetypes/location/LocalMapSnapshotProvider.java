@@ -0,0 +1,105 @@
+package com.layer.atlas.messagetypes.location;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Renders map snapshots locally without network access: a neutral background with a grid aligned
+ * to Web Mercator map tiles at the snapshot's zoom level, and a marker at the center.  Used as a
+ * fallback when a remote provider is unavailable, e.g. while offline, so location cells are never
+ * blank.  Snapshots are written as PNG.
+ */
+public class LocalMapSnapshotProvider implements MapSnapshotProvider {
+    private static final int TILE_SIZE = 256;
+    private static final int GRID_DIVISIONS = 4;
+    // Matches the pixel density of GoogleStaticMapSnapshotProvider snapshots
+    private static final int SCALE = 2;
+
+    private static final int BACKGROUND_COLOR = 0xFFF2EFE9;
+    private static final int MINOR_GRID_COLOR = 0xFFE2DED6;
+    private static final int MAJOR_GRID_COLOR = 0xFFD0CBC1;
+    private static final int MARKER_COLOR = 0xFFE53935;
+    private static final int MARKER_DOT_COLOR = 0xFF8E0000;
+
+    @Override
+    public String getId() {
+        return "local";
+    }
+
+    @Override
+    public void writeSnapshot(MapSnapshotSpec spec, OutputStream out) throws IOException {
+        Bitmap snapshot = render(spec);
+        try {
+            if (!snapshot.compress(Bitmap.CompressFormat.PNG, 100, out)) {
+                throw new IOException("Could not encode snapshot: " + spec);
+            }
+        } finally {
+            snapshot.recycle();
+        }
+    }
+
+    //==============================================================================================
+    // private methods
+    //==============================================================================================
+
+    private static Bitmap render(MapSnapshotSpec spec) {
+        int width = Math.max(1, spec.getWidth());
+        int height = Math.max(1, spec.getHeight());
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        canvas.drawColor(BACKGROUND_COLOR);
+
+        // Center of the snapshot in world pixels at this zoom
+        double worldSize = (double) TILE_SIZE * SCALE * (1L << spec.getZoom());
+        double centerX = (spec.getLongitude() + 180.0) / 360.0 * worldSize;
+        double sinLatitude = Math.sin(Math.toRadians(Math.max(-85.0511, Math.min(85.0511, spec.getLatitude()))));
+        double centerY = (0.5 - Math.log((1 + sinLatitude) / (1 - sinLatitude)) / (4 * Math.PI)) * worldSize;
+        double left = centerX - width / 2.0;
+        double top = centerY - height / 2.0;
+
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setStrokeWidth(SCALE);
+        int step = TILE_SIZE * SCALE / GRID_DIVISIONS;
+        drawGrid(canvas, paint, left, top, width, height, step, MINOR_GRID_COLOR);
+        drawGrid(canvas, paint, left, top, width, height, step * GRID_DIVISIONS, MAJOR_GRID_COLOR);
+
+        drawMarker(canvas, paint, width / 2f, height / 2f, Math.min(width, height) / 12f);
+        return bitmap;
+    }
+
+    private static void drawGrid(Canvas canvas, Paint paint, double left, double top, int width, int height, int step, int color) {
+        paint.setColor(color);
+        float firstX = (float) (Math.ceil(left / step) * step - left);
+        for (float x = firstX; x < width; x += step) {
+            canvas.drawLine(x, 0, x, height, paint);
+        }
+        float firstY = (float) (Math.ceil(top / step) * step - top);
+        for (float y = firstY; y < height; y += step) {
+            canvas.drawLine(0, y, width, y, paint);
+        }
+    }
+
+    /**
+     * Draws a pin whose tip is at (x, y).
+     */
+    private static void drawMarker(Canvas canvas, Paint paint, float x, float y, float radius) {
+        float headY = y - radius * 2f;
+        Path pin = new Path();
+        pin.moveTo(x, y);
+        pin.lineTo(x - radius * 0.8f, headY + radius * 0.6f);
+        pin.lineTo(x + radius * 0.8f, headY + radius * 0.6f);
+        pin.close();
+
+        paint.setStyle(Paint.Style.FILL);
+        paint.setColor(MARKER_COLOR);
+        canvas.drawPath(pin, paint);
+        canvas.drawCircle(x, headY, radius, paint);
+        paint.setColor(MARKER_DOT_COLOR);
+        canvas.drawCircle(x, headY, radius * 0.35f, paint);
+    }
+}
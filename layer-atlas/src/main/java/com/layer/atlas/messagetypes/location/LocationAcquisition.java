@@ -0,0 +1,166 @@
+package com.layer.atlas.messagetypes.location;
+
+import com.layer.atlas.util.Scheduler;
+
+/**
+ * LocationAcquisition decides which location fix to send, bounding how long a send can wait.
+ * <p>
+ * A recent, accurate last known fix (within the configured age and accuracy thresholds) is used
+ * immediately.  Otherwise a fresh fix is requested and raced against a timeout; if the timeout
+ * wins, the last known fix is used even though it is stale, or acquisition fails if there is none.
+ * The callback is invoked exactly once per successful acquire() call.
+ * <p>
+ * LocationAcquisition has no Android dependencies: fixes come from a LocationFixProvider and time
+ * from a Scheduler, so send latency can be measured on the JVM with fakes.
+ */
+public class LocationAcquisition {
+    public static final long DEFAULT_MAX_AGE_MILLIS = 2 * 60 * 1000;
+    public static final float DEFAULT_MAX_ACCURACY_METERS = 100;
+    public static final long DEFAULT_TIMEOUT_MILLIS = 10 * 1000;
+
+    private final LocationFixProvider mProvider;
+    private final Scheduler mScheduler;
+
+    private long mMaxAgeMillis = DEFAULT_MAX_AGE_MILLIS;
+    private float mMaxAccuracyMeters = DEFAULT_MAX_ACCURACY_METERS;
+    private long mTimeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+
+    public enum Source {
+        /**
+         * A recent last known fix within the age and accuracy thresholds, used without waiting.
+         */
+        CACHED,
+
+        /**
+         * A fresh fix that arrived before the timeout.
+         */
+        FRESH,
+
+        /**
+         * A last known fix outside the thresholds, used because no fresh fix arrived in time.
+         */
+        STALE
+    }
+
+    /**
+     * @param provider  Source of location fixes.
+     * @param scheduler Scheduler running on the thread that delivers fixes.
+     */
+    public LocationAcquisition(LocationFixProvider provider, Scheduler scheduler) {
+        mProvider = provider;
+        mScheduler = scheduler;
+    }
+
+    /**
+     * Sets the thresholds for using the last known fix without waiting for a fresh one.
+     *
+     * @param maxAgeMillis      Maximum age of the last known fix.
+     * @param maxAccuracyMeters Maximum accuracy radius of the last known fix.
+     * @return This LocationAcquisition.
+     */
+    public LocationAcquisition setCachedThresholds(long maxAgeMillis, float maxAccuracyMeters) {
+        mMaxAgeMillis = maxAgeMillis;
+        mMaxAccuracyMeters = maxAccuracyMeters;
+        return this;
+    }
+
+    /**
+     * Sets how long to wait for a fresh fix.
+     *
+     * @param timeoutMillis Maximum time to wait for a fresh fix.
+     * @return This LocationAcquisition.
+     */
+    public LocationAcquisition setTimeout(long timeoutMillis) {
+        mTimeoutMillis = timeoutMillis;
+        return this;
+    }
+
+    /**
+     * Acquires a fix and delivers it to `callback`, possibly synchronously.
+     *
+     * @param callback Callback to notify.
+     * @return `true` if a fix was delivered or is pending, or `false` if no fix can be acquired,
+     * in which case `callback` is not notified.
+     */
+    public boolean acquire(Callback callback) {
+        LocationFix lastKnown = mProvider.getLastKnownLocation();
+        if (isRecent(lastKnown)) {
+            callback.onLocationAcquired(lastKnown, Source.CACHED);
+            return true;
+        }
+
+        Attempt attempt = new Attempt(lastKnown, callback);
+        if (!mProvider.requestFreshLocation(attempt, mTimeoutMillis)) {
+            if (lastKnown == null) return false;
+            callback.onLocationAcquired(lastKnown, Source.STALE);
+            return true;
+        }
+        attempt.start();
+        return true;
+    }
+
+    /**
+     * Returns `true` if the fix is within the age and accuracy thresholds.
+     */
+    public boolean isRecent(LocationFix fix) {
+        if (fix == null || !fix.hasAccuracy()) return false;
+        long age = mScheduler.currentTimeMillis() - fix.getTimeMillis();
+        return age <= mMaxAgeMillis && fix.getAccuracyMeters() <= mMaxAccuracyMeters;
+    }
+
+    //==============================================================================================
+    // Inner classes
+    //==============================================================================================
+
+    public interface Callback {
+        void onLocationAcquired(LocationFix fix, Source source);
+
+        /**
+         * Called when no fresh fix arrived in time and there is no last known fix.
+         */
+        void onLocationUnavailable();
+    }
+
+    private class Attempt implements LocationFixProvider.Listener, Runnable {
+        private final LocationFix mLastKnown;
+        private final Callback mCallback;
+        private Object mTimeoutToken;
+        private boolean mFinished;
+
+        Attempt(LocationFix lastKnown, Callback callback) {
+            mLastKnown = lastKnown;
+            mCallback = callback;
+        }
+
+        synchronized void start() {
+            if (!mFinished) mTimeoutToken = mScheduler.schedule(this, mTimeoutMillis);
+        }
+
+        @Override
+        public void onLocationFix(LocationFix fix) {
+            synchronized (this) {
+                if (mFinished) return;
+                mFinished = true;
+                if (mTimeoutToken != null) mScheduler.cancel(mTimeoutToken);
+            }
+            mCallback.onLocationAcquired(fix, Source.FRESH);
+        }
+
+        /**
+         * Timeout
+         */
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (mFinished) return;
+                mFinished = true;
+            }
+            mProvider.cancel(this);
+            if (mLastKnown != null) {
+                mCallback.onLocationAcquired(mLastKnown, Source.STALE);
+            } else {
+                mCallback.onLocationUnavailable();
+            }
+        }
+    }
+}
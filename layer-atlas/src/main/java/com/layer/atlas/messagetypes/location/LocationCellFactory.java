@@ -3,8 +3,10 @@ package com.layer.atlas.messagetypes.location;
 import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
+import android.os.AsyncTask;
 import android.support.v4.widget.ContentLoadingProgressBar;
 import android.support.v7.widget.RecyclerView;
+import android.util.LruCache;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -14,20 +16,31 @@ import com.layer.atlas.R;
 import com.layer.atlas.messagetypes.AtlasCellFactory;
 import com.layer.atlas.util.Log;
 import com.layer.atlas.util.Util;
-import com.layer.atlas.util.picasso.transformations.RoundedTransform;
+import com.layer.atlas.util.metrics.AtlasMetrics;
+import com.layer.atlas.util.picasso.AtlasImageCache;
 import com.layer.sdk.LayerClient;
 import com.layer.sdk.messaging.Message;
 import com.squareup.picasso.Callback;
 import com.squareup.picasso.Picasso;
-import com.squareup.picasso.Transformation;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.File;
 import java.net.URLEncoder;
+import java.util.List;
 
+/**
+ * LocationCellFactory renders "location/coordinate" Messages as map snapshots.  Snapshots come
+ * from a pluggable MapSnapshotProvider (Google Static Maps by default), fall back to a locally
+ * rendered snapshot when the provider fails (e.g. while offline), and are persisted in an on-disk
+ * cache keyed by rounded coordinates, zoom, and pixel size, so repeated locations render without
+ * a network round trip.  Snapshot sizes are quantized into a few buckets and scaled to the cell in
+ * memory, and concurrent requests for the same snapshot are coalesced, so a location shared many
+ * times in a Conversation is fetched once.
+ */
 public class LocationCellFactory extends AtlasCellFactory<LocationCellFactory.CellHolder, LocationCellFactory.Location> implements View.OnClickListener {
-    private static final String PICASSO_TAG = LocationCellFactory.class.getSimpleName();
+    public static final String PICASSO_TAG = LocationCellFactory.class.getSimpleName();
     public static final String MIME_TYPE = "location/coordinate";
     public static final String KEY_LATITUDE = "lat";
     public static final String KEY_LONGITUDE = "lon";
@@ -36,9 +49,19 @@ public class LocationCellFactory extends AtlasCellFactory<LocationCellFactory.Ce
     private static final int PLACEHOLDER = R.drawable.atlas_message_item_cell_placeholder;
     private static final double GOLDEN_RATIO = (1.0 + Math.sqrt(5.0)) / 2.0;
     private static final int CACHE_SIZE_BYTES = 256 * 1024;
+    private static final int MAP_ZOOM = 16;
+    private static final String SNAPSHOT_DIRECTORY = "atlas_map_snapshots";
+    private static final long SNAPSHOT_CACHE_BYTES = 10 * 1024 * 1024;
 
+    private final String mImageLoadMetric = getMetricsName() + ".image.load";
+    private final String mImageErrorMetric = getMetricsName() + ".image.error";
     private final Picasso mPicasso;
-    private Transformation mTransform;
+
+    private MapSnapshotProvider mSnapshotProvider = new GoogleStaticMapSnapshotProvider();
+    private MapSnapshotProvider mFallbackSnapshotProvider = new LocalMapSnapshotProvider();
+    private MapSnapshotLoader mSnapshotLoader;
+    // Recently resolved snapshot files, so repeated locations bind without a background hop
+    private final LruCache<MapSnapshotSpec, File> mSnapshotFiles = new LruCache<MapSnapshotSpec, File>(64);
 
     public LocationCellFactory(Picasso mPicasso) {
         super(CACHE_SIZE_BYTES);
@@ -53,6 +76,21 @@ public class LocationCellFactory extends AtlasCellFactory<LocationCellFactory.Ce
         this(picasso);
     }
 
+    /**
+     * Sets the providers used to render map snapshots.
+     *
+     * @param provider         Primary snapshot provider.
+     * @param fallbackProvider Provider used when the primary fails, or `null` for none.
+     * @return This LocationCellFactory.
+     */
+    public LocationCellFactory setSnapshotProvider(MapSnapshotProvider provider, MapSnapshotProvider fallbackProvider) {
+        mSnapshotProvider = provider;
+        mFallbackSnapshotProvider = fallbackProvider;
+        mSnapshotFiles.evictAll();
+        if (mSnapshotLoader != null) mSnapshotLoader.setProviders(provider, fallbackProvider);
+        return this;
+    }
+
     public boolean isType(Message message) {
         return message.getMessageParts().size() == 1 && message.getMessageParts().get(0).getMimeType().equals(MIME_TYPE);
     }
@@ -74,6 +112,11 @@ public class LocationCellFactory extends AtlasCellFactory<LocationCellFactory.Ce
 
     @Override
     public CellHolder createCellHolder(ViewGroup cellView, boolean isMe, LayoutInflater layoutInflater) {
+        if (mSnapshotLoader == null) {
+            File directory = new File(layoutInflater.getContext().getCacheDir(), SNAPSHOT_DIRECTORY);
+            mSnapshotLoader = new MapSnapshotLoader(mSnapshotProvider, mFallbackSnapshotProvider,
+                    new MapSnapshotDiskCache(directory, SNAPSHOT_CACHE_BYTES), AsyncTask.THREAD_POOL_EXECUTOR);
+        }
         return new CellHolder(layoutInflater.inflate(R.layout.atlas_message_item_cell_image, cellView, true));
     }
 
@@ -99,25 +142,45 @@ public class LocationCellFactory extends AtlasCellFactory<LocationCellFactory.Ce
         cellHolder.mImageView.setTag(location);
         cellHolder.mImageView.setOnClickListener(this);
 
-        // Google Static Map API has max dimension 640
-        int mapWidth = Math.min(640, specs.maxWidth);
-        int mapHeight = (int) Math.round((double) mapWidth / GOLDEN_RATIO);
         int[] cellDims = Util.scaleDownInside(specs.maxWidth, (int) Math.round((double) specs.maxWidth / GOLDEN_RATIO), specs.maxWidth, specs.maxHeight);
         ViewGroup.LayoutParams params = cellHolder.mImageView.getLayoutParams();
         params.width = cellDims[0];
         params.height = cellDims[1];
         cellHolder.mProgressBar.show();
-        mPicasso.load("https://maps.googleapis.com/maps/api/staticmap?zoom=16&maptype=roadmap&scale=2&center=" + location.mLatitude + "," + location.mLongitude + "&markers=color:red%7C" + location.mLatitude + "," + location.mLongitude + "&size=" + mapWidth + "x" + mapHeight)
-                .tag(PICASSO_TAG).placeholder(PLACEHOLDER).resize(cellDims[0], cellDims[1])
-                .transform(getTransform(cellHolder.mImageView.getContext())).into(cellHolder.mImageView, new Callback() {
+
+        MapSnapshotSpec snapshotSpec = MapSnapshotSizes.quantize(location.mLatitude, location.mLongitude, MAP_ZOOM, cellDims[0], GOLDEN_RATIO);
+        List<MapSnapshotSpec> alternatives = MapSnapshotSizes.alternatives(snapshotSpec, GOLDEN_RATIO);
+        cellHolder.mSpec = snapshotSpec;
+
+        // Reuse the closest snapshot already resolved for this location, scaled to fit
+        MapSnapshotSpec resolved = snapshotSpec;
+        File file = mSnapshotFiles.get(resolved);
+        for (int i = 0; file == null && i < alternatives.size(); i++) {
+            resolved = alternatives.get(i);
+            file = mSnapshotFiles.get(resolved);
+        }
+        if (file != null) {
+            loadSnapshot(cellHolder, resolved, file);
+            return;
+        }
+
+        mPicasso.cancelRequest(cellHolder.mImageView);
+        cellHolder.mImageView.setImageResource(PLACEHOLDER);
+        mSnapshotLoader.load(snapshotSpec, alternatives, new MapSnapshotLoader.Callback() {
             @Override
-            public void onSuccess() {
-                cellHolder.mProgressBar.hide();
+            public void onSnapshotReady(MapSnapshotSpec spec, MapSnapshotSpec resolved, File file, boolean fallback) {
+                // Fallback snapshots go through the loader again on the next bind, so the real
+                // map replaces them once the primary provider succeeds
+                if (!fallback) mSnapshotFiles.put(resolved, file);
+                if (spec.equals(cellHolder.mSpec)) loadSnapshot(cellHolder, resolved, file);
             }
 
             @Override
-            public void onError() {
-                cellHolder.mProgressBar.hide();
+            public void onSnapshotError(MapSnapshotSpec spec, Throwable error) {
+                if (Log.isLoggable(Log.ERROR)) {
+                    Log.e("Could not load map snapshot: " + spec, error);
+                }
+                if (spec.equals(cellHolder.mSpec)) cellHolder.mProgressBar.hide();
             }
         });
     }
@@ -147,13 +210,30 @@ public class LocationCellFactory extends AtlasCellFactory<LocationCellFactory.Ce
     // private methods
     //==============================================================================================
 
-    private Transformation getTransform(Context context) {
-        if (mTransform == null) {
-            float radius = context.getResources().getDimension(com.layer.atlas.R.dimen.atlas_message_item_cell_radius);
-            mTransform = new RoundedTransform(radius);
-        }
+    /**
+     * @param resolved The snapshot `file` holds, which may be an alternative to the cell's spec.
+     */
+    private void loadSnapshot(final CellHolder cellHolder, final MapSnapshotSpec resolved, File file) {
+        MapSnapshotSpec spec = cellHolder.mSpec;
+        final long start = AtlasMetrics.startTimer();
+        // Resize to the quantized snapshot size rather than the exact cell size, so every cell in
+        // the same size bucket shares one decoded bitmap; the ImageView scales it to the cell
+        mPicasso.load(file).stableKey(AtlasImageCache.stableKey(PICASSO_TAG, Uri.fromFile(file))).tag(PICASSO_TAG).placeholder(PLACEHOLDER).resize(spec.getWidth(), spec.getHeight())
+                .into(cellHolder.mImageView, new Callback() {
+            @Override
+            public void onSuccess() {
+                cellHolder.mProgressBar.hide();
+                AtlasMetrics.stopTimer(mImageLoadMetric, start);
+            }
 
-        return mTransform;
+            @Override
+            public void onError() {
+                AtlasMetrics.increment(mImageErrorMetric);
+                // The file may have been trimmed from the disk cache
+                mSnapshotFiles.remove(resolved);
+                cellHolder.mProgressBar.hide();
+            }
+        });
     }
 
     static class Location implements AtlasCellFactory.ParsedContent {
@@ -170,9 +250,12 @@ public class LocationCellFactory extends AtlasCellFactory<LocationCellFactory.Ce
     static class CellHolder extends AtlasCellFactory.CellHolder {
         ImageView mImageView;
         ContentLoadingProgressBar mProgressBar;
+        MapSnapshotSpec mSpec;
 
         public CellHolder(View view) {
             mImageView = (ImageView) view.findViewById(R.id.cell_image);
+            // Snapshots are loaded at their size bucket and scaled to the cell
+            mImageView.setScaleType(ImageView.ScaleType.CENTER_CROP);
             mProgressBar = (ContentLoadingProgressBar) view.findViewById(R.id.cell_progress);
         }
     }
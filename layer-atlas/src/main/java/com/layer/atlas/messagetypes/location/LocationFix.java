@@ -0,0 +1,51 @@
+package com.layer.atlas.messagetypes.location;
+
+/**
+ * An immutable location fix: coordinates, horizontal accuracy, and the wall clock time it was
+ * taken.  Independent of android.location.Location, so location acquisition can be tested on the
+ * JVM.
+ */
+public class LocationFix {
+    private final double mLatitude;
+    private final double mLongitude;
+    private final float mAccuracyMeters;
+    private final long mTimeMillis;
+
+    /**
+     * @param latitude       Latitude in degrees.
+     * @param longitude      Longitude in degrees.
+     * @param accuracyMeters Horizontal accuracy radius in meters, or a negative value if unknown.
+     * @param timeMillis     Wall clock time of the fix in milliseconds since the epoch.
+     */
+    public LocationFix(double latitude, double longitude, float accuracyMeters, long timeMillis) {
+        mLatitude = latitude;
+        mLongitude = longitude;
+        mAccuracyMeters = accuracyMeters;
+        mTimeMillis = timeMillis;
+    }
+
+    public double getLatitude() {
+        return mLatitude;
+    }
+
+    public double getLongitude() {
+        return mLongitude;
+    }
+
+    public boolean hasAccuracy() {
+        return mAccuracyMeters >= 0;
+    }
+
+    public float getAccuracyMeters() {
+        return mAccuracyMeters;
+    }
+
+    public long getTimeMillis() {
+        return mTimeMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "LocationFix{" + mLatitude + "," + mLongitude + " +/-" + mAccuracyMeters + "m @" + mTimeMillis + "}";
+    }
+}
@@ -0,0 +1,31 @@
+package com.layer.atlas.messagetypes.location;
+
+/**
+ * Source of device location fixes for LocationAcquisition, e.g. Google's fused location API.
+ */
+public interface LocationFixProvider {
+    /**
+     * Returns the most recent known fix without waiting, or `null` if none is available.
+     */
+    LocationFix getLastKnownLocation();
+
+    /**
+     * Requests a single fresh fix, delivered to `listener` on the main thread.
+     *
+     * @param listener      Listener to notify with the fix.
+     * @param timeoutMillis How long the caller waits for the fix; the request may expire after it.
+     * @return `true` if the request was made, or `false` if fixes are unavailable.
+     */
+    boolean requestFreshLocation(Listener listener, long timeoutMillis);
+
+    /**
+     * Cancels a pending request made with requestFreshLocation().
+     *
+     * @param listener Listener passed to requestFreshLocation().
+     */
+    void cancel(Listener listener);
+
+    interface Listener {
+        void onLocationFix(LocationFix fix);
+    }
+}
@@ -18,7 +18,9 @@ import com.google.android.gms.location.LocationRequest;
 import com.google.android.gms.location.LocationServices;
 import com.layer.atlas.R;
 import com.layer.atlas.messagetypes.AttachmentSender;
+import com.layer.atlas.util.HandlerScheduler;
 import com.layer.atlas.util.Log;
+import com.layer.atlas.util.metrics.AtlasMetrics;
 import com.layer.atlas.util.Util;
 import com.layer.sdk.LayerClient;
 import com.layer.sdk.messaging.Identity;
@@ -31,6 +33,8 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
 
 import static android.support.v4.app.ActivityCompat.requestPermissions;
 import static android.support.v4.content.ContextCompat.checkSelfPermission;
@@ -40,6 +44,9 @@ import static android.support.v4.content.ContextCompat.checkSelfPermission;
  * location API is used for gathering location at send time and may trigger a dialog for updating
  * Google Play Services.  Requires `Manifest.permission.ACCESS_FINE_LOCATION` for getting device
  * location.
+ * <p>
+ * A recent last known location is sent immediately; otherwise a fresh fix is awaited for a
+ * bounded time before falling back to the last known location.  See LocationAcquisition.
  */
 public class LocationSender extends AttachmentSender {
     private static final String PERMISSION = Manifest.permission.ACCESS_FINE_LOCATION;
@@ -49,6 +56,7 @@ public class LocationSender extends AttachmentSender {
     private static GoogleApiClient sGoogleApiClient;
 
     private WeakReference<Activity> mActivity = new WeakReference<Activity>(null);
+    private final LocationAcquisition mLocationAcquisition = new LocationAcquisition(new FusedLocationFixProvider(), new HandlerScheduler());
 
     public LocationSender(int titleResId, Integer iconResId, Activity activity) {
         this(activity.getString(titleResId), iconResId, activity);
@@ -92,27 +100,12 @@ public class LocationSender extends AttachmentSender {
         if (Log.isLoggable(Log.ERROR)) Log.e("Cannot update Google Play Services: " + errorCode);
     }
 
-    @RequiresPermission(PERMISSION)
-    private static boolean getFreshLocation(LocationListener listener) {
-        if (sGoogleApiClient == null) {
-            if (Log.isLoggable(Log.ERROR)) Log.e("GoogleApiClient not initialized");
-            return false;
-        }
-        if (Log.isLoggable(Log.VERBOSE)) Log.v("Getting fresh location");
-        LocationRequest r = new LocationRequest()
-                .setNumUpdates(1)
-                .setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY)
-                .setExpirationDuration(10000)
-                .setMaxWaitTime(10000);
-        try {
-            LocationServices.FusedLocationApi.requestLocationUpdates(sGoogleApiClient, r, listener);
-            return true;
-        } catch (IllegalStateException e) {
-            if (Log.isLoggable(Log.ERROR)) {
-                Log.e(e.getMessage(), e);
-            }
-        }
-        return false;
+    /**
+     * Returns the LocationAcquisition used at send time, e.g. to adjust how old a last known
+     * location may be, or how long to wait for a fresh one.
+     */
+    public LocationAcquisition getLocationAcquisition() {
+        return mLocationAcquisition;
     }
 
     @RequiresPermission(PERMISSION)
@@ -123,11 +116,13 @@ public class LocationSender extends AttachmentSender {
             if (Log.isLoggable(Log.VERBOSE)) Log.v("Location permission denied");
             return;
         }
-        getFreshLocation(new SenderLocationListener(this));
+        long start = onSendRequested();
+        mLocationAcquisition.acquire(new SenderLocationCallback(this, start));
     }
 
     /**
-     * Asynchronously requests a fresh location and sends a location Message.
+     * Sends a location Message with a recent last known location, or asynchronously with a fresh
+     * location.
      */
     @RequiresPermission(PERMISSION)
     @Override
@@ -139,7 +134,8 @@ public class LocationSender extends AttachmentSender {
             requestPermissions(activity, PERMISSION_REQUEST_CODE, PERMISSION);
             return true;
         }
-        return getFreshLocation(new SenderLocationListener(this));
+        long start = onSendRequested();
+        return mLocationAcquisition.acquire(new SenderLocationCallback(this, start));
     }
 
     @Override
@@ -149,20 +145,29 @@ public class LocationSender extends AttachmentSender {
         return true;
     }
 
-    private static class SenderLocationListener implements LocationListener {
+    private static class SenderLocationCallback implements LocationAcquisition.Callback {
         private final WeakReference<LocationSender> mLocationSenderReference;
+        private final long mStartNanos;
 
-        public SenderLocationListener(LocationSender locationsender) {
+        public SenderLocationCallback(LocationSender locationsender, long startNanos) {
             mLocationSenderReference = new WeakReference<LocationSender>(locationsender);
+            mStartNanos = startNanos;
         }
 
         @Override
-        public void onLocationChanged(Location location) {
-            if (Log.isLoggable(Log.VERBOSE)) Log.v("Got fresh location");
+        public void onLocationUnavailable() {
+            if (Log.isLoggable(Log.ERROR)) Log.e("Could not get location to send");
+            if (AtlasMetrics.isEnabled()) AtlasMetrics.increment("send.LocationSender.unavailable");
+        }
 
-            if (Log.isPerfLoggable()) {
-                Log.perf("LocationSender is attempting to send a message");
+        @Override
+        public void onLocationAcquired(LocationFix location, LocationAcquisition.Source source) {
+            if (Log.isLoggable(Log.VERBOSE)) Log.v("Got " + source + " location");
+            if (AtlasMetrics.isEnabled()) {
+                AtlasMetrics.stopTimer("send.LocationSender.acquire", mStartNanos);
+                AtlasMetrics.increment("send.LocationSender.source." + source.name());
             }
+
             LocationSender sender = mLocationSenderReference.get();
             if (sender == null) return;
             Context context = sender.getContext();
@@ -180,6 +185,7 @@ public class LocationSender extends AttachmentSender {
                         .text(notification)
                         .build();
                 Message message = client.newMessage(new MessageOptions().defaultPushNotificationPayload(payload), part);
+                sender.onSendPrepared(message, mStartNanos);
                 sender.send(message);
             } catch (JSONException e) {
                 if (Log.isLoggable(Log.ERROR)) {
@@ -189,6 +195,72 @@ public class LocationSender extends AttachmentSender {
         }
     }
 
+    /**
+     * Provides fixes from Google's fused location API using the shared GoogleApiClient.
+     */
+    private static class FusedLocationFixProvider implements LocationFixProvider {
+        private final Map<Listener, LocationListener> mRequests = new HashMap<Listener, LocationListener>();
+
+        @Override
+        public LocationFix getLastKnownLocation() {
+            if (sGoogleApiClient == null || !sGoogleApiClient.isConnected()) return null;
+            try {
+                //noinspection MissingPermission
+                return toFix(LocationServices.FusedLocationApi.getLastLocation(sGoogleApiClient));
+            } catch (SecurityException e) {
+                if (Log.isLoggable(Log.ERROR)) {
+                    Log.e(e.getMessage(), e);
+                }
+                return null;
+            }
+        }
+
+        @Override
+        public boolean requestFreshLocation(final Listener listener, long timeoutMillis) {
+            if (sGoogleApiClient == null) {
+                if (Log.isLoggable(Log.ERROR)) Log.e("GoogleApiClient not initialized");
+                return false;
+            }
+            if (Log.isLoggable(Log.VERBOSE)) Log.v("Getting fresh location");
+            LocationRequest r = new LocationRequest()
+                    .setNumUpdates(1)
+                    .setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY)
+                    .setExpirationDuration(timeoutMillis)
+                    .setMaxWaitTime(timeoutMillis);
+            LocationListener locationListener = new LocationListener() {
+                @Override
+                public void onLocationChanged(Location location) {
+                    mRequests.remove(listener);
+                    listener.onLocationFix(toFix(location));
+                }
+            };
+            try {
+                //noinspection MissingPermission
+                LocationServices.FusedLocationApi.requestLocationUpdates(sGoogleApiClient, r, locationListener);
+                mRequests.put(listener, locationListener);
+                return true;
+            } catch (IllegalStateException | SecurityException e) {
+                if (Log.isLoggable(Log.ERROR)) {
+                    Log.e(e.getMessage(), e);
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void cancel(Listener listener) {
+            LocationListener locationListener = mRequests.remove(listener);
+            if (locationListener == null || sGoogleApiClient == null || !sGoogleApiClient.isConnected()) return;
+            LocationServices.FusedLocationApi.removeLocationUpdates(sGoogleApiClient, locationListener);
+        }
+
+        private static LocationFix toFix(Location location) {
+            if (location == null) return null;
+            float accuracy = location.hasAccuracy() ? location.getAccuracy() : -1;
+            return new LocationFix(location.getLatitude(), location.getLongitude(), accuracy, location.getTime());
+        }
+    }
+
     private static class GoogleApiCallbacks implements GoogleApiClient.OnConnectionFailedListener, GoogleApiClient.ConnectionCallbacks {
         @Override
         public void onConnected(Bundle bundle) {
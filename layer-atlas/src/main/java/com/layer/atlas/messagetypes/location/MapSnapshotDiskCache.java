@@ -0,0 +1,122 @@
+package com.layer.atlas.messagetypes.location;
+
+import android.graphics.BitmapFactory;
+
+import com.layer.atlas.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Persists map snapshots, as encoded by their provider, in files keyed by provider ID and
+ * MapSnapshotSpec cache key, so
+ * repeated locations render without re-fetching, including across app restarts and offline.
+ * Least recently used files are deleted once the directory exceeds its byte budget.
+ */
+public class MapSnapshotDiskCache {
+    private static final String SUFFIX = ".snapshot";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+
+    public MapSnapshotDiskCache(File directory, long maxBytes) {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the cached snapshot file, or `null` if none is cached.
+     */
+    public synchronized File get(String providerId, MapSnapshotSpec spec) {
+        File file = getFile(providerId, spec);
+        if (!file.isFile()) return null;
+        // Mark as recently used
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    /**
+     * Has the provider write its snapshot to the cache, and returns its file.  Only snapshots
+     * BitmapFactory recognizes are kept, so a bad response is not served from the cache.
+     *
+     * @throws IOException if the snapshot could not be rendered or written.
+     */
+    public synchronized File put(MapSnapshotProvider provider, MapSnapshotSpec spec) throws IOException {
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            throw new IOException("Could not create snapshot cache: " + mDirectory);
+        }
+        File file = getFile(provider.getId(), spec);
+        File temp = new File(mDirectory, file.getName() + TEMP_SUFFIX);
+        OutputStream out = new FileOutputStream(temp);
+        boolean written = false;
+        try {
+            provider.writeSnapshot(spec, out);
+            written = true;
+        } finally {
+            out.close();
+            if (!written) temp.delete();
+        }
+        // Reads only the image header
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(temp.getPath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            temp.delete();
+            throw new IOException("Not an image from " + provider.getId() + ": " + spec);
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not write snapshot: " + file);
+        }
+        trim();
+        return file;
+    }
+
+    public synchronized void clear() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    //==============================================================================================
+    // private methods
+    //==============================================================================================
+
+    private File getFile(String providerId, MapSnapshotSpec spec) {
+        return new File(mDirectory, providerId + "_" + spec.getCacheKey() + SUFFIX);
+    }
+
+    private void trim() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) return;
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= mMaxBytes) return;
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long l = lhs.lastModified();
+                long r = rhs.lastModified();
+                return l < r ? -1 : (l == r ? 0 : 1);
+            }
+        });
+        for (File file : files) {
+            if (total <= mMaxBytes) break;
+            long length = file.length();
+            if (file.delete()) total -= length;
+        }
+        if (Log.isLoggable(Log.VERBOSE)) {
+            Log.v("Trimmed map snapshot cache to " + total + " bytes");
+        }
+    }
+}
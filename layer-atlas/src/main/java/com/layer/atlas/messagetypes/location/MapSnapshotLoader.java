@@ -0,0 +1,237 @@
+package com.layer.atlas.messagetypes.location;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.layer.atlas.util.Log;
+import com.layer.atlas.util.metrics.AtlasMetrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Resolves MapSnapshotSpecs to snapshot files on a background Executor.  Snapshots are read from
+ * the MapSnapshotDiskCache when present, and otherwise rendered by the primary provider and
+ * persisted.  If the primary provider fails (e.g. while offline), the fallback provider's snapshot
+ * is used instead.  The primary provider is not asked again until a backoff, growing from
+ * 30 seconds to 10 minutes with consecutive failures, has passed, so real maps replace fallback
+ * snapshots once available without every bind retrying the network.
+ * <p>
+ * Concurrent loads of the same spec are coalesced into one, and a cached snapshot of the same
+ * location at another size is reused rather than rendering a new one.  load() must be called on
+ * the main thread.
+ */
+public class MapSnapshotLoader {
+    private static final long MIN_BACKOFF_MILLIS = 30 * 1000;
+    private static final long MAX_BACKOFF_MILLIS = 10 * 60 * 1000;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Executor mExecutor;
+    private final MapSnapshotDiskCache mDiskCache;
+    private volatile MapSnapshotProvider mProvider;
+    private volatile MapSnapshotProvider mFallbackProvider;
+
+    // Primary provider backoff, guarded by this
+    private long mBackoffMillis = 0;
+    private long mRetryAt = 0;
+
+    // Callbacks waiting on in-flight loads; main thread only
+    private final Map<MapSnapshotSpec, List<Callback>> mPending = new HashMap<MapSnapshotSpec, List<Callback>>();
+
+    public MapSnapshotLoader(MapSnapshotProvider provider, MapSnapshotProvider fallbackProvider, MapSnapshotDiskCache diskCache, Executor executor) {
+        mProvider = provider;
+        mFallbackProvider = fallbackProvider;
+        mDiskCache = diskCache;
+        mExecutor = executor;
+    }
+
+    /**
+     * Sets the providers used for future loads.
+     *
+     * @param provider         Primary snapshot provider.
+     * @param fallbackProvider Provider used when the primary fails, or `null` for none.
+     */
+    public void setProviders(MapSnapshotProvider provider, MapSnapshotProvider fallbackProvider) {
+        mProvider = provider;
+        mFallbackProvider = fallbackProvider;
+        synchronized (this) {
+            mBackoffMillis = 0;
+            mRetryAt = 0;
+        }
+    }
+
+    /**
+     * Resolves the snapshot for `spec` in the background, and notifies `callback` on the main
+     * thread.
+     */
+    public void load(MapSnapshotSpec spec, Callback callback) {
+        load(spec, Collections.<MapSnapshotSpec>emptyList(), callback);
+    }
+
+    /**
+     * Resolves the snapshot for `spec` in the background, accepting an already cached snapshot
+     * for one of `alternatives` instead, and notifies `callback` on the main thread.  If a load
+     * for `spec` is already in flight, `callback` joins it.
+     *
+     * @param spec         Preferred snapshot.
+     * @param alternatives Acceptable cached snapshots, in order of preference.
+     * @param callback     Callback to notify with the resolved file.
+     */
+    public void load(final MapSnapshotSpec spec, final List<MapSnapshotSpec> alternatives, Callback callback) {
+        List<Callback> callbacks = mPending.get(spec);
+        if (callbacks != null) {
+            callbacks.add(callback);
+            return;
+        }
+        callbacks = new ArrayList<Callback>(1);
+        callbacks.add(callback);
+        mPending.put(spec, callbacks);
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Snapshot snapshot = null;
+                Throwable error = null;
+                try {
+                    snapshot = resolveSnapshot(spec, alternatives);
+                } catch (Exception e) {
+                    error = e;
+                }
+                final Snapshot result = snapshot;
+                final Throwable failure = error;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        List<Callback> callbacks = mPending.remove(spec);
+                        if (callbacks == null) return;
+                        for (Callback callback : callbacks) {
+                            if (result != null) {
+                                callback.onSnapshotReady(spec, result.mSpec, result.mFile, result.mFallback);
+                            } else {
+                                callback.onSnapshotError(spec, failure);
+                            }
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Returns the snapshot file for `spec`, rendering it if necessary.  Blocks; call on a
+     * background thread.
+     *
+     * @throws IOException if no provider could render the snapshot.
+     */
+    public File resolve(MapSnapshotSpec spec) throws IOException {
+        return resolve(spec, Collections.<MapSnapshotSpec>emptyList());
+    }
+
+    /**
+     * Returns the snapshot file for `spec`, or a cached snapshot for one of `alternatives`,
+     * rendering `spec` if neither is cached.  Blocks; call on a background thread.
+     *
+     * @throws IOException if no provider could render the snapshot.
+     */
+    public File resolve(MapSnapshotSpec spec, List<MapSnapshotSpec> alternatives) throws IOException {
+        return resolveSnapshot(spec, alternatives).mFile;
+    }
+
+    //==============================================================================================
+    // private methods
+    //==============================================================================================
+
+    private Snapshot resolveSnapshot(MapSnapshotSpec spec, List<MapSnapshotSpec> alternatives) throws IOException {
+        MapSnapshotProvider provider = mProvider;
+        MapSnapshotProvider fallback = mFallbackProvider;
+
+        File file = mDiskCache.get(provider.getId(), spec);
+        if (file != null) {
+            AtlasMetrics.increment("mapsnapshot.cache.hit");
+            return new Snapshot(spec, file, false);
+        }
+        for (MapSnapshotSpec alternative : alternatives) {
+            file = mDiskCache.get(provider.getId(), alternative);
+            if (file != null) {
+                AtlasMetrics.increment("mapsnapshot.cache.alternative");
+                return new Snapshot(alternative, file, false);
+            }
+        }
+        AtlasMetrics.increment("mapsnapshot.cache.miss");
+        if (isBackingOff()) {
+            if (fallback == null) throw new IOException("Map snapshot provider backing off: " + spec);
+        } else {
+            try {
+                File rendered = render(provider, spec);
+                onProviderResult(true);
+                return new Snapshot(spec, rendered, false);
+            } catch (IOException e) {
+                onProviderResult(false);
+                if (fallback == null) throw e;
+                if (Log.isLoggable(Log.VERBOSE)) {
+                    Log.v("Map snapshot provider failed, using fallback: " + spec, e);
+                }
+            }
+        }
+
+        file = mDiskCache.get(fallback.getId(), spec);
+        if (file == null) file = render(fallback, spec);
+        return new Snapshot(spec, file, true);
+    }
+
+    private synchronized boolean isBackingOff() {
+        return SystemClock.elapsedRealtime() < mRetryAt;
+    }
+
+    private synchronized void onProviderResult(boolean success) {
+        if (success) {
+            mBackoffMillis = 0;
+            mRetryAt = 0;
+            return;
+        }
+        mBackoffMillis = mBackoffMillis == 0 ? MIN_BACKOFF_MILLIS : Math.min(MAX_BACKOFF_MILLIS, mBackoffMillis * 2);
+        mRetryAt = SystemClock.elapsedRealtime() + mBackoffMillis;
+    }
+
+    private File render(MapSnapshotProvider provider, MapSnapshotSpec spec) throws IOException {
+        long start = AtlasMetrics.startTimer();
+        File file = mDiskCache.put(provider, spec);
+        if (AtlasMetrics.isEnabled()) AtlasMetrics.stopTimer("mapsnapshot.render." + provider.getId(), start);
+        return file;
+    }
+
+    //==============================================================================================
+    // Inner classes
+    //==============================================================================================
+
+    public interface Callback {
+        /**
+         * @param spec     The requested snapshot.
+         * @param resolved The snapshot `file` holds: `spec`, or a cached alternative.
+         * @param fallback `true` if the snapshot came from the fallback provider, and should be
+         *                 replaced by the primary provider's once it is available.
+         */
+        void onSnapshotReady(MapSnapshotSpec spec, MapSnapshotSpec resolved, File file, boolean fallback);
+
+        void onSnapshotError(MapSnapshotSpec spec, Throwable error);
+    }
+
+    private static final class Snapshot {
+        final MapSnapshotSpec mSpec;
+        final File mFile;
+        final boolean mFallback;
+
+        Snapshot(MapSnapshotSpec spec, File file, boolean fallback) {
+            mSpec = spec;
+            mFile = file;
+            mFallback = fallback;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.layer.atlas.messagetypes.location;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Renders map snapshots for location cells.  Implementations may fetch from a remote service
+ * (e.g. GoogleStaticMapSnapshotProvider) or render locally (e.g. LocalMapSnapshotProvider).
+ *
+ * @see LocationCellFactory#setSnapshotProvider(MapSnapshotProvider, MapSnapshotProvider)
+ */
+public interface MapSnapshotProvider {
+    /**
+     * Returns an ID for this provider, distinguishing its snapshots in the on-disk cache.
+     *
+     * @return A short ID, safe for use in file names.
+     */
+    String getId();
+
+    /**
+     * Writes a snapshot centered on the spec's coordinates, with a marker at the center, as an
+     * encoded image BitmapFactory can decode, e.g. PNG or JPEG.  Remote providers should write the
+     * bytes they receive as is rather than decoding and re-encoding them.  Called on a background
+     * thread.
+     *
+     * @param spec Coordinates, zoom, and pixel size of the snapshot.
+     * @param out  Stream to write the encoded snapshot to.  The caller closes it.
+     * @throws IOException if the snapshot could not be rendered, e.g. while offline.
+     */
+    void writeSnapshot(MapSnapshotSpec spec, OutputStream out) throws IOException;
+}
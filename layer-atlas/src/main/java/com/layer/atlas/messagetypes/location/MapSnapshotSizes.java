@@ -0,0 +1,57 @@
+package com.layer.atlas.messagetypes.location;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Quantizes map snapshot widths into a few buckets, so cells of slightly different sizes (e.g.
+ * with and without avatars, or after rotation) share snapshots and cache entries.  Snapshots are
+ * rendered at the smallest bucket at least as wide as the cell and scaled down in memory.
+ */
+public class MapSnapshotSizes {
+    // The largest bucket matches the Google Static Maps maximum of 640 at scale 2
+    private static final int[] BUCKET_WIDTHS = {256, 384, 512, 768, 1024, 1280};
+
+    /**
+     * Returns a spec for the bucket that best covers `width` pixels at the given aspect ratio.
+     *
+     * @param width       Width of the cell in pixels.
+     * @param aspectRatio Width divided by height.
+     */
+    public static MapSnapshotSpec quantize(double latitude, double longitude, int zoom, int width, double aspectRatio) {
+        int bucket = BUCKET_WIDTHS[BUCKET_WIDTHS.length - 1];
+        for (int bucketWidth : BUCKET_WIDTHS) {
+            if (bucketWidth >= width) {
+                bucket = bucketWidth;
+                break;
+            }
+        }
+        return new MapSnapshotSpec(latitude, longitude, zoom, bucket, (int) Math.round(bucket / aspectRatio));
+    }
+
+    /**
+     * Returns specs for the same location in the other buckets, closest first, preferring larger
+     * snapshots (which scale down cleanly) over smaller ones.
+     *
+     * @param spec        Spec returned by quantize().
+     * @param aspectRatio Aspect ratio passed to quantize().
+     */
+    public static List<MapSnapshotSpec> alternatives(MapSnapshotSpec spec, double aspectRatio) {
+        int index = 0;
+        while (index < BUCKET_WIDTHS.length && BUCKET_WIDTHS[index] < spec.getWidth()) index++;
+
+        List<MapSnapshotSpec> alternatives = new ArrayList<MapSnapshotSpec>(BUCKET_WIDTHS.length - 1);
+        for (int i = index; i < BUCKET_WIDTHS.length; i++) {
+            if (BUCKET_WIDTHS[i] == spec.getWidth()) continue;
+            alternatives.add(withWidth(spec, BUCKET_WIDTHS[i], aspectRatio));
+        }
+        for (int i = index - 1; i >= 0; i--) {
+            alternatives.add(withWidth(spec, BUCKET_WIDTHS[i], aspectRatio));
+        }
+        return alternatives;
+    }
+
+    private static MapSnapshotSpec withWidth(MapSnapshotSpec spec, int width, double aspectRatio) {
+        return new MapSnapshotSpec(spec.getLatitude(), spec.getLongitude(), spec.getZoom(), width, (int) Math.round(width / aspectRatio));
+    }
+}
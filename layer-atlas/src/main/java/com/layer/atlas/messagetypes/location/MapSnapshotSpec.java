@@ -0,0 +1,86 @@
+package com.layer.atlas.messagetypes.location;
+
+import java.util.Locale;
+
+/**
+ * Describes a map snapshot: center coordinates, zoom level, and size in pixels.  Coordinates are
+ * rounded to five decimal places (about one meter), so nearby fixes of the same place share a
+ * cache key.
+ */
+public class MapSnapshotSpec {
+    private static final double COORDINATE_SCALE = 100000.0;
+
+    private final double mLatitude;
+    private final double mLongitude;
+    private final int mZoom;
+    private final int mWidth;
+    private final int mHeight;
+
+    public MapSnapshotSpec(double latitude, double longitude, int zoom, int width, int height) {
+        mLatitude = Math.round(latitude * COORDINATE_SCALE) / COORDINATE_SCALE;
+        mLongitude = Math.round(longitude * COORDINATE_SCALE) / COORDINATE_SCALE;
+        mZoom = zoom;
+        mWidth = width;
+        mHeight = height;
+    }
+
+    public double getLatitude() {
+        return mLatitude;
+    }
+
+    public double getLongitude() {
+        return mLongitude;
+    }
+
+    public int getZoom() {
+        return mZoom;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * Returns a key identifying this snapshot, safe for use in file names.
+     */
+    public String getCacheKey() {
+        return String.format(Locale.US, "%.5f_%.5f_z%d_%dx%d", mLatitude, mLongitude, mZoom, mWidth, mHeight);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        MapSnapshotSpec that = (MapSnapshotSpec) o;
+
+        if (Double.compare(that.mLatitude, mLatitude) != 0) return false;
+        if (Double.compare(that.mLongitude, mLongitude) != 0) return false;
+        if (mZoom != that.mZoom) return false;
+        if (mWidth != that.mWidth) return false;
+        return mHeight == that.mHeight;
+    }
+
+    @Override
+    public int hashCode() {
+        int result;
+        long temp;
+        temp = Double.doubleToLongBits(mLatitude);
+        result = (int) (temp ^ (temp >>> 32));
+        temp = Double.doubleToLongBits(mLongitude);
+        result = 31 * result + (int) (temp ^ (temp >>> 32));
+        result = 31 * result + mZoom;
+        result = 31 * result + mWidth;
+        result = 31 * result + mHeight;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return getCacheKey();
+    }
+}
@@ -16,25 +16,29 @@ import android.widget.ImageView;
 import com.layer.atlas.R;
 import com.layer.atlas.messagetypes.AtlasCellFactory;
 import com.layer.atlas.util.imagepopup.AtlasImagePopupActivity;
-import com.layer.atlas.util.picasso.transformations.RoundedTransform;
+import com.layer.atlas.util.metrics.AtlasMetrics;
+import com.layer.atlas.util.picasso.AtlasImageCache;
 import com.layer.sdk.LayerClient;
 import com.layer.sdk.messaging.Message;
 import com.layer.sdk.messaging.MessagePart;
 import com.squareup.picasso.Callback;
 import com.squareup.picasso.Picasso;
-import com.squareup.picasso.Transformation;
+
+import java.util.Collections;
+import java.util.List;
 
 /**
  * BasicImage handles non-ThreePartImage images.  It relies on the ThreePartImage RequestHandler and does not handle image rotation.
  */
 public class SinglePartImageCellFactory extends AtlasCellFactory<SinglePartImageCellFactory.CellHolder, SinglePartImageCellFactory.PartId> implements View.OnClickListener {
-    private static final String PICASSO_TAG = SinglePartImageCellFactory.class.getSimpleName();
+    public static final String PICASSO_TAG = SinglePartImageCellFactory.class.getSimpleName();
     private static final int PLACEHOLDER = com.layer.atlas.R.drawable.atlas_message_item_cell_placeholder;
     private static final int CACHE_SIZE_BYTES = 256 * 1024;
 
+    private final String mImageLoadMetric = getMetricsName() + ".image.load";
+    private final String mImageErrorMetric = getMetricsName() + ".image.error";
     private final LayerClient mLayerClient;
     private final Picasso mPicasso;
-    private Transformation mTransform;
 
     public SinglePartImageCellFactory(LayerClient mLayerClient, Picasso mPicasso) {
         super(CACHE_SIZE_BYTES);
@@ -61,17 +65,20 @@ public class SinglePartImageCellFactory extends AtlasCellFactory<SinglePartImage
         cellHolder.mImageView.setTag(index);
         cellHolder.mImageView.setOnClickListener(this);
         cellHolder.mProgressBar.show();
-        mPicasso.load(index.mId).tag(PICASSO_TAG).placeholder(PLACEHOLDER)
+        final long start = AtlasMetrics.startTimer();
+        mPicasso.load(index.mId).stableKey(AtlasImageCache.stableKey(PICASSO_TAG, index.mId)).tag(PICASSO_TAG).placeholder(PLACEHOLDER)
                 .centerInside().resize(specs.maxWidth, specs.maxHeight).onlyScaleDown()
-                .transform(getTransform(cellHolder.mImageView.getContext())).into(cellHolder.mImageView, new Callback() {
+                .into(cellHolder.mImageView, new Callback() {
             @Override
             public void onSuccess() {
                 cellHolder.mProgressBar.hide();
+                AtlasMetrics.stopTimer(mImageLoadMetric, start);
             }
 
             @Override
             public void onError() {
                 cellHolder.mProgressBar.hide();
+                AtlasMetrics.increment(mImageErrorMetric);
             }
         });
     }
@@ -128,17 +135,9 @@ public class SinglePartImageCellFactory extends AtlasCellFactory<SinglePartImage
         }
     }
 
-    //==============================================================================================
-    // private methods
-    //==============================================================================================
-
-    private Transformation getTransform(Context context) {
-        if (mTransform == null) {
-            float radius = context.getResources().getDimension(com.layer.atlas.R.dimen.atlas_message_item_cell_radius);
-            mTransform = new RoundedTransform(radius);
-        }
-
-        return mTransform;
+    @Override
+    public List<MessagePart> getPrefetchParts(Message message, boolean includeInfo) {
+        return Collections.singletonList(message.getMessageParts().get(0));
     }
 
     //==============================================================================================
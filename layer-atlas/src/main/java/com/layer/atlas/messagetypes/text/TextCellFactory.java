@@ -1,38 +1,79 @@
 package com.layer.atlas.messagetypes.text;
 
 import android.content.Context;
+import android.graphics.Typeface;
 import android.graphics.drawable.GradientDrawable;
-import android.net.Uri;
 import android.support.v4.widget.ContentLoadingProgressBar;
-import android.util.TypedValue;
+import android.text.Layout;
+import android.text.Spannable;
+import android.text.StaticLayout;
+import android.text.TextPaint;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.TextView;
 import android.widget.Toast;
 
 import com.layer.atlas.R;
 import com.layer.atlas.messagetypes.AtlasCellFactory;
 import com.layer.atlas.util.Log;
+import com.layer.atlas.util.MessagePartDownloadRegistry;
+import com.layer.atlas.util.TextPartDecoder;
 import com.layer.atlas.util.Util;
+import com.layer.atlas.util.views.TextLayoutView;
 import com.layer.sdk.LayerClient;
-import com.layer.sdk.listeners.LayerProgressListener;
 import com.layer.sdk.messaging.Identity;
 import com.layer.sdk.messaging.Message;
 import com.layer.sdk.messaging.MessagePart;
 
-import java.util.Map;
-import java.util.WeakHashMap;
-
+/**
+ * TextCellFactory renders "text/plain" Messages.  Links and mentions are detected once per
+ * Message in parseContent() on a worker thread and cached as a Spannable on the TextInfo.  The
+ * Spannable is measured and line-broken into a StaticLayout off the main thread where possible,
+ * and drawn by a TextLayoutView, so binding does no text work on the main thread.  Layouts depend
+ * on the available cell width, which is learned from the first binds; until then, and whenever
+ * the width changes, layouts are built at bind time from the cached Spannable.
+ */
 public class TextCellFactory extends AtlasCellFactory<TextCellFactory.CellHolder, TextCellFactory.TextInfo> implements View.OnLongClickListener {
     public final static String MIME_TYPE = "text/plain";
-    //This is used to bind TextView  to the exact message to ensure the right TextView is updated
-    private Map<TextView, Uri> mTextViewUriHashMap =  new WeakHashMap<>();
+    // Conversation previews show a couple of lines at most
+    private final static int PREVIEW_MAX_CHARS = 256;
+
+    private final TextLinkifier mLinkifier = new TextLinkifier();
+
+    private final MessagePartDownloadRegistry.Listener<CellHolder> mContentReadyListener = new MessagePartDownloadRegistry.Listener<CellHolder>() {
+        @Override
+        public void onContentReady(CellHolder cellHolder, MessagePart part) {
+            TextInfo info = reparseContent(cellHolder.getMessage(), (TextInfo) cellHolder.mTextView.getTag());
+            cellHolder.mTextView.setLayout(getLayout(info, cellHolder.mIsMe, cellHolder.mLayoutWidth));
+            cellHolder.mTextView.setTag(info);
+            cellHolder.mProgressBar.hide();
+        }
+
+        @Override
+        public void onContentError(CellHolder cellHolder, MessagePart part, Throwable error) {
+            cellHolder.mProgressBar.hide();
+            if (Log.isLoggable(Log.ERROR)) {
+                Log.e("Message part download error: " + part.getId(), error);
+            }
+        }
+    };
+
+    // Last known text layout widths for cells sent by others and by me, learned while binding
+    private volatile int mTheirLayoutWidth = 0;
+    private volatile int mMyLayoutWidth = 0;
 
     public TextCellFactory() {
         super(256 * 1024);
     }
 
+    /**
+     * Returns the TextLinkifier used to detect links and mentions, e.g. to set an
+     * OnMentionClickListener.
+     */
+    public TextLinkifier getLinkifier() {
+        return mLinkifier;
+    }
+
     @Override
     public boolean isBindable(Message message) {
         return isType(message);
@@ -40,22 +81,16 @@ public class TextCellFactory extends AtlasCellFactory<TextCellFactory.CellHolder
 
     @Override
     public CellHolder createCellHolder(ViewGroup cellView, boolean isMe, LayoutInflater layoutInflater) {
-        View v = layoutInflater.inflate(R.layout.atlas_message_item_cell_text, cellView, true);
+        View v = layoutInflater.inflate(R.layout.atlas_message_item_cell_text_layout, cellView, true);
         v.setBackgroundResource(isMe ? R.drawable.atlas_message_item_cell_me : R.drawable.atlas_message_item_cell_them);
         ((GradientDrawable) v.getBackground()).setColor(isMe ? mMessageStyle.getMyBubbleColor() : mMessageStyle.getOtherBubbleColor());
-
-        TextView t = (TextView) v.findViewById(R.id.cell_text);
-        t.setTextSize(TypedValue.COMPLEX_UNIT_PX, isMe ? mMessageStyle.getMyTextSize() : mMessageStyle.getOtherTextSize());
-        t.setTextColor(isMe ? mMessageStyle.getMyTextColor() : mMessageStyle.getOtherTextColor());
-        t.setLinkTextColor(isMe ? mMessageStyle.getMyTextColor() : mMessageStyle.getOtherTextColor());
-        t.setTypeface(isMe ? mMessageStyle.getMyTextTypeface() : mMessageStyle.getOtherTextTypeface(), isMe ? mMessageStyle.getMyTextStyle() : mMessageStyle.getOtherTextStyle());
         return new CellHolder(v);
     }
 
     @Override
     public TextInfo parseContent(LayerClient layerClient, Message message) {
         MessagePart part = message.getMessageParts().get(0);
-        String text = part.isContentReady() ? new String(part.getData()) : null;
+        String text = TextPartDecoder.decode(part);
         String name;
         Identity sender = message.getSender();
         if (sender != null) {
@@ -63,67 +98,114 @@ public class TextCellFactory extends AtlasCellFactory<TextCellFactory.CellHolder
         } else {
             name = "";
         }
-        return new TextInfo(text, name);
+        TextInfo info = newTextInfo(text, name);
+        Spannable spannable = info.getSpannable();
+
+        // Precompute the layout if the cell width is already known
+        if (spannable != null && mMessageStyle != null) {
+            Identity me = layerClient.getAuthenticatedUser();
+            boolean isMe = me != null && me.equals(sender);
+            int width = isMe ? mMyLayoutWidth : mTheirLayoutWidth;
+            if (width > 0) info.setLayout(buildLayout(spannable, isMe, width), width, isMe);
+        }
+        return info;
     }
 
     @Override
-    public void bindCellHolder(CellHolder cellHolder, final TextInfo parsed, Message message, CellHolderSpecs specs) {
-
-        //Checking if the TextView is being recycled, replace the value in the map with the new message id
-        if (mTextViewUriHashMap.containsKey(cellHolder.mTextView)) {
-            mTextViewUriHashMap.put(cellHolder.mTextView, message.getId());
-            cellHolder.mProgressBar.hide();
+    public void bindCellHolder(CellHolder cellHolder, TextInfo parsed, Message message, CellHolderSpecs specs) {
+        int width = getLayoutWidth(cellHolder, specs);
+        if (specs.isMe) {
+            mMyLayoutWidth = width;
+        } else {
+            mTheirLayoutWidth = width;
         }
+        cellHolder.mIsMe = specs.isMe;
+        cellHolder.mLayoutWidth = width;
 
-        String textMessage = parsed.getString();
-        //This string will be null if the message part content is not Ready
-        if (textMessage == null) {
-            if (message.getMessageParts().get(0).isContentReady()) {
-                textMessage = new String(message.getMessageParts().get(0).getData());
-            } else {
-                downloadMessage(message, cellHolder);
-                cellHolder.mProgressBar.setVisibility(View.VISIBLE);
-                cellHolder.mProgressBar.show();
-            }
+        //The string will be null if the message part content was not ready when parsed
+        MessagePart part = message.getMessageParts().get(0);
+        boolean waiting = false;
+        if (parsed.getString() == null) {
+            // Rebinds this holder once the shared download completes, unless it is recycled first
+            waiting = MessagePartDownloadRegistry.getInstance().whenReady(cellHolder, part, mContentReadyListener);
+            if (!waiting) parsed = reparseContent(message, parsed);
         }
-        cellHolder.mTextView.setText(textMessage);
+        if (waiting) {
+            cellHolder.mProgressBar.setVisibility(View.VISIBLE);
+            cellHolder.mProgressBar.show();
+        } else {
+            MessagePartDownloadRegistry.getInstance().unbind(cellHolder);
+            cellHolder.mProgressBar.hide();
+        }
+        cellHolder.mTextView.setLayout(getLayout(parsed, specs.isMe, width));
         cellHolder.mTextView.setTag(parsed);
         cellHolder.mTextView.setOnLongClickListener(this);
     }
 
-    private void downloadMessage(final Message message, final CellHolder cellHolder) {
-        final MessagePart part = message.getMessageParts().get(0);
-        final TextView textView = cellHolder.mTextView;
-        mTextViewUriHashMap.put(textView, message.getId());
-        LayerProgressListener layerProgressListener = new LayerProgressListener.Weak() {
-            @Override
-            public void onProgressStart(MessagePart messagePart, Operation operation) {}
-
-            @Override
-            public void onProgressUpdate(MessagePart messagePart, Operation operation, long l) {}
-
-            @Override
-            public void onProgressComplete(MessagePart messagePart, Operation operation) {
-                //Check the downloaded message to ensure the TextView has not been recycled
-                Uri messageId = messagePart.getMessage().getId();
-                Uri uriValueInMap = mTextViewUriHashMap.get(textView);
-                if (uriValueInMap != null && uriValueInMap.equals(messageId) ) {
-                    textView.setText(new String(part.getData()));
-                    mTextViewUriHashMap.remove(textView);
-                    cellHolder.mProgressBar.hide();
-                }
-            }
+    private TextInfo newTextInfo(String text, String clipboardPrefix) {
+        return new TextInfo(text, clipboardPrefix, text == null ? null : mLinkifier.linkify(text));
+    }
 
-            @Override
-            public void onProgressError(MessagePart messagePart, Operation operation, Throwable throwable) {
-                mTextViewUriHashMap.remove(textView);
-                cellHolder.mProgressBar.hide();
-                if (Log.isLoggable(Log.ERROR)) {
-                    Log.e("Message part download error: " + messagePart.getId(), throwable);
-                }
-            }
-        };
-        part.download(layerProgressListener);
+    /**
+     * Decodes content that became ready after the Message was parsed, and replaces the cached
+     * TextInfo so it is decoded only once.
+     */
+    private TextInfo reparseContent(Message message, TextInfo parsed) {
+        String text = TextPartDecoder.decode(message.getMessageParts().get(0));
+        if (text == null) return parsed;
+        TextInfo info = newTextInfo(text, parsed.getClipboardPrefix());
+        putParsedContent(message, info);
+        return info;
+    }
+
+    /**
+     * Returns the cached Layout for the given TextInfo, building and caching it if necessary.
+     */
+    private Layout getLayout(TextInfo info, boolean isMe, int width) {
+        if (info.getSpannable() == null) return null;
+        Layout layout = info.getLayout(width, isMe);
+        if (layout == null) {
+            layout = buildLayout(info.getSpannable(), isMe, width);
+            info.setLayout(layout, width, isMe);
+        }
+        return layout;
+    }
+
+    /**
+     * Returns the width available to the text within a cell.
+     */
+    private static int getLayoutWidth(CellHolder cellHolder, CellHolderSpecs specs) {
+        int width = specs.maxWidth - cellHolder.mCell.getPaddingLeft() - cellHolder.mCell.getPaddingRight()
+                - cellHolder.mTextView.getPaddingLeft() - cellHolder.mTextView.getPaddingRight();
+        return Math.max(1, width);
+    }
+
+    /**
+     * Measures and line-breaks the given text into a Layout no wider than `maxWidth`.  Safe to
+     * call from any thread.
+     */
+    private Layout buildLayout(Spannable spannable, boolean isMe, int maxWidth) {
+        TextPaint paint = newTextPaint(isMe);
+        int desiredWidth = (int) Math.ceil(Layout.getDesiredWidth(spannable, paint));
+        int width = Math.max(1, Math.min(desiredWidth, maxWidth));
+        return new StaticLayout(spannable, paint, width, Layout.Alignment.ALIGN_NORMAL, 1.0f, 0.0f, true);
+    }
+
+    private TextPaint newTextPaint(boolean isMe) {
+        TextPaint paint = new TextPaint(TextPaint.ANTI_ALIAS_FLAG);
+        paint.setTextSize(isMe ? mMessageStyle.getMyTextSize() : mMessageStyle.getOtherTextSize());
+        paint.setColor(isMe ? mMessageStyle.getMyTextColor() : mMessageStyle.getOtherTextColor());
+        paint.linkColor = isMe ? mMessageStyle.getMyTextColor() : mMessageStyle.getOtherTextColor();
+
+        // Mirrors TextView.setTypeface(Typeface, int), including synthetic bold and italic
+        Typeface typeface = isMe ? mMessageStyle.getMyTextTypeface() : mMessageStyle.getOtherTextTypeface();
+        int style = isMe ? mMessageStyle.getMyTextStyle() : mMessageStyle.getOtherTextStyle();
+        typeface = (typeface == null) ? Typeface.defaultFromStyle(style) : Typeface.create(typeface, style);
+        paint.setTypeface(typeface);
+        int missing = style & ~typeface.getStyle();
+        paint.setFakeBoldText((missing & Typeface.BOLD) != 0);
+        paint.setTextSkewX((missing & Typeface.ITALIC) != 0 ? -0.25f : 0);
+        return paint;
     }
 
     public boolean isType(Message message) {
@@ -135,7 +217,13 @@ public class TextCellFactory extends AtlasCellFactory<TextCellFactory.CellHolder
         if (isType(message)) {
             MessagePart part = message.getMessageParts().get(0);
             // For large text content, the MessagePart may not be downloaded yet.
-            return part.isContentReady() ? new String(part.getData()) : "";
+            if (!part.isContentReady()) return "";
+            TextInfo cached = peekParsedContent(message);
+            if (cached != null && cached.getString() != null) {
+                return TextPartDecoder.truncate(cached.getString(), PREVIEW_MAX_CHARS);
+            }
+            String preview = TextPartDecoder.decodePreview(part, PREVIEW_MAX_CHARS);
+            return preview == null ? "" : preview;
         }
         else {
             throw new IllegalArgumentException("Message is not of the correct type - Text");
@@ -155,11 +243,15 @@ public class TextCellFactory extends AtlasCellFactory<TextCellFactory.CellHolder
     }
 
     public static class CellHolder extends AtlasCellFactory.CellHolder {
-        TextView mTextView;
+        View mCell;
+        TextLayoutView mTextView;
         ContentLoadingProgressBar mProgressBar;
+        boolean mIsMe;
+        int mLayoutWidth;
 
         public CellHolder(View view) {
-            mTextView = (TextView) view.findViewById(R.id.cell_text);
+            mCell = view;
+            mTextView = (TextLayoutView) view.findViewById(R.id.cell_text);
             mProgressBar = (ContentLoadingProgressBar) view.findViewById(R.id.text_cell_progress);
         }
     }
@@ -167,13 +259,25 @@ public class TextCellFactory extends AtlasCellFactory<TextCellFactory.CellHolder
     public static class TextInfo implements AtlasCellFactory.ParsedContent {
         private final String mString;
         private final String mClipboardPrefix;
+        private final Spannable mSpannable;
         private final int mSize;
 
+        // Precomputed layout, and the width and sender it was computed for
+        private volatile LayoutEntry mLayout;
+
         public TextInfo(String string, String clipboardPrefix) {
+            this(string, clipboardPrefix, null);
+        }
+
+        public TextInfo(String string, String clipboardPrefix, Spannable spannable) {
             mString = string;
             mClipboardPrefix = clipboardPrefix;
+            mSpannable = spannable;
             int clipboardLength = mClipboardPrefix.getBytes().length;
-            mSize = (mString != null) ? mString.getBytes().length + clipboardLength : clipboardLength;
+            int size = (mString != null) ? mString.getBytes().length + clipboardLength : clipboardLength;
+            // Spannable copies the text as chars, plus a few words per span
+            if (mSpannable != null) size += 2 * mSpannable.length() + 32 * mSpannable.getSpans(0, mSpannable.length(), Object.class).length;
+            mSize = size;
         }
 
         public String getString() {
@@ -184,9 +288,43 @@ public class TextCellFactory extends AtlasCellFactory<TextCellFactory.CellHolder
             return mClipboardPrefix;
         }
 
+        /**
+         * Returns the text with precomputed link and mention spans, or `null` if the content was
+         * not ready when parsed.
+         */
+        public Spannable getSpannable() {
+            return mSpannable;
+        }
+
+        /**
+         * Returns the precomputed Layout for the given width and sender, or `null` if none has
+         * been computed.
+         */
+        public Layout getLayout(int width, boolean isMe) {
+            LayoutEntry entry = mLayout;
+            if (entry == null || entry.mWidth != width || entry.mIsMe != isMe) return null;
+            return entry.mLayout;
+        }
+
+        void setLayout(Layout layout, int width, boolean isMe) {
+            mLayout = new LayoutEntry(layout, width, isMe);
+        }
+
         @Override
         public int sizeOf() {
             return mSize;
         }
+
+        private static class LayoutEntry {
+            final Layout mLayout;
+            final int mWidth;
+            final boolean mIsMe;
+
+            LayoutEntry(Layout layout, int width, boolean isMe) {
+                mLayout = layout;
+                mWidth = width;
+                mIsMe = isMe;
+            }
+        }
     }
 }
@@ -0,0 +1,114 @@
+package com.layer.atlas.messagetypes.text;
+
+import android.graphics.Typeface;
+import android.text.Spannable;
+import android.text.SpannableString;
+import android.text.TextPaint;
+import android.text.style.ClickableSpan;
+import android.text.util.Linkify;
+import android.view.View;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * TextLinkifier detects URLs, email addresses, phone numbers, and @mentions in message text and
+ * returns a Spannable with clickable spans attached.  Detection is regex-heavy, so it is meant to
+ * run once per message on a worker thread (e.g. from AtlasCellFactory.parseContent()), with the
+ * resulting Spannable cached and attached at bind time.
+ * <p>
+ * Map addresses are not detected, since Linkify.MAP_ADDRESSES relies on WebView and must run on
+ * the main thread.
+ */
+public class TextLinkifier {
+    public static final int LINKIFY_MASK = Linkify.WEB_URLS | Linkify.EMAIL_ADDRESSES | Linkify.PHONE_NUMBERS;
+
+    // "@name" at the start of the text or after whitespace, ending on a word character so
+    // trailing punctuation such as "@sam," is not part of the name
+    private static final Pattern MENTION_PATTERN = Pattern.compile("(^|\\s)(@\\w(?:[\\w.\\-]{0,62}\\w)?)");
+
+    private volatile OnMentionClickListener mOnMentionClickListener;
+    private volatile boolean mMentionsEnabled = true;
+
+    /**
+     * Sets the listener notified when a detected @mention is clicked.  Spans created before this
+     * call also notify the new listener.
+     */
+    public TextLinkifier setOnMentionClickListener(OnMentionClickListener listener) {
+        mOnMentionClickListener = listener;
+        return this;
+    }
+
+    /**
+     * Sets whether @mentions are detected.  Defaults to `true`.
+     */
+    public TextLinkifier setMentionsEnabled(boolean enabled) {
+        mMentionsEnabled = enabled;
+        return this;
+    }
+
+    /**
+     * Returns the given text with link and mention spans attached.  Safe to call from any thread.
+     *
+     * @param text Text to linkify.
+     * @return A new Spannable containing the text and any detected spans.
+     */
+    public Spannable linkify(CharSequence text) {
+        SpannableString spannable = new SpannableString(text);
+        if (spannable.length() == 0) return spannable;
+        Linkify.addLinks(spannable, LINKIFY_MASK);
+        if (mMentionsEnabled) addMentions(spannable);
+        return spannable;
+    }
+
+    private void addMentions(Spannable spannable) {
+        Matcher matcher = MENTION_PATTERN.matcher(spannable);
+        while (matcher.find()) {
+            int start = matcher.start(2);
+            int end = matcher.end(2);
+            // Don't treat the tail of an email address or URL as a mention
+            if (spannable.getSpans(start, end, ClickableSpan.class).length > 0) continue;
+            String name = matcher.group(2).substring(1);
+            spannable.setSpan(new MentionSpan(name), start, end, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+        }
+    }
+
+    //==============================================================================================
+    // Inner classes
+    //==============================================================================================
+
+    public interface OnMentionClickListener {
+        void onMentionClick(View view, String name);
+    }
+
+    /**
+     * Span marking an @mention.  Drawn in bold, and clickable when an OnMentionClickListener is
+     * set.
+     */
+    public class MentionSpan extends ClickableSpan {
+        private final String mName;
+
+        MentionSpan(String name) {
+            mName = name;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        @Override
+        public void onClick(View widget) {
+            OnMentionClickListener listener = mOnMentionClickListener;
+            if (listener != null) listener.onMentionClick(widget, mName);
+        }
+
+        @Override
+        public void updateDrawState(TextPaint ds) {
+            Typeface current = ds.getTypeface();
+            int style = (current == null ? 0 : current.getStyle()) | Typeface.BOLD;
+            Typeface bold = Typeface.create(current, style);
+            ds.setTypeface(bold);
+            if (!bold.isBold()) ds.setFakeBoldText(true);
+        }
+    }
+}
@@ -28,9 +28,7 @@ public class TextSender extends MessageSender {
         }
         if (Log.isLoggable(Log.VERBOSE)) Log.v("Sending text message");
 
-        if (Log.isPerfLoggable()) {
-            Log.perf("TextSender is attempting to send a message");
-        }
+        long start = onSendRequested();
 
         // Create notification string
         Identity me = getLayerClient().getAuthenticatedUser();
@@ -43,6 +41,7 @@ public class TextSender extends MessageSender {
                 .text(notificationString)
                 .build();
         Message message = getLayerClient().newMessage(new MessageOptions().defaultPushNotificationPayload(payload), part);
+        onSendPrepared(message, start);
         return send(message);
     }
 }
\ No newline at end of file
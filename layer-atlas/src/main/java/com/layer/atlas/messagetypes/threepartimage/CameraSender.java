@@ -116,9 +116,7 @@ public class CameraSender extends AttachmentSender {
         }
         if (Log.isLoggable(Log.VERBOSE)) Log.v("Received camera response");
         try {
-            if (Log.isPerfLoggable()) {
-                Log.perf("CameraSender is attempting to send a message");
-            }
+            long start = onSendRequested();
             Identity me = getLayerClient().getAuthenticatedUser();
             String myName = me == null ? "" : Util.getDisplayName(me);
             Message message = ThreePartImageUtils.newThreePartImageMessage(activity, getLayerClient(), new File(mPhotoFilePath.get()));
@@ -127,6 +125,7 @@ public class CameraSender extends AttachmentSender {
                     .text(getContext().getString(R.string.atlas_notification_image, myName))
                     .build();
             message.getOptions().defaultPushNotificationPayload(payload);
+            onSendPrepared(message, start);
             send(message);
         } catch (IOException e) {
             if (Log.isLoggable(Log.ERROR)) Log.e(e.getMessage(), e);
@@ -89,9 +89,7 @@ public class GallerySender extends AttachmentSender {
         }
         if (Log.isLoggable(Log.VERBOSE)) Log.v("Received gallery response");
         try {
-            if (Log.isPerfLoggable()) {
-                Log.perf("GallerySender is attempting to send a message");
-            }
+            long start = onSendRequested();
             Identity me = getLayerClient().getAuthenticatedUser();
             String myName = me == null ? "" : Util.getDisplayName(me);
             Uri uri = data.getData();
@@ -101,6 +99,7 @@ public class GallerySender extends AttachmentSender {
                     .text(getContext().getString(R.string.atlas_notification_image, myName))
                     .build();
             message.getOptions().defaultPushNotificationPayload(payload);
+            onSendPrepared(message, start);
             send(message);
         } catch (IOException e) {
             if (Log.isLoggable(Log.ERROR)) Log.e(e.getMessage(), e);
@@ -4,7 +4,10 @@ import android.app.Activity;
 import android.app.ActivityOptions;
 import android.content.Context;
 import android.content.Intent;
+import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Parcel;
@@ -19,20 +22,23 @@ import android.widget.ImageView;
 import com.layer.atlas.R;
 import com.layer.atlas.messagetypes.AtlasCellFactory;
 import com.layer.atlas.util.Log;
+import com.layer.atlas.util.MessagePartDownloadRegistry;
+import com.layer.atlas.util.MessagePartDownloader;
 import com.layer.atlas.util.Util;
 import com.layer.atlas.util.imagepopup.AtlasImagePopupActivity;
-import com.layer.atlas.util.picasso.transformations.RoundedTransform;
+import com.layer.atlas.util.metrics.AtlasMetrics;
+import com.layer.atlas.util.picasso.AtlasImageCache;
 import com.layer.sdk.LayerClient;
 import com.layer.sdk.messaging.Message;
 import com.layer.sdk.messaging.MessagePart;
 import com.squareup.picasso.Callback;
 import com.squareup.picasso.Picasso;
 import com.squareup.picasso.RequestCreator;
-import com.squareup.picasso.Transformation;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -41,14 +47,28 @@ import java.util.List;
  * for sizing and rotating images efficiently.
  */
 public class ThreePartImageCellFactory extends AtlasCellFactory<ThreePartImageCellFactory.CellHolder, ThreePartImageCellFactory.Info> implements View.OnClickListener {
-    private static final String PICASSO_TAG = ThreePartImageCellFactory.class.getSimpleName();
+    public static final String PICASSO_TAG = ThreePartImageCellFactory.class.getSimpleName();
 
     private static final int PLACEHOLDER = R.drawable.atlas_message_item_cell_placeholder;
     private static final int CACHE_SIZE_BYTES = 256 * 1024;
 
+    private final String mImageLoadMetric = getMetricsName() + ".image.load";
+    private final String mImageErrorMetric = getMetricsName() + ".image.error";
     private final LayerClient mLayerClient;
     private final Picasso mPicasso;
-    private Transformation mTransform;
+
+    private final MessagePartDownloadRegistry.Listener<CellHolder> mReloadListener = new MessagePartDownloadRegistry.Listener<CellHolder>() {
+        @Override
+        public void onContentReady(CellHolder cellHolder, MessagePart part) {
+            cellHolder.mProgressBar.show();
+            loadPreview(cellHolder, (Info) cellHolder.mImageView.getTag(), part.getId(), cellHolder.mCellDims);
+        }
+
+        @Override
+        public void onContentError(CellHolder cellHolder, MessagePart part, Throwable error) {
+            // Leave the placeholder in place
+        }
+    };
 
     public ThreePartImageCellFactory(LayerClient mLayerClient, Picasso mPicasso) {
         super(CACHE_SIZE_BYTES);
@@ -62,8 +82,6 @@ public class ThreePartImageCellFactory extends AtlasCellFactory<ThreePartImageCe
     @Deprecated
     public ThreePartImageCellFactory(Activity activity, LayerClient layerClient, Picasso picasso) {
         this(layerClient, picasso);
-        float radius = activity.getResources().getDimension(com.layer.atlas.R.dimen.atlas_message_item_cell_radius);
-        mTransform = new RoundedTransform(radius);
     }
 
     @Override
@@ -78,7 +96,11 @@ public class ThreePartImageCellFactory extends AtlasCellFactory<ThreePartImageCe
 
     @Override
     public Info parseContent(LayerClient layerClient, Message message) {
-        return getInfo(message);
+        Info info = getInfo(message);
+        if (info != null) {
+            info.placeholderBitmap = ThreePartImagePlaceholder.decode(info.placeholder, info.orientation);
+        }
+        return info;
     }
 
     @Override
@@ -87,13 +109,53 @@ public class ThreePartImageCellFactory extends AtlasCellFactory<ThreePartImageCe
         cellHolder.mImageView.setOnClickListener(this);
         MessagePart preview = ThreePartImageUtils.getPreviewPart(message);
 
+        // Release any loader thread still waiting on the part this holder was previously bound to
+        if (cellHolder.mBoundPartId != null && !cellHolder.mBoundPartId.equals(preview.getId())) {
+            MessagePartDownloader.getInstance().cancel(cellHolder.mBoundPartId);
+        }
+        cellHolder.mBoundPartId = preview.getId();
+        MessagePartDownloadRegistry.getInstance().unbind(cellHolder);
+
         // Info width and height are the rotated width and height, though the content is not pre-rotated.
         int[] cellDims = Util.scaleDownInside(info.width, info.height, specs.maxWidth, specs.maxHeight);
         ViewGroup.LayoutParams params = cellHolder.mImageView.getLayoutParams();
         params.width = cellDims[0];
         params.height = cellDims[1];
+        cellHolder.mCellDims = cellDims;
         cellHolder.mProgressBar.show();
-        RequestCreator creator = mPicasso.load(preview.getId()).tag(PICASSO_TAG).placeholder(PLACEHOLDER);
+        loadPreview(cellHolder, info, preview.getId(), cellDims);
+
+        cellHolder.mImageView.setOnLongClickListener(new View.OnLongClickListener() {
+            @Override
+            public boolean onLongClick(View v) {
+                MessagePart full = ThreePartImageUtils.getFullPart(message);
+                MessagePart preview = ThreePartImageUtils.getPreviewPart(message);
+                MessagePart info = ThreePartImageUtils.getInfoPart(message);
+
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inJustDecodeBounds = true;
+
+                BitmapFactory.decodeStream(full.getDataStream(), null, options);
+                Log.v("Full size: " + options.outWidth + "x" + options.outHeight);
+
+                BitmapFactory.decodeStream(preview.getDataStream(), null, options);
+                Log.v("Preview size: " + options.outWidth + "x" + options.outHeight);
+
+                Log.v("Info: " + new String(info.getData()));
+
+                return false;
+            }
+        });
+    }
+
+    private void loadPreview(final CellHolder cellHolder, final Info info, final Uri previewId, final int[] cellDims) {
+        final long start = AtlasMetrics.startTimer();
+        RequestCreator creator = mPicasso.load(previewId).stableKey(AtlasImageCache.stableKey(PICASSO_TAG, previewId)).tag(PICASSO_TAG);
+        if (info.placeholderBitmap != null) {
+            creator.placeholder(new BitmapDrawable(cellHolder.mImageView.getResources(), info.placeholderBitmap));
+        } else {
+            creator.placeholder(PLACEHOLDER);
+        }
         switch (info.orientation) {
             case ThreePartImageUtils.ORIENTATION_0:
                 creator.resize(cellDims[0], cellDims[1]);
@@ -109,37 +171,23 @@ public class ThreePartImageCellFactory extends AtlasCellFactory<ThreePartImageCe
                 break;
         }
 
-        creator.transform(getTransform(cellHolder.mImageView.getContext())).into(cellHolder.mImageView, new Callback() {
+        creator.into(cellHolder.mImageView, new Callback() {
             @Override
             public void onSuccess() {
                 cellHolder.mProgressBar.hide();
+                AtlasMetrics.stopTimer(mImageLoadMetric, start);
             }
 
             @Override
             public void onError() {
                 cellHolder.mProgressBar.hide();
-            }
-        });
-
-        cellHolder.mImageView.setOnLongClickListener(new View.OnLongClickListener() {
-            @Override
-            public boolean onLongClick(View v) {
-                MessagePart full = ThreePartImageUtils.getFullPart(message);
-                MessagePart preview = ThreePartImageUtils.getPreviewPart(message);
-                MessagePart info = ThreePartImageUtils.getInfoPart(message);
-
-                BitmapFactory.Options options = new BitmapFactory.Options();
-                options.inJustDecodeBounds = true;
-
-                BitmapFactory.decodeStream(full.getDataStream(), null, options);
-                Log.v("Full size: " + options.outWidth + "x" + options.outHeight);
-
-                BitmapFactory.decodeStream(preview.getDataStream(), null, options);
-                Log.v("Preview size: " + options.outWidth + "x" + options.outHeight);
-
-                Log.v("Info: " + new String(info.getData()));
-
-                return false;
+                AtlasMetrics.increment(mImageErrorMetric);
+                // The loader may give up on a part that is still downloading (e.g. when it could
+                // not block a Picasso thread), so retry once the shared download completes.
+                MessagePart preview = ThreePartImageUtils.getPreviewPart(cellHolder.getMessage());
+                if (previewId.equals(preview.getId())) {
+                    MessagePartDownloadRegistry.getInstance().whenReady(cellHolder, preview, mReloadListener);
+                }
             }
         });
     }
@@ -150,6 +198,16 @@ public class ThreePartImageCellFactory extends AtlasCellFactory<ThreePartImageCe
         Context context = v.getContext();
         if (context == null) return;
         Info info = (Info) v.getTag();
+
+        // Hand over the displayed preview so the popup can show it instantly
+        Drawable drawable = ((ImageView) v).getDrawable();
+        if (drawable instanceof BitmapDrawable) {
+            Bitmap bitmap = ((BitmapDrawable) drawable).getBitmap();
+            if (bitmap != null && bitmap != info.placeholderBitmap) {
+                AtlasImagePopupActivity.setPreviewBitmap(info.previewPartId, bitmap);
+            }
+        }
+
         Intent intent = new Intent(context, AtlasImagePopupActivity.class);
         intent.putExtra("previewId", info.previewPartId);
         intent.putExtra("fullId", info.fullPartId);
@@ -175,19 +233,18 @@ public class ThreePartImageCellFactory extends AtlasCellFactory<ThreePartImageCe
         }
     }
 
+    @Override
+    public List<MessagePart> getPrefetchParts(Message message, boolean includeInfo) {
+        List<MessagePart> parts = new ArrayList<MessagePart>(2);
+        parts.add(ThreePartImageUtils.getPreviewPart(message));
+        if (includeInfo) parts.add(ThreePartImageUtils.getInfoPart(message));
+        return parts;
+    }
+
     //==============================================================================================
     // private methods
     //==============================================================================================
 
-    private Transformation getTransform(Context context) {
-        if (mTransform == null) {
-            float radius = context.getResources().getDimension(com.layer.atlas.R.dimen.atlas_message_item_cell_radius);
-            mTransform = new RoundedTransform(radius);
-        }
-
-        return mTransform;
-    }
-
     //==============================================================================================
     // Static utilities
     //==============================================================================================
@@ -217,6 +274,7 @@ public class ThreePartImageCellFactory extends AtlasCellFactory<ThreePartImageCe
             info.orientation = infoObject.getInt("orientation");
             info.width = infoObject.getInt("width");
             info.height = infoObject.getInt("height");
+            info.placeholder = infoObject.optString(ThreePartImagePlaceholder.JSON_KEY, null);
             info.previewPartId = ThreePartImageUtils.getPreviewPart(message).getId();
             info.fullPartId = ThreePartImageUtils.getFullPart(message).getId();
             return info;
@@ -239,10 +297,17 @@ public class ThreePartImageCellFactory extends AtlasCellFactory<ThreePartImageCe
         public int height;
         public Uri fullPartId;
         public Uri previewPartId;
+        public String placeholder;
+
+        // Decoded from `placeholder` in parseContent(); not parceled.
+        public Bitmap placeholderBitmap;
 
         @Override
         public int sizeOf() {
-            return ((Integer.SIZE + Integer.SIZE + Integer.SIZE) / Byte.SIZE) + fullPartId.toString().getBytes().length + previewPartId.toString().getBytes().length;
+            int size = ((Integer.SIZE + Integer.SIZE + Integer.SIZE) / Byte.SIZE) + fullPartId.toString().getBytes().length + previewPartId.toString().getBytes().length;
+            if (placeholder != null) size += placeholder.length();
+            if (placeholderBitmap != null) size += placeholderBitmap.getRowBytes() * placeholderBitmap.getHeight();
+            return size;
         }
 
         @Override
@@ -276,6 +341,8 @@ public class ThreePartImageCellFactory extends AtlasCellFactory<ThreePartImageCe
     static class CellHolder extends AtlasCellFactory.CellHolder {
         ImageView mImageView;
         ContentLoadingProgressBar mProgressBar;
+        Uri mBoundPartId;
+        int[] mCellDims;
 
         public CellHolder(View view) {
             mImageView = (ImageView) view.findViewById(R.id.cell_image);
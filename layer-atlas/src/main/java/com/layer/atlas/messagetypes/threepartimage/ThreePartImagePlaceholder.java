@@ -0,0 +1,136 @@
+package com.layer.atlas.messagetypes.threepartimage;
+
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
+import android.util.Base64;
+
+import com.layer.atlas.util.Log;
+
+/**
+ * ThreePartImagePlaceholder encodes and decodes the compact perceptual placeholder embedded in a
+ * ThreePartImage info part.  The placeholder is a grid of at most 4x4 averaged RGB565 colors
+ * (33 bytes including a one-byte header), stored as Base64 in the info JSON.  When drawn with
+ * bitmap filtering at cell size, it renders as a soft blur of the image at the correct aspect
+ * ratio while the preview part downloads.
+ * <p>
+ * Like the preview part, the placeholder is stored un-rotated; the info orientation is applied
+ * when decoding.
+ */
+public class ThreePartImagePlaceholder {
+    public static final String JSON_KEY = "placeholder";
+
+    private static final int MAX_GRID_SIZE = 4;
+    private static final int BYTES_PER_COLOR = 2;
+
+    /**
+     * Encodes a placeholder for the given bitmap by averaging it into a small color grid whose
+     * aspect ratio approximates the bitmap's.
+     *
+     * @param bitmap Bitmap to summarize, typically the already-decoded preview bitmap.
+     * @return Base64 placeholder string, or `null` if the bitmap could not be encoded.
+     */
+    public static String encode(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) return null;
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        if (width <= 0 || height <= 0) return null;
+
+        int gridWidth;
+        int gridHeight;
+        if (width >= height) {
+            gridWidth = MAX_GRID_SIZE;
+            gridHeight = clamp(Math.round((float) MAX_GRID_SIZE * height / width), 1, MAX_GRID_SIZE);
+        } else {
+            gridHeight = MAX_GRID_SIZE;
+            gridWidth = clamp(Math.round((float) MAX_GRID_SIZE * width / height), 1, MAX_GRID_SIZE);
+        }
+
+        // Box-average the bitmap into the grid one row at a time to avoid copying all pixels.
+        long[] sums = new long[gridWidth * gridHeight * 3];
+        int[] counts = new int[gridWidth * gridHeight];
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            bitmap.getPixels(row, 0, width, 0, y, width, 1);
+            int gridRow = (y * gridHeight / height) * gridWidth;
+            for (int x = 0; x < width; x++) {
+                int cell = gridRow + (x * gridWidth / width);
+                int color = row[x];
+                sums[cell * 3] += (color >> 16) & 0xFF;
+                sums[cell * 3 + 1] += (color >> 8) & 0xFF;
+                sums[cell * 3 + 2] += color & 0xFF;
+                counts[cell]++;
+            }
+        }
+
+        byte[] data = new byte[1 + counts.length * BYTES_PER_COLOR];
+        data[0] = (byte) (((gridWidth - 1) << 4) | (gridHeight - 1));
+        for (int cell = 0; cell < counts.length; cell++) {
+            int count = Math.max(1, counts[cell]);
+            int r = (int) (sums[cell * 3] / count);
+            int g = (int) (sums[cell * 3 + 1] / count);
+            int b = (int) (sums[cell * 3 + 2] / count);
+            int rgb565 = ((r >> 3) << 11) | ((g >> 2) << 5) | (b >> 3);
+            data[1 + cell * BYTES_PER_COLOR] = (byte) (rgb565 >> 8);
+            data[2 + cell * BYTES_PER_COLOR] = (byte) rgb565;
+        }
+        return Base64.encodeToString(data, Base64.NO_WRAP);
+    }
+
+    /**
+     * Decodes a placeholder string into a tiny bitmap rotated for display.  Intended to be called
+     * off the main thread from parseContent().
+     *
+     * @param placeholder Base64 placeholder string from the info part.
+     * @param orientation One of the ThreePartImageUtils ORIENTATION constants.
+     * @return Tiny placeholder bitmap, or `null` if the placeholder is missing or malformed.
+     */
+    public static Bitmap decode(String placeholder, int orientation) {
+        if (placeholder == null || placeholder.isEmpty()) return null;
+        byte[] data;
+        try {
+            data = Base64.decode(placeholder, Base64.NO_WRAP);
+        } catch (IllegalArgumentException e) {
+            if (Log.isLoggable(Log.WARN)) {
+                Log.w("Invalid image placeholder: " + placeholder, e);
+            }
+            return null;
+        }
+        if (data.length < 1) return null;
+        int gridWidth = ((data[0] >> 4) & 0x0F) + 1;
+        int gridHeight = (data[0] & 0x0F) + 1;
+        int cells = gridWidth * gridHeight;
+        if (data.length != 1 + cells * BYTES_PER_COLOR) return null;
+
+        int[] colors = new int[cells];
+        for (int cell = 0; cell < cells; cell++) {
+            int rgb565 = ((data[1 + cell * BYTES_PER_COLOR] & 0xFF) << 8) | (data[2 + cell * BYTES_PER_COLOR] & 0xFF);
+            int r = (rgb565 >> 11) & 0x1F;
+            int g = (rgb565 >> 5) & 0x3F;
+            int b = rgb565 & 0x1F;
+            colors[cell] = 0xFF000000 | (((r << 3) | (r >> 2)) << 16) | (((g << 2) | (g >> 4)) << 8) | ((b << 3) | (b >> 2));
+        }
+        Bitmap bitmap = Bitmap.createBitmap(colors, gridWidth, gridHeight, Bitmap.Config.ARGB_8888);
+
+        int degrees;
+        switch (orientation) {
+            case ThreePartImageUtils.ORIENTATION_0:
+                return bitmap;
+            case ThreePartImageUtils.ORIENTATION_90:
+                degrees = -90;
+                break;
+            case ThreePartImageUtils.ORIENTATION_180:
+                degrees = 180;
+                break;
+            default:
+                degrees = 90;
+                break;
+        }
+        Matrix matrix = new Matrix();
+        matrix.postRotate(degrees);
+        return Bitmap.createBitmap(bitmap, 0, 0, gridWidth, gridHeight, matrix, false);
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
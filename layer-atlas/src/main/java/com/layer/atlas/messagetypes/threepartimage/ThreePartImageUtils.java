@@ -49,6 +49,23 @@ public class ThreePartImageUtils {
     public static final String MIME_TYPE_FILTER_IMAGE = "image/*";
     public static final String MIME_TYPE_IMAGE_JPEG = "image/jpeg";
 
+    private static volatile boolean sPlaceholderEnabled = true;
+
+    /**
+     * Sets whether new ThreePartImage Messages embed a compact placeholder in their info part.
+     * Defaults to `true`.  Receivers that do not understand the placeholder ignore it.
+     *
+     * @param enabled `true` to embed placeholders in new info parts, or `false` otherwise.
+     * @see ThreePartImagePlaceholder
+     */
+    public static void setPlaceholderEnabled(boolean enabled) {
+        sPlaceholderEnabled = enabled;
+    }
+
+    public static boolean isPlaceholderEnabled() {
+        return sPlaceholderEnabled;
+    }
+
     public static MessagePart getInfoPart(Message message) {
         return message.getMessageParts().get(PART_INDEX_INFO);
     }
@@ -131,14 +148,17 @@ public class ThreePartImageUtils {
         BitmapFactory.Options bounds = getBounds(new FileInputStream(file.getAbsolutePath()));
         ExifInterface exifData = getExifData(file);
 
-        // Create info message part
-        MessagePart info = buildInfoMessagePart(client, bounds, exifData);
-
-        // Create Preview message part
+        // Decode preview bitmap
         if (Log.isLoggable(Log.VERBOSE)) {
             Log.v("Creating Preview from '" + file.getAbsolutePath() + "'");
         }
-        MessagePart preview = buildPreviewMessagePart(context, client, new FileInputStream(file.getAbsolutePath()), bounds, exifData);
+        Bitmap previewBitmap = getPreviewBitmap(bounds, new FileInputStream(file.getAbsolutePath()));
+
+        // Create info message part
+        MessagePart info = buildInfoMessagePart(client, bounds, exifData, previewBitmap);
+
+        // Create Preview message part
+        MessagePart preview = buildPreviewMessagePart(context, client, previewBitmap, exifData);
 
         // Create Full message part
         MessagePart full = client.newMessagePart(MIME_TYPE_IMAGE_JPEG, new FileInputStream(file), file.length());
@@ -192,15 +212,19 @@ public class ThreePartImageUtils {
     }
 
     private static MessagePart buildInfoMessagePart(LayerClient client, BitmapFactory.Options bounds,
-                                                    ExifInterface exifData) throws IOException {
+                                                    ExifInterface exifData, Bitmap previewBitmap) throws IOException {
         int[] orientationData = getOrientationData(exifData);
         int orientation = orientationData[0];
 
         boolean isSwap = orientation == ORIENTATION_270 || orientation == ORIENTATION_90;
 
+        String placeholder = sPlaceholderEnabled ? ThreePartImagePlaceholder.encode(previewBitmap) : null;
+
         String intoString = "{\"orientation\":" + orientation + ", \"width\":"
                 + (!isSwap ? bounds.outWidth : bounds.outHeight) + ", \"height\":"
-                + (!isSwap ? bounds.outHeight : bounds.outWidth) + "}";
+                + (!isSwap ? bounds.outHeight : bounds.outWidth)
+                + (placeholder != null ? ", \"" + ThreePartImagePlaceholder.JSON_KEY + "\":\"" + placeholder + "\"" : "")
+                + "}";
 
         if (Log.isLoggable(Log.VERBOSE)) {
             Log.v("Creating image info: " + intoString);
@@ -246,10 +270,9 @@ public class ThreePartImageUtils {
         }
     }
 
-    private static MessagePart buildPreviewMessagePart(Context context, LayerClient client, InputStream inputStream,
-                                                       BitmapFactory.Options bounds, ExifInterface exifData) throws IOException {
+    private static MessagePart buildPreviewMessagePart(Context context, LayerClient client, Bitmap previewBitmap,
+                                                       ExifInterface exifData) throws IOException {
 
-        Bitmap previewBitmap = getPreviewBitmap(bounds, inputStream);
         File temp = new File(context.getCacheDir(), ThreePartImageUtils.class.getSimpleName() + "." + System.nanoTime() + ".jpg");
         FileOutputStream previewStream = new FileOutputStream(temp);
 
@@ -285,15 +308,18 @@ public class ThreePartImageUtils {
         inputStream = context.getContentResolver().openInputStream(uri);
         BitmapFactory.Options bounds = getBounds(inputStream);
 
-        // Create info message part
-        MessagePart info = buildInfoMessagePart(client, bounds, exifData);
-
-        // Create Preview message part
+        // Decode preview bitmap
         if (Log.isLoggable(Log.VERBOSE)) {
             Log.v("Creating Preview from " + uri.toString());
         }
         inputStream = context.getContentResolver().openInputStream(uri);
-        MessagePart preview = buildPreviewMessagePart(context, client, inputStream, bounds, exifData);
+        Bitmap previewBitmap = getPreviewBitmap(bounds, inputStream);
+
+        // Create info message part
+        MessagePart info = buildInfoMessagePart(client, bounds, exifData, previewBitmap);
+
+        // Create Preview message part
+        MessagePart preview = buildPreviewMessagePart(context, client, previewBitmap, exifData);
 
         // Create Full message part
         inputStream = context.getContentResolver().openInputStream(uri);
@@ -18,27 +18,47 @@ import com.layer.sdk.listeners.LayerTypingIndicatorListener;
 import com.layer.sdk.messaging.Identity;
 import com.squareup.picasso.Picasso;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Set;
 
-public class AvatarTypingIndicatorFactory implements AtlasTypingIndicator.TypingIndicatorFactory<LinearLayout> {
+/**
+ * Shows an avatar for each typist followed by animated dots.  At most getMaxTypists() avatars are
+ * shown; avatars of finished typists are recycled for new typists.
+ */
+public class AvatarTypingIndicatorFactory implements AtlasTypingIndicator.IncrementalTypingIndicatorFactory<LinearLayout> {
     private static final String TAG = AvatarTypingIndicatorFactory.class.getSimpleName();
 
     private static final int DOT_RES_ID = R.drawable.atlas_typing_indicator_dot;
     private static final float DOT_ON_ALPHA = 0.31f;
     private static final long ANIMATION_PERIOD = 600;
     private static final long ANIMATION_OFFSET = ANIMATION_PERIOD / 3;
+    private static final int DEFAULT_MAX_TYPISTS = 5;
 
     private final Picasso mPicasso;
+    private int mMaxTypists = DEFAULT_MAX_TYPISTS;
 
     public AvatarTypingIndicatorFactory(Picasso picasso) {
         mPicasso = picasso;
     }
 
+    /**
+     * Sets the maximum number of typist avatars to show.  Typists beyond the maximum are shown as
+     * shown typists finish.
+     *
+     * @param maxTypists Maximum number of avatars to show.
+     * @return This AvatarTypingIndicatorFactory.
+     */
+    public AvatarTypingIndicatorFactory setMaxTypists(int maxTypists) {
+        mMaxTypists = Math.max(0, maxTypists);
+        return this;
+    }
+
+    public int getMaxTypists() {
+        return mMaxTypists;
+    }
+
     @Override
     public LinearLayout onCreateView(Context context) {
         Tag tag = new Tag();
@@ -84,46 +104,40 @@ public class AvatarTypingIndicatorFactory implements AtlasTypingIndicator.Typing
 
     @Override
     public void onBindView(LinearLayout l, Map<Identity, LayerTypingIndicatorListener.TypingIndicator> typingUserIds) {
-        @SuppressWarnings("unchecked")
         Tag tag = (Tag) l.getTag();
+        onBindView(l, typingUserIds, AtlasTypingIndicator.TypistDiff.between(tag.mActives.keySet(), typingUserIds));
+    }
 
-        int avatarSpace = l.getResources().getDimensionPixelSize(R.dimen.atlas_padding_narrow);
-        int avatarDim = l.getResources().getDimensionPixelSize(R.dimen.atlas_message_avatar_item_single);
-
-        // Iterate over existing typists and remove non-typists
-        List<AtlasAvatar> newlyFinished = new ArrayList<AtlasAvatar>();
-        Set<Identity> newlyActives = new HashSet<>(typingUserIds.keySet());
-        for (AtlasAvatar avatar : tag.mActives) {
-            Identity existingTypist = avatar.getParticipants().iterator().next();
-            if (!typingUserIds.containsKey(existingTypist) || (typingUserIds.get(existingTypist) == LayerTypingIndicatorListener.TypingIndicator.FINISHED)) {
-                // Newly finished
-                newlyFinished.add(avatar);
-            } else {
-                // Existing started or paused
-                avatar.setAlpha(typingUserIds.get(existingTypist) == LayerTypingIndicatorListener.TypingIndicator.STARTED ? 1f : 0.5f);
-                newlyActives.remove(existingTypist);
-            }
-        }
-        for (AtlasAvatar avatar : newlyFinished) {
-            tag.mActives.remove(avatar);
-            tag.mPassives.add(avatar);
+    @Override
+    public void onBindView(LinearLayout l, Map<Identity, LayerTypingIndicatorListener.TypingIndicator> typingUserIds, AtlasTypingIndicator.TypistDiff diff) {
+        Tag tag = (Tag) l.getTag();
+
+        // Recycle avatars of finished typists
+        for (Identity typist : diff.getRemoved()) {
+            AtlasAvatar avatar = tag.mActives.remove(typist);
+            if (avatar == null) continue;
             l.removeView(avatar);
+            tag.mPassives.add(avatar);
+        }
+
+        // Update shown typists that changed between started and paused
+        for (Identity typist : diff.getChanged()) {
+            AtlasAvatar avatar = tag.mActives.get(typist);
+            if (avatar != null) avatar.setAlpha(getAlpha(typingUserIds.get(typist)));
+        }
+
+        // Show new typists up to the maximum
+        for (Identity typist : diff.getAdded()) {
+            if (tag.mActives.size() >= mMaxTypists) break;
+            showTypist(l, tag, typist, typingUserIds.get(typist));
         }
 
-        // Add new typists
-        for (Identity typist : newlyActives) {
-            AtlasAvatar avatar = tag.mPassives.poll();
-            if (avatar == null) {
-                // TODO: allow styling
-                avatar = new AtlasAvatar(l.getContext()).init(mPicasso);
-                LinearLayout.LayoutParams params = new LinearLayout.LayoutParams(avatarDim, avatarDim);
-                params.setMargins(0, 0, avatarSpace, 0);
-                avatar.setLayoutParams(params);
+        // Fill slots freed by finished typists with typists not yet shown
+        if (tag.mActives.size() < mMaxTypists && tag.mActives.size() < typingUserIds.size()) {
+            for (Map.Entry<Identity, LayerTypingIndicatorListener.TypingIndicator> entry : typingUserIds.entrySet()) {
+                if (tag.mActives.size() >= mMaxTypists) break;
+                if (!tag.mActives.containsKey(entry.getKey())) showTypist(l, tag, entry.getKey(), entry.getValue());
             }
-            avatar.setAlpha(typingUserIds.get(typist) == LayerTypingIndicatorListener.TypingIndicator.STARTED ? 1f : 0.5f);
-            tag.mActives.add(avatar);
-            l.addView(avatar, 0);
-            avatar.setParticipants(typist);
         }
 
         // Dot animations
@@ -131,16 +145,13 @@ public class AvatarTypingIndicatorFactory implements AtlasTypingIndicator.Typing
         View dot2 = tag.mDots.get(1);
         View dot3 = tag.mDots.get(2);
 
-        Boolean animating = (Boolean) dot1.getTag();
-        if (animating == null) animating = false;
-
-        if (animating && typingUserIds.isEmpty()) {
+        if (tag.mAnimating && typingUserIds.isEmpty()) {
             // Stop animating
             dot1.clearAnimation();
             dot2.clearAnimation();
             dot3.clearAnimation();
-            dot1.setTag(true);
-        } else if (!animating && !typingUserIds.isEmpty()) {
+            tag.mAnimating = false;
+        } else if (!tag.mAnimating && !typingUserIds.isEmpty()) {
             // Start animating
             dot1.setAlpha(DOT_ON_ALPHA);
             dot2.setAlpha(DOT_ON_ALPHA);
@@ -148,8 +159,29 @@ public class AvatarTypingIndicatorFactory implements AtlasTypingIndicator.Typing
             startAnimation(dot1, ANIMATION_PERIOD, 0);
             startAnimation(dot2, ANIMATION_PERIOD, ANIMATION_OFFSET);
             startAnimation(dot3, ANIMATION_PERIOD, ANIMATION_OFFSET + ANIMATION_OFFSET);
-            dot1.setTag(false);
+            tag.mAnimating = true;
+        }
+    }
+
+    private void showTypist(LinearLayout l, Tag tag, Identity typist, LayerTypingIndicatorListener.TypingIndicator indicator) {
+        AtlasAvatar avatar = tag.mPassives.poll();
+        if (avatar == null) {
+            // TODO: allow styling
+            int avatarSpace = l.getResources().getDimensionPixelSize(R.dimen.atlas_padding_narrow);
+            int avatarDim = l.getResources().getDimensionPixelSize(R.dimen.atlas_message_avatar_item_single);
+            avatar = new AtlasAvatar(l.getContext()).init(mPicasso);
+            LinearLayout.LayoutParams params = new LinearLayout.LayoutParams(avatarDim, avatarDim);
+            params.setMargins(0, 0, avatarSpace, 0);
+            avatar.setLayoutParams(params);
         }
+        avatar.setAlpha(getAlpha(indicator));
+        tag.mActives.put(typist, avatar);
+        l.addView(avatar, tag.mActives.size() - 1);
+        avatar.setParticipants(typist);
+    }
+
+    private static float getAlpha(LayerTypingIndicatorListener.TypingIndicator indicator) {
+        return indicator == LayerTypingIndicatorListener.TypingIndicator.STARTED ? 1f : 0.5f;
     }
 
     /**
@@ -219,7 +251,9 @@ public class AvatarTypingIndicatorFactory implements AtlasTypingIndicator.Typing
 
     private static class Tag {
         public final ArrayList<View> mDots = new ArrayList<View>(3);
-        public final LinkedList<AtlasAvatar> mActives = new LinkedList<AtlasAvatar>();
-        public final LinkedList<AtlasAvatar> mPassives = new LinkedList<AtlasAvatar>();
+        // Shown avatars in display order; recycled avatars never exceed the maximum shown
+        public final LinkedHashMap<Identity, AtlasAvatar> mActives = new LinkedHashMap<Identity, AtlasAvatar>();
+        public final ArrayDeque<AtlasAvatar> mPassives = new ArrayDeque<AtlasAvatar>();
+        public boolean mAnimating;
     }
 }
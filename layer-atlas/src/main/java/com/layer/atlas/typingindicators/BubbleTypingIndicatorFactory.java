@@ -93,7 +93,7 @@ public class BubbleTypingIndicatorFactory implements AtlasTypingIndicator.Typing
             dot1.clearAnimation();
             dot2.clearAnimation();
             dot3.clearAnimation();
-            dot1.setTag(true);
+            dot1.setTag(false);
         } else if (!animating && !typingUserIds.isEmpty()) {
             // Start animating
             dot1.setAlpha(DOT_ON_ALPHA);
@@ -102,7 +102,7 @@ public class BubbleTypingIndicatorFactory implements AtlasTypingIndicator.Typing
             startAnimation(dot1, ANIMATION_PERIOD, 0);
             startAnimation(dot2, ANIMATION_PERIOD, ANIMATION_OFFSET);
             startAnimation(dot3, ANIMATION_PERIOD, ANIMATION_OFFSET + ANIMATION_OFFSET);
-            dot1.setTag(false);
+            dot1.setTag(true);
         }
     }
 
@@ -0,0 +1,162 @@
+package com.layer.atlas.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * ExpiryWheel expires keys that have not been touched within a timeout, using a single hashed
+ * timer wheel instead of one timer per key.  Each key lives in the slot for the tick of its
+ * deadline; touching a key moves it to a later slot in constant time.  One scheduled tick per
+ * resolution interval, only while keys are tracked, expires all due keys in a single batch.
+ * <p>
+ * Keys expire between `timeout` and `timeout + resolution` after their last touch.  ExpiryWheel
+ * is thread-safe; the Listener is called on the Scheduler's thread without holding a lock.
+ *
+ * @param <K> Key type.
+ */
+public class ExpiryWheel<K> {
+    private final Scheduler mScheduler;
+    private final Listener<K> mListener;
+    private final long mTimeoutMillis;
+    private final long mResolutionMillis;
+
+    private final List<Set<K>> mSlots;
+    private final Map<K, Long> mDeadlineTicks = new HashMap<K, Long>();
+    private long mNextTick;
+    private Object mTickToken;
+
+    private final Runnable mTickRunnable = new Runnable() {
+        @Override
+        public void run() {
+            tick();
+        }
+    };
+
+    /**
+     * @param scheduler        Scheduler for running ticks.
+     * @param timeoutMillis    Time after its last touch that a key expires.
+     * @param resolutionMillis Tick interval; expiry may be late by up to this much.
+     * @param listener         Listener notified of expired keys.
+     */
+    public ExpiryWheel(Scheduler scheduler, long timeoutMillis, long resolutionMillis, Listener<K> listener) {
+        if (timeoutMillis <= 0 || resolutionMillis <= 0) {
+            throw new IllegalArgumentException("Timeout and resolution must be positive");
+        }
+        mScheduler = scheduler;
+        mListener = listener;
+        mTimeoutMillis = timeoutMillis;
+        mResolutionMillis = resolutionMillis;
+
+        // Deadlines are never more than this many ticks ahead, so slots are never shared by laps
+        int slotCount = (int) ((timeoutMillis + resolutionMillis - 1) / resolutionMillis) + 1;
+        mSlots = new ArrayList<Set<K>>(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            mSlots.add(new HashSet<K>());
+        }
+    }
+
+    /**
+     * Starts or restarts the timeout for the given key.
+     */
+    public synchronized void touch(K key) {
+        long now = mScheduler.uptimeMillis();
+        long deadline = (now + mTimeoutMillis + mResolutionMillis - 1) / mResolutionMillis;
+        Long previous = mDeadlineTicks.put(key, deadline);
+        if (previous != null) {
+            if (previous == deadline) return;
+            getSlot(previous).remove(key);
+        }
+        getSlot(deadline).add(key);
+
+        if (mTickToken == null) {
+            long currentTick = now / mResolutionMillis;
+            mNextTick = currentTick + 1;
+            mTickToken = mScheduler.schedule(mTickRunnable, mNextTick * mResolutionMillis - now);
+        }
+    }
+
+    /**
+     * Stops tracking the given key without notifying the Listener.
+     */
+    public synchronized void remove(K key) {
+        Long deadline = mDeadlineTicks.remove(key);
+        if (deadline != null) getSlot(deadline).remove(key);
+        if (mDeadlineTicks.isEmpty()) cancelTick();
+    }
+
+    /**
+     * Stops tracking all keys without notifying the Listener.
+     */
+    public synchronized void clear() {
+        mDeadlineTicks.clear();
+        for (Set<K> slot : mSlots) {
+            slot.clear();
+        }
+        cancelTick();
+    }
+
+    public synchronized int size() {
+        return mDeadlineTicks.size();
+    }
+
+    //==============================================================================================
+    // private methods
+    //==============================================================================================
+
+    private Set<K> getSlot(long tick) {
+        return mSlots.get((int) (tick % mSlots.size()));
+    }
+
+    private void cancelTick() {
+        if (mTickToken == null) return;
+        mScheduler.cancel(mTickToken);
+        mTickToken = null;
+    }
+
+    private void tick() {
+        Set<K> expired = null;
+        synchronized (this) {
+            mTickToken = null;
+            long now = mScheduler.uptimeMillis();
+            long currentTick = now / mResolutionMillis;
+
+            // After a late tick, each slot needs visiting at most once
+            long first = Math.max(mNextTick, currentTick - mSlots.size() + 1);
+            for (long tick = first; tick <= currentTick; tick++) {
+                Set<K> slot = getSlot(tick);
+                if (slot.isEmpty()) continue;
+                for (Iterator<K> i = slot.iterator(); i.hasNext(); ) {
+                    K key = i.next();
+                    if (mDeadlineTicks.get(key) > currentTick) continue;
+                    i.remove();
+                    mDeadlineTicks.remove(key);
+                    if (expired == null) expired = new HashSet<K>();
+                    expired.add(key);
+                }
+            }
+            mNextTick = currentTick + 1;
+            if (!mDeadlineTicks.isEmpty()) {
+                mTickToken = mScheduler.schedule(mTickRunnable, mNextTick * mResolutionMillis - now);
+            }
+        }
+        if (expired != null) mListener.onExpired(expired);
+    }
+
+    //==============================================================================================
+    // Inner classes
+    //==============================================================================================
+
+    public interface Listener<K> {
+        /**
+         * Called with all keys that expired in the same tick.
+         *
+         * @param keys Expired keys, no longer tracked.
+         */
+        void onExpired(Set<K> keys);
+    }
+}
@@ -0,0 +1,56 @@
+package com.layer.atlas.util;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+/**
+ * Scheduler that runs tasks on a Looper, the main Looper by default.
+ */
+public class HandlerScheduler implements Scheduler {
+    private final Handler mHandler;
+
+    public HandlerScheduler() {
+        this(Looper.getMainLooper());
+    }
+
+    public HandlerScheduler(Looper looper) {
+        mHandler = new Handler(looper);
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public long uptimeMillis() {
+        return SystemClock.uptimeMillis();
+    }
+
+    @Override
+    public Object schedule(Runnable runnable, long delayMillis) {
+        // Wrap so that cancelling one schedule() of a Runnable does not cancel others
+        Runnable task = new Task(runnable);
+        mHandler.postDelayed(task, delayMillis);
+        return task;
+    }
+
+    @Override
+    public void cancel(Object token) {
+        if (token instanceof Task) mHandler.removeCallbacks((Task) token);
+    }
+
+    private static class Task implements Runnable {
+        private final Runnable mRunnable;
+
+        Task(Runnable runnable) {
+            mRunnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            mRunnable.run();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.layer.atlas.util;
+
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.layer.sdk.messaging.MessagePart;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * MessagePartDownloadRegistry lets cell factories gate rendering on MessagePart content being
+ * ready.  A holder (typically a CellHolder) is bound to the part it is waiting for; the part is
+ * downloaded at most once through the shared MessagePartDownloader, and when it completes, only
+ * the holders still bound to that part are notified on the main thread so they can rebind.
+ * Rebinding a holder to another part, or unbinding it, drops its previous registration, so
+ * recycled holders are never updated with stale content.
+ * <p>
+ * Holders are weakly referenced.  Listeners receive the holder as an argument and should not
+ * capture it themselves.  All methods must be called on the main thread.
+ */
+public class MessagePartDownloadRegistry {
+    private static MessagePartDownloadRegistry sInstance;
+
+    private final MessagePartDownloader mDownloader;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    // Holders to the part they are waiting for, and parts with a registered download callback
+    private final Map<Object, Binding> mBindings = new WeakHashMap<Object, Binding>();
+    private final Set<Uri> mObservedParts = new HashSet<Uri>();
+
+    private final MessagePartDownloader.Callback mDownloadCallback = new MessagePartDownloader.Callback() {
+        @Override
+        public void onDownloadComplete(MessagePart part) {
+            post(part, null);
+        }
+
+        @Override
+        public void onDownloadError(MessagePart part, Throwable error) {
+            post(part, error);
+        }
+    };
+
+    /**
+     * Returns the shared MessagePartDownloadRegistry used by Atlas.
+     *
+     * @return The shared MessagePartDownloadRegistry.
+     */
+    public static synchronized MessagePartDownloadRegistry getInstance() {
+        if (sInstance == null) sInstance = new MessagePartDownloadRegistry(MessagePartDownloader.getInstance());
+        return sInstance;
+    }
+
+    public MessagePartDownloadRegistry(MessagePartDownloader downloader) {
+        mDownloader = downloader;
+    }
+
+    /**
+     * Binds `holder` to the given MessagePart and downloads it if needed.  The listener is
+     * notified once on the main thread when the content is ready, unless the holder is rebound or
+     * unbound first.  Any previous binding for the holder is dropped.
+     *
+     * @param holder   Holder waiting for the content, e.g. a CellHolder.
+     * @param part     MessagePart whose content is needed.
+     * @param listener Listener to notify.
+     * @return `true` if the holder is now waiting, or `false` if the content is already ready.
+     */
+    public <T> boolean whenReady(T holder, MessagePart part, Listener<T> listener) {
+        mBindings.remove(holder);
+        if (part.isContentReady()) return false;
+
+        Uri partId = part.getId();
+        mBindings.put(holder, new Binding(partId, listener));
+        mDownloader.download(part, MessagePartDownloader.Priority.HIGH);
+        if (mObservedParts.add(partId) && !mDownloader.addCallback(partId, mDownloadCallback)) {
+            // The download finished before the callback could be registered
+            post(part, null);
+        }
+        return true;
+    }
+
+    /**
+     * Drops the holder's binding, e.g. when it is rebound to content that is already ready.
+     *
+     * @param holder Holder to unbind.
+     */
+    public void unbind(Object holder) {
+        mBindings.remove(holder);
+    }
+
+    /**
+     * Returns `true` if the holder is waiting for content.
+     */
+    public boolean isWaiting(Object holder) {
+        return mBindings.containsKey(holder);
+    }
+
+    //==============================================================================================
+    // private methods
+    //==============================================================================================
+
+    private void post(final MessagePart part, final Throwable error) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                dispatch(part, error);
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void dispatch(MessagePart part, Throwable error) {
+        Uri partId = part.getId();
+        mObservedParts.remove(partId);
+
+        List<Object> holders = null;
+        List<Listener> listeners = null;
+        Iterator<Map.Entry<Object, Binding>> iterator = mBindings.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Object, Binding> entry = iterator.next();
+            Object holder = entry.getKey();
+            if (holder == null || !entry.getValue().mPartId.equals(partId)) continue;
+            iterator.remove();
+            if (holders == null) {
+                holders = new ArrayList<Object>(1);
+                listeners = new ArrayList<Listener>(1);
+            }
+            holders.add(holder);
+            listeners.add(entry.getValue().mListener);
+        }
+        if (holders == null) return;
+
+        for (int i = 0; i < holders.size(); i++) {
+            if (error == null && part.isContentReady()) {
+                listeners.get(i).onContentReady(holders.get(i), part);
+            } else {
+                listeners.get(i).onContentError(holders.get(i), part, error);
+            }
+        }
+    }
+
+    //==============================================================================================
+    // Inner classes
+    //==============================================================================================
+
+    /**
+     * Notified on the main thread when content a holder is waiting for becomes ready.
+     */
+    public interface Listener<T> {
+        void onContentReady(T holder, MessagePart part);
+
+        /**
+         * @param error The download error, or `null` if the content is otherwise unavailable.
+         */
+        void onContentError(T holder, MessagePart part, Throwable error);
+    }
+
+    private static class Binding {
+        final Uri mPartId;
+        final Listener mListener;
+
+        Binding(Uri partId, Listener listener) {
+            mPartId = partId;
+            mListener = listener;
+        }
+    }
+}
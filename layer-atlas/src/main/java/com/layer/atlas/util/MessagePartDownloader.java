@@ -0,0 +1,358 @@
+package com.layer.atlas.util;
+
+import android.net.Uri;
+
+import com.layer.sdk.listeners.LayerProgressListener;
+import com.layer.sdk.messaging.MessagePart;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MessagePartDownloader coordinates MessagePart downloads shared by Atlas loaders such as the
+ * Picasso MessagePartRequestHandler.
+ * <p>
+ * Concurrent requests for the same MessagePart Uri share a single download.  HIGH priority
+ * requests (bound, visible cells) start immediately, while LOW priority requests (prefetches) are
+ * queued and limited to a few concurrent downloads, and are promoted if a HIGH priority request
+ * arrives for the same part.  The number of loader threads allowed to block waiting on downloads
+ * is bounded; when no permit is available, await() returns immediately and callers can register
+ * a Callback to be notified once the content is ready.
+ */
+public class MessagePartDownloader {
+    private static final int DEFAULT_MAX_BLOCKED_THREADS = 2;
+    private static final int DEFAULT_MAX_LOW_PRIORITY_DOWNLOADS = 2;
+    private static final long WAIT_SLICE_MILLIS = 250;
+
+    private static MessagePartDownloader sInstance;
+
+    private final Object mLock = new Object();
+    private final Map<Uri, Download> mDownloads = new HashMap<Uri, Download>();
+    private final ArrayDeque<Download> mLowPriorityQueue = new ArrayDeque<Download>();
+    private final Map<Uri, List<Callback>> mCallbacks = new HashMap<Uri, List<Callback>>();
+    private int mActiveLowPriorityDownloads = 0;
+    private int mMaxLowPriorityDownloads = DEFAULT_MAX_LOW_PRIORITY_DOWNLOADS;
+    private Semaphore mBlockingPermits = new Semaphore(DEFAULT_MAX_BLOCKED_THREADS);
+
+    public enum Priority {
+        /**
+         * Content is needed for a bound cell.
+         */
+        HIGH,
+
+        /**
+         * Content is speculatively requested ahead of being bound.
+         */
+        LOW
+    }
+
+    /**
+     * Returns the shared MessagePartDownloader used by Atlas.
+     *
+     * @return The shared MessagePartDownloader.
+     */
+    public static synchronized MessagePartDownloader getInstance() {
+        if (sInstance == null) sInstance = new MessagePartDownloader();
+        return sInstance;
+    }
+
+    /**
+     * Sets the maximum number of threads allowed to block in await() at once.  This should stay
+     * below the size of the loader thread pool (e.g. Picasso's) so that loads for content which is
+     * already available are never starved.
+     *
+     * @param maxBlockedThreads Maximum number of concurrently blocked threads.
+     */
+    public void setMaxBlockedThreads(int maxBlockedThreads) {
+        if (maxBlockedThreads < 0) throw new IllegalArgumentException("Negative thread count");
+        mBlockingPermits = new Semaphore(maxBlockedThreads);
+    }
+
+    /**
+     * Sets the maximum number of LOW priority downloads to run concurrently.  Additional LOW
+     * priority downloads are queued.
+     *
+     * @param maxLowPriorityDownloads Maximum number of concurrent LOW priority downloads.
+     */
+    public void setMaxLowPriorityDownloads(int maxLowPriorityDownloads) {
+        if (maxLowPriorityDownloads < 1) throw new IllegalArgumentException("Must allow at least one download");
+        synchronized (mLock) {
+            mMaxLowPriorityDownloads = maxLowPriorityDownloads;
+        }
+        startQueuedDownloads();
+    }
+
+    /**
+     * Returns `true` if the given MessagePart has a pending or active download.
+     *
+     * @param partId ID of the MessagePart to check.
+     * @return `true` if the part is queued or downloading, or `false` otherwise.
+     */
+    public boolean isDownloading(Uri partId) {
+        synchronized (mLock) {
+            return mDownloads.containsKey(partId);
+        }
+    }
+
+    /**
+     * Requests the given MessagePart's content without blocking.  If a download for the part is
+     * already queued or running, it is shared; if it was queued at LOW priority and this request
+     * is HIGH priority, it is promoted.
+     *
+     * @param part     MessagePart to download.
+     * @param priority Priority of the request.
+     */
+    public void download(MessagePart part, Priority priority) {
+        if (part.isContentReady()) return;
+        Download download;
+        boolean start = false;
+        synchronized (mLock) {
+            download = mDownloads.get(part.getId());
+            if (download == null) {
+                download = new Download(part);
+                mDownloads.put(part.getId(), download);
+                if (priority == Priority.HIGH) {
+                    start = true;
+                } else {
+                    mLowPriorityQueue.add(download);
+                }
+            } else if (priority == Priority.HIGH && !download.mStarted) {
+                // Promote a queued prefetch
+                mLowPriorityQueue.remove(download);
+                start = true;
+            }
+            if (start) download.mStarted = true;
+        }
+        if (start) download.start();
+        startQueuedDownloads();
+    }
+
+    /**
+     * Requests the given MessagePart's content and waits for it to become available.  LOW
+     * priority requests never block.  HIGH priority requests block only if a blocking permit is
+     * available, and stop waiting early if the request is cancelled with cancel() or the calling
+     * thread is interrupted.
+     *
+     * @param part       MessagePart to download.
+     * @param priority   Priority of the request.
+     * @param timeLength Length of time to wait for downloading.
+     * @param timeUnit   Unit of time to wait for downloading.
+     * @return `true` if the MessagePart content is available, or `false` otherwise.
+     */
+    public boolean await(MessagePart part, Priority priority, long timeLength, TimeUnit timeUnit) {
+        if (part.isContentReady()) return true;
+        download(part, priority);
+        if (priority != Priority.HIGH) return part.isContentReady();
+
+        Download download;
+        synchronized (mLock) {
+            download = mDownloads.get(part.getId());
+        }
+        if (download == null) return part.isContentReady();
+
+        Semaphore permits = mBlockingPermits;
+        if (!permits.tryAcquire()) {
+            if (Log.isLoggable(Log.VERBOSE)) {
+                Log.v("No blocking permit available, not waiting for: " + part.getId());
+            }
+            return part.isContentReady();
+        }
+        try {
+            int generation = download.mCancelGeneration;
+            long deadline = System.nanoTime() + timeUnit.toNanos(timeLength);
+            while (!part.isContentReady() && !download.isFinished()) {
+                if (download.mCancelGeneration != generation) break;
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) break;
+                try {
+                    download.mLatch.await(Math.min(remaining, WAIT_SLICE_MILLIS), TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        } finally {
+            permits.release();
+        }
+        return part.isContentReady();
+    }
+
+    /**
+     * Releases threads blocked in await() for the given MessagePart, e.g. when the cell that
+     * requested it has been recycled and its load cancelled.  The underlying download continues
+     * so the content is ready the next time it is requested.
+     *
+     * @param partId ID of the MessagePart whose waiters should be released.
+     */
+    public void cancel(Uri partId) {
+        if (partId == null) return;
+        synchronized (mLock) {
+            Download download = mDownloads.get(partId);
+            if (download != null) download.mCancelGeneration++;
+        }
+    }
+
+    /**
+     * Cancels a LOW priority request that has not started downloading yet.
+     *
+     * @param partId ID of the MessagePart whose queued prefetch should be dropped.
+     * @return `true` if a queued request was removed, or `false` otherwise.
+     */
+    public boolean cancelQueued(Uri partId) {
+        synchronized (mLock) {
+            Download download = mDownloads.get(partId);
+            if (download == null || download.mStarted) return false;
+            mLowPriorityQueue.remove(download);
+            mDownloads.remove(partId);
+            return true;
+        }
+    }
+
+    /**
+     * Registers a Callback to be notified once when the given MessagePart finishes downloading.
+     * Callbacks are invoked on a background thread.  Nothing is registered if the part has no
+     * pending download.
+     *
+     * @param partId   ID of the MessagePart to observe.
+     * @param callback Callback to notify.
+     * @return `true` if the Callback was registered, or `false` if no download is pending.
+     */
+    public boolean addCallback(Uri partId, Callback callback) {
+        synchronized (mLock) {
+            if (!mDownloads.containsKey(partId)) return false;
+            List<Callback> callbacks = mCallbacks.get(partId);
+            if (callbacks == null) {
+                callbacks = new ArrayList<Callback>(1);
+                mCallbacks.put(partId, callbacks);
+            }
+            if (!callbacks.contains(callback)) callbacks.add(callback);
+            return true;
+        }
+    }
+
+    public void removeCallback(Uri partId, Callback callback) {
+        synchronized (mLock) {
+            List<Callback> callbacks = mCallbacks.get(partId);
+            if (callbacks == null) return;
+            callbacks.remove(callback);
+            if (callbacks.isEmpty()) mCallbacks.remove(partId);
+        }
+    }
+
+    //==============================================================================================
+    // private methods
+    //==============================================================================================
+
+    private void startQueuedDownloads() {
+        List<Download> toStart = null;
+        synchronized (mLock) {
+            while (mActiveLowPriorityDownloads < mMaxLowPriorityDownloads && !mLowPriorityQueue.isEmpty()) {
+                Download download = mLowPriorityQueue.poll();
+                download.mStarted = true;
+                download.mLowPriority = true;
+                mActiveLowPriorityDownloads++;
+                if (toStart == null) toStart = new ArrayList<Download>();
+                toStart.add(download);
+            }
+        }
+        if (toStart == null) return;
+        for (Download download : toStart) {
+            download.start();
+        }
+    }
+
+    private void onFinished(Download download, Throwable error) {
+        List<Callback> callbacks;
+        synchronized (mLock) {
+            if (download.mFinished) return;
+            download.mFinished = true;
+            if (mDownloads.get(download.mPart.getId()) == download) {
+                mDownloads.remove(download.mPart.getId());
+            }
+            if (download.mLowPriority) mActiveLowPriorityDownloads--;
+            callbacks = mCallbacks.remove(download.mPart.getId());
+        }
+        download.mLatch.countDown();
+        startQueuedDownloads();
+
+        if (callbacks == null) return;
+        for (Callback callback : callbacks) {
+            if (error == null) {
+                callback.onDownloadComplete(download.mPart);
+            } else {
+                callback.onDownloadError(download.mPart, error);
+            }
+        }
+    }
+
+    //==============================================================================================
+    // Inner classes
+    //==============================================================================================
+
+    /**
+     * Notified when a MessagePart download finishes.
+     */
+    public interface Callback {
+        void onDownloadComplete(MessagePart part);
+
+        void onDownloadError(MessagePart part, Throwable error);
+    }
+
+    private class Download implements LayerProgressListener.BackgroundThread.Weak {
+        final MessagePart mPart;
+        final CountDownLatch mLatch = new CountDownLatch(1);
+
+        // Guarded by mLock
+        boolean mStarted;
+        boolean mLowPriority;
+        boolean mFinished;
+
+        volatile int mCancelGeneration;
+
+        Download(MessagePart part) {
+            mPart = part;
+        }
+
+        void start() {
+            if (Log.isLoggable(Log.VERBOSE)) {
+                Log.v("Downloading message part: " + mPart.getId());
+            }
+            // The Download itself is strongly held in mDownloads until it finishes.
+            mPart.download(this);
+            if (mPart.isContentReady()) onFinished(this, null);
+        }
+
+        boolean isFinished() {
+            return mLatch.getCount() == 0;
+        }
+
+        @Override
+        public void onProgressStart(MessagePart messagePart, Operation operation) {
+
+        }
+
+        @Override
+        public void onProgressUpdate(MessagePart messagePart, Operation operation, long l) {
+
+        }
+
+        @Override
+        public void onProgressComplete(MessagePart messagePart, Operation operation) {
+            onFinished(this, null);
+        }
+
+        @Override
+        public void onProgressError(MessagePart messagePart, Operation operation, Throwable throwable) {
+            if (Log.isLoggable(Log.ERROR)) {
+                Log.e("Message part download error: " + messagePart.getId(), throwable);
+            }
+            onFinished(this, throwable);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.layer.atlas.util;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.support.v4.net.ConnectivityManagerCompat;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+
+import com.layer.atlas.adapters.AtlasMessagesAdapter;
+import com.layer.atlas.messagetypes.AtlasCellFactory;
+import com.layer.sdk.messaging.Message;
+import com.layer.sdk.messaging.MessagePart;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MessagePartPrefetcher is a RecyclerView.OnScrollListener that downloads MessageParts for
+ * Messages just ahead of the visible range in the scroll direction, so content such as image
+ * previews is ready by the time its cell is bound.  CellFactories choose which parts to prefetch
+ * via AtlasCellFactory.getPrefetchParts().
+ * <p>
+ * The lookahead grows with scroll velocity up to a maximum.  Prefetches are LOW priority requests
+ * on the shared MessagePartDownloader; queued prefetches that fall out of range are dropped.
+ * Outstanding prefetches are limited to a byte budget, and by default nothing is prefetched on
+ * metered networks.  The network is checked once per scroll gesture, which requires the
+ * ACCESS_NETWORK_STATE permission declared in the Atlas manifest.
+ *
+ * @see AtlasCellFactory#getPrefetchParts(Message, boolean)
+ * @see MessagePartDownloader
+ */
+public class MessagePartPrefetcher extends RecyclerView.OnScrollListener {
+    private static final int DEFAULT_LOOKAHEAD = 4;
+    private static final int DEFAULT_MAX_LOOKAHEAD = 16;
+    private static final long DEFAULT_BYTE_BUDGET = 2 * 1024 * 1024;
+
+    // Prefetch far enough ahead to cover this much scrolling at the current velocity.
+    private static final long LOOKAHEAD_MILLIS = 1000;
+
+    private final AtlasMessagesAdapter mAdapter;
+    private final ConnectivityManager mConnectivityManager;
+    private final MessagePartDownloader mDownloader;
+
+    // Prefetched part IDs to their adapter positions, and their sizes
+    private final Map<Uri, Integer> mPrefetchPositions = new HashMap<Uri, Integer>();
+    private final Map<Uri, Long> mPrefetchSizes = new HashMap<Uri, Long>();
+
+    private boolean mEnabled = true;
+    private boolean mPrefetchOnMetered = false;
+    private boolean mPrefetchInfoParts = false;
+    private int mLookahead = DEFAULT_LOOKAHEAD;
+    private int mMaxLookahead = DEFAULT_MAX_LOOKAHEAD;
+    private long mByteBudget = DEFAULT_BYTE_BUDGET;
+
+    private long mLastScrollTime;
+    private float mVelocity; // pixels per millisecond, signed
+
+    // Whether the network was metered when the current scroll gesture started
+    private int mScrollState = RecyclerView.SCROLL_STATE_IDLE;
+    private boolean mMeteredChecked;
+    private boolean mMetered;
+
+    public MessagePartPrefetcher(Context context, AtlasMessagesAdapter adapter) {
+        this(context, adapter, MessagePartDownloader.getInstance());
+    }
+
+    public MessagePartPrefetcher(Context context, AtlasMessagesAdapter adapter, MessagePartDownloader downloader) {
+        mAdapter = adapter;
+        mConnectivityManager = (ConnectivityManager) context.getApplicationContext().getSystemService(Context.CONNECTIVITY_SERVICE);
+        mDownloader = downloader;
+    }
+
+    public MessagePartPrefetcher setEnabled(boolean enabled) {
+        mEnabled = enabled;
+        if (!enabled) cancelAll();
+        return this;
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Sets the number of positions to prefetch ahead of the visible range when scrolling slowly,
+     * and the maximum number when scrolling quickly.
+     *
+     * @param lookahead    Minimum number of positions to prefetch ahead.
+     * @param maxLookahead Maximum number of positions to prefetch ahead.
+     * @return This MessagePartPrefetcher.
+     */
+    public MessagePartPrefetcher setLookahead(int lookahead, int maxLookahead) {
+        if (lookahead < 0 || maxLookahead < lookahead) throw new IllegalArgumentException("Invalid lookahead");
+        mLookahead = lookahead;
+        mMaxLookahead = maxLookahead;
+        return this;
+    }
+
+    /**
+     * Sets the maximum total size of prefetched MessageParts still downloading at once.
+     *
+     * @param byteBudget Maximum outstanding prefetch bytes.
+     * @return This MessagePartPrefetcher.
+     */
+    public MessagePartPrefetcher setByteBudget(long byteBudget) {
+        mByteBudget = byteBudget;
+        return this;
+    }
+
+    /**
+     * Sets whether to prefetch while the active network is metered.  Defaults to `false`.
+     */
+    public MessagePartPrefetcher setPrefetchOnMetered(boolean prefetchOnMetered) {
+        mPrefetchOnMetered = prefetchOnMetered;
+        return this;
+    }
+
+    /**
+     * Sets whether to also prefetch small metadata parts, such as ThreePartImage info parts.
+     * Defaults to `false`.
+     */
+    public MessagePartPrefetcher setPrefetchInfoParts(boolean prefetchInfoParts) {
+        mPrefetchInfoParts = prefetchInfoParts;
+        return this;
+    }
+
+    /**
+     * Drops all queued prefetches and forgets outstanding ones, e.g. when the Conversation changes.
+     */
+    public void cancelAll() {
+        for (Uri partId : mPrefetchPositions.keySet()) {
+            mDownloader.cancelQueued(partId);
+        }
+        mPrefetchPositions.clear();
+        mPrefetchSizes.clear();
+    }
+
+    //==============================================================================================
+    // RecyclerView.OnScrollListener
+    //==============================================================================================
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        long now = SystemClock.uptimeMillis();
+        long elapsed = now - mLastScrollTime;
+        mLastScrollTime = now;
+        if (dy == 0) return;
+        if (elapsed > 0 && elapsed < LOOKAHEAD_MILLIS) mVelocity = (float) dy / elapsed;
+        prefetch(recyclerView, dy > 0);
+    }
+
+    @Override
+    public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+        if (newState == RecyclerView.SCROLL_STATE_IDLE) mVelocity = 0;
+        // Check the network again on the next prefetch of a new gesture rather than on every scroll
+        if (mScrollState == RecyclerView.SCROLL_STATE_IDLE) mMeteredChecked = false;
+        mScrollState = newState;
+    }
+
+    //==============================================================================================
+    // private methods
+    //==============================================================================================
+
+    private void prefetch(RecyclerView recyclerView, boolean towardsEnd) {
+        if (!mEnabled) return;
+        if (!(recyclerView.getLayoutManager() instanceof LinearLayoutManager)) return;
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        int first = layoutManager.findFirstVisibleItemPosition();
+        int last = layoutManager.findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION || last == RecyclerView.NO_POSITION) return;
+
+        int lookahead = getLookahead(recyclerView, last - first + 1);
+        int itemCount = mAdapter.getItemCount();
+        int windowStart = Math.max(0, first - lookahead);
+        int windowEnd = Math.min(itemCount - 1, last + lookahead);
+
+        long outstanding = pruneAndMeasure(windowStart, windowEnd);
+        if (!mPrefetchOnMetered && isMetered()) return;
+
+        int step = towardsEnd ? 1 : -1;
+        int position = towardsEnd ? last + 1 : first - 1;
+        for (int i = 0; i < lookahead && position >= 0 && position < itemCount; i++, position += step) {
+            Message message = mAdapter.getItem(position);
+            if (message == null) continue;
+            AtlasCellFactory factory = getCellFactory(message);
+            if (factory == null) continue;
+            List<MessagePart> parts = factory.getPrefetchParts(message, mPrefetchInfoParts);
+            if (parts == null) continue;
+            for (MessagePart part : parts) {
+                if (part.isContentReady() || mPrefetchPositions.containsKey(part.getId())) continue;
+                long size = part.getSize();
+                if (outstanding + size > mByteBudget) return;
+                outstanding += size;
+                mPrefetchPositions.put(part.getId(), position);
+                mPrefetchSizes.put(part.getId(), size);
+                mDownloader.download(part, MessagePartDownloader.Priority.LOW);
+            }
+        }
+    }
+
+    private int getLookahead(RecyclerView recyclerView, int visibleCount) {
+        if (visibleCount <= 0) return mLookahead;
+        float itemHeight = (float) recyclerView.getHeight() / visibleCount;
+        if (itemHeight <= 0) return mLookahead;
+        int extra = (int) (Math.abs(mVelocity) * LOOKAHEAD_MILLIS / itemHeight);
+        return Math.min(mMaxLookahead, mLookahead + extra);
+    }
+
+    /**
+     * Drops prefetches that finished or scrolled out of the [start, end] window, and returns the
+     * number of bytes still outstanding.
+     */
+    private long pruneAndMeasure(int start, int end) {
+        long outstanding = 0;
+        Iterator<Map.Entry<Uri, Integer>> iterator = mPrefetchPositions.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Uri, Integer> entry = iterator.next();
+            Uri partId = entry.getKey();
+            int position = entry.getValue();
+            boolean inWindow = position >= start && position <= end;
+            if (!mDownloader.isDownloading(partId)) {
+                iterator.remove();
+                mPrefetchSizes.remove(partId);
+            } else if (!inWindow && mDownloader.cancelQueued(partId)) {
+                iterator.remove();
+                mPrefetchSizes.remove(partId);
+            } else {
+                // Started downloads cannot be cancelled; count them against the budget.
+                outstanding += mPrefetchSizes.get(partId);
+            }
+        }
+        return outstanding;
+    }
+
+    private AtlasCellFactory getCellFactory(Message message) {
+        for (AtlasCellFactory factory : mAdapter.getCellFactories()) {
+            if (factory.isBindable(message)) return factory;
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether the active network is metered, querying ConnectivityManager at most once per
+     * scroll gesture.
+     */
+    private boolean isMetered() {
+        if (!mMeteredChecked) {
+            mMetered = checkMetered();
+            mMeteredChecked = true;
+        }
+        return mMetered;
+    }
+
+    private boolean checkMetered() {
+        if (mConnectivityManager == null) return true;
+        try {
+            return ConnectivityManagerCompat.isActiveNetworkMetered(mConnectivityManager);
+        } catch (SecurityException e) {
+            if (Log.isLoggable(Log.WARN)) {
+                Log.w("Cannot check network state, treating as metered", e);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.layer.atlas.util;
+
+/**
+ * Provides time and delayed execution on a single thread, typically the main thread.  Abstracted
+ * so time-dependent logic (e.g. timeouts and rate limits) can be tested on the JVM with a virtual
+ * clock.
+ *
+ * @see HandlerScheduler
+ */
+public interface Scheduler {
+    /**
+     * Returns wall clock time in milliseconds since the epoch, e.g. for comparing with location
+     * fix times.
+     */
+    long currentTimeMillis();
+
+    /**
+     * Returns monotonic time in milliseconds, for measuring intervals.
+     */
+    long uptimeMillis();
+
+    /**
+     * Runs `runnable` after `delayMillis`.
+     *
+     * @return A token for cancel().
+     */
+    Object schedule(Runnable runnable, long delayMillis);
+
+    /**
+     * Cancels a task returned by schedule(), if it has not run yet.
+     */
+    void cancel(Object token);
+}
@@ -0,0 +1,122 @@
+package com.layer.atlas.util;
+
+import com.layer.sdk.messaging.MessagePart;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Locale;
+
+/**
+ * Decodes text MessageParts by streaming from MessagePart.getDataStream(), instead of copying the
+ * whole body with getData() and decoding it with the platform default charset.  The charset is
+ * taken from the MIME type's `charset` parameter, defaulting to UTF-8, and malformed input is
+ * replaced rather than failing.  Previews decode only as many characters as they need, so
+ * previewing a multi-megabyte part stays cheap.
+ */
+public class TextPartDecoder {
+    public static final Charset UTF_8 = Charset.forName("UTF-8");
+    public static final String ELLIPSIS = "\u2026";
+
+    private static final int BUFFER_CHARS = 4096;
+
+    /**
+     * Returns the full text of the given MessagePart, or `null` if its content is not ready or
+     * cannot be read.
+     *
+     * @param part MessagePart to decode.
+     * @return The decoded text, or `null`.
+     */
+    public static String decode(MessagePart part) {
+        return read(part, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns at most `maxChars` characters of the given MessagePart's text, followed by an
+     * ellipsis if the text was truncated.  Only the characters needed are decoded.
+     *
+     * @param part     MessagePart to decode.
+     * @param maxChars Maximum number of characters to decode.
+     * @return The decoded, possibly truncated text, or `null` if the content is not ready or
+     * cannot be read.
+     */
+    public static String decodePreview(MessagePart part, int maxChars) {
+        String text = read(part, maxChars + 1);
+        return text == null ? null : truncate(text, maxChars);
+    }
+
+    /**
+     * Truncates the given text to at most `maxChars` characters followed by an ellipsis, without
+     * splitting surrogate pairs.
+     */
+    public static String truncate(String text, int maxChars) {
+        if (text == null || text.length() <= maxChars) return text;
+        int end = maxChars;
+        if (end > 0 && Character.isHighSurrogate(text.charAt(end - 1))) end--;
+        return text.substring(0, end) + ELLIPSIS;
+    }
+
+    /**
+     * Returns the charset named by the given MIME type's `charset` parameter, or UTF-8 if it is
+     * missing or unsupported.
+     */
+    public static Charset getCharset(String mimeType) {
+        if (mimeType == null) return UTF_8;
+        for (String parameter : mimeType.split(";")) {
+            String[] pair = parameter.trim().split("=", 2);
+            if (pair.length != 2 || !pair[0].trim().toLowerCase(Locale.US).equals("charset")) continue;
+            String name = pair[1].trim().replace("\"", "");
+            try {
+                return Charset.forName(name);
+            } catch (IllegalArgumentException e) {
+                if (Log.isLoggable(Log.WARN)) {
+                    Log.w("Unsupported charset: " + name);
+                }
+            }
+        }
+        return UTF_8;
+    }
+
+    //==============================================================================================
+    // private methods
+    //==============================================================================================
+
+    private static String read(MessagePart part, int maxChars) {
+        if (!part.isContentReady()) return null;
+        InputStream in = part.getDataStream();
+        if (in == null) return null;
+
+        CharsetDecoder decoder = getCharset(part.getMimeType()).newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        Reader reader = new InputStreamReader(in, decoder);
+        try {
+            // Decoded text never has more chars than the encoded part has bytes
+            long size = part.getSize();
+            int capacity = (int) Math.min(maxChars, size > 0 ? size : BUFFER_CHARS);
+            StringBuilder builder = new StringBuilder(capacity);
+            char[] buffer = new char[Math.min(BUFFER_CHARS, Math.max(1, maxChars))];
+            while (builder.length() < maxChars) {
+                int read = reader.read(buffer, 0, Math.min(buffer.length, maxChars - builder.length()));
+                if (read < 0) break;
+                builder.append(buffer, 0, read);
+            }
+            return builder.toString();
+        } catch (IOException e) {
+            if (Log.isLoggable(Log.ERROR)) {
+                Log.e("Could not read message part: " + part.getId(), e);
+            }
+            return null;
+        } finally {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.layer.atlas.util;
+
+/**
+ * TypingIndicatorEmitter turns composer text changes into a rate-limited stream of typing
+ * indicators.  STARTED is sent when typing begins, and re-sent while typing continues at most once
+ * per refresh interval so remote participants do not time it out.  PAUSED is sent once no text has
+ * changed for the idle interval, and FINISHED is sent when the text is cleared or sent.  All other
+ * keystrokes send nothing.
+ * <p>
+ * TypingIndicatorEmitter must be used on the Scheduler's thread, typically the main thread.  It has
+ * no Android or Layer dependencies, so emission can be tested on the JVM with a virtual clock.
+ */
+public class TypingIndicatorEmitter {
+    public static final long DEFAULT_IDLE_MILLIS = 3 * 1000;
+    public static final long DEFAULT_REFRESH_MILLIS = 8 * 1000;
+
+    private final Scheduler mScheduler;
+    private final Sink mSink;
+
+    private long mIdleMillis = DEFAULT_IDLE_MILLIS;
+    private long mRefreshMillis = DEFAULT_REFRESH_MILLIS;
+
+    private Indicator mState = Indicator.FINISHED;
+    private long mLastStartedAt;
+    private long mLastChangedAt;
+    private Object mIdleToken;
+
+    public enum Indicator {
+        STARTED,
+        PAUSED,
+        FINISHED
+    }
+
+    private final Runnable mIdleCheck = new Runnable() {
+        @Override
+        public void run() {
+            mIdleToken = null;
+            if (mState != Indicator.STARTED) return;
+            long idle = mScheduler.uptimeMillis() - mLastChangedAt;
+            if (idle < mIdleMillis) {
+                // Text changed since this check was scheduled; check again when it could be idle
+                mIdleToken = mScheduler.schedule(this, mIdleMillis - idle);
+                return;
+            }
+            emit(Indicator.PAUSED);
+        }
+    };
+
+    /**
+     * @param scheduler Scheduler for the thread text changes are reported on.
+     * @param sink      Sink receiving the indicators to send.
+     */
+    public TypingIndicatorEmitter(Scheduler scheduler, Sink sink) {
+        mScheduler = scheduler;
+        mSink = sink;
+    }
+
+    /**
+     * Sets how long text must be unchanged before PAUSED is sent.
+     *
+     * @param idleMillis Idle interval in milliseconds.
+     * @return This TypingIndicatorEmitter.
+     */
+    public TypingIndicatorEmitter setIdleInterval(long idleMillis) {
+        mIdleMillis = idleMillis;
+        return this;
+    }
+
+    /**
+     * Sets the minimum interval between STARTED indicators during continuous typing.
+     *
+     * @param refreshMillis Refresh interval in milliseconds.
+     * @return This TypingIndicatorEmitter.
+     */
+    public TypingIndicatorEmitter setRefreshInterval(long refreshMillis) {
+        mRefreshMillis = refreshMillis;
+        return this;
+    }
+
+    /**
+     * Reports that the composed text changed.
+     *
+     * @param hasText `true` if the composed text is non-empty after the change.
+     */
+    public void onTextChanged(boolean hasText) {
+        if (!hasText) {
+            finish();
+            return;
+        }
+
+        long now = mScheduler.uptimeMillis();
+        mLastChangedAt = now;
+        if (mState != Indicator.STARTED || now - mLastStartedAt >= mRefreshMillis) {
+            mLastStartedAt = now;
+            emit(Indicator.STARTED);
+        }
+        // Reuse a pending idle check rather than rescheduling on every keystroke
+        if (mIdleToken == null) mIdleToken = mScheduler.schedule(mIdleCheck, mIdleMillis);
+    }
+
+    /**
+     * Ends the current typing session, sending FINISHED if STARTED or PAUSED was sent.  Call when
+     * the composed text is sent or discarded, or before switching conversations.
+     */
+    public void finish() {
+        if (mIdleToken != null) {
+            mScheduler.cancel(mIdleToken);
+            mIdleToken = null;
+        }
+        if (mState != Indicator.FINISHED) emit(Indicator.FINISHED);
+    }
+
+    /**
+     * Returns the last indicator sent, or FINISHED if none was sent.
+     */
+    public Indicator getState() {
+        return mState;
+    }
+
+    //==============================================================================================
+    // private methods
+    //==============================================================================================
+
+    private void emit(Indicator indicator) {
+        mState = indicator;
+        mSink.send(indicator);
+    }
+
+    //==============================================================================================
+    // Inner classes
+    //==============================================================================================
+
+    public interface Sink {
+        void send(Indicator indicator);
+    }
+}
@@ -2,8 +2,12 @@ package com.layer.atlas.util.imagepopup;
 
 import android.app.Activity;
 import android.content.Intent;
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
 import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.support.v4.widget.ContentLoadingProgressBar;
 
 import com.davemorrissey.labs.subscaleview.ImageSource;
@@ -12,6 +16,7 @@ import com.layer.atlas.R;
 import com.layer.atlas.messagetypes.threepartimage.ThreePartImageCellFactory;
 import com.layer.atlas.messagetypes.threepartimage.ThreePartImageUtils;
 import com.layer.atlas.util.Log;
+import com.layer.atlas.util.metrics.AtlasMetrics;
 import com.layer.sdk.LayerClient;
 import com.layer.sdk.listeners.LayerProgressListener;
 import com.layer.sdk.messaging.MessagePart;
@@ -19,17 +24,32 @@ import com.layer.sdk.messaging.MessagePart;
 /**
  * AtlasImagePopupActivity implements a ful resolution image viewer Activity.  This Activity
  * registers with the LayerClient as a LayerProgressListener to monitor progress.
+ * <p>
+ * If the launching cell hands over its already-decoded preview with setPreviewBitmap(), it is
+ * displayed immediately at full-screen scale while the full part downloads and its tiles are
+ * decoded.
  */
 public class AtlasImagePopupActivity extends Activity implements LayerProgressListener.BackgroundThread.Weak, SubsamplingScaleImageView.OnImageEventListener {
     private static LayerClient sLayerClient;
+    private static OnLoadTimingListener sOnLoadTimingListener;
+
+    // Preview bitmap handed over by the launching cell, keyed by preview part ID
+    private static Uri sPreviewBitmapId;
+    private static Bitmap sPreviewBitmap;
 
     private SubsamplingScaleImageView mImageView;
     private ContentLoadingProgressBar mProgressBar;
     private Uri mMessagePartId;
 
+    // Load timing
+    private long mCreatedAt;
+    private boolean mFirstPixelReported;
+    private boolean mFromCachedPreview;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        mCreatedAt = SystemClock.elapsedRealtime();
 
         getWindow().setBackgroundDrawableResource(R.color.atlas_image_popup_background);
         setContentView(R.layout.atlas_image_popup);
@@ -42,6 +62,8 @@ public class AtlasImagePopupActivity extends Activity implements LayerProgressLi
         mImageView.setMinimumDpi(80);
         mImageView.setBitmapDecoderClass(MessagePartDecoder.class);
         mImageView.setRegionDecoderClass(MessagePartRegionDecoder.class);
+        // MessagePartRegionDecoder opens a decoder per concurrent tile, up to one per core
+        mImageView.setExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
 
         Intent intent = getIntent();
         if (intent == null) return;
@@ -51,31 +73,34 @@ public class AtlasImagePopupActivity extends Activity implements LayerProgressLi
 
         mProgressBar.show();
         if (previewId != null && info != null) {
-            // ThreePartImage
+            // ThreePartImage: prefer the cell's decoded preview over decoding the preview part
+            Bitmap cachedPreview = takePreviewBitmap(previewId, info.orientation);
+            mFromCachedPreview = cachedPreview != null;
+            ImageSource preview = mFromCachedPreview ? ImageSource.bitmap(cachedPreview) : ImageSource.uri(previewId);
             switch (info.orientation) {
                 case ThreePartImageUtils.ORIENTATION_0:
                     mImageView.setOrientation(SubsamplingScaleImageView.ORIENTATION_0);
                     mImageView.setImage(
                             ImageSource.uri(mMessagePartId).dimensions(info.width, info.height),
-                            ImageSource.uri(previewId));
+                            preview);
                     break;
                 case ThreePartImageUtils.ORIENTATION_90:
                     mImageView.setOrientation(SubsamplingScaleImageView.ORIENTATION_270);
                     mImageView.setImage(
                             ImageSource.uri(mMessagePartId).dimensions(info.height, info.width),
-                            ImageSource.uri(previewId));
+                            preview);
                     break;
                 case ThreePartImageUtils.ORIENTATION_180:
                     mImageView.setOrientation(SubsamplingScaleImageView.ORIENTATION_180);
                     mImageView.setImage(
                             ImageSource.uri(mMessagePartId).dimensions(info.width, info.height),
-                            ImageSource.uri(previewId));
+                            preview);
                     break;
                 case ThreePartImageUtils.ORIENTATION_270:
                     mImageView.setOrientation(SubsamplingScaleImageView.ORIENTATION_90);
                     mImageView.setImage(
                             ImageSource.uri(mMessagePartId).dimensions(info.height, info.width),
-                            ImageSource.uri(previewId));
+                            preview);
                     break;
             }
         } else {
@@ -103,6 +128,90 @@ public class AtlasImagePopupActivity extends Activity implements LayerProgressLi
         MessagePartRegionDecoder.init(layerClient);
     }
 
+    /**
+     * Hands over an already-decoded, display-rotated preview bitmap (e.g. from the launching
+     * cell's ImageView, as held in Picasso's memory cache) for the next popup showing the given
+     * preview part.  The bitmap is not modified or recycled.
+     *
+     * @param previewId ID of the preview MessagePart the bitmap was decoded from.
+     * @param bitmap    Decoded preview bitmap, rotated for display.
+     */
+    public static void setPreviewBitmap(Uri previewId, Bitmap bitmap) {
+        synchronized (AtlasImagePopupActivity.class) {
+            sPreviewBitmapId = previewId;
+            sPreviewBitmap = bitmap;
+        }
+    }
+
+    /**
+     * Sets a listener for time-to-first-pixel and time-to-full-resolution of popups.
+     *
+     * @param listener Listener to notify, or `null` to clear.
+     */
+    public static void setOnLoadTimingListener(OnLoadTimingListener listener) {
+        sOnLoadTimingListener = listener;
+    }
+
+    /**
+     * Returns a private copy of the handed-over preview with the display rotation undone, since
+     * SubsamplingScaleImageView rotates the preview along with the full image.  The view recycles
+     * preview bitmaps, so the shared bitmap itself must never be passed to it.
+     */
+    private static Bitmap takePreviewBitmap(Uri previewId, int orientation) {
+        Bitmap bitmap;
+        synchronized (AtlasImagePopupActivity.class) {
+            bitmap = previewId.equals(sPreviewBitmapId) ? sPreviewBitmap : null;
+            sPreviewBitmapId = null;
+            sPreviewBitmap = null;
+        }
+        if (bitmap == null || bitmap.isRecycled()) return null;
+
+        int degrees;
+        switch (orientation) {
+            case ThreePartImageUtils.ORIENTATION_90:
+                degrees = 90;
+                break;
+            case ThreePartImageUtils.ORIENTATION_180:
+                degrees = 180;
+                break;
+            case ThreePartImageUtils.ORIENTATION_270:
+                degrees = -90;
+                break;
+            default:
+                degrees = 0;
+                break;
+        }
+        if (degrees == 0) return bitmap.copy(Bitmap.Config.ARGB_8888, false);
+        Matrix matrix = new Matrix();
+        matrix.postRotate(degrees);
+        return Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+    }
+
+    private void reportFirstPixel() {
+        if (mFirstPixelReported) return;
+        mFirstPixelReported = true;
+        long elapsed = SystemClock.elapsedRealtime() - mCreatedAt;
+        if (Log.isPerfLoggable()) {
+            Log.perf("Image popup first pixel after " + elapsed + "ms, from cached preview: " + mFromCachedPreview);
+        }
+        if (AtlasMetrics.isEnabled()) {
+            AtlasMetrics.recordTime(mFromCachedPreview ? "imagepopup.firstPixel.cached" : "imagepopup.firstPixel", elapsed * 1000000L);
+        }
+        OnLoadTimingListener listener = sOnLoadTimingListener;
+        if (listener != null) listener.onFirstPixel(mMessagePartId, elapsed, mFromCachedPreview);
+    }
+
+    private void reportFullResolution() {
+        reportFirstPixel();
+        long elapsed = SystemClock.elapsedRealtime() - mCreatedAt;
+        if (Log.isPerfLoggable()) {
+            Log.perf("Image popup full resolution after " + elapsed + "ms");
+        }
+        AtlasMetrics.recordTime("imagepopup.fullResolution", elapsed * 1000000L);
+        OnLoadTimingListener listener = sOnLoadTimingListener;
+        if (listener != null) listener.onFullResolution(mMessagePartId, elapsed);
+    }
+
 
     //==============================================================================================
     // SubsamplingScaleImageView.OnImageEventListener: hide progress bar when full part loaded
@@ -110,12 +219,13 @@ public class AtlasImagePopupActivity extends Activity implements LayerProgressLi
 
     @Override
     public void onReady() {
-
+        reportFirstPixel();
     }
 
     @Override
     public void onImageLoaded() {
         mProgressBar.hide();
+        reportFullResolution();
     }
 
     @Override
@@ -167,4 +277,30 @@ public class AtlasImagePopupActivity extends Activity implements LayerProgressLi
         if (Log.isLoggable(Log.ERROR)) Log.e(e.getMessage(), e);
     }
 
+
+    //==============================================================================================
+    // Inner classes
+    //==============================================================================================
+
+    /**
+     * Receives image popup load timings, measured from Activity creation.
+     */
+    public interface OnLoadTimingListener {
+        /**
+         * Called when the popup first displays the image, at preview or full resolution.
+         *
+         * @param fullPartId        ID of the full-resolution MessagePart being displayed.
+         * @param elapsedMillis     Milliseconds since the popup was created.
+         * @param fromCachedPreview `true` if a handed-over preview bitmap was displayed.
+         */
+        void onFirstPixel(Uri fullPartId, long elapsedMillis, boolean fromCachedPreview);
+
+        /**
+         * Called when the full-resolution image has loaded.
+         *
+         * @param fullPartId    ID of the full-resolution MessagePart being displayed.
+         * @param elapsedMillis Milliseconds since the popup was created.
+         */
+        void onFullResolution(Uri fullPartId, long elapsedMillis);
+    }
 }
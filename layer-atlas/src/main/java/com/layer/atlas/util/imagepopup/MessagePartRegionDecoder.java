@@ -14,13 +14,41 @@ import com.layer.atlas.util.Util;
 import com.layer.sdk.LayerClient;
 import com.layer.sdk.messaging.MessagePart;
 
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Decodes image popup tiles from a MessagePart, decoding opaque JPEG tiles as RGB_565.
+ * SubsamplingScaleImageView runs decodeRegion() on its executor, concurrently for each visible
+ * tile, and a BitmapRegionDecoder decodes one region at a time, so up to one decoder per core is
+ * opened as calls overlap.  Callers beyond that wait for an idle decoder.
+ * <p>
+ * Tiles are neither cached nor reused as decode targets: the view owns and recycles every tile it
+ * is given, so holding on to them would mean copying each tile.
+ */
 public class MessagePartRegionDecoder implements ImageRegionDecoder {
-    private final Object mLock = new Object();
-    private BitmapRegionDecoder mDecoder;
+    private static final int MAX_DECODERS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private static final ThreadLocal<BitmapFactory.Options> sOptions = new ThreadLocal<BitmapFactory.Options>() {
+        @Override
+        protected BitmapFactory.Options initialValue() {
+            return new BitmapFactory.Options();
+        }
+    };
+
     private static LayerClient sLayerClient;
+
+    private final Object mLock = new Object();
+    // Guarded by mLock
+    private final ArrayDeque<BitmapRegionDecoder> mIdleDecoders = new ArrayDeque<BitmapRegionDecoder>();
+    private int mDecoderCount = 0;
+    private int mMaxDecoders = MAX_DECODERS;
+    private boolean mRecycled = false;
     private MessagePart mMessagePart;
+    private Bitmap.Config mConfig;
 
     public static void init(LayerClient layerClient) {
         sLayerClient = layerClient;
@@ -50,31 +78,113 @@ public class MessagePartRegionDecoder implements ImageRegionDecoder {
             return null;
         }
 
+        // JPEG has no alpha channel, so half-size tiles lose nothing
+        mConfig = part.getMimeType().startsWith("image/jpeg") ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+
+        BitmapRegionDecoder decoder = newDecoder();
+        Point size = new Point(decoder.getWidth(), decoder.getHeight());
         synchronized (mLock) {
-            mDecoder = BitmapRegionDecoder.newInstance(mMessagePart.getDataStream(), false);
-            return new Point(mDecoder.getWidth(), mDecoder.getHeight());
+            mDecoderCount = 1;
+            mIdleDecoders.add(decoder);
         }
+        return size;
     }
 
     @Override
     public Bitmap decodeRegion(Rect rect, int sampleSize) {
-        synchronized (mLock) {
-            BitmapFactory.Options options = new BitmapFactory.Options();
+        BitmapRegionDecoder decoder = acquireDecoder();
+        try {
+            BitmapFactory.Options options = sOptions.get();
             options.inSampleSize = sampleSize;
-            options.inPreferredConfig = Bitmap.Config.ARGB_8888;
-            Bitmap bitmap = mDecoder.decodeRegion(rect, options);
+            options.inPreferredConfig = mConfig;
+            Bitmap bitmap = decoder.decodeRegion(rect, options);
             if (bitmap == null) throw new IllegalStateException("Could not decode bitmap region");
             return bitmap;
+        } finally {
+            releaseDecoder(decoder);
         }
     }
 
     @Override
     public boolean isReady() {
-        return mDecoder != null && !mDecoder.isRecycled() && mMessagePart.isContentReady();
+        synchronized (mLock) {
+            if (mDecoderCount == 0 || mRecycled) return false;
+        }
+        return mMessagePart.isContentReady();
     }
 
     @Override
     public void recycle() {
-        mDecoder.recycle();
+        List<BitmapRegionDecoder> idle;
+        synchronized (mLock) {
+            mRecycled = true;
+            idle = new ArrayList<BitmapRegionDecoder>(mIdleDecoders);
+            mIdleDecoders.clear();
+            mDecoderCount -= idle.size();
+            // Waiting callers fail rather than wait for decoders that will never be released
+            mLock.notifyAll();
+        }
+        for (BitmapRegionDecoder decoder : idle) {
+            decoder.recycle();
+        }
+    }
+
+    //==============================================================================================
+    // private methods
+    //==============================================================================================
+
+    private BitmapRegionDecoder newDecoder() throws IOException {
+        return BitmapRegionDecoder.newInstance(mMessagePart.getDataStream(), false);
+    }
+
+    /**
+     * Returns an idle decoder, opening a new one if all are busy and fewer than MAX_DECODERS are
+     * open, or otherwise waiting for one to become idle.
+     *
+     * @throws IllegalStateException if the decoder is recycled before one becomes idle.
+     */
+    private BitmapRegionDecoder acquireDecoder() {
+        synchronized (mLock) {
+            while (true) {
+                if (mRecycled) throw new IllegalStateException("Decoder recycled");
+                BitmapRegionDecoder decoder = mIdleDecoders.poll();
+                if (decoder != null) return decoder;
+                if (mDecoderCount < mMaxDecoders) {
+                    mDecoderCount++;
+                    break;
+                }
+                try {
+                    mLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for a region decoder", e);
+                }
+            }
+        }
+        try {
+            return newDecoder();
+        } catch (IOException e) {
+            if (Log.isLoggable(Log.WARN)) {
+                Log.w("Could not open additional region decoder", e);
+            }
+            synchronized (mLock) {
+                mDecoderCount--;
+                // Make do with the decoders already open
+                mMaxDecoders = Math.max(1, mDecoderCount);
+            }
+            return acquireDecoder();
+        }
+    }
+
+    private void releaseDecoder(BitmapRegionDecoder decoder) {
+        synchronized (mLock) {
+            if (!mRecycled) {
+                mIdleDecoders.add(decoder);
+                mLock.notify();
+                return;
+            }
+            mDecoderCount--;
+        }
+        decoder.recycle();
     }
 }
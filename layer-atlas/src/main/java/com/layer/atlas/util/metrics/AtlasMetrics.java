@@ -0,0 +1,95 @@
+package com.layer.atlas.util.metrics;
+
+/**
+ * AtlasMetrics is the instrumentation entry point for Atlas performance metrics: counters, timers,
+ * and value distributions, reported to a pluggable MetricsSink.  With no sink installed (the
+ * default) every method returns after a single volatile read, so instrumentation can stay in hot
+ * paths like binding.  Callers building metric names dynamically should check isEnabled() first.
+ * <p>
+ * Timer usage:
+ * <pre>
+ * long start = AtlasMetrics.startTimer();
+ * ...
+ * AtlasMetrics.stopTimer("cell.TextCellFactory.parse", start);
+ * </pre>
+ *
+ * @see HistogramMetricsSink
+ */
+public final class AtlasMetrics {
+    private static volatile MetricsSink sSink;
+
+    private AtlasMetrics() {
+    }
+
+    /**
+     * Installs the sink that receives all metrics, or disables metrics if `null`.
+     *
+     * @param sink MetricsSink to receive metrics.
+     */
+    public static void setSink(MetricsSink sink) {
+        sSink = sink;
+    }
+
+    public static MetricsSink getSink() {
+        return sSink;
+    }
+
+    public static boolean isEnabled() {
+        return sSink != null;
+    }
+
+    /**
+     * Increments the named counter by one.
+     */
+    public static void increment(String name) {
+        MetricsSink sink = sSink;
+        if (sink != null) sink.onCounter(name, 1);
+    }
+
+    /**
+     * Increments the named counter by `delta`.
+     */
+    public static void increment(String name, long delta) {
+        MetricsSink sink = sSink;
+        if (sink != null) sink.onCounter(name, delta);
+    }
+
+    /**
+     * Returns a start time for stopTimer(), or 0 if metrics are disabled.
+     */
+    public static long startTimer() {
+        return sSink == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Records the time elapsed since `startNanos` to the named timer.  Does nothing if the timer
+     * was started while metrics were disabled.
+     *
+     * @param name       Timer name.
+     * @param startNanos Start time returned by startTimer().
+     */
+    public static void stopTimer(String name, long startNanos) {
+        MetricsSink sink = sSink;
+        if (sink == null || startNanos == 0) return;
+        sink.onTimer(name, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records a duration measured elsewhere to the named timer.
+     *
+     * @param name          Timer name.
+     * @param durationNanos Duration in nanoseconds.
+     */
+    public static void recordTime(String name, long durationNanos) {
+        MetricsSink sink = sSink;
+        if (sink != null) sink.onTimer(name, durationNanos);
+    }
+
+    /**
+     * Records a value, e.g. a size or count, to the named distribution.
+     */
+    public static void recordValue(String name, long value) {
+        MetricsSink sink = sSink;
+        if (sink != null) sink.onValue(name, value);
+    }
+}
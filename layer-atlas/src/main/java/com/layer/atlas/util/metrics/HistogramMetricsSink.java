@@ -0,0 +1,114 @@
+package com.layer.atlas.util.metrics;
+
+import com.layer.atlas.util.Log;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MetricsSink that aggregates metrics in memory: counters as totals, and timers and values as
+ * LatencyHistograms.  Timer histograms hold nanoseconds.  Install with AtlasMetrics.setSink(), and
+ * read results with the getters or logSummary(), e.g. after a benchmark run.
+ */
+public class HistogramMetricsSink implements MetricsSink {
+    private final ConcurrentMap<String, AtomicLong> mCounters = new ConcurrentHashMap<String, AtomicLong>();
+    private final ConcurrentMap<String, LatencyHistogram> mTimers = new ConcurrentHashMap<String, LatencyHistogram>();
+    private final ConcurrentMap<String, LatencyHistogram> mValues = new ConcurrentHashMap<String, LatencyHistogram>();
+
+    @Override
+    public void onCounter(String name, long delta) {
+        AtomicLong counter = mCounters.get(name);
+        if (counter == null) {
+            AtomicLong created = new AtomicLong();
+            counter = mCounters.putIfAbsent(name, created);
+            if (counter == null) counter = created;
+        }
+        counter.addAndGet(delta);
+    }
+
+    @Override
+    public void onTimer(String name, long durationNanos) {
+        getOrCreate(mTimers, name).record(durationNanos);
+    }
+
+    @Override
+    public void onValue(String name, long value) {
+        getOrCreate(mValues, name).record(value);
+    }
+
+    /**
+     * Returns the named counter's total, or 0 if it was never incremented.
+     */
+    public long getCounter(String name) {
+        AtomicLong counter = mCounters.get(name);
+        return counter == null ? 0 : counter.get();
+    }
+
+    /**
+     * Returns the named timer's histogram in nanoseconds, or `null` if it never recorded.
+     */
+    public LatencyHistogram getTimer(String name) {
+        return mTimers.get(name);
+    }
+
+    /**
+     * Returns the named value distribution, or `null` if it never recorded.
+     */
+    public LatencyHistogram getValues(String name) {
+        return mValues.get(name);
+    }
+
+    public Map<String, LatencyHistogram> getTimers() {
+        return new TreeMap<String, LatencyHistogram>(mTimers);
+    }
+
+    /**
+     * Discards all recorded metrics.
+     */
+    public void reset() {
+        mCounters.clear();
+        mTimers.clear();
+        mValues.clear();
+    }
+
+    /**
+     * Logs all metrics with perf logging, timers as count and p50/p95/p99/max in milliseconds.
+     */
+    public void logSummary() {
+        if (!Log.isPerfLoggable()) return;
+        for (Map.Entry<String, AtomicLong> entry : new TreeMap<String, AtomicLong>(mCounters).entrySet()) {
+            Log.perf(entry.getKey() + ": " + entry.getValue().get());
+        }
+        for (Map.Entry<String, LatencyHistogram> entry : getTimers().entrySet()) {
+            LatencyHistogram h = entry.getValue();
+            Log.perf(String.format(Locale.US, "%s: n=%d p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms",
+                    entry.getKey(), h.getCount(), ms(h.getValueAtPercentile(50)), ms(h.getValueAtPercentile(95)),
+                    ms(h.getValueAtPercentile(99)), ms(h.getMax())));
+        }
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<String, LatencyHistogram>(mValues).entrySet()) {
+            LatencyHistogram h = entry.getValue();
+            Log.perf(entry.getKey() + ": n=" + h.getCount() + " p50=" + h.getValueAtPercentile(50)
+                    + " p95=" + h.getValueAtPercentile(95) + " max=" + h.getMax());
+        }
+    }
+
+    //==============================================================================================
+    // private methods
+    //==============================================================================================
+
+    private static double ms(long nanos) {
+        return nanos / 1000000.0;
+    }
+
+    private static LatencyHistogram getOrCreate(ConcurrentMap<String, LatencyHistogram> map, String name) {
+        LatencyHistogram histogram = map.get(name);
+        if (histogram != null) return histogram;
+        LatencyHistogram created = new LatencyHistogram();
+        histogram = map.putIfAbsent(name, created);
+        return histogram == null ? created : histogram;
+    }
+}
@@ -0,0 +1,106 @@
+package com.layer.atlas.util.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size, thread-safe histogram of non-negative long values with HDR-style log-linear
+ * buckets: each power of two is split into 16 linear sub-buckets, so recorded values are
+ * reproduced within about 6% at any magnitude, from nanoseconds to hours, in under 8KB.
+ * Recording is lock-free and allocation-free.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT / 2;
+    private static final int BUCKET_COUNT = SUB_BUCKET_HALF * (64 - SUB_BUCKET_BITS) + SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mTotal = new AtomicLong();
+    private final AtomicLong mMin = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong mMax = new AtomicLong(0);
+
+    /**
+     * Records a value.  Negative values are recorded as 0.
+     */
+    public void record(long value) {
+        if (value < 0) value = 0;
+        mCounts.incrementAndGet(indexOf(value));
+        mCount.incrementAndGet();
+        mTotal.addAndGet(value);
+        long min = mMin.get();
+        while (value < min && !mMin.compareAndSet(min, value)) min = mMin.get();
+        long max = mMax.get();
+        while (value > max && !mMax.compareAndSet(max, value)) max = mMax.get();
+    }
+
+    public long getCount() {
+        return mCount.get();
+    }
+
+    public long getMin() {
+        return mCount.get() == 0 ? 0 : mMin.get();
+    }
+
+    public long getMax() {
+        return mMax.get();
+    }
+
+    public double getMean() {
+        long count = mCount.get();
+        return count == 0 ? 0 : (double) mTotal.get() / count;
+    }
+
+    /**
+     * Returns the value at the given percentile, e.g. 99 for p99, or 0 if no values were recorded.
+     * The result is the highest value equivalent to the bucket containing the percentile, capped
+     * at the maximum recorded value.
+     *
+     * @param percentile Percentile from 0 to 100.
+     * @return The approximate value at `percentile`.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = mCount.get();
+        if (count == 0) return 0;
+        long rank = (long) Math.ceil(Math.max(0, Math.min(100, percentile)) / 100.0 * count);
+        if (rank < 1) rank = 1;
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += mCounts.get(i);
+            if (seen >= rank) return Math.min(highestEquivalentValue(i), getMax());
+        }
+        return getMax();
+    }
+
+    /**
+     * Discards all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mCounts.set(i, 0);
+        }
+        mCount.set(0);
+        mTotal.set(0);
+        mMin.set(Long.MAX_VALUE);
+        mMax.set(0);
+    }
+
+    //==============================================================================================
+    // private methods
+    //==============================================================================================
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) return (int) value;
+        // Shift so the top SUB_BUCKET_BITS bits remain, i.e. a sub-bucket in [HALF, COUNT)
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKET_HALF * shift + (int) (value >>> shift);
+    }
+
+    private static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) return index;
+        int shift = index / SUB_BUCKET_HALF - 1;
+        long subBucket = index - (long) SUB_BUCKET_HALF * shift;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
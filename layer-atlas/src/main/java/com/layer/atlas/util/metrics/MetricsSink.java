@@ -0,0 +1,23 @@
+package com.layer.atlas.util.metrics;
+
+/**
+ * MetricsSink receives metrics reported through AtlasMetrics, e.g. to aggregate them in memory or
+ * forward them to an analytics backend.  Methods may be called from any thread, including the main
+ * thread during binding and drawing, so implementations must be thread-safe and fast.
+ */
+public interface MetricsSink {
+    /**
+     * Called when the named counter is incremented.
+     */
+    void onCounter(String name, long delta);
+
+    /**
+     * Called when the named timer records a duration in nanoseconds.
+     */
+    void onTimer(String name, long durationNanos);
+
+    /**
+     * Called when the named distribution records a value.
+     */
+    void onValue(String name, long value);
+}
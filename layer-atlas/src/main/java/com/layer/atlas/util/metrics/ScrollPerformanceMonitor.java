@@ -0,0 +1,273 @@
+package com.layer.atlas.util.metrics;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.support.v7.widget.RecyclerView;
+import android.view.Choreographer;
+
+import com.layer.atlas.util.Log;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * ScrollPerformanceMonitor records frame durations while an Atlas RecyclerView scrolls, and
+ * attributes slow frames to binding, layout, or drawing.  Frames are timed with Choreographer
+ * callbacks (API 16+; frame times are not recorded on older platforms).  Bind times are reported
+ * per cell factory by the adapters, so getBindTimes() gives p50/p95/p99 bind times per factory.
+ * <p>
+ * Monitoring is opt-in: pass a monitor to AtlasMessagesRecyclerView or
+ * AtlasConversationsRecyclerView setScrollPerformanceMonitor().  Frame durations and slow-frame
+ * counts are also reported through AtlasMetrics under the monitor's name.  All methods must be
+ * called on the main thread.
+ */
+public class ScrollPerformanceMonitor extends RecyclerView.OnScrollListener {
+    public static final long DEFAULT_FRAME_BUDGET_NANOS = 1000000000L / 60;
+    private static final long FROZEN_FRAME_NANOS = 700L * 1000000;
+
+    public enum Cause {
+        BIND,
+        LAYOUT,
+        DRAW,
+
+        /**
+         * Bind, layout, and draw together took under half the frame budget, so the time went
+         * elsewhere, e.g. garbage collection, other main thread work, or rendering.
+         */
+        OTHER
+    }
+
+    private final String mName;
+    private final String mFrameMetric;
+    private final long mFrameBudgetNanos;
+
+    private final LatencyHistogram mFrameTimes = new LatencyHistogram();
+    private final Map<String, LatencyHistogram> mBindTimes = new TreeMap<String, LatencyHistogram>();
+    private final long[] mSlowFrames = new long[Cause.values().length];
+    private long mFrozenFrames;
+
+    private FrameTicker mFrameTicker;
+    private boolean mScrolling;
+    private long mLastFrameNanos;
+
+    // Work since the last frame
+    private long mBindNanos;
+    private long mLayoutNanos;
+    private long mDrawNanos;
+    private long mBindNanosAtLayoutStart;
+
+    /**
+     * @param name Name for this monitor's metrics, e.g. `messages`.
+     */
+    public ScrollPerformanceMonitor(String name) {
+        this(name, DEFAULT_FRAME_BUDGET_NANOS);
+    }
+
+    /**
+     * @param name             Name for this monitor's metrics, e.g. `messages`.
+     * @param frameBudgetNanos Target frame duration, e.g. for displays faster than 60Hz.
+     */
+    public ScrollPerformanceMonitor(String name, long frameBudgetNanos) {
+        mName = name;
+        mFrameMetric = name + ".frame";
+        mFrameBudgetNanos = frameBudgetNanos;
+    }
+
+    @Override
+    public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+        boolean scrolling = newState != RecyclerView.SCROLL_STATE_IDLE;
+        if (scrolling == mScrolling) return;
+        mScrolling = scrolling;
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) return;
+        if (mFrameTicker == null) mFrameTicker = new FrameTicker();
+        if (scrolling) {
+            resetFrame();
+            mLastFrameNanos = 0;
+            mFrameTicker.start();
+        } else {
+            mFrameTicker.stop();
+        }
+    }
+
+    /**
+     * Stops recording frames for the current scroll, e.g. when this monitor is replaced or its
+     * RecyclerView is detached before scrolling settles and it never sees SCROLL_STATE_IDLE.
+     */
+    public void stop() {
+        if (!mScrolling) return;
+        mScrolling = false;
+        if (mFrameTicker != null) mFrameTicker.stop();
+    }
+
+    /**
+     * Records the time taken to bind an item.
+     *
+     * @param name  Bind metric name, e.g. the cell factory's.
+     * @param nanos Bind duration in nanoseconds.
+     */
+    public void onBind(String name, long nanos) {
+        LatencyHistogram histogram = mBindTimes.get(name);
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            mBindTimes.put(name, histogram);
+        }
+        histogram.record(nanos);
+        mBindNanos += nanos;
+    }
+
+    /**
+     * Returns a start time for onLayoutFinished().
+     */
+    public long onLayoutStarted() {
+        mBindNanosAtLayoutStart = mBindNanos;
+        return System.nanoTime();
+    }
+
+    /**
+     * Records layout time, excluding binds during layout.
+     *
+     * @param startNanos Start time returned by onLayoutStarted().
+     */
+    public void onLayoutFinished(long startNanos) {
+        long bind = mBindNanos - mBindNanosAtLayoutStart;
+        mLayoutNanos += Math.max(0, System.nanoTime() - startNanos - bind);
+    }
+
+    /**
+     * Records the time taken to draw the RecyclerView.
+     */
+    public void onDraw(long nanos) {
+        mDrawNanos += nanos;
+    }
+
+    /**
+     * Returns durations of frames rendered while scrolling, in nanoseconds.
+     */
+    public LatencyHistogram getFrameTimes() {
+        return mFrameTimes;
+    }
+
+    /**
+     * Returns bind durations in nanoseconds, by bind metric name.
+     */
+    public Map<String, LatencyHistogram> getBindTimes() {
+        return mBindTimes;
+    }
+
+    /**
+     * Returns the number of frames longer than 1.5 frame budgets (i.e. at least one dropped frame)
+     * attributed to the given cause.
+     */
+    public long getSlowFrameCount(Cause cause) {
+        return mSlowFrames[cause.ordinal()];
+    }
+
+    public long getSlowFrameCount() {
+        long count = 0;
+        for (long slow : mSlowFrames) {
+            count += slow;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of frames longer than 700ms.
+     */
+    public long getFrozenFrameCount() {
+        return mFrozenFrames;
+    }
+
+    /**
+     * Discards all recorded frames and bind times.
+     */
+    public void reset() {
+        mFrameTimes.reset();
+        mBindTimes.clear();
+        for (int i = 0; i < mSlowFrames.length; i++) {
+            mSlowFrames[i] = 0;
+        }
+        mFrozenFrames = 0;
+    }
+
+    /**
+     * Logs frame and per-factory bind percentiles with perf logging.
+     */
+    public void logSummary() {
+        if (!Log.isPerfLoggable()) return;
+        Log.perf(String.format(Locale.US, "%s frames: n=%d p50=%.1fms p95=%.1fms p99=%.1fms slow=%d (bind=%d layout=%d draw=%d other=%d) frozen=%d",
+                mName, mFrameTimes.getCount(), ms(mFrameTimes.getValueAtPercentile(50)), ms(mFrameTimes.getValueAtPercentile(95)),
+                ms(mFrameTimes.getValueAtPercentile(99)), getSlowFrameCount(), getSlowFrameCount(Cause.BIND),
+                getSlowFrameCount(Cause.LAYOUT), getSlowFrameCount(Cause.DRAW), getSlowFrameCount(Cause.OTHER), mFrozenFrames));
+        for (Map.Entry<String, LatencyHistogram> entry : mBindTimes.entrySet()) {
+            LatencyHistogram h = entry.getValue();
+            Log.perf(String.format(Locale.US, "%s %s: n=%d p50=%.2fms p95=%.2fms p99=%.2fms", mName, entry.getKey(),
+                    h.getCount(), ms(h.getValueAtPercentile(50)), ms(h.getValueAtPercentile(95)), ms(h.getValueAtPercentile(99))));
+        }
+    }
+
+    //==============================================================================================
+    // private methods
+    //==============================================================================================
+
+    private void onFrame(long frameTimeNanos) {
+        if (mLastFrameNanos != 0) {
+            long duration = frameTimeNanos - mLastFrameNanos;
+            mFrameTimes.record(duration);
+            AtlasMetrics.recordTime(mFrameMetric, duration);
+            if (duration > mFrameBudgetNanos * 3 / 2) {
+                Cause cause = getCause();
+                mSlowFrames[cause.ordinal()]++;
+                if (AtlasMetrics.isEnabled()) AtlasMetrics.increment(mFrameMetric + ".slow." + cause.name());
+            }
+            if (duration > FROZEN_FRAME_NANOS) mFrozenFrames++;
+        }
+        mLastFrameNanos = frameTimeNanos;
+        resetFrame();
+    }
+
+    private Cause getCause() {
+        if (mBindNanos + mLayoutNanos + mDrawNanos < mFrameBudgetNanos / 2) return Cause.OTHER;
+        if (mBindNanos >= mLayoutNanos && mBindNanos >= mDrawNanos) return Cause.BIND;
+        if (mLayoutNanos >= mDrawNanos) return Cause.LAYOUT;
+        return Cause.DRAW;
+    }
+
+    private void resetFrame() {
+        mBindNanos = 0;
+        mLayoutNanos = 0;
+        mDrawNanos = 0;
+        mBindNanosAtLayoutStart = 0;
+    }
+
+    private static double ms(long nanos) {
+        return nanos / 1000000.0;
+    }
+
+    //==============================================================================================
+    // Inner classes
+    //==============================================================================================
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private class FrameTicker implements Choreographer.FrameCallback {
+        private boolean mRunning;
+
+        void start() {
+            if (mRunning) return;
+            mRunning = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        void stop() {
+            mRunning = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (!mRunning) return;
+            onFrame(frameTimeNanos);
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.layer.atlas.util.metrics;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * SendLatencyTable holds SendLatencyTracker's tracked Messages, keyed by ID, and records the first
+ * sent, delivered, and read transitions of each through AtlasMetrics.  All state is guarded by the
+ * table, since MessageSenders report preparation and queueing on their own threads while change
+ * events arrive on the LayerClient's background thread.  Times are System.nanoTime() values.
+ *
+ * @param <K> Message ID type.
+ * @see SendLatencyTracker
+ */
+public class SendLatencyTable<K> {
+    private final int mMaxTracked;
+    private final long mMaxAgeNanos;
+
+    // Tracked Messages in request order
+    private final LinkedHashMap<K, Entry> mEntries = new LinkedHashMap<K, Entry>();
+
+    /**
+     * @param maxTracked  Most Messages tracked at once; the oldest are dropped beyond it.
+     * @param maxAgeNanos Time after the send request at which a Message stops being tracked, e.g.
+     *                    because it is never read.
+     */
+    public SendLatencyTable(int maxTracked, long maxAgeNanos) {
+        mMaxTracked = maxTracked;
+        mMaxAgeNanos = maxAgeNanos;
+    }
+
+    /**
+     * Starts tracking a prepared Message.
+     *
+     * @param id               The Message's ID.
+     * @param metricsName      Metrics prefix of the MessageSender, e.g. `send.TextSender`.
+     * @param requestedAtNanos When sending was requested.
+     * @param nowNanos         The current time.
+     */
+    public synchronized void onPrepared(K id, String metricsName, long requestedAtNanos, long nowNanos) {
+        evict(nowNanos);
+        mEntries.put(id, new Entry(metricsName, requestedAtNanos));
+    }
+
+    /**
+     * Records that a tracked Message was queued with Conversation.send().
+     */
+    public synchronized void onQueued(K id, long nowNanos) {
+        Entry entry = mEntries.get(id);
+        if (entry != null) entry.mQueuedAt = nowNanos;
+    }
+
+    /**
+     * Stops tracking a Message.
+     */
+    public synchronized void onAborted(K id) {
+        mEntries.remove(id);
+    }
+
+    public synchronized boolean isTracked(K id) {
+        return mEntries.containsKey(id);
+    }
+
+    /**
+     * Records a Message's state from a change event.  Each latency is recorded on the first event
+     * that shows its transition, and a read Message is no longer tracked.  Events for Messages
+     * that are not tracked, or not yet queued, are ignored.
+     *
+     * @param id        The Message's ID.
+     * @param sent      Whether the Message is sent.
+     * @param delivered Whether another participant has received or read the Message.
+     * @param read      Whether another participant has read the Message.
+     * @param nowNanos  The current time.
+     */
+    public synchronized void onUpdate(K id, boolean sent, boolean delivered, boolean read, long nowNanos) {
+        Entry entry = mEntries.get(id);
+        if (entry == null || entry.mQueuedAt == 0) return;
+
+        if (!entry.mSent && sent) {
+            entry.mSent = true;
+            AtlasMetrics.recordTime(entry.mMetricsName + ".latency.sent", nowNanos - entry.mRequestedAt);
+            AtlasMetrics.recordTime(entry.mMetricsName + ".ack", nowNanos - entry.mQueuedAt);
+        }
+        if (!entry.mDelivered && delivered) {
+            entry.mDelivered = true;
+            AtlasMetrics.recordTime(entry.mMetricsName + ".latency.delivered", nowNanos - entry.mRequestedAt);
+        }
+        if (read) {
+            AtlasMetrics.recordTime(entry.mMetricsName + ".latency.read", nowNanos - entry.mRequestedAt);
+            // Nothing left to measure
+            mEntries.remove(id);
+        }
+    }
+
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    public synchronized void clear() {
+        mEntries.clear();
+    }
+
+    //==============================================================================================
+    // private methods
+    //==============================================================================================
+
+    /**
+     * Drops the oldest entries beyond the tracking limits, e.g. Messages that were never read.
+     */
+    private void evict(long now) {
+        Iterator<Entry> entries = mEntries.values().iterator();
+        while (entries.hasNext()) {
+            Entry entry = entries.next();
+            if (mEntries.size() < mMaxTracked && now - entry.mRequestedAt < mMaxAgeNanos) break;
+            entries.remove();
+        }
+    }
+
+    //==============================================================================================
+    // Inner classes
+    //==============================================================================================
+
+    private static class Entry {
+        final String mMetricsName;
+        final long mRequestedAt;
+        long mQueuedAt;
+        boolean mSent;
+        boolean mDelivered;
+
+        Entry(String metricsName, long requestedAt) {
+            mMetricsName = metricsName;
+            mRequestedAt = requestedAt;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.layer.atlas.util.metrics;
+
+import android.net.Uri;
+
+import com.layer.sdk.LayerClient;
+import com.layer.sdk.changes.LayerChange;
+import com.layer.sdk.changes.LayerChangeEvent;
+import com.layer.sdk.listeners.LayerChangeEventListener;
+import com.layer.sdk.messaging.Identity;
+import com.layer.sdk.messaging.LayerObject;
+import com.layer.sdk.messaging.Message;
+
+import java.util.Map;
+
+/**
+ * SendLatencyTracker measures how long Messages sent by MessageSenders take to be sent, delivered,
+ * and read.  MessageSenders timestamp each Message when sending is requested, when it is prepared
+ * (e.g. after image scaling), and when it is queued with Conversation.send(); the tracker then
+ * observes change events for the first sent, delivered, and read transitions.  Latencies are
+ * recorded through AtlasMetrics as timers named after the sender, e.g.
+ * `send.GallerySender.latency.delivered`:
+ * <ul>
+ * <li>`latency.sent`, `latency.delivered`, `latency.read`: from the send request.</li>
+ * <li>`ack`: from Conversation.send() until sent, excluding preparation.</li>
+ * </ul>
+ * Preparation time is recorded by MessageSender as `prepare`.  Tracking is active only while
+ * AtlasMetrics has a sink installed: the first Message prepared with a sink installed starts the
+ * tracker with its MessageSender's LayerClient, so apps need only call AtlasMetrics.setSink().
+ * Call stop() to stop observing change events, e.g. before discarding the LayerClient.
+ *
+ * @see SendLatencyTable
+ */
+public class SendLatencyTracker implements LayerChangeEventListener.BackgroundThread.Weak {
+    private static final int MAX_TRACKED = 128;
+    private static final long MAX_AGE_NANOS = 10L * 60 * 1000 * 1000000;
+
+    private static final SendLatencyTracker sInstance = new SendLatencyTracker();
+
+    private final SendLatencyTable<Uri> mTable = new SendLatencyTable<Uri>(MAX_TRACKED, MAX_AGE_NANOS);
+    private volatile LayerClient mLayerClient;
+
+    public static SendLatencyTracker getInstance() {
+        return sInstance;
+    }
+
+    private SendLatencyTracker() {
+    }
+
+    /**
+     * Starts observing change events for Messages sent with the given LayerClient.  Called
+     * automatically when a MessageSender prepares a Message while AtlasMetrics is enabled.
+     *
+     * @param layerClient LayerClient used by MessageSenders.
+     */
+    public synchronized void start(LayerClient layerClient) {
+        stop();
+        mLayerClient = layerClient;
+        layerClient.registerEventListener(this);
+    }
+
+    /**
+     * Stops observing change events and discards tracked Messages.
+     */
+    public synchronized void stop() {
+        LayerClient layerClient = mLayerClient;
+        if (layerClient != null) layerClient.unregisterEventListener(this);
+        mLayerClient = null;
+        mTable.clear();
+    }
+
+    public boolean isTracking() {
+        return mLayerClient != null && AtlasMetrics.isEnabled();
+    }
+
+    /**
+     * Records that a Message was prepared for sending, starting the tracker with the given
+     * LayerClient if it is not already observing it.
+     *
+     * @param layerClient      LayerClient that will send the Message.
+     * @param metricsName      Metrics prefix of the MessageSender, e.g. `send.TextSender`.
+     * @param message          The prepared Message.
+     * @param requestedAtNanos System.nanoTime() when sending was requested.
+     */
+    public void onPrepared(LayerClient layerClient, String metricsName, Message message, long requestedAtNanos) {
+        if (!AtlasMetrics.isEnabled() || layerClient == null || requestedAtNanos == 0 || message.getId() == null) return;
+        synchronized (this) {
+            if (mLayerClient != layerClient) start(layerClient);
+        }
+        mTable.onPrepared(message.getId(), metricsName, requestedAtNanos, System.nanoTime());
+    }
+
+    /**
+     * Records that a prepared Message was queued with Conversation.send().
+     */
+    public void onQueued(Message message) {
+        if (message.getId() == null) return;
+        mTable.onQueued(message.getId(), System.nanoTime());
+    }
+
+    /**
+     * Stops tracking a prepared Message that was not sent.
+     */
+    public void onAborted(Message message) {
+        if (message.getId() == null) return;
+        mTable.onAborted(message.getId());
+    }
+
+    @Override
+    public void onChangeEvent(LayerChangeEvent layerChangeEvent) {
+        if (!isTracking()) return;
+        for (LayerChange change : layerChangeEvent.getChanges()) {
+            if (change.getObjectType() != LayerObject.Type.MESSAGE) continue;
+            if (change.getChangeType() != LayerChange.Type.UPDATE) continue;
+            Message message = (Message) change.getObject();
+            if (message.getId() != null && mTable.isTracked(message.getId())) update(message);
+        }
+    }
+
+    //==============================================================================================
+    // private methods
+    //==============================================================================================
+
+    private void update(Message message) {
+        boolean delivered = false;
+        boolean read = false;
+        LayerClient layerClient = mLayerClient;
+        Identity me = layerClient == null ? null : layerClient.getAuthenticatedUser();
+        Map<Identity, Message.RecipientStatus> statuses = message.getRecipientStatus();
+        if (statuses != null) {
+            for (Map.Entry<Identity, Message.RecipientStatus> status : statuses.entrySet()) {
+                // Only other members acknowledge delivery and reading
+                if (status.getKey().equals(me) || status.getValue() == null) continue;
+                switch (status.getValue()) {
+                    case READ:
+                        read = true;
+                        delivered = true;
+                        break;
+                    case DELIVERED:
+                        delivered = true;
+                        break;
+                }
+            }
+        }
+        mTable.onUpdate(message.getId(), message.isSent(), delivered, read, System.nanoTime());
+    }
+}
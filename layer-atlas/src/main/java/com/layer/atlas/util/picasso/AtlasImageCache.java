@@ -0,0 +1,402 @@
+package com.layer.atlas.util.picasso;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+
+import com.layer.atlas.AtlasAvatar;
+import com.layer.atlas.messagetypes.location.LocationCellFactory;
+import com.layer.atlas.messagetypes.singlepartimage.SinglePartImageCellFactory;
+import com.layer.atlas.messagetypes.threepartimage.ThreePartImageCellFactory;
+import com.layer.atlas.util.Log;
+import com.layer.atlas.util.metrics.AtlasMetrics;
+import com.squareup.picasso.Cache;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * AtlasImageCache is a Picasso memory Cache that gives each category of image its own LRU budget,
+ * so a few large message previews cannot evict every avatar.  Atlas requests are categorized by
+ * their Picasso tag, which they append to their image Uri with stableKey(); all other requests
+ * share the "other" budget.  Keys still start with the image Uri, as Picasso's own keys do, so
+ * Picasso.invalidate() evicts Atlas images from this cache and from Picasso's default LruCache.
+ * <p>
+ * Created with a Context, the cache trims itself in response to ComponentCallbacks2.onTrimMemory():
+ * message images are trimmed first, and avatars only under heavy pressure.  The application
+ * Context then references the cache, so create one per Picasso instance, typically a process-wide
+ * singleton, and call release() if that Picasso instance is shut down.  Per-category hit, miss,
+ * and eviction counts are available from getStats(), and are reported to AtlasMetrics as
+ * `imagecache.<category>.hit`, `.miss`, and `.evict`.
+ * <p>
+ * Usage:
+ * <pre>
+ * Picasso picasso = new Picasso.Builder(context)
+ *         .memoryCache(new AtlasImageCache(context))
+ *         .addRequestHandler(new MessagePartRequestHandler(layerClient, new ThumbnailDiskCache(context)))
+ *         .build();
+ * </pre>
+ */
+public class AtlasImageCache implements Cache, ComponentCallbacks2 {
+    public static final String CATEGORY_OTHER = "other";
+
+    // Picasso separates a key's Uri, or stable key, from its request options with newlines
+    private static final char KEY_SEPARATOR = '\n';
+    private static final String CATEGORY_PREFIX = "atlas-category:";
+
+    private final Map<String, Partition> mPartitions = new LinkedHashMap<>();
+    private final Partition mOther;
+    private Context mContext;
+
+    /**
+     * Creates a cache sized like Picasso's default, one seventh of the application's memory class,
+     * and registers it for memory trim callbacks until release().
+     */
+    public AtlasImageCache(Context context) {
+        this(calculateMaxSize(context));
+        mContext = context.getApplicationContext();
+        mContext.registerComponentCallbacks(this);
+    }
+
+    /**
+     * Creates a cache holding up to `maxBytes` across the default categories.  The caller is
+     * responsible for forwarding memory trim callbacks.
+     */
+    public AtlasImageCache(int maxBytes) {
+        mOther = new Partition(CATEGORY_OTHER, maxBytes * 15 / 100);
+        setBudget(AtlasAvatar.TAG, maxBytes / 10);
+        setBudget(ThreePartImageCellFactory.PICASSO_TAG, maxBytes * 45 / 100);
+        setBudget(SinglePartImageCellFactory.PICASSO_TAG, maxBytes / 5);
+        setBudget(LocationCellFactory.PICASSO_TAG, maxBytes / 10);
+    }
+
+    /**
+     * Returns a Picasso stable key placing the image at `id` in the given category, or `null` if
+     * `id` is `null`.  The key starts with `id` followed by a newline, like Picasso's own keys,
+     * so Picasso.invalidate(id) still matches it in any memory cache.
+     *
+     * @param category Category name, typically the request's Picasso tag.
+     * @param id       Image Uri, URL, or other identifier.
+     */
+    public static String stableKey(String category, Object id) {
+        if (id == null) return null;
+        return String.valueOf(id) + KEY_SEPARATOR + CATEGORY_PREFIX + category;
+    }
+
+    /**
+     * Sets the budget for the given category, adding the category if it does not exist, and
+     * evicting its least recently used images if it is now over budget.
+     */
+    public synchronized AtlasImageCache setBudget(String category, int maxBytes) {
+        Partition partition = CATEGORY_OTHER.equals(category) ? mOther : mPartitions.get(category);
+        if (partition == null) {
+            mPartitions.put(category, new Partition(category, maxBytes));
+        } else {
+            partition.mMaxSize = maxBytes;
+            partition.trimToSize(maxBytes);
+        }
+        return this;
+    }
+
+    /**
+     * Unregisters the cache from memory trim callbacks and clears it, e.g. after Picasso.shutdown(),
+     * so the application Context no longer keeps its Bitmaps reachable.
+     */
+    public synchronized void release() {
+        if (mContext != null) {
+            mContext.unregisterComponentCallbacks(this);
+            mContext = null;
+        }
+        clear();
+    }
+
+    /**
+     * Returns a snapshot of statistics for each category, including "other".
+     */
+    public synchronized List<Stats> getStats() {
+        List<Stats> stats = new ArrayList<>(mPartitions.size() + 1);
+        for (Partition partition : mPartitions.values()) {
+            stats.add(partition.getStats());
+        }
+        stats.add(mOther.getStats());
+        return stats;
+    }
+
+    @Override
+    public Bitmap get(String key) {
+        if (key == null) throw new NullPointerException("key == null");
+        Partition partition;
+        Bitmap bitmap;
+        synchronized (this) {
+            partition = getPartition(key);
+            bitmap = partition.mEntries.get(key);
+            if (bitmap != null) {
+                partition.mHitCount++;
+            } else {
+                partition.mMissCount++;
+            }
+        }
+        AtlasMetrics.increment(bitmap != null ? partition.mHitMetric : partition.mMissMetric);
+        return bitmap;
+    }
+
+    @Override
+    public void set(String key, Bitmap bitmap) {
+        if (key == null || bitmap == null) throw new NullPointerException("key == null || bitmap == null");
+        int size = sizeOf(bitmap);
+        synchronized (this) {
+            Partition partition = getPartition(key);
+            Bitmap previous = partition.mEntries.remove(key);
+            if (previous != null) partition.mSize -= sizeOf(previous);
+            // An image larger than its whole budget would only flush the category
+            if (size > partition.mMaxSize) return;
+            partition.mEntries.put(key, bitmap);
+            partition.mSize += size;
+            partition.mPutCount++;
+            partition.trimToSize(partition.mMaxSize);
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        int size = mOther.mSize;
+        for (Partition partition : mPartitions.values()) {
+            size += partition.mSize;
+        }
+        return size;
+    }
+
+    @Override
+    public synchronized int maxSize() {
+        int maxSize = mOther.mMaxSize;
+        for (Partition partition : mPartitions.values()) {
+            maxSize += partition.mMaxSize;
+        }
+        return maxSize;
+    }
+
+    @Override
+    public synchronized void clear() {
+        trim(0f, 0f);
+    }
+
+    /**
+     * Removes all images for the given Uri, in any category, as Picasso.invalidate() expects.
+     */
+    @Override
+    public synchronized void clearKeyUri(String uri) {
+        for (Partition partition : mPartitions.values()) {
+            partition.removeUri(uri);
+        }
+        mOther.removeUri(uri);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_MODERATE) {
+            // Next in line to be killed; cached images are not worth the risk
+            clear();
+        } else if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            trim(0.25f, 0.5f);
+        } else if (level >= TRIM_MEMORY_UI_HIDDEN || level == TRIM_MEMORY_RUNNING_LOW) {
+            trim(0.5f, 1f);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        clear();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    //==============================================================================================
+    // private methods
+    //==============================================================================================
+
+    /**
+     * Trims each category to a fraction of its current size: `imageFraction` for message images
+     * and other images, and `avatarFraction` for avatars, which are small and shown everywhere.
+     */
+    private synchronized void trim(float imageFraction, float avatarFraction) {
+        for (Partition partition : mPartitions.values()) {
+            float fraction = partition.mName.equals(AtlasAvatar.TAG) ? avatarFraction : imageFraction;
+            partition.trimToSize((int) (partition.mSize * fraction));
+        }
+        mOther.trimToSize((int) (mOther.mSize * imageFraction));
+        if (Log.isLoggable(Log.VERBOSE)) {
+            Log.v("Trimmed image cache to " + size() + " bytes");
+        }
+    }
+
+    /**
+     * Returns the partition named by the key's category, which follows its Uri, or "other".
+     */
+    private Partition getPartition(String key) {
+        int start = key.indexOf(KEY_SEPARATOR) + 1;
+        if (start == 0 || !key.startsWith(CATEGORY_PREFIX, start)) return mOther;
+        start += CATEGORY_PREFIX.length();
+        int end = key.indexOf(KEY_SEPARATOR, start);
+        Partition partition = mPartitions.get(end < 0 ? key.substring(start) : key.substring(start, end));
+        return partition == null ? mOther : partition;
+    }
+
+    private static int sizeOf(Bitmap bitmap) {
+        return bitmap.getRowBytes() * bitmap.getHeight();
+    }
+
+    private static int calculateMaxSize(Context context) {
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        boolean largeHeap = (context.getApplicationInfo().flags & ApplicationInfo.FLAG_LARGE_HEAP) != 0;
+        int memoryClass = largeHeap ? am.getLargeMemoryClass() : am.getMemoryClass();
+        return 1024 * 1024 * memoryClass / 7;
+    }
+
+    //==============================================================================================
+    // Inner classes
+    //==============================================================================================
+
+    /**
+     * A snapshot of one category's size and counters.
+     */
+    public static final class Stats {
+        private final String mCategory;
+        private final int mSize;
+        private final int mMaxSize;
+        private final int mCount;
+        private final long mHitCount;
+        private final long mMissCount;
+        private final long mPutCount;
+        private final long mEvictionCount;
+
+        Stats(String category, int size, int maxSize, int count, long hitCount, long missCount, long putCount, long evictionCount) {
+            mCategory = category;
+            mSize = size;
+            mMaxSize = maxSize;
+            mCount = count;
+            mHitCount = hitCount;
+            mMissCount = missCount;
+            mPutCount = putCount;
+            mEvictionCount = evictionCount;
+        }
+
+        public String getCategory() {
+            return mCategory;
+        }
+
+        public int getSize() {
+            return mSize;
+        }
+
+        public int getMaxSize() {
+            return mMaxSize;
+        }
+
+        public int getCount() {
+            return mCount;
+        }
+
+        public long getHitCount() {
+            return mHitCount;
+        }
+
+        public long getMissCount() {
+            return mMissCount;
+        }
+
+        public long getPutCount() {
+            return mPutCount;
+        }
+
+        public long getEvictionCount() {
+            return mEvictionCount;
+        }
+
+        /**
+         * Returns hits over lookups, or 0 if there have been no lookups.
+         */
+        public float getHitRate() {
+            long lookups = mHitCount + mMissCount;
+            return lookups == 0 ? 0f : (float) mHitCount / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "category='" + mCategory + '\'' +
+                    ", size=" + mSize +
+                    ", maxSize=" + mMaxSize +
+                    ", count=" + mCount +
+                    ", hits=" + mHitCount +
+                    ", misses=" + mMissCount +
+                    ", puts=" + mPutCount +
+                    ", evictions=" + mEvictionCount +
+                    '}';
+        }
+    }
+
+    /**
+     * One category's LRU entries.  Guarded by the enclosing AtlasImageCache.
+     */
+    private static final class Partition {
+        final String mName;
+        final String mHitMetric;
+        final String mMissMetric;
+        final String mEvictMetric;
+        final LinkedHashMap<String, Bitmap> mEntries = new LinkedHashMap<>(0, 0.75f, true);
+        int mMaxSize;
+        int mSize;
+        long mHitCount;
+        long mMissCount;
+        long mPutCount;
+        long mEvictionCount;
+
+        Partition(String name, int maxSize) {
+            mName = name;
+            mMaxSize = maxSize;
+            mHitMetric = "imagecache." + name + ".hit";
+            mMissMetric = "imagecache." + name + ".miss";
+            mEvictMetric = "imagecache." + name + ".evict";
+        }
+
+        void trimToSize(int maxSize) {
+            Iterator<Map.Entry<String, Bitmap>> iterator = mEntries.entrySet().iterator();
+            int evicted = 0;
+            while (mSize > maxSize && iterator.hasNext()) {
+                Bitmap bitmap = iterator.next().getValue();
+                iterator.remove();
+                mSize -= sizeOf(bitmap);
+                evicted++;
+            }
+            mEvictionCount += evicted;
+            if (evicted > 0) AtlasMetrics.increment(mEvictMetric, evicted);
+        }
+
+        /**
+         * Removes all entries for the given Uri.
+         */
+        void removeUri(String uri) {
+            Iterator<Map.Entry<String, Bitmap>> iterator = mEntries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Bitmap> entry = iterator.next();
+                String key = entry.getKey();
+                if (key.length() > uri.length() && key.charAt(uri.length()) == KEY_SEPARATOR && key.startsWith(uri)) {
+                    iterator.remove();
+                    mSize -= sizeOf(entry.getValue());
+                }
+            }
+        }
+
+        Stats getStats() {
+            return new Stats(mName, mSize, mMaxSize, mEntries.size(), mHitCount, mMissCount, mPutCount, mEvictionCount);
+        }
+    }
+}
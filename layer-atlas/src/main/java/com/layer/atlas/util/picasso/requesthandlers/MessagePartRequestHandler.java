@@ -1,15 +1,19 @@
 package com.layer.atlas.util.picasso.requesthandlers;
 
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.net.Uri;
+import android.support.annotation.VisibleForTesting;
 
-import com.layer.atlas.util.Log;
-import com.layer.atlas.util.Util;
+import com.layer.atlas.util.MessagePartDownloader;
 import com.layer.sdk.LayerClient;
 import com.layer.sdk.messaging.MessagePart;
 import com.layer.sdk.query.Queryable;
+import com.squareup.picasso.Picasso;
 import com.squareup.picasso.Request;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -17,14 +21,39 @@ import static com.squareup.picasso.Picasso.LoadedFrom;
 
 /**
  * Handles Picasso load requests for Layer MessagePart content.  If the content is not ready
- * (e.g. MessagePart.isContentReady() is `false`), registers a LayerProgressListener, downloads
- * the part, and waits for completion.
+ * (e.g. MessagePart.isContentReady() is `false`), downloads the part through the shared
+ * MessagePartDownloader and waits for completion.  Concurrent loads of the same part share one
+ * download, LOW priority Picasso requests (e.g. `fetch()` prefetches) never block a Picasso
+ * thread, and at most a few threads block at once so Picasso's pool is not starved.
+ * <p>
+ * With a ThumbnailDiskCache, resized requests are decoded and scaled here rather than by Picasso,
+ * and the display-ready result is cached by part, target size, scaling, and rotation.  Later loads,
+ * e.g. after reopening a conversation, then skip decoding entirely.  Rotation is still applied by
+ * Picasso, so cached thumbnails are stored unrotated.  Center-cropped requests are not cached.
+ *
+ * @see MessagePartDownloader
  */
 public class MessagePartRequestHandler extends com.squareup.picasso.RequestHandler {
     private final LayerClient mLayerClient;
+    private final MessagePartDownloader mDownloader;
+    private final ThumbnailDiskCache mThumbnailCache;
 
     public MessagePartRequestHandler(LayerClient layerClient) {
+        this(layerClient, MessagePartDownloader.getInstance());
+    }
+
+    public MessagePartRequestHandler(LayerClient layerClient, ThumbnailDiskCache thumbnailCache) {
+        this(layerClient, MessagePartDownloader.getInstance(), thumbnailCache);
+    }
+
+    public MessagePartRequestHandler(LayerClient layerClient, MessagePartDownloader downloader) {
+        this(layerClient, downloader, null);
+    }
+
+    public MessagePartRequestHandler(LayerClient layerClient, MessagePartDownloader downloader, ThumbnailDiskCache thumbnailCache) {
         mLayerClient = layerClient;
+        mDownloader = downloader;
+        mThumbnailCache = thumbnailCache;
     }
 
     @Override
@@ -39,11 +68,104 @@ public class MessagePartRequestHandler extends com.squareup.picasso.RequestHandl
 
     @Override
     public Result load(Request request, int networkPolicy) throws IOException {
+        String thumbnailKey = getThumbnailKey(request);
+        if (thumbnailKey != null) {
+            Bitmap thumbnail = mThumbnailCache.get(thumbnailKey);
+            if (thumbnail != null) return new Result(thumbnail, LoadedFrom.DISK);
+        }
+
         Queryable queryable = mLayerClient.get(request.uri);
         if (!(queryable instanceof MessagePart)) return null;
         MessagePart part = (MessagePart) queryable;
-        if (part.isContentReady()) return new Result(part.getDataStream(), LoadedFrom.DISK);
-        if (!Util.downloadMessagePart(mLayerClient, part, 3, TimeUnit.MINUTES)) return null;
-        return new Result(part.getDataStream(), LoadedFrom.NETWORK);
+        LoadedFrom loadedFrom = LoadedFrom.DISK;
+        if (!part.isContentReady()) {
+            MessagePartDownloader.Priority priority = request.priority == Picasso.Priority.LOW
+                    ? MessagePartDownloader.Priority.LOW : MessagePartDownloader.Priority.HIGH;
+            if (!mDownloader.await(part, priority, 3, TimeUnit.MINUTES)) return null;
+            loadedFrom = LoadedFrom.NETWORK;
+        }
+        if (thumbnailKey == null) return new Result(part.getDataStream(), loadedFrom);
+
+        Bitmap thumbnail = decodeThumbnail(part, request);
+        // Let Picasso decode, and report, anything BitmapFactory cannot
+        if (thumbnail == null) return new Result(part.getDataStream(), loadedFrom);
+        mThumbnailCache.put(thumbnailKey, thumbnail);
+        return new Result(thumbnail, loadedFrom);
+    }
+
+    /**
+     * Mirrors the resizing in Picasso's BitmapHunter.transformResult(): exact resizes stretch to
+     * the target size, center-inside resizes fit within it, and neither scales up when only
+     * scaling down.
+     *
+     * @return The thumbnail's width and height.
+     */
+    @VisibleForTesting
+    public static int[] getThumbnailSize(int inWidth, int inHeight, int targetWidth, int targetHeight, boolean centerInside, boolean onlyScaleDown) {
+        boolean fits = inWidth <= targetWidth && inHeight <= targetHeight;
+        if (onlyScaleDown && fits) return new int[]{inWidth, inHeight};
+        if (!centerInside) return new int[]{targetWidth, targetHeight};
+
+        float widthRatio = (float) targetWidth / inWidth;
+        float heightRatio = (float) targetHeight / inHeight;
+        if (widthRatio <= heightRatio) {
+            return new int[]{targetWidth, Math.max(1, Math.min(targetHeight, Math.round(inHeight * widthRatio)))};
+        }
+        return new int[]{Math.max(1, Math.min(targetWidth, Math.round(inWidth * heightRatio))), targetHeight};
+    }
+
+    //==============================================================================================
+    // private methods
+    //==============================================================================================
+
+    /**
+     * Returns the thumbnail cache key for the given request, or `null` if it should not be cached.
+     */
+    private String getThumbnailKey(Request request) {
+        if (mThumbnailCache == null || !request.hasSize() || request.centerCrop) return null;
+        if (request.targetWidth == 0 || request.targetHeight == 0) return null;
+        return request.uri + "\n" + request.targetWidth + "x" + request.targetHeight
+                + "\n" + (request.centerInside ? "inside" : "exact") + (request.onlyScaleDown ? ".down" : "")
+                + "\n" + request.rotationDegrees
+                + "\n" + request.config;
+    }
+
+    /**
+     * Decodes the part and scales it to the size Picasso would, so Picasso leaves its size as is
+     * and only rotates it.  Returns `null` if the part cannot be decoded.
+     */
+    private static Bitmap decodeThumbnail(MessagePart part, Request request) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decodeStream(part, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) return null;
+        int[] size = getThumbnailSize(options.outWidth, options.outHeight, request.targetWidth, request.targetHeight,
+                request.centerInside, request.onlyScaleDown);
+
+        // Sample down as far as possible without going below the thumbnail size
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= size[0] && options.outHeight / (sampleSize * 2) >= size[1]) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        if (request.config != null) options.inPreferredConfig = request.config;
+        Bitmap sampled = decodeStream(part, options);
+        if (sampled == null) return null;
+        if (sampled.getWidth() == size[0] && sampled.getHeight() == size[1]) return sampled;
+
+        Bitmap thumbnail = Bitmap.createScaledBitmap(sampled, size[0], size[1], true);
+        if (thumbnail != sampled) sampled.recycle();
+        return thumbnail;
+    }
+
+    private static Bitmap decodeStream(MessagePart part, BitmapFactory.Options options) throws IOException {
+        InputStream in = part.getDataStream();
+        if (in == null) return null;
+        try {
+            return BitmapFactory.decodeStream(in, null, options);
+        } finally {
+            in.close();
+        }
     }
 }
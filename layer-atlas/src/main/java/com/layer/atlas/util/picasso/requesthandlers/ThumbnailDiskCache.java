@@ -0,0 +1,301 @@
+package com.layer.atlas.util.picasso.requesthandlers;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.AsyncTask;
+import android.support.annotation.VisibleForTesting;
+
+import com.layer.atlas.util.Log;
+import com.layer.atlas.util.metrics.AtlasMetrics;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.Executor;
+
+/**
+ * Persists display-ready thumbnails, already decoded and resized, so reopening a conversation
+ * reads pixels straight from disk instead of re-decoding and re-scaling every preview.  Thumbnails
+ * are stored as raw pixels behind a small header, and reads memory-map the file and copy its
+ * pixels into a new Bitmap without decoding.
+ * <p>
+ * put() copies the thumbnail's pixels and writes them on the given Executor, so callers may
+ * recycle the Bitmap right away.  Least recently used files are deleted once the directory
+ * exceeds its byte budget.
+ */
+public class ThumbnailDiskCache {
+    private static final String DIRECTORY = "atlas_thumbnails";
+    private static final long DEFAULT_MAX_BYTES = 32 * 1024 * 1024;
+
+    private static final String SUFFIX = ".thumb";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int MAGIC = 0x41544842;
+    private static final int VERSION = 1;
+    private static final byte CONFIG_ARGB_8888 = 0;
+    private static final byte CONFIG_RGB_565 = 1;
+    // Magic, version, width, height, config, has alpha, pixel bytes, and key length
+    private static final int HEADER_BYTES = 4 + 4 + 4 + 4 + 1 + 1 + 4 + 4;
+
+    private static final String METRIC_HIT = "thumbnails.hit";
+    private static final String METRIC_MISS = "thumbnails.miss";
+    private static final String METRIC_READ = "thumbnails.read";
+    private static final String METRIC_WRITE = "thumbnails.write";
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+    private final Executor mExecutor;
+
+    /**
+     * Creates a cache in the application's cache directory, written on AsyncTask's thread pool.
+     */
+    public ThumbnailDiskCache(Context context) {
+        this(new File(context.getCacheDir(), DIRECTORY), DEFAULT_MAX_BYTES, AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    public ThumbnailDiskCache(File directory, long maxBytes, Executor executor) {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+        mExecutor = executor;
+    }
+
+    /**
+     * Returns a new Bitmap with the cached thumbnail's pixels, or `null` if none is cached.
+     */
+    public Bitmap get(String key) {
+        File file = getFile(key);
+        if (!file.isFile()) {
+            AtlasMetrics.increment(METRIC_MISS);
+            return null;
+        }
+        long start = AtlasMetrics.startTimer();
+        Bitmap thumbnail = null;
+        try {
+            thumbnail = read(file, key);
+        } catch (IOException e) {
+            if (Log.isLoggable(Log.WARN)) {
+                Log.w("Could not read thumbnail: " + file, e);
+            }
+        }
+        if (thumbnail == null) {
+            // Corrupt, outdated, or another key with the same hash
+            AtlasMetrics.increment(METRIC_MISS);
+            return null;
+        }
+        // Mark as recently used
+        file.setLastModified(System.currentTimeMillis());
+        AtlasMetrics.stopTimer(METRIC_READ, start);
+        AtlasMetrics.increment(METRIC_HIT);
+        return thumbnail;
+    }
+
+    /**
+     * Copies the thumbnail's pixels and writes them to the cache in the background.  Thumbnails in
+     * configs other than ARGB_8888 and RGB_565 are not cached.
+     */
+    public void put(final String key, Bitmap thumbnail) {
+        Bitmap.Config config = thumbnail.getConfig();
+        if (config != Bitmap.Config.ARGB_8888 && config != Bitmap.Config.RGB_565) return;
+
+        int pixelBytes = thumbnail.getRowBytes() * thumbnail.getHeight();
+        final ByteBuffer header = writeHeader(key, thumbnail.getWidth(), thumbnail.getHeight(),
+                config == Bitmap.Config.RGB_565, thumbnail.hasAlpha(), pixelBytes);
+        final ByteBuffer pixels = ByteBuffer.allocateDirect(pixelBytes);
+        thumbnail.copyPixelsToBuffer(pixels);
+        pixels.flip();
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                long start = AtlasMetrics.startTimer();
+                try {
+                    write(key, header, pixels);
+                    AtlasMetrics.stopTimer(METRIC_WRITE, start);
+                } catch (IOException e) {
+                    if (Log.isLoggable(Log.WARN)) {
+                        Log.w("Could not write thumbnail", e);
+                    }
+                }
+            }
+        });
+    }
+
+    public synchronized void clear() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Returns a header for a thumbnail's file, ready to be written ahead of its pixels.
+     */
+    @VisibleForTesting
+    public static ByteBuffer writeHeader(String key, int width, int height, boolean rgb565, boolean hasAlpha, int pixelBytes) {
+        byte[] keyBytes = key.getBytes(UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + keyBytes.length);
+        header.putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(width)
+                .putInt(height)
+                .put(rgb565 ? CONFIG_RGB_565 : CONFIG_ARGB_8888)
+                .put((byte) (hasAlpha ? 1 : 0))
+                .putInt(pixelBytes)
+                .putInt(keyBytes.length)
+                .put(keyBytes);
+        header.flip();
+        return header;
+    }
+
+    /**
+     * Reads a thumbnail file's header, leaving `buffer` at the start of its pixels.
+     *
+     * @return The Header, or `null` if the file is corrupt, truncated, from another version, or
+     * stored for another key with the same hash.
+     */
+    @VisibleForTesting
+    public static Header readHeader(ByteBuffer buffer, String key) {
+        if (buffer.remaining() < HEADER_BYTES) return null;
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) return null;
+        int width = buffer.getInt();
+        int height = buffer.getInt();
+        boolean rgb565 = buffer.get() == CONFIG_RGB_565;
+        boolean hasAlpha = buffer.get() != 0;
+        int pixelBytes = buffer.getInt();
+        int keyLength = buffer.getInt();
+
+        byte[] expectedKey = key.getBytes(UTF_8);
+        if (keyLength != expectedKey.length || buffer.remaining() < keyLength) return null;
+        byte[] storedKey = new byte[keyLength];
+        buffer.get(storedKey);
+        if (!Arrays.equals(storedKey, expectedKey)) return null;
+
+        int bytesPerPixel = rgb565 ? 2 : 4;
+        if (width <= 0 || height <= 0 || (long) width * height * bytesPerPixel != pixelBytes) return null;
+        if (buffer.remaining() != pixelBytes) return null;
+        return new Header(width, height, rgb565, hasAlpha);
+    }
+
+    //==============================================================================================
+    // private methods
+    //==============================================================================================
+
+    private File getFile(String key) {
+        return new File(mDirectory, Integer.toHexString(key.hashCode()) + SUFFIX);
+    }
+
+    /**
+     * Returns the thumbnail in `file` if it is intact and stored for `key`, or `null` otherwise.
+     */
+    private static Bitmap read(File file, String key) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = in.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            Header header = readHeader(buffer, key);
+            if (header == null) return null;
+
+            Bitmap thumbnail = Bitmap.createBitmap(header.getWidth(), header.getHeight(),
+                    header.isRgb565() ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888);
+            thumbnail.copyPixelsFromBuffer(buffer);
+            thumbnail.setHasAlpha(header.hasAlpha());
+            return thumbnail;
+        } finally {
+            in.close();
+        }
+    }
+
+    private synchronized void write(String key, ByteBuffer header, ByteBuffer pixels) throws IOException {
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            throw new IOException("Could not create thumbnail cache: " + mDirectory);
+        }
+        File file = getFile(key);
+        File temp = new File(mDirectory, file.getName() + TEMP_SUFFIX);
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            FileChannel channel = out.getChannel();
+            while (header.hasRemaining()) channel.write(header);
+            while (pixels.hasRemaining()) channel.write(pixels);
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not write thumbnail: " + file);
+        }
+        trim();
+    }
+
+    private void trim() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) return;
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= mMaxBytes) return;
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long l = lhs.lastModified();
+                long r = rhs.lastModified();
+                return l < r ? -1 : (l == r ? 0 : 1);
+            }
+        });
+        for (File file : files) {
+            if (total <= mMaxBytes) break;
+            long length = file.length();
+            if (file.delete()) total -= length;
+        }
+        if (Log.isLoggable(Log.VERBOSE)) {
+            Log.v("Trimmed thumbnail cache to " + total + " bytes");
+        }
+    }
+
+    //==============================================================================================
+    // Inner classes
+    //==============================================================================================
+
+    public static class Header {
+        private final int mWidth;
+        private final int mHeight;
+        private final boolean mRgb565;
+        private final boolean mHasAlpha;
+
+        Header(int width, int height, boolean rgb565, boolean hasAlpha) {
+            mWidth = width;
+            mHeight = height;
+            mRgb565 = rgb565;
+            mHasAlpha = hasAlpha;
+        }
+
+        public int getWidth() {
+            return mWidth;
+        }
+
+        public int getHeight() {
+            return mHeight;
+        }
+
+        /**
+         * Returns `true` if pixels are stored as RGB_565, or `false` if as ARGB_8888.
+         */
+        public boolean isRgb565() {
+            return mRgb565;
+        }
+
+        public boolean hasAlpha() {
+            return mHasAlpha;
+        }
+    }
+}
@@ -1,15 +1,13 @@
 package com.layer.atlas.util.picasso.transformations;
 
 import android.graphics.Bitmap;
-import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
-import android.graphics.PorterDuff;
-import android.graphics.PorterDuffXfermode;
-import android.graphics.Rect;
 
 import com.squareup.picasso.Transformation;
 
+/**
+ * Clips images to a circle with the diameter of their shorter side, anchored at the top left.
+ * Mutable ARGB_8888 images are clipped in place.
+ */
 public class CircleTransform implements Transformation {
     private final String mKey;
 
@@ -19,24 +17,8 @@ public class CircleTransform implements Transformation {
 
     @Override
     public Bitmap transform(Bitmap source) {
-        int srcWidth = source.getWidth();
-        int srcHeight = source.getHeight();
-        float srcRadius = (float) Math.min(srcWidth, srcHeight) / 2f;
-        Bitmap out = Bitmap.createBitmap(srcWidth, srcHeight, Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(out);
-        final Paint paint = new Paint();
-        final Rect rect = new Rect(0, 0, out.getWidth(), out.getHeight());
-
-        paint.setAntiAlias(true);
-        paint.setFilterBitmap(true);
-        paint.setDither(true);
-        canvas.drawARGB(0, 0, 0, 0);
-        paint.setColor(Color.WHITE);
-        canvas.drawCircle(srcRadius, srcRadius, srcRadius, paint);
-        paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_IN));
-        canvas.drawBitmap(source, rect, rect, paint);
-        source.recycle();
-        return out;
+        float diameter = Math.min(source.getWidth(), source.getHeight());
+        return ShapeClipper.get().clip(source, 0, 0, diameter, diameter, diameter / 2f, Bitmap.Config.ARGB_8888);
     }
 
     @Override
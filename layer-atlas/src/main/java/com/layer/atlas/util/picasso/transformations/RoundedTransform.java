@@ -1,25 +1,17 @@
 package com.layer.atlas.util.picasso.transformations;
 
 import android.graphics.Bitmap;
-import android.graphics.Canvas;
-import android.graphics.Paint;
-import android.graphics.PorterDuff;
-import android.graphics.PorterDuffXfermode;
-import android.graphics.RectF;
 
 import com.squareup.picasso.Transformation;
 
+/**
+ * Rounds the corners of images.  Mutable ARGB_8888 images are rounded in place.
+ */
 public class RoundedTransform implements Transformation {
-    private float mCornerRadius = 0;
-    private final Paint mPaint;
-    private final PorterDuffXfermode mShapeXferMode;
-    private final PorterDuffXfermode mBitmapXferMode;
+    private final float mCornerRadius;
 
     public RoundedTransform(float cornerRadius) {
         mCornerRadius = cornerRadius;
-        mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        mShapeXferMode = null;
-        mBitmapXferMode = new PorterDuffXfermode((PorterDuff.Mode.SRC_IN));
     }
 
     @Override
@@ -27,23 +19,11 @@ public class RoundedTransform implements Transformation {
         if (mCornerRadius == 0f) return source;
         if (source == null) return source;
 
-        int width = source.getWidth();
-        int height = source.getHeight();
-
         // Gif returns null config, must handle it
         Bitmap.Config config = source.getConfig();
         if (config == null) config = Bitmap.Config.ARGB_8888;
 
-        Bitmap image = Bitmap.createBitmap(width, height, config);
-        Canvas canvas = new Canvas(image);
-        RectF rect = new RectF(0, 0, width, height);
-
-        mPaint.setXfermode(mShapeXferMode);
-        canvas.drawRoundRect(rect, mCornerRadius, mCornerRadius, mPaint);
-        mPaint.setXfermode(mBitmapXferMode);
-        canvas.drawBitmap(source, 0, 0, mPaint);
-        source.recycle();
-        return image;
+        return ShapeClipper.get().clip(source, 0, 0, source.getWidth(), source.getHeight(), mCornerRadius, config);
     }
 
     @Override
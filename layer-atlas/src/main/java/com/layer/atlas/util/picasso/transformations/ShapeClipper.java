@@ -0,0 +1,78 @@
+package com.layer.atlas.util.picasso.transformations;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.RectF;
+import android.graphics.Shader;
+
+/**
+ * Clips Bitmaps to rounded rectangles for the transformations.  Mutable ARGB_8888 sources, e.g.
+ * Bitmaps Picasso has already resized, are clipped in place by erasing outside the shape, so no
+ * Bitmap is allocated.  Other sources are drawn once through a BitmapShader into a new Bitmap.
+ * <p>
+ * Picasso runs transformations concurrently on its worker threads, so each thread gets its own
+ * ShapeClipper, and drawing objects are reused across calls.
+ */
+final class ShapeClipper {
+    private static final ThreadLocal<ShapeClipper> sClippers = new ThreadLocal<ShapeClipper>() {
+        @Override
+        protected ShapeClipper initialValue() {
+            return new ShapeClipper();
+        }
+    };
+
+    private final Canvas mCanvas = new Canvas();
+    private final Paint mShaderPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG | Paint.DITHER_FLAG);
+    private final Paint mErasePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF mShape = new RectF();
+    private final Path mOutside = new Path();
+
+    private ShapeClipper() {
+        mErasePaint.setColor(Color.BLACK);
+        mErasePaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.DST_OUT));
+    }
+
+    static ShapeClipper get() {
+        return sClippers.get();
+    }
+
+    /**
+     * Clips `source` to a rounded rectangle.  Following the Transformation contract, returns
+     * `source` itself when clipped in place, or otherwise a new Bitmap the size of `source`,
+     * recycling `source`.
+     *
+     * @param radius Corner radius; a square with radius half its side is a circle.
+     * @param config Config for a new Bitmap, used when `source` cannot be clipped in place.
+     */
+    Bitmap clip(Bitmap source, float left, float top, float right, float bottom, float radius, Bitmap.Config config) {
+        mShape.set(left, top, right, bottom);
+        try {
+            if (source.isMutable() && source.getConfig() == Bitmap.Config.ARGB_8888) {
+                source.setHasAlpha(true);
+                mOutside.reset();
+                mOutside.addRoundRect(mShape, radius, radius, Path.Direction.CW);
+                mOutside.setFillType(Path.FillType.INVERSE_WINDING);
+                mCanvas.setBitmap(source);
+                mCanvas.drawPath(mOutside, mErasePaint);
+                return source;
+            }
+
+            Bitmap out = Bitmap.createBitmap(source.getWidth(), source.getHeight(), config);
+            mShaderPaint.setShader(new BitmapShader(source, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP));
+            mCanvas.setBitmap(out);
+            mCanvas.drawRoundRect(mShape, radius, radius, mShaderPaint);
+            source.recycle();
+            return out;
+        } finally {
+            // Do not keep Bitmaps reachable from the thread
+            mCanvas.setBitmap(null);
+            mShaderPaint.setShader(null);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.layer.atlas.util.views;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Outline;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Shader;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.util.AttributeSet;
+import android.view.View;
+import android.view.ViewOutlineProvider;
+import android.widget.ImageView;
+
+import com.layer.atlas.R;
+
+/**
+ * An ImageView that rounds its corners at draw time, so image cells can show Bitmaps straight
+ * from Picasso's memory cache rather than rounded copies.  One decoded Bitmap per part and size
+ * then serves every corner radius, and can be handed to other screens, e.g. the image popup.
+ * <p>
+ * On Lollipop and above, the view clips to a rounded outline, which the render thread applies at
+ * no cost to any content.  Below Lollipop, BitmapDrawables are drawn through a BitmapShader as a
+ * rounded rectangle, without Picasso's fade-in; other Drawables, e.g. placeholders, are drawn
+ * as usual.
+ */
+public class RoundedImageView extends ImageView {
+    private final Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+    private final RectF mBounds = new RectF();
+    private final Matrix mShaderMatrix = new Matrix();
+    private float mCornerRadius;
+    private Bitmap mShaderBitmap;
+    private BitmapShader mShader;
+
+    public RoundedImageView(Context context) {
+        this(context, null);
+    }
+
+    public RoundedImageView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public RoundedImageView(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+        TypedArray ta = context.getTheme().obtainStyledAttributes(attrs, R.styleable.AtlasRoundedImageView, defStyle, 0);
+        mCornerRadius = ta.getDimension(R.styleable.AtlasRoundedImageView_imageCornerRadius, 0);
+        ta.recycle();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            setOutlineProvider(new RoundedOutlineProvider());
+            setClipToOutline(true);
+        }
+    }
+
+    public RoundedImageView setCornerRadius(float cornerRadius) {
+        mCornerRadius = cornerRadius;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) invalidateOutline();
+        invalidate();
+        return this;
+    }
+
+    public float getCornerRadius() {
+        return mCornerRadius;
+    }
+
+    @Override
+    public void setImageDrawable(Drawable drawable) {
+        // Do not keep a replaced Bitmap reachable through the shader
+        mShader = null;
+        mShaderBitmap = null;
+        mPaint.setShader(null);
+        super.setImageDrawable(drawable);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        Drawable drawable = getDrawable();
+        Bitmap bitmap = (drawable instanceof BitmapDrawable) ? ((BitmapDrawable) drawable).getBitmap() : null;
+        boolean outlined = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP && canvas.isHardwareAccelerated();
+        if (mCornerRadius <= 0 || outlined || bitmap == null || bitmap.isRecycled()) {
+            super.onDraw(canvas);
+            return;
+        }
+
+        if (bitmap != mShaderBitmap) {
+            mShader = new BitmapShader(bitmap, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
+            mShaderBitmap = bitmap;
+            mPaint.setShader(mShader);
+        }
+
+        // Map the Bitmap the way ImageView.onDraw() maps the Drawable: into its bounds, through
+        // the image matrix, then inside the padding.
+        Rect bounds = drawable.getBounds();
+        Matrix imageMatrix = getImageMatrix();
+        mShaderMatrix.setScale((float) bounds.width() / bitmap.getWidth(), (float) bounds.height() / bitmap.getHeight());
+        mShaderMatrix.postTranslate(bounds.left, bounds.top);
+        mShaderMatrix.postConcat(imageMatrix);
+        mShaderMatrix.postTranslate(getPaddingLeft(), getPaddingTop());
+        mShader.setLocalMatrix(mShaderMatrix);
+
+        mBounds.set(bounds);
+        imageMatrix.mapRect(mBounds);
+        mBounds.offset(getPaddingLeft(), getPaddingTop());
+        if (!mBounds.intersect(getPaddingLeft(), getPaddingTop(), getWidth() - getPaddingRight(), getHeight() - getPaddingBottom())) {
+            return;
+        }
+        mPaint.setAlpha(getImageAlphaCompat(drawable));
+        canvas.drawRoundRect(mBounds, mCornerRadius, mCornerRadius, mPaint);
+    }
+
+    //==============================================================================================
+    // private methods
+    //==============================================================================================
+
+    private static int getImageAlphaCompat(Drawable drawable) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) return drawable.getAlpha();
+        return 255;
+    }
+
+    //==============================================================================================
+    // Inner classes
+    //==============================================================================================
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static class RoundedOutlineProvider extends ViewOutlineProvider {
+        @Override
+        public void getOutline(View view, Outline outline) {
+            outline.setRoundRect(0, 0, view.getWidth(), view.getHeight(), ((RoundedImageView) view).mCornerRadius);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.layer.atlas.util.views;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.text.Layout;
+import android.text.Spanned;
+import android.text.style.ClickableSpan;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+
+/**
+ * TextLayoutView draws a precomputed text Layout, such as a StaticLayout built on a background
+ * thread.  Unlike a TextView, it performs no text measurement, line breaking, or link detection
+ * on the main thread; it sizes itself to the Layout plus padding.  ClickableSpans in the Layout's
+ * text receive clicks.
+ */
+public class TextLayoutView extends View {
+    private Layout mLayout;
+    private ClickableSpan mPressedSpan;
+    private boolean mLongPressed;
+
+    public TextLayoutView(Context context) {
+        super(context);
+    }
+
+    public TextLayoutView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    public TextLayoutView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+    }
+
+    /**
+     * Sets the Layout to draw.  Only requests a new layout pass when the size changes.
+     *
+     * @param layout Layout to draw, or `null` to draw nothing.
+     */
+    public void setLayout(Layout layout) {
+        if (layout == mLayout) return;
+        boolean sizeChanged = mLayout == null || layout == null
+                || mLayout.getWidth() != layout.getWidth() || mLayout.getHeight() != layout.getHeight();
+        mLayout = layout;
+        mPressedSpan = null;
+        setContentDescription(layout == null ? null : layout.getText());
+        if (sizeChanged) requestLayout();
+        invalidate();
+    }
+
+    public Layout getLayout() {
+        return mLayout;
+    }
+
+    public CharSequence getText() {
+        return mLayout == null ? null : mLayout.getText();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = getPaddingLeft() + getPaddingRight();
+        int height = getPaddingTop() + getPaddingBottom();
+        if (mLayout != null) {
+            width += mLayout.getWidth();
+            height += mLayout.getHeight();
+        }
+        width = Math.max(width, getSuggestedMinimumWidth());
+        height = Math.max(height, getSuggestedMinimumHeight());
+        setMeasuredDimension(resolveSize(width, widthMeasureSpec), resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (mLayout == null) return;
+        int saveCount = canvas.save();
+        canvas.translate(getPaddingLeft(), getPaddingTop());
+        mLayout.draw(canvas);
+        canvas.restoreToCount(saveCount);
+    }
+
+    @Override
+    public boolean performLongClick() {
+        mLongPressed = true;
+        return super.performLongClick();
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                mLongPressed = false;
+                mPressedSpan = findClickableSpan(event.getX(), event.getY());
+                break;
+            case MotionEvent.ACTION_UP:
+                ClickableSpan span = findClickableSpan(event.getX(), event.getY());
+                if (span != null && span == mPressedSpan && !mLongPressed) {
+                    span.onClick(this);
+                }
+                mPressedSpan = null;
+                break;
+            case MotionEvent.ACTION_CANCEL:
+                mPressedSpan = null;
+                break;
+        }
+        boolean handled = super.onTouchEvent(event);
+        return handled || mPressedSpan != null;
+    }
+
+    private ClickableSpan findClickableSpan(float x, float y) {
+        if (mLayout == null || !(mLayout.getText() instanceof Spanned)) return null;
+        int layoutX = (int) x - getPaddingLeft();
+        int layoutY = (int) y - getPaddingTop();
+        if (layoutX < 0 || layoutY < 0 || layoutX > mLayout.getWidth() || layoutY > mLayout.getHeight()) return null;
+        int line = mLayout.getLineForVertical(layoutY);
+        if (layoutX > mLayout.getLineRight(line)) return null;
+        int offset = mLayout.getOffsetForHorizontal(line, layoutX);
+        ClickableSpan[] spans = ((Spanned) mLayout.getText()).getSpans(offset, offset, ClickableSpan.class);
+        return spans.length > 0 ? spans[0] : null;
+    }
+}
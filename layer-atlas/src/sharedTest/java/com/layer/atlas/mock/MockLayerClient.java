@@ -26,12 +26,29 @@ import com.layer.sdk.query.Query;
 import com.layer.sdk.query.Queryable;
 import com.layer.sdk.query.RecyclerViewController;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
 public class MockLayerClient extends LayerClient {
+    private Identity mAuthenticatedUser;
+    private RecyclerViewController mRecyclerViewController;
+
+    public MockLayerClient setAuthenticatedUser(Identity authenticatedUser) {
+        mAuthenticatedUser = authenticatedUser;
+        return this;
+    }
+
+    /**
+     * Sets the controller returned by newRecyclerViewController(), e.g. one backed by a List.
+     */
+    public MockLayerClient setRecyclerViewController(RecyclerViewController recyclerViewController) {
+        mRecyclerViewController = recyclerViewController;
+        return this;
+    }
 
     @Override
     public boolean isClosed() {
@@ -85,12 +102,22 @@ public class MockLayerClient extends LayerClient {
 
     @Override
     public MessagePart newMessagePart(String s, byte[] bytes) {
-        return null;
+        return new MockMessagePart(bytes, s);
     }
 
     @Override
     public MessagePart newMessagePart(String s, InputStream inputStream, long l) {
-        return null;
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) l);
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new MockMessagePart(out.toByteArray(), s);
+        } catch (IOException e) {
+            return null;
+        }
     }
 
     @Override
@@ -150,7 +177,7 @@ public class MockLayerClient extends LayerClient {
 
     @Override
     public <T extends Queryable> RecyclerViewController<T> newRecyclerViewController(Query<T> query, Collection<String> collection, RecyclerViewController.Callback callback) {
-        return null;
+        return mRecyclerViewController;
     }
 
     @Override
@@ -185,23 +212,23 @@ public class MockLayerClient extends LayerClient {
 
     @Override
     public LayerClient registerEventListener(LayerChangeEventListener layerChangeEventListener) {
-        return null;
+        return this;
     }
 
     @Override
     public LayerClient unregisterEventListener(LayerChangeEventListener layerChangeEventListener) {
-        return null;
+        return this;
     }
 
     @Nullable
     @Override
     public Identity getAuthenticatedUser() {
-        return null;
+        return mAuthenticatedUser;
     }
 
     @Override
     public boolean isAuthenticated() {
-        return false;
+        return mAuthenticatedUser != null;
     }
 
     @Override
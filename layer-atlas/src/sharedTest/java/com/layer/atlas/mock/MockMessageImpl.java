@@ -0,0 +1,151 @@
+package com.layer.atlas.mock;
+
+import android.net.Uri;
+import android.support.annotation.Nullable;
+
+import com.layer.sdk.LayerClient;
+import com.layer.sdk.messaging.Conversation;
+import com.layer.sdk.messaging.Identity;
+import com.layer.sdk.messaging.Message;
+import com.layer.sdk.messaging.MessageOptions;
+import com.layer.sdk.messaging.MessagePart;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+public class MockMessageImpl implements Message {
+    private static int sInstanceCount = 0;
+
+    private List<MessagePart> mMessageParts = new ArrayList<>();
+    private Uri mId;
+    private long mPosition;
+    private Conversation mConversation;
+    private Identity mSender;
+    private Date mSentAt;
+    private Date mReceivedAt;
+    private boolean mSent = true;
+    private Map<Identity, RecipientStatus> mRecipientStatus;
+
+    public MockMessageImpl(List<MessagePart> messageParts) {
+        sInstanceCount++;
+        mId = Uri.parse("mockmessage:///" + sInstanceCount);
+        mPosition = sInstanceCount;
+        mMessageParts = messageParts;
+        for (MessagePart part : messageParts) {
+            if (part instanceof MockMessagePart) ((MockMessagePart) part).setMessage(this);
+        }
+    }
+
+    public MockMessageImpl setId(Uri id) {
+        mId = id;
+        return this;
+    }
+
+    public MockMessageImpl setPosition(long position) {
+        mPosition = position;
+        return this;
+    }
+
+    public MockMessageImpl setConversation(Conversation conversation) {
+        mConversation = conversation;
+        return this;
+    }
+
+    public MockMessageImpl setSender(Identity sender) {
+        mSender = sender;
+        return this;
+    }
+
+    public MockMessageImpl setSentAt(Date sentAt) {
+        mSentAt = sentAt;
+        return this;
+    }
+
+    public MockMessageImpl setReceivedAt(Date receivedAt) {
+        mReceivedAt = receivedAt;
+        return this;
+    }
+
+    public MockMessageImpl setSent(boolean sent) {
+        mSent = sent;
+        return this;
+    }
+
+    public MockMessageImpl setRecipientStatus(Map<Identity, RecipientStatus> recipientStatus) {
+        mRecipientStatus = recipientStatus;
+        return this;
+    }
+
+    @Override
+    public void delete(LayerClient.DeletionMode deletionMode) {
+
+    }
+
+    @Override
+    public void markAsRead() {
+
+    }
+
+    @Override
+    public Uri getId() {
+        return mId;
+    }
+
+    @Override
+    public long getPosition() {
+        return mPosition;
+    }
+
+    @Override
+    public Conversation getConversation() {
+        return mConversation;
+    }
+
+    @Override
+    public List<MessagePart> getMessageParts() {
+        return mMessageParts;
+    }
+
+    @Override
+    public boolean isSent() {
+        return mSent;
+    }
+
+    @Override
+    public boolean isDeleted() {
+        return false;
+    }
+
+    @Override
+    public Date getSentAt() {
+        return mSentAt;
+    }
+
+    @Override
+    public Date getReceivedAt() {
+        return mReceivedAt;
+    }
+
+    @Nullable
+    @Override
+    public Identity getSender() {
+        return mSender;
+    }
+
+    @Override
+    public Map<Identity, RecipientStatus> getRecipientStatus() {
+        return mRecipientStatus;
+    }
+
+    @Override
+    public RecipientStatus getRecipientStatus(Identity identity) {
+        return mRecipientStatus == null ? null : mRecipientStatus.get(identity);
+    }
+
+    @Override
+    public MessageOptions getOptions() {
+        return null;
+    }
+}
@@ -14,6 +14,7 @@ public class MockMessagePart extends MessagePart {
     private final byte[] mContent;
     private final String mMimeType;
     private final Uri mId;
+    private Message mMessage;
 
     public MockMessagePart(byte[] content, String mimeType) {
         sInstanceCount++;
@@ -22,6 +23,11 @@ public class MockMessagePart extends MessagePart {
         mMimeType = mimeType;
     }
 
+    public MockMessagePart setMessage(Message message) {
+        mMessage = message;
+        return this;
+    }
+
     @Override
     public Uri getId() {
         return mId;
@@ -29,7 +35,7 @@ public class MockMessagePart extends MessagePart {
 
     @Override
     public Message getMessage() {
-        return null;
+        return mMessage;
     }
 
     @Override
@@ -0,0 +1,90 @@
+package com.layer.atlas.mock;
+
+import com.layer.atlas.messagetypes.location.LocationFix;
+import com.layer.atlas.messagetypes.location.LocationFixProvider;
+
+/**
+ * LocationFixProvider for JVM tests.  Returns a configurable last known fix, and optionally
+ * delivers a fresh fix after a delay on a FakeScheduler.
+ */
+public class FakeLocationFixProvider implements LocationFixProvider {
+    private final FakeScheduler mScheduler;
+    private LocationFix mLastKnown;
+    private LocationFix mFreshFix;
+    private long mFreshDelayMillis;
+    private boolean mAvailable = true;
+    private Object mPending;
+    private int mRequestCount;
+    private long mRequestTimeoutMillis;
+    private int mCancelCount;
+
+    public FakeLocationFixProvider(FakeScheduler scheduler) {
+        mScheduler = scheduler;
+    }
+
+    public FakeLocationFixProvider setLastKnown(LocationFix lastKnown) {
+        mLastKnown = lastKnown;
+        return this;
+    }
+
+    /**
+     * Sets the fix delivered `delayMillis` after a fresh request, or `null` to never deliver.
+     */
+    public FakeLocationFixProvider setFreshFix(LocationFix fix, long delayMillis) {
+        mFreshFix = fix;
+        mFreshDelayMillis = delayMillis;
+        return this;
+    }
+
+    public FakeLocationFixProvider setAvailable(boolean available) {
+        mAvailable = available;
+        return this;
+    }
+
+    public int getRequestCount() {
+        return mRequestCount;
+    }
+
+    /**
+     * Returns the timeout passed with the last fresh request.
+     */
+    public long getRequestTimeoutMillis() {
+        return mRequestTimeoutMillis;
+    }
+
+    public int getCancelCount() {
+        return mCancelCount;
+    }
+
+    @Override
+    public LocationFix getLastKnownLocation() {
+        return mLastKnown;
+    }
+
+    @Override
+    public boolean requestFreshLocation(final Listener listener, long timeoutMillis) {
+        if (!mAvailable) return false;
+        mRequestCount++;
+        mRequestTimeoutMillis = timeoutMillis;
+        if (mFreshFix != null) {
+            final LocationFix fix = mFreshFix;
+            mPending = mScheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    mPending = null;
+                    listener.onLocationFix(fix);
+                }
+            }, mFreshDelayMillis);
+        }
+        return true;
+    }
+
+    @Override
+    public void cancel(Listener listener) {
+        mCancelCount++;
+        if (mPending != null) {
+            mScheduler.cancel(mPending);
+            mPending = null;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.layer.atlas.mock;
+
+import com.layer.atlas.util.Scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Virtual clock for JVM tests.  Scheduled tasks run only when time is advanced with advance().
+ */
+public class FakeScheduler implements Scheduler {
+    private final List<Task> mTasks = new ArrayList<Task>();
+    private long mNow;
+
+    public FakeScheduler(long startTimeMillis) {
+        mNow = startTimeMillis;
+    }
+
+    public long now() {
+        return mNow;
+    }
+
+    /**
+     * Advances the clock, running due tasks in order.
+     */
+    public void advance(long millis) {
+        long target = mNow + millis;
+        while (true) {
+            Task next = null;
+            for (Task task : mTasks) {
+                if (task.mTime <= target && (next == null || task.mTime < next.mTime)) next = task;
+            }
+            if (next == null) break;
+            mTasks.remove(next);
+            mNow = next.mTime;
+            next.mRunnable.run();
+        }
+        mNow = target;
+    }
+
+    public int getPendingCount() {
+        return mTasks.size();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return mNow;
+    }
+
+    @Override
+    public long uptimeMillis() {
+        return mNow;
+    }
+
+    @Override
+    public Object schedule(Runnable runnable, long delayMillis) {
+        Task task = new Task(runnable, mNow + delayMillis);
+        mTasks.add(task);
+        return task;
+    }
+
+    @Override
+    public void cancel(Object token) {
+        mTasks.remove(token);
+    }
+
+    private static class Task {
+        final Runnable mRunnable;
+        final long mTime;
+
+        Task(Runnable runnable, long time) {
+            mRunnable = runnable;
+            mTime = time;
+        }
+    }
+}
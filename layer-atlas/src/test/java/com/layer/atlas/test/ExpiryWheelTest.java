@@ -0,0 +1,94 @@
+package com.layer.atlas.test;
+
+import com.layer.atlas.mock.FakeScheduler;
+import com.layer.atlas.util.ExpiryWheel;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Verifies batch expiry timing on a virtual clock.
+ */
+public class ExpiryWheelTest {
+    private static final long TIMEOUT = 10000;
+    private static final long RESOLUTION = 1000;
+
+    private FakeScheduler mScheduler;
+    private List<Set<String>> mBatches;
+    private ExpiryWheel<String> mWheel;
+
+    @Before
+    public void setUp() {
+        mScheduler = new FakeScheduler(0);
+        mBatches = new ArrayList<Set<String>>();
+        mWheel = new ExpiryWheel<String>(mScheduler, TIMEOUT, RESOLUTION, new ExpiryWheel.Listener<String>() {
+            @Override
+            public void onExpired(Set<String> keys) {
+                mBatches.add(keys);
+            }
+        });
+    }
+
+    @Test
+    public void testExpiresWithinResolutionOfTimeout() {
+        mScheduler.advance(300);
+        mWheel.touch("a");
+        mScheduler.advance(TIMEOUT - 1);
+        assertThat(mBatches.size(), is(0));
+        mScheduler.advance(RESOLUTION);
+        assertThat(mBatches.size(), is(1));
+        assertThat(mWheel.size(), is(0));
+        assertThat(mScheduler.getPendingCount(), is(0));
+    }
+
+    @Test
+    public void testTouchPostponesExpiry() {
+        mWheel.touch("a");
+        for (int i = 0; i < 10; i++) {
+            mScheduler.advance(TIMEOUT / 2);
+            mWheel.touch("a");
+        }
+        assertThat(mBatches.size(), is(0));
+        mScheduler.advance(TIMEOUT + RESOLUTION);
+        assertThat(mBatches.size(), is(1));
+    }
+
+    @Test
+    public void testExpiresTogetherInOneBatch() {
+        for (int i = 0; i < 100; i++) {
+            mScheduler.advance(5);
+            mWheel.touch("typist" + i);
+        }
+        assertThat(mScheduler.getPendingCount(), is(1));
+        mScheduler.advance(TIMEOUT + RESOLUTION);
+
+        assertThat(mBatches.size(), is(1));
+        assertThat(mBatches.get(0).size(), is(100));
+    }
+
+    @Test
+    public void testRemoveDoesNotExpire() {
+        mWheel.touch("a");
+        mWheel.touch("b");
+        mWheel.remove("a");
+        mScheduler.advance(TIMEOUT * 2);
+
+        assertThat(mBatches.size(), is(1));
+        assertThat(mBatches.get(0).contains("a"), is(false));
+        assertThat(mBatches.get(0).contains("b"), is(true));
+    }
+
+    @Test
+    public void testRemovingLastKeyStopsTicking() {
+        mWheel.touch("a");
+        mWheel.remove("a");
+        assertThat(mScheduler.getPendingCount(), is(0));
+    }
+}
@@ -0,0 +1,55 @@
+package com.layer.atlas.test;
+
+import com.layer.atlas.util.metrics.LatencyHistogram;
+
+import org.junit.Test;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+    @Test
+    public void testSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 20; i++) {
+            histogram.record(i);
+        }
+        assertThat(histogram.getCount(), is(20L));
+        assertThat(histogram.getMin(), is(1L));
+        assertThat(histogram.getMax(), is(20L));
+        assertThat(histogram.getValueAtPercentile(50), is(10L));
+        assertThat(histogram.getValueAtPercentile(100), is(20L));
+    }
+
+    @Test
+    public void testPercentilesWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 1ms to 1000ms in nanoseconds
+        for (long ms = 1; ms <= 1000; ms++) {
+            histogram.record(ms * 1000000L);
+        }
+        assertWithin(histogram.getValueAtPercentile(50), 500000000L);
+        assertWithin(histogram.getValueAtPercentile(95), 950000000L);
+        assertWithin(histogram.getValueAtPercentile(99), 990000000L);
+        assertThat(histogram.getMax(), is(1000000000L));
+    }
+
+    @Test
+    public void testEmptyAndReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertThat(histogram.getValueAtPercentile(99), is(0L));
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(-5);
+        assertThat(histogram.getMin(), is(0L));
+        assertThat(histogram.getValueAtPercentile(100), is(Long.MAX_VALUE));
+        histogram.reset();
+        assertThat(histogram.getCount(), is(0L));
+        assertThat(histogram.getMax(), is(0L));
+    }
+
+    private static void assertWithin(long actual, long expected) {
+        double error = Math.abs(actual - expected) / (double) expected;
+        assertTrue("Expected ~" + expected + " but was " + actual, error <= 1.0 / 16);
+    }
+}
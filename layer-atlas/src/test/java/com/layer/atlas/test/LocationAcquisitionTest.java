@@ -0,0 +1,150 @@
+package com.layer.atlas.test;
+
+import com.layer.atlas.messagetypes.location.LocationAcquisition;
+import com.layer.atlas.messagetypes.location.LocationFix;
+import com.layer.atlas.mock.FakeLocationFixProvider;
+import com.layer.atlas.mock.FakeScheduler;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Measures LocationSender send latency (time from acquire() to a fix being available to send)
+ * on a virtual clock.
+ */
+public class LocationAcquisitionTest {
+    private static final long START = 1500000000000L;
+    private static final long TIMEOUT = 5000;
+
+    private FakeScheduler mScheduler;
+    private FakeLocationFixProvider mProvider;
+    private LocationAcquisition mAcquisition;
+    private RecordingCallback mCallback;
+
+    @Before
+    public void setUp() {
+        mScheduler = new FakeScheduler(START);
+        mProvider = new FakeLocationFixProvider(mScheduler);
+        mAcquisition = new LocationAcquisition(mProvider, mScheduler)
+                .setCachedThresholds(60000, 50)
+                .setTimeout(TIMEOUT);
+        mCallback = new RecordingCallback();
+    }
+
+    @Test
+    public void testRecentLastKnownSendsImmediately() {
+        LocationFix lastKnown = new LocationFix(37.78, -122.41, 20, START - 30000);
+        mProvider.setLastKnown(lastKnown).setFreshFix(fix(START), 2000);
+
+        assertThat(mAcquisition.acquire(mCallback), is(true));
+
+        assertThat(mCallback.mCount, is(1));
+        assertThat(mCallback.mSource, is(LocationAcquisition.Source.CACHED));
+        assertThat(mCallback.mFix, is(lastKnown));
+        assertThat(mCallback.mLatency, is(0L));
+        assertThat(mProvider.getRequestCount(), is(0));
+    }
+
+    @Test
+    public void testOldLastKnownWaitsForFreshFix() {
+        mProvider.setLastKnown(new LocationFix(37.78, -122.41, 20, START - 120000)).setFreshFix(fix(START + 800), 800);
+
+        mAcquisition.acquire(mCallback);
+        assertThat(mCallback.mCount, is(0));
+        assertThat(mProvider.getRequestTimeoutMillis(), is(TIMEOUT));
+        mScheduler.advance(TIMEOUT * 2);
+
+        assertThat(mCallback.mCount, is(1));
+        assertThat(mCallback.mSource, is(LocationAcquisition.Source.FRESH));
+        assertThat(mCallback.mLatency, is(800L));
+        assertThat(mScheduler.getPendingCount(), is(0));
+    }
+
+    @Test
+    public void testInaccurateLastKnownWaitsForFreshFix() {
+        mProvider.setLastKnown(new LocationFix(37.78, -122.41, 500, START - 1000)).setFreshFix(fix(START + 300), 300);
+
+        mAcquisition.acquire(mCallback);
+        mScheduler.advance(TIMEOUT * 2);
+
+        assertThat(mCallback.mSource, is(LocationAcquisition.Source.FRESH));
+        assertThat(mCallback.mLatency, is(300L));
+    }
+
+    @Test
+    public void testTimeoutFallsBackToStaleLastKnown() {
+        LocationFix lastKnown = new LocationFix(37.78, -122.41, 20, START - 600000);
+        mProvider.setLastKnown(lastKnown).setFreshFix(null, 0);
+
+        mAcquisition.acquire(mCallback);
+        mScheduler.advance(TIMEOUT * 2);
+
+        assertThat(mCallback.mCount, is(1));
+        assertThat(mCallback.mSource, is(LocationAcquisition.Source.STALE));
+        assertThat(mCallback.mFix, is(lastKnown));
+        assertThat(mCallback.mLatency, is(TIMEOUT));
+        assertThat(mProvider.getCancelCount(), is(1));
+    }
+
+    @Test
+    public void testLateFreshFixIsIgnoredAfterTimeout() {
+        mProvider.setLastKnown(null).setFreshFix(fix(START + TIMEOUT + 1000), TIMEOUT + 1000);
+
+        mAcquisition.acquire(mCallback);
+        mScheduler.advance(TIMEOUT * 2);
+
+        assertThat(mCallback.mCount, is(0));
+        assertThat(mCallback.mUnavailableCount, is(1));
+        assertThat(mCallback.mLatency, is(TIMEOUT));
+    }
+
+    @Test
+    public void testUnavailableProviderUsesLastKnown() {
+        LocationFix lastKnown = new LocationFix(37.78, -122.41, -1, START - 1000);
+        mProvider.setLastKnown(lastKnown).setAvailable(false);
+
+        assertThat(mAcquisition.acquire(mCallback), is(true));
+        assertThat(mCallback.mSource, is(LocationAcquisition.Source.STALE));
+        assertThat(mCallback.mLatency, is(0L));
+    }
+
+    @Test
+    public void testUnavailableProviderWithoutLastKnownFails() {
+        mProvider.setAvailable(false);
+
+        assertThat(mAcquisition.acquire(mCallback), is(false));
+        assertThat(mCallback.mCount, is(0));
+        assertThat(mCallback.mFix, nullValue());
+    }
+
+    private static LocationFix fix(long time) {
+        return new LocationFix(37.7793, -122.4193, 10, time);
+    }
+
+    private class RecordingCallback implements LocationAcquisition.Callback {
+        private final long mStart = mScheduler.now();
+        int mCount;
+        int mUnavailableCount;
+        LocationFix mFix;
+        LocationAcquisition.Source mSource;
+        long mLatency = -1;
+
+        @Override
+        public void onLocationAcquired(LocationFix fix, LocationAcquisition.Source source) {
+            mCount++;
+            mFix = fix;
+            mSource = source;
+            mLatency = mScheduler.now() - mStart;
+        }
+
+        @Override
+        public void onLocationUnavailable() {
+            mUnavailableCount++;
+            mLatency = mScheduler.now() - mStart;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.layer.atlas.test;
+
+import com.layer.atlas.util.picasso.requesthandlers.MessagePartRequestHandler;
+
+import org.junit.Test;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Verifies that cached thumbnails are sized the way Picasso would resize them.
+ */
+public class MessagePartRequestHandlerTest {
+    @Test
+    public void testExactResizeStretchesToTarget() {
+        assertSize(MessagePartRequestHandler.getThumbnailSize(1000, 500, 300, 200, false, false), 300, 200);
+        assertSize(MessagePartRequestHandler.getThumbnailSize(100, 50, 300, 200, false, false), 300, 200);
+    }
+
+    @Test
+    public void testCenterInsideFitsWithinTarget() {
+        // Width bound
+        assertSize(MessagePartRequestHandler.getThumbnailSize(1000, 500, 300, 300, true, false), 300, 150);
+        // Height bound
+        assertSize(MessagePartRequestHandler.getThumbnailSize(500, 1000, 300, 300, true, false), 150, 300);
+        // Same aspect ratio
+        assertSize(MessagePartRequestHandler.getThumbnailSize(600, 400, 300, 200, true, false), 300, 200);
+    }
+
+    @Test
+    public void testCenterInsideRounding() {
+        // 333 * 0.3 = 99.9
+        assertSize(MessagePartRequestHandler.getThumbnailSize(1000, 333, 300, 300, true, false), 300, 100);
+        // 1001 * 0.3 = 300.3
+        assertSize(MessagePartRequestHandler.getThumbnailSize(1001, 1000, 300, 300, true, false), 300, 300);
+        // 3 * 0.1 = 0.3, but never below one pixel
+        assertSize(MessagePartRequestHandler.getThumbnailSize(3, 1000, 100, 100, true, false), 1, 100);
+    }
+
+    @Test
+    public void testOnlyScaleDownKeepsImagesThatFit() {
+        assertSize(MessagePartRequestHandler.getThumbnailSize(200, 100, 300, 300, true, true), 200, 100);
+        assertSize(MessagePartRequestHandler.getThumbnailSize(200, 100, 300, 300, false, true), 200, 100);
+        assertSize(MessagePartRequestHandler.getThumbnailSize(300, 300, 300, 300, true, true), 300, 300);
+    }
+
+    @Test
+    public void testOnlyScaleDownResizesImagesThatDoNotFit() {
+        assertSize(MessagePartRequestHandler.getThumbnailSize(400, 100, 300, 300, true, true), 300, 75);
+        assertSize(MessagePartRequestHandler.getThumbnailSize(400, 100, 300, 300, false, true), 300, 300);
+    }
+
+    @Test
+    public void testScalesUpWithoutOnlyScaleDown() {
+        assertSize(MessagePartRequestHandler.getThumbnailSize(200, 100, 300, 300, true, false), 300, 150);
+    }
+
+    private static void assertSize(int[] size, int width, int height) {
+        assertThat(size[0], is(width));
+        assertThat(size[1], is(height));
+    }
+}
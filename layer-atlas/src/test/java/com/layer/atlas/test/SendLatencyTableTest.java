@@ -0,0 +1,146 @@
+package com.layer.atlas.test;
+
+import com.layer.atlas.util.metrics.AtlasMetrics;
+import com.layer.atlas.util.metrics.MetricsSink;
+import com.layer.atlas.util.metrics.SendLatencyTable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Drives send latency tracking through the change events a sent Message goes through, on a
+ * virtual clock.
+ */
+public class SendLatencyTableTest {
+    private static final String SENDER = "send.TextSender";
+    private static final long MS = 1000000L;
+
+    private RecordingSink mSink;
+    private SendLatencyTable<String> mTable;
+
+    @Before
+    public void setUp() {
+        mSink = new RecordingSink();
+        AtlasMetrics.setSink(mSink);
+        mTable = new SendLatencyTable<String>(4, 1000 * MS);
+    }
+
+    @After
+    public void tearDown() {
+        AtlasMetrics.setSink(null);
+    }
+
+    @Test
+    public void testRecordsEachTransitionOnce() {
+        mTable.onPrepared("a", SENDER, 100 * MS, 110 * MS);
+        mTable.onQueued("a", 120 * MS);
+
+        // Sent
+        mTable.onUpdate("a", true, false, false, 150 * MS);
+        mTable.onUpdate("a", true, false, false, 160 * MS);
+        // Delivered
+        mTable.onUpdate("a", true, true, false, 200 * MS);
+        mTable.onUpdate("a", true, true, false, 210 * MS);
+        // Read
+        mTable.onUpdate("a", true, true, true, 300 * MS);
+
+        assertThat(mSink.mTimers, is(list(
+                SENDER + ".latency.sent=" + 50 * MS,
+                SENDER + ".ack=" + 30 * MS,
+                SENDER + ".latency.delivered=" + 100 * MS,
+                SENDER + ".latency.read=" + 200 * MS)));
+        assertThat(mTable.isTracked("a"), is(false));
+
+        // Events after reading are ignored
+        mTable.onUpdate("a", true, true, true, 400 * MS);
+        assertThat(mSink.mTimers.size(), is(4));
+    }
+
+    @Test
+    public void testIgnoresEventsBeforeQueued() {
+        mTable.onPrepared("a", SENDER, 100 * MS, 110 * MS);
+        mTable.onUpdate("a", true, true, false, 115 * MS);
+        assertThat(mSink.mTimers.size(), is(0));
+
+        mTable.onQueued("a", 120 * MS);
+        mTable.onUpdate("a", true, true, false, 130 * MS);
+        assertThat(mSink.mTimers, is(list(
+                SENDER + ".latency.sent=" + 30 * MS,
+                SENDER + ".ack=" + 10 * MS,
+                SENDER + ".latency.delivered=" + 30 * MS)));
+    }
+
+    @Test
+    public void testIgnoresUntrackedAndAbortedMessages() {
+        mTable.onUpdate("unknown", true, true, true, 100 * MS);
+        mTable.onQueued("unknown", 100 * MS);
+        assertThat(mTable.isTracked("unknown"), is(false));
+
+        mTable.onPrepared("a", SENDER, 100 * MS, 110 * MS);
+        mTable.onAborted("a");
+        mTable.onQueued("a", 120 * MS);
+        mTable.onUpdate("a", true, true, true, 130 * MS);
+        assertThat(mTable.isTracked("a"), is(false));
+        assertThat(mSink.mTimers.size(), is(0));
+    }
+
+    @Test
+    public void testEvictsOldestBeyondLimit() {
+        for (int i = 0; i < 6; i++) {
+            mTable.onPrepared("m" + i, SENDER, i * MS, i * MS);
+        }
+        assertThat(mTable.size(), is(4));
+        assertThat(mTable.isTracked("m0"), is(false));
+        assertThat(mTable.isTracked("m1"), is(false));
+        assertThat(mTable.isTracked("m5"), is(true));
+    }
+
+    @Test
+    public void testEvictsExpiredOnPrepare() {
+        mTable.onPrepared("old", SENDER, 0, 0);
+        mTable.onPrepared("recent", SENDER, 500 * MS, 500 * MS);
+        mTable.onPrepared("new", SENDER, 1200 * MS, 1200 * MS);
+        assertThat(mTable.isTracked("old"), is(false));
+        assertThat(mTable.isTracked("recent"), is(true));
+        assertThat(mTable.isTracked("new"), is(true));
+    }
+
+    @Test
+    public void testClear() {
+        mTable.onPrepared("a", SENDER, 100 * MS, 110 * MS);
+        mTable.clear();
+        assertThat(mTable.size(), is(0));
+    }
+
+    private static List<String> list(String... values) {
+        List<String> list = new ArrayList<String>();
+        for (String value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    private static class RecordingSink implements MetricsSink {
+        final List<String> mTimers = new ArrayList<String>();
+
+        @Override
+        public void onCounter(String name, long delta) {
+        }
+
+        @Override
+        public void onTimer(String name, long durationNanos) {
+            mTimers.add(name + "=" + durationNanos);
+        }
+
+        @Override
+        public void onValue(String name, long value) {
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.layer.atlas.test;
+
+import com.layer.atlas.util.picasso.requesthandlers.ThumbnailDiskCache;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Verifies that thumbnail files are only read back for the key, version, and size they were
+ * written with.
+ */
+public class ThumbnailDiskCacheTest {
+    // "Aa" and "BB" have the same String hash, so these keys share a file name
+    private static final String KEY = "layer:///messages/1/parts/Aa\n96x64\ninside\n0\nnull";
+    private static final String COLLIDING_KEY = "layer:///messages/1/parts/BB\n96x64\ninside\n0\nnull";
+    private static final int WIDTH = 96;
+    private static final int HEIGHT = 64;
+
+    @Test
+    public void testReadsWrittenHeader() {
+        ByteBuffer file = newFile(KEY, WIDTH, HEIGHT, false, WIDTH * HEIGHT * 4, WIDTH * HEIGHT * 4);
+        ThumbnailDiskCache.Header header = ThumbnailDiskCache.readHeader(file, KEY);
+        assertNotNull(header);
+        assertThat(header.getWidth(), is(WIDTH));
+        assertThat(header.getHeight(), is(HEIGHT));
+        assertThat(header.isRgb565(), is(false));
+        assertThat(header.hasAlpha(), is(true));
+        // Positioned at the pixels
+        assertThat(file.remaining(), is(WIDTH * HEIGHT * 4));
+    }
+
+    @Test
+    public void testReadsRgb565Header() {
+        ByteBuffer file = newFile(KEY, WIDTH, HEIGHT, true, WIDTH * HEIGHT * 2, WIDTH * HEIGHT * 2);
+        ThumbnailDiskCache.Header header = ThumbnailDiskCache.readHeader(file, KEY);
+        assertNotNull(header);
+        assertThat(header.isRgb565(), is(true));
+    }
+
+    @Test
+    public void testRejectsHashCollision() {
+        assertThat(COLLIDING_KEY.hashCode(), is(KEY.hashCode()));
+        ByteBuffer file = newFile(COLLIDING_KEY, WIDTH, HEIGHT, false, WIDTH * HEIGHT * 4, WIDTH * HEIGHT * 4);
+        assertNull(ThumbnailDiskCache.readHeader(file, KEY));
+    }
+
+    @Test
+    public void testRejectsOtherKeyLength() {
+        ByteBuffer file = newFile(KEY + "0", WIDTH, HEIGHT, false, WIDTH * HEIGHT * 4, WIDTH * HEIGHT * 4);
+        assertNull(ThumbnailDiskCache.readHeader(file, KEY));
+    }
+
+    @Test
+    public void testRejectsTruncatedPixels() {
+        ByteBuffer file = newFile(KEY, WIDTH, HEIGHT, false, WIDTH * HEIGHT * 4, WIDTH * HEIGHT * 4 - 1);
+        assertNull(ThumbnailDiskCache.readHeader(file, KEY));
+    }
+
+    @Test
+    public void testRejectsTrailingBytes() {
+        ByteBuffer file = newFile(KEY, WIDTH, HEIGHT, false, WIDTH * HEIGHT * 4, WIDTH * HEIGHT * 4 + 1);
+        assertNull(ThumbnailDiskCache.readHeader(file, KEY));
+    }
+
+    @Test
+    public void testRejectsTruncatedHeader() {
+        ByteBuffer header = ThumbnailDiskCache.writeHeader(KEY, WIDTH, HEIGHT, false, true, WIDTH * HEIGHT * 4);
+        // Cut inside the fixed fields, and inside the key
+        for (int length : new int[]{0, 4, 20, header.remaining() - 1}) {
+            ByteBuffer file = header.duplicate();
+            file.limit(length);
+            assertNull("Truncated to " + length, ThumbnailDiskCache.readHeader(file.slice(), KEY));
+        }
+    }
+
+    @Test
+    public void testRejectsPixelSizeMismatch() {
+        // ARGB_8888 dimensions with RGB_565 pixels
+        ByteBuffer file = newFile(KEY, WIDTH, HEIGHT, false, WIDTH * HEIGHT * 2, WIDTH * HEIGHT * 2);
+        assertNull(ThumbnailDiskCache.readHeader(file, KEY));
+        file = newFile(KEY, 0, HEIGHT, false, 0, 0);
+        assertNull(ThumbnailDiskCache.readHeader(file, KEY));
+    }
+
+    @Test
+    public void testRejectsOtherFiles() {
+        ByteBuffer file = newFile(KEY, WIDTH, HEIGHT, false, WIDTH * HEIGHT * 4, WIDTH * HEIGHT * 4);
+        // Magic
+        file.put(0, (byte) 0);
+        assertNull(ThumbnailDiskCache.readHeader(file, KEY));
+
+        file = newFile(KEY, WIDTH, HEIGHT, false, WIDTH * HEIGHT * 4, WIDTH * HEIGHT * 4);
+        // Version
+        file.putInt(4, 2);
+        assertNull(ThumbnailDiskCache.readHeader(file, KEY));
+    }
+
+    /**
+     * Returns a thumbnail file's contents with the given header and `pixelBytes` bytes of pixels.
+     */
+    private static ByteBuffer newFile(String key, int width, int height, boolean rgb565, int headerPixelBytes, int pixelBytes) {
+        ByteBuffer header = ThumbnailDiskCache.writeHeader(key, width, height, rgb565, true, headerPixelBytes);
+        ByteBuffer file = ByteBuffer.allocate(header.remaining() + pixelBytes);
+        file.put(header);
+        file.flip();
+        file.limit(file.capacity());
+        return file;
+    }
+}
@@ -0,0 +1,158 @@
+package com.layer.atlas.test;
+
+import com.layer.atlas.mock.FakeScheduler;
+import com.layer.atlas.util.TypingIndicatorEmitter;
+import com.layer.atlas.util.TypingIndicatorEmitter.Indicator;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Verifies typing indicator emission counts for simulated typing sessions on a virtual clock.
+ */
+public class TypingIndicatorEmitterTest {
+    private static final long IDLE = 3000;
+    private static final long REFRESH = 8000;
+    private static final long KEYSTROKE = 150;
+
+    private FakeScheduler mScheduler;
+    private RecordingSink mSink;
+    private TypingIndicatorEmitter mEmitter;
+
+    @Before
+    public void setUp() {
+        mScheduler = new FakeScheduler(0);
+        mSink = new RecordingSink();
+        mEmitter = new TypingIndicatorEmitter(mScheduler, mSink)
+                .setIdleInterval(IDLE)
+                .setRefreshInterval(REFRESH);
+    }
+
+    @Test
+    public void testBurstSendsStartedOnce() {
+        type(20);
+
+        assertThat(mSink.mSent, is(list(Indicator.STARTED)));
+        assertThat(mScheduler.getPendingCount(), is(1));
+    }
+
+    @Test
+    public void testIdleSendsPausedOnce() {
+        type(10);
+        mScheduler.advance(IDLE * 5);
+
+        assertThat(mSink.mSent, is(list(Indicator.STARTED, Indicator.PAUSED)));
+        assertThat(mScheduler.getPendingCount(), is(0));
+    }
+
+    @Test
+    public void testPausedMeasuredFromLastKeystroke() {
+        type(10);
+        // type() leaves the clock one keystroke past the last change
+        mScheduler.advance(IDLE - KEYSTROKE - 1);
+        assertThat(mSink.count(Indicator.PAUSED), is(0));
+        mScheduler.advance(1);
+        assertThat(mSink.count(Indicator.PAUSED), is(1));
+    }
+
+    @Test
+    public void testResumeAfterPauseSendsStarted() {
+        type(5);
+        mScheduler.advance(IDLE);
+        type(5);
+
+        assertThat(mSink.mSent, is(list(Indicator.STARTED, Indicator.PAUSED, Indicator.STARTED)));
+    }
+
+    @Test
+    public void testContinuousTypingRefreshesStarted() {
+        // 30 seconds of uninterrupted typing
+        type((int) (30000 / KEYSTROKE));
+
+        assertThat(mSink.count(Indicator.STARTED), is(4));
+        assertThat(mSink.count(Indicator.PAUSED), is(0));
+    }
+
+    @Test
+    public void testClearSendsFinished() {
+        type(10);
+        mEmitter.onTextChanged(false);
+        mScheduler.advance(IDLE * 5);
+
+        assertThat(mSink.mSent, is(list(Indicator.STARTED, Indicator.FINISHED)));
+        assertThat(mScheduler.getPendingCount(), is(0));
+    }
+
+    @Test
+    public void testSendThenClearSendsFinishedOnce() {
+        type(10);
+        mEmitter.finish();
+        mEmitter.onTextChanged(false);
+
+        assertThat(mSink.mSent, is(list(Indicator.STARTED, Indicator.FINISHED)));
+    }
+
+    @Test
+    public void testFinishAfterPauseSendsFinished() {
+        type(10);
+        mScheduler.advance(IDLE);
+        mEmitter.finish();
+
+        assertThat(mSink.mSent, is(list(Indicator.STARTED, Indicator.PAUSED, Indicator.FINISHED)));
+    }
+
+    @Test
+    public void testFinishWithoutTypingSendsNothing() {
+        mEmitter.finish();
+        mEmitter.onTextChanged(false);
+
+        assertThat(mSink.mSent.size(), is(0));
+    }
+
+    @Test
+    public void testTypicalSession() {
+        // Type, think, type, then send: 2 STARTED, 1 PAUSED, 1 FINISHED for 80 keystrokes
+        type(40);
+        mScheduler.advance(IDLE + 1000);
+        type(40);
+        mEmitter.finish();
+
+        assertThat(mSink.count(Indicator.STARTED), is(2));
+        assertThat(mSink.count(Indicator.PAUSED), is(1));
+        assertThat(mSink.count(Indicator.FINISHED), is(1));
+        assertThat(mEmitter.getState(), is(Indicator.FINISHED));
+    }
+
+    private void type(int keystrokes) {
+        for (int i = 0; i < keystrokes; i++) {
+            mEmitter.onTextChanged(true);
+            mScheduler.advance(KEYSTROKE);
+        }
+    }
+
+    private static List<Indicator> list(Indicator... indicators) {
+        List<Indicator> list = new ArrayList<Indicator>();
+        Collections.addAll(list, indicators);
+        return list;
+    }
+
+    private static class RecordingSink implements TypingIndicatorEmitter.Sink {
+        final List<Indicator> mSent = new ArrayList<Indicator>();
+
+        @Override
+        public void send(Indicator indicator) {
+            mSent.add(indicator);
+        }
+
+        int count(Indicator indicator) {
+            return Collections.frequency(mSent, indicator);
+        }
+    }
+}